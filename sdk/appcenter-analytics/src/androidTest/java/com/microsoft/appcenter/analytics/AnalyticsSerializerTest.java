@@ -16,6 +16,7 @@ import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
 import com.microsoft.appcenter.ingestion.models.properties.BooleanTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.DateTimeTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.DoubleTypedProperty;
@@ -38,8 +39,7 @@ public class AnalyticsSerializerTest {
 
     private static final String TAG = "TestRunner";
 
-    @Test
-    public void someBatch() throws JSONException {
+    static LogContainer generateBatch() {
         LogContainer expectedContainer = new LogContainer();
         Device device = new Device();
         device.setSdkName("appcenter.android");
@@ -130,13 +130,42 @@ public class AnalyticsSerializerTest {
             log.setSid(sid);
             log.setDevice(device);
         }
-        LogSerializer serializer = new DefaultLogSerializer();
+        return expectedContainer;
+    }
+
+    static void addLogFactories(LogSerializer serializer) {
         serializer.addLogFactory(StartSessionLog.TYPE, new StartSessionLogFactory());
         serializer.addLogFactory(PageLog.TYPE, new PageLogFactory());
         serializer.addLogFactory(EventLog.TYPE, new EventLogFactory());
+    }
+
+    @Test
+    public void someBatch() throws JSONException {
+        LogContainer expectedContainer = generateBatch();
+        LogSerializer serializer = new DefaultLogSerializer();
+        addLogFactories(serializer);
         String payload = serializer.serializeContainer(expectedContainer);
         android.util.Log.v(TAG, payload);
         LogContainer actualContainer = serializer.deserializeContainer(payload, null);
         Assert.assertEquals(expectedContainer, actualContainer);
     }
+
+    @Test
+    public void someBatchWithStreamingSerializer() throws JSONException {
+        LogContainer expectedContainer = generateBatch();
+        LogSerializer serializer = new StreamingLogSerializer();
+        addLogFactories(serializer);
+        LogSerializer defaultSerializer = new DefaultLogSerializer();
+        addLogFactories(defaultSerializer);
+        String payload = serializer.serializeContainer(expectedContainer);
+        android.util.Log.v(TAG, payload);
+        Assert.assertEquals(expectedContainer, serializer.deserializeContainer(payload, null));
+        Assert.assertEquals(expectedContainer, defaultSerializer.deserializeContainer(payload, null));
+
+        /* Logs are read back with their type, as from the database. */
+        for (Log log : expectedContainer.getLogs()) {
+            Assert.assertEquals(log, serializer.deserializeLog(serializer.serializeLog(log), log.getType()));
+            Assert.assertEquals(log, serializer.deserializeLog(defaultSerializer.serializeLog(log), log.getType()));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.analytics;
+
+import android.os.SystemClock;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+
+import static com.microsoft.appcenter.test.TestUtils.TAG;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link StreamingLogSerializer} with {@link DefaultLogSerializer} on analytics logs.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class LogSerializerBenchmarkAndroidTest {
+
+    /**
+     * Number of rounds before measuring.
+     */
+    private static final int WARM_UP_ROUNDS = 100;
+
+    /**
+     * Number of measured rounds.
+     */
+    private static final int ROUNDS = 1000;
+
+    /**
+     * Serializes then deserializes every log with its type, like storing and reading it from the database.
+     */
+    private static void roundTrip(LogSerializer serializer, List<Log> logs) throws JSONException {
+        for (Log log : logs) {
+            serializer.deserializeLog(serializer.serializeLog(log), log.getType());
+        }
+    }
+
+    /**
+     * Returns the average time in nanoseconds of a round trip for one log.
+     */
+    private static long measure(LogSerializer serializer, List<Log> logs) throws JSONException {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            roundTrip(serializer, logs);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            roundTrip(serializer, logs);
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / ((long) ROUNDS * logs.size());
+    }
+
+    @Test
+    public void analyticsLogs() throws JSONException {
+        List<Log> logs = AnalyticsSerializerTest.generateBatch().getLogs();
+        LogSerializer defaultSerializer = new DefaultLogSerializer();
+        AnalyticsSerializerTest.addLogFactories(defaultSerializer);
+        LogSerializer streamingSerializer = new StreamingLogSerializer();
+        AnalyticsSerializerTest.addLogFactories(streamingSerializer);
+
+        /* Both serializers produce the same logs. */
+        for (Log log : logs) {
+            assertEquals(log, streamingSerializer.deserializeLog(streamingSerializer.serializeLog(log), log.getType()));
+        }
+
+        /* Measure. */
+        long defaultTime = measure(defaultSerializer, logs);
+        long streamingTime = measure(streamingSerializer, logs);
+        android.util.Log.i(TAG, String.format(Locale.ENGLISH, "Analytics log round trip: default=%dns streaming=%dns", defaultTime, streamingTime));
+    }
+}
@@ -110,6 +110,17 @@ public class Analytics extends AbstractAppCenterService {
     @VisibleForTesting
     AnalyticsTransmissionTarget mDefaultTransmissionTarget;
 
+    /**
+     * Filter applied to events on the channel thread.
+     */
+    private final Channel.EnqueueFilter mEventFilter = new Channel.EnqueueFilter() {
+
+        @Override
+        public boolean shouldEnqueue(@NonNull Log log, @NonNull String groupName) {
+            return checkEvent(log);
+        }
+    };
+
     /**
      * Current activity to replay onResume when enabled in foreground.
      */
@@ -847,37 +858,69 @@ public class Analytics extends AbstractAppCenterService {
      * @param flags              optional flags.
      */
     private synchronized void trackEventAsync(final String name, final List<TypedProperty> properties, final AnalyticsTransmissionTarget transmissionTarget, final int flags) {
-        final String userId = UserIdContext.getInstance().getUserId();
-        post(new Runnable() {
 
-            @Override
-            public void run() {
-                AnalyticsTransmissionTarget aTransmissionTarget = (transmissionTarget == null) ? mDefaultTransmissionTarget : transmissionTarget;
-                EventLog eventLog = new EventLog();
-                if (aTransmissionTarget != null) {
-                    if (aTransmissionTarget.isEnabled()) {
-                        eventLog.addTransmissionTarget(aTransmissionTarget.getTransmissionTargetToken());
-                        eventLog.setTag(aTransmissionTarget);
-                        if (aTransmissionTarget == mDefaultTransmissionTarget) {
-                            eventLog.setUserId(userId);
-                        }
-                    } else {
-                        AppCenterLog.error(LOG_TAG, "This transmission target is disabled.");
-                        return;
+        /*
+         * Build the log on the calling thread and let the channel check service and target state
+         * on its own thread, events don't need a message posted each.
+         */
+        final EventLog eventLog = new EventLog();
+        eventLog.setId(UUID.randomUUID());
+        eventLog.setName(name);
+        eventLog.setTypedProperties(properties);
+        eventLog.setUserId(UserIdContext.getInstance().getUserId());
+        eventLog.setTag(transmissionTarget);
+
+        /* Filter and validate flags. For now we support only persistence. */
+        final int filteredFlags = Flags.getPersistenceFlag(flags, true);
+        final String groupName = filteredFlags == Flags.CRITICAL ? ANALYTICS_CRITICAL_GROUP : ANALYTICS_GROUP;
+        if (mChannel != null) {
+            mChannel.enqueueAsync(eventLog, groupName, filteredFlags, mEventFilter);
+        } else {
+
+            /* Service start is not finished yet. */
+            post(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (mEventFilter.shouldEnqueue(eventLog, groupName)) {
+                        mChannel.enqueue(eventLog, groupName, filteredFlags);
                     }
-                } else if (!mStartedFromApp) {
-                    AppCenterLog.error(LOG_TAG, "Cannot track event using Analytics.trackEvent if not started from app, please start from the application or use Analytics.getTransmissionTarget.");
-                    return;
                 }
-                eventLog.setId(UUID.randomUUID());
-                eventLog.setName(name);
-                eventLog.setTypedProperties(properties);
+            });
+        }
+    }
 
-                /* Filter and validate flags. For now we support only persistence. */
-                int filteredFlags = Flags.getPersistenceFlag(flags, true);
-                mChannel.enqueue(eventLog, filteredFlags == Flags.CRITICAL ? ANALYTICS_CRITICAL_GROUP : ANALYTICS_GROUP, filteredFlags);
+    /**
+     * Check service and transmission target state of an event just before enqueuing it.
+     *
+     * @param eventLog event log, tagged with the transmission target passed to track event or null for the default one.
+     * @return true to enqueue the event, false to discard it.
+     */
+    @WorkerThread
+    private boolean checkEvent(Log eventLog) {
+        if (!isInstanceEnabled()) {
+            AppCenterLog.info(LOG_TAG, getServiceName() + " service disabled, discarding calls.");
+            return false;
+        }
+        AnalyticsTransmissionTarget aTransmissionTarget = (eventLog.getTag() == null) ? mDefaultTransmissionTarget : (AnalyticsTransmissionTarget) eventLog.getTag();
+        if (aTransmissionTarget != null) {
+            if (aTransmissionTarget.isEnabled()) {
+                eventLog.addTransmissionTarget(aTransmissionTarget.getTransmissionTargetToken());
+                eventLog.setTag(aTransmissionTarget);
+                if (aTransmissionTarget != mDefaultTransmissionTarget) {
+                    eventLog.setUserId(null);
+                }
+            } else {
+                AppCenterLog.error(LOG_TAG, "This transmission target is disabled.");
+                return false;
             }
-        });
+        } else if (!mStartedFromApp) {
+            AppCenterLog.error(LOG_TAG, "Cannot track event using Analytics.trackEvent if not started from app, please start from the application or use Analytics.getTransmissionTarget.");
+            return false;
+        } else {
+            eventLog.setUserId(null);
+        }
+        return true;
     }
 
     /**
@@ -5,7 +5,12 @@
 
 package com.microsoft.appcenter.analytics.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyUtils;
 
@@ -13,6 +18,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,7 +28,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPED_PR
 /**
  * Event log.
  */
-public class EventLog extends LogWithNameAndProperties {
+public class EventLog extends LogWithNameAndProperties implements StreamingModel {
 
     public static final String TYPE = "event";
 
@@ -92,6 +98,29 @@ public class EventLog extends LogWithNameAndProperties {
         JSONUtils.writeArray(writer, TYPED_PROPERTIES, getTypedProperties());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.write(writer, ID, getId());
+        JsonStreamUtils.writeArray(writer, TYPED_PROPERTIES, getTypedProperties());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case ID:
+                setId(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case TYPED_PROPERTIES:
+                setTypedProperties(TypedPropertyUtils.read(reader));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @SuppressWarnings("SimplifiableIfStatement")
     @Override
     public boolean equals(Object o) {
@@ -5,12 +5,18 @@
 
 package com.microsoft.appcenter.analytics.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 
 public abstract class LogWithNameAndProperties extends LogWithProperties {
@@ -50,6 +56,21 @@ public abstract class LogWithNameAndProperties extends LogWithProperties {
         writer.key(NAME).value(getName());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        writer.name(NAME).value(getName());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        if (NAME.equals(name)) {
+            setName(JsonStreamUtils.readString(reader));
+            return true;
+        }
+        return super.readProperty(name, reader);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
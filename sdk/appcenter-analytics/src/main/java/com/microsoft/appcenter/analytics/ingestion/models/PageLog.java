@@ -5,10 +5,12 @@
 
 package com.microsoft.appcenter.analytics.ingestion.models;
 
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+
 /**
  * Page log.
  */
-public class PageLog extends LogWithNameAndProperties {
+public class PageLog extends LogWithNameAndProperties implements StreamingModel {
 
     public static final String TYPE = "page";
 
@@ -9,6 +9,8 @@ import android.os.SystemClock;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.AppCenterHandler;
+import com.microsoft.appcenter.channel.Channel;
+import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.HandlerUtils;
 import com.microsoft.appcenter.utils.PrefStorageConstants;
@@ -26,8 +28,11 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.doAnswer;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -47,6 +52,27 @@ abstract class AbstractAnalyticsTest {
     @Mock
     private AppCenterFuture<Boolean> mCoreEnabledFuture;
 
+    /**
+     * Mock a channel that enqueues logs passed to {@link Channel#enqueueAsync} synchronously when the filter accepts them.
+     */
+    static Channel mockChannel() {
+        final Channel channel = mock(Channel.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Log log = (Log) invocation.getArguments()[0];
+                String groupName = (String) invocation.getArguments()[1];
+                Channel.EnqueueFilter filter = (Channel.EnqueueFilter) invocation.getArguments()[3];
+                if (filter == null || filter.shouldEnqueue(log, groupName)) {
+                    channel.enqueue(log, groupName, (Integer) invocation.getArguments()[2]);
+                }
+                return null;
+            }
+        }).when(channel).enqueueAsync(any(Log.class), anyString(), anyInt(), nullable(Channel.EnqueueFilter.class));
+        return channel;
+    }
+
     @Before
     public void setUp() {
         Analytics.unsetInstance();
@@ -27,6 +27,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -72,9 +73,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
@@ -143,7 +146,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         AppCenterLog.error(anyString(), anyString());
 
         /* Start. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
 
@@ -174,7 +177,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         assertTrue(Analytics.isAutoPageTrackingEnabled());
         Analytics.setAutoPageTrackingEnabled(false);
         assertFalse(Analytics.isAutoPageTrackingEnabled());
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         analytics.onActivityResumed(new MyActivity());
@@ -189,7 +192,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithoutProperties() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -205,7 +208,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithNullMapProperty() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -221,7 +224,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithEmptyMapProperty() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -237,7 +240,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithMapProperties() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -258,7 +261,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithEmptyEventProperties() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -274,7 +277,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromAppWithEventProperties() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
@@ -315,10 +318,38 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         assertEquals(booleanTypedProperty, argumentCaptor.getValue().getTypedProperties().get(4));
     }
 
+    @Test
+    public void trackEventBeforeStartIsFinished() {
+        final List<Runnable> postedRunnables = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                postedRunnables.add((Runnable) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(mAppCenterHandler).post(any(Runnable.class), any());
+        Analytics analytics = Analytics.getInstance();
+        Channel channel = mockChannel();
+        analytics.onStarting(mAppCenterHandler);
+
+        /* Channel is not set yet, the event is posted. */
+        Analytics.trackEvent("eventName");
+        analytics.onStarted(mock(Context.class), channel, "", null, true);
+        Analytics.trackEvent("eventName");
+        verify(channel).enqueueAsync(isA(EventLog.class), eq(ANALYTICS_GROUP), eq(DEFAULTS), notNull(Channel.EnqueueFilter.class));
+        verify(channel).enqueue(isA(EventLog.class), eq(ANALYTICS_GROUP), eq(DEFAULTS));
+        for (int i = 0; i < postedRunnables.size(); i++) {
+            postedRunnables.get(i).run();
+        }
+        verify(channel, times(2)).enqueue(isA(EventLog.class), eq(ANALYTICS_GROUP), eq(DEFAULTS));
+        verify(channel).enqueueAsync(any(Log.class), anyString(), anyInt(), nullable(Channel.EnqueueFilter.class));
+    }
+
     @Test
     public void trackEventWithNormalPersistenceFlag() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.trackEvent("eventName1", (Map<String, String>) null, NORMAL);
@@ -329,7 +360,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventWithNormalCriticalPersistenceFlag() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.trackEvent("eventName1", (Map<String, String>) null, CRITICAL);
@@ -340,7 +371,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventWithInvalidFlags() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.trackEvent("eventName1", (Map<String, String>) null, 0x03);
@@ -354,7 +385,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     public void trackEventWithUserIdWhenConfiguredForTarget() {
         UserIdContext.getInstance().setUserId("c:alice");
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, null, "target", true);
         Analytics.trackEvent("eventName1");
@@ -367,7 +398,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     public void trackEventWithoutUserIdWhenConfiguredForAppSecretOnly() {
         UserIdContext.getInstance().setUserId("alice");
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "appSecret", null, true);
         Analytics.trackEvent("eventName1");
@@ -380,7 +411,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     public void trackEventWithoutUserIdWhenConfiguredForBothSecrets() {
         UserIdContext.getInstance().setUserId("c:alice");
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "appSecret", "target", true);
         Analytics.trackEvent("eventName1");
@@ -392,7 +423,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackEventFromLibrary() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, null, null, false);
 
@@ -413,7 +444,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackPageFromApp() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.trackPage("pageName");
@@ -423,7 +454,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void trackPageFromLibrary() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, false);
 
@@ -434,7 +465,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
 
     @Test
     public void setEnabled() throws InterruptedException {
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
 
         /* Before start it does not work to change state, it's disabled. */
         Analytics analytics = Analytics.getInstance();
@@ -516,7 +547,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         Analytics analytics = Analytics.getInstance();
 
         /* Start. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         verify(channel, never()).removeListener(any(Channel.Listener.class));
@@ -530,7 +561,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         Analytics analytics = Analytics.getInstance();
 
         /* Start. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         verify(channel).addGroup(eq(analytics.getGroupName()), anyInt(), anyLong(), anyInt(), isNull(), any(Channel.GroupListener.class));
@@ -572,7 +603,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         Analytics analytics = Analytics.getInstance();
 
        /* Prepare channel. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
 
@@ -594,7 +625,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         Analytics analytics = Analytics.getInstance();
 
         /* Prepare channel. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         analytics.onActivityResumed(mock(Activity.class));
@@ -624,7 +655,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         Analytics analytics = Analytics.getInstance();
 
         /* Start. */
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         verify(channel).addGroup(eq(analytics.getGroupName()), anyInt(), anyLong(), anyInt(), isNull(), any(Channel.GroupListener.class));
@@ -665,7 +696,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
          * simulating the opt-in use case.
          */
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.setEnabled(false);
@@ -698,7 +729,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
          * simulating the opt-in use case.
          */
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         Analytics.setEnabled(false);
@@ -718,7 +749,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         AnalyticsListener listener = mock(AnalyticsListener.class);
         Analytics.setListener(listener);
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         final ArgumentCaptor<Channel.GroupListener> captor = ArgumentCaptor.forClass(Channel.GroupListener.class);
@@ -744,7 +775,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         AnalyticsListener listener = mock(AnalyticsListener.class);
         Analytics.setListener(listener);
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         verify(channel).addGroup(eq(ANALYTICS_CRITICAL_GROUP), anyInt(), anyLong(), anyInt(), isNull(), any(Channel.GroupListener.class));
@@ -758,7 +789,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         AnalyticsListener listener = mock(AnalyticsListener.class);
         Analytics.setListener(listener);
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, "", null, true);
         verify(channel).addGroup(eq(ANALYTICS_CRITICAL_GROUP), anyInt(), anyLong(), anyInt(), isNull(), any(Channel.GroupListener.class));
@@ -802,7 +833,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
 
         /* Start from library. */
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, null, null, false);
 
@@ -888,7 +919,7 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
     @Test
     public void unableToSetTransmissionIntervalAfterStart() {
         Analytics analytics = Analytics.getInstance();
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), channel, null, null, false);
         boolean result = Analytics.setTransmissionInterval(MINIMUM_TRANSMISSION_INTERVAL_IN_SECONDS + 1);
@@ -121,7 +121,7 @@ public class AnalyticsTransmissionTargetTest extends AbstractAnalyticsTest {
         /* Overwrite setup for this test. */
         Analytics.unsetInstance();
         Analytics analytics = Analytics.getInstance();
-        mChannel = mock(Channel.class);
+        mChannel = mockChannel();
         analytics.onStarting(mAppCenterHandler);
         analytics.onStarted(mock(Context.class), mChannel, null, defaultToken, startFromApp);
         final AnalyticsTransmissionTarget target = Analytics.getTransmissionTarget("token");
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.crashes;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.crashes.ingestion.models.ErrorAttachmentLog;
+import com.microsoft.appcenter.crashes.ingestion.models.HandledErrorLog;
+import com.microsoft.appcenter.crashes.ingestion.models.ManagedErrorLog;
+import com.microsoft.appcenter.crashes.ingestion.models.json.ErrorAttachmentLogFactory;
+import com.microsoft.appcenter.crashes.ingestion.models.json.HandledErrorLogFactory;
+import com.microsoft.appcenter.crashes.ingestion.models.json.ManagedErrorLogFactory;
+import com.microsoft.appcenter.crashes.utils.ErrorLogHelper;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static com.microsoft.appcenter.test.TestUtils.TAG;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link StreamingLogSerializer} with {@link DefaultLogSerializer} on crash logs.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class LogSerializerBenchmarkAndroidTest {
+
+    /**
+     * Number of rounds before measuring.
+     */
+    private static final int WARM_UP_ROUNDS = 10;
+
+    /**
+     * Number of measured rounds.
+     */
+    private static final int ROUNDS = 100;
+
+    private static void addLogFactories(LogSerializer serializer) {
+        serializer.addLogFactory(ManagedErrorLog.TYPE, ManagedErrorLogFactory.getInstance());
+        serializer.addLogFactory(HandledErrorLog.TYPE, HandledErrorLogFactory.getInstance());
+        serializer.addLogFactory(ErrorAttachmentLog.TYPE, ErrorAttachmentLogFactory.getInstance());
+    }
+
+    /**
+     * Generates a crash with the stack traces of all threads, a handled error and an attachment.
+     */
+    private static List<Log> generateLogs() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Throwable throwable = new RuntimeException("Benchmark crash", new IllegalStateException("Benchmark cause"));
+        ManagedErrorLog errorLog = ErrorLogHelper.createErrorLog(context, Thread.currentThread(), throwable, Thread.getAllStackTraces(), System.currentTimeMillis());
+        HandledErrorLog handledErrorLog = new HandledErrorLog();
+        handledErrorLog.setId(UUID.randomUUID());
+        handledErrorLog.setTimestamp(new Date());
+        handledErrorLog.setDevice(errorLog.getDevice());
+        handledErrorLog.setException(ErrorLogHelper.getModelExceptionFromThrowable(throwable));
+        handledErrorLog.setProperties(Collections.singletonMap("screen", "checkout"));
+        ErrorAttachmentLog attachmentLog = ErrorAttachmentLog.attachmentWithText("Benchmark attachment", "log.txt");
+        attachmentLog.setId(UUID.randomUUID());
+        attachmentLog.setErrorId(errorLog.getId());
+        attachmentLog.setTimestamp(new Date());
+        attachmentLog.setDevice(errorLog.getDevice());
+        List<Log> logs = new ArrayList<>();
+        logs.add(errorLog);
+        logs.add(handledErrorLog);
+        logs.add(attachmentLog);
+        return logs;
+    }
+
+    /**
+     * Serializes then deserializes every log with its type, like storing and reading it from the database.
+     */
+    private static void roundTrip(LogSerializer serializer, List<Log> logs) throws JSONException {
+        for (Log log : logs) {
+            serializer.deserializeLog(serializer.serializeLog(log), log.getType());
+        }
+    }
+
+    /**
+     * Returns the average time in nanoseconds of a round trip for one log.
+     */
+    private static long measure(LogSerializer serializer, List<Log> logs) throws JSONException {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            roundTrip(serializer, logs);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            roundTrip(serializer, logs);
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / ((long) ROUNDS * logs.size());
+    }
+
+    @Test
+    public void crashLogs() throws JSONException {
+        List<Log> logs = generateLogs();
+        LogSerializer defaultSerializer = new DefaultLogSerializer();
+        addLogFactories(defaultSerializer);
+        LogSerializer streamingSerializer = new StreamingLogSerializer();
+        addLogFactories(streamingSerializer);
+
+        /* Both serializers produce the same logs and read each other's output. */
+        for (Log log : logs) {
+            String payload = streamingSerializer.serializeLog(log);
+            assertEquals(log, streamingSerializer.deserializeLog(payload, log.getType()));
+            assertEquals(log, defaultSerializer.deserializeLog(payload, log.getType()));
+            assertEquals(log, streamingSerializer.deserializeLog(defaultSerializer.serializeLog(log), log.getType()));
+        }
+
+        /* Measure. */
+        long defaultTime = measure(defaultSerializer, logs);
+        long streamingTime = measure(streamingSerializer, logs);
+        android.util.Log.i(TAG, String.format(Locale.ENGLISH, "Crash log round trip: default=%dns streaming=%dns", defaultTime, streamingTime));
+    }
+}
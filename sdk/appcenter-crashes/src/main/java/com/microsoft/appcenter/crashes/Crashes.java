@@ -57,6 +57,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
@@ -154,6 +155,21 @@ public class Crashes extends AbstractAppCenterService {
      */
     private final Map<UUID, ErrorLogReport> mErrorReportCache;
 
+    /**
+     * Discard handled errors and their attachments on the channel thread if the service got disabled.
+     */
+    private final Channel.EnqueueFilter mEnabledFilter = new Channel.EnqueueFilter() {
+
+        @Override
+        public boolean shouldEnqueue(@NonNull Log log, @NonNull String groupName) {
+            if (isInstanceEnabled()) {
+                return true;
+            }
+            AppCenterLog.info(LOG_TAG, getServiceName() + " service disabled, discarding calls.");
+            return false;
+        }
+    };
+
     /**
      * Log serializer.
      */
@@ -635,27 +651,38 @@ public class Crashes extends AbstractAppCenterService {
 
     private synchronized UUID queueException(@NonNull final ExceptionModelBuilder exceptionModelBuilder, Map<String, String> properties, final Iterable<ErrorAttachmentLog> attachments) {
 
-        /* Snapshot userId as early as possible. */
-        final String userId = UserIdContext.getInstance().getUserId();
         final UUID errorId = UUID.randomUUID();
-        final Map<String, String> validatedProperties = ErrorLogHelper.validateProperties(properties, "HandledError");
-        post(new Runnable() {
+        final HandledErrorLog errorLog = new HandledErrorLog();
+        errorLog.setId(errorId);
 
-            @Override
-            public void run() {
+        /* Snapshot userId as early as possible. */
+        errorLog.setUserId(UserIdContext.getInstance().getUserId());
+        errorLog.setProperties(ErrorLogHelper.validateProperties(properties, "HandledError"));
+        if (mChannel != null) {
+
+            /* Let the channel check the service state on its thread, in order with the other logs. */
+            errorLog.setException(exceptionModelBuilder.buildExceptionModel());
+            mChannel.enqueueAsync(errorLog, ERROR_GROUP, Flags.DEFAULTS, mEnabledFilter);
+            for (ErrorAttachmentLog attachment : getValidErrorAttachments(errorId, attachments)) {
+                mChannel.enqueueAsync(attachment, ERROR_GROUP, Flags.DEFAULTS, mEnabledFilter);
+            }
+        } else {
 
-                /* First send the handled error. */
-                HandledErrorLog errorLog = new HandledErrorLog();
-                errorLog.setId(errorId);
-                errorLog.setUserId(userId);
-                errorLog.setException(exceptionModelBuilder.buildExceptionModel());
-                errorLog.setProperties(validatedProperties);
-                mChannel.enqueue(errorLog, ERROR_GROUP, Flags.DEFAULTS);
+            /* Service start is not finished yet. */
+            post(new Runnable() {
 
-                /* Then attachments if any. */
-                sendErrorAttachment(errorId, attachments);
-            }
-        });
+                @Override
+                public void run() {
+
+                    /* First send the handled error. */
+                    errorLog.setException(exceptionModelBuilder.buildExceptionModel());
+                    mChannel.enqueue(errorLog, ERROR_GROUP, Flags.DEFAULTS);
+
+                    /* Then attachments if any. */
+                    sendErrorAttachment(errorId, attachments);
+                }
+            });
+        }
         return errorId;
     }
 
@@ -1069,6 +1096,21 @@ public class Crashes extends AbstractAppCenterService {
      */
     @WorkerThread
     private void sendErrorAttachment(UUID errorId, Iterable<ErrorAttachmentLog> attachments) {
+        for (ErrorAttachmentLog attachment : getValidErrorAttachments(errorId, attachments)) {
+            mChannel.enqueue(attachment, ERROR_GROUP, Flags.DEFAULTS);
+        }
+    }
+
+    /**
+     * Link attachments to an error and filter out the invalid ones.
+     *
+     * @param errorId     error identifier.
+     * @param attachments attachments, can be null.
+     * @return valid attachments.
+     */
+    @NonNull
+    private static List<ErrorAttachmentLog> getValidErrorAttachments(UUID errorId, Iterable<ErrorAttachmentLog> attachments) {
+        List<ErrorAttachmentLog> validAttachments = new ArrayList<>();
         if (attachments == null) {
             AppCenterLog.debug(LOG_TAG, "Error report: " + errorId.toString() + " does not have any attachment.");
         } else {
@@ -1083,13 +1125,14 @@ public class Crashes extends AbstractAppCenterService {
                                 "Discarding attachment with size above %d bytes: size=%d, fileName=%s.",
                                 MAX_ATTACHMENT_SIZE, attachment.getData().length, attachment.getFileName()));
                     } else {
-                        mChannel.enqueue(attachment, ERROR_GROUP, Flags.DEFAULTS);
+                        validAttachments.add(attachment);
                     }
                 } else {
                     AppCenterLog.warn(LOG_TAG, "Skipping null ErrorAttachmentLog.");
                 }
             }
         }
+        return validAttachments;
     }
 
     @VisibleForTesting
@@ -5,14 +5,19 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.UUID;
 
@@ -303,6 +308,69 @@ public abstract class AbstractErrorLog extends AbstractLog {
         JSONUtils.write(writer, ARCHITECTURE, getArchitecture());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.write(writer, ID, getId());
+        JsonStreamUtils.write(writer, PROCESS_ID, getProcessId());
+        JsonStreamUtils.write(writer, PROCESS_NAME, getProcessName());
+        JsonStreamUtils.write(writer, PARENT_PROCESS_ID, getParentProcessId());
+        JsonStreamUtils.write(writer, PARENT_PROCESS_NAME, getParentProcessName());
+        JsonStreamUtils.write(writer, ERROR_THREAD_ID, getErrorThreadId());
+        JsonStreamUtils.write(writer, ERROR_THREAD_NAME, getErrorThreadName());
+        JsonStreamUtils.write(writer, FATAL, getFatal());
+        JsonStreamUtils.write(writer, APP_LAUNCH_TIMESTAMP, JSONDateUtils.toString(getAppLaunchTimestamp()));
+        JsonStreamUtils.write(writer, ARCHITECTURE, getArchitecture());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case ID:
+                setId(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case PROCESS_ID:
+                setProcessId(JsonStreamUtils.readInteger(reader));
+                return true;
+
+            case PROCESS_NAME:
+                setProcessName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case PARENT_PROCESS_ID:
+                setParentProcessId(JsonStreamUtils.readInteger(reader));
+                return true;
+
+            case PARENT_PROCESS_NAME:
+                setParentProcessName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case ERROR_THREAD_ID:
+                setErrorThreadId(JsonStreamUtils.readLong(reader));
+                return true;
+
+            case ERROR_THREAD_NAME:
+                setErrorThreadName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case FATAL:
+                setFatal(JsonStreamUtils.readBoolean(reader));
+                return true;
+
+            case APP_LAUNCH_TIMESTAMP:
+                setAppLaunchTimestamp(JsonStreamUtils.readDate(reader));
+                return true;
+
+            case ARCHITECTURE:
+                setArchitecture(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @Override
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean equals(Object o) {
@@ -7,14 +7,19 @@ package com.microsoft.appcenter.crashes.ingestion.models;
 
 import androidx.annotation.VisibleForTesting;
 import android.util.Base64;
+import android.util.JsonReader;
+import android.util.JsonWriter;
 
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.UUID;
@@ -24,7 +29,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.ID;
 /**
  * Error attachment log.
  */
-public class ErrorAttachmentLog extends AbstractLog {
+public class ErrorAttachmentLog extends AbstractLog implements StreamingModel {
 
     /**
      * Plain text mime type.
@@ -232,6 +237,44 @@ public class ErrorAttachmentLog extends AbstractLog {
         JSONUtils.write(writer, DATA, Base64.encodeToString(getData(), Base64.NO_WRAP));
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.write(writer, ID, getId());
+        JsonStreamUtils.write(writer, ERROR_ID, getErrorId());
+        JsonStreamUtils.write(writer, CONTENT_TYPE, getContentType());
+        JsonStreamUtils.write(writer, FILE_NAME, getFileName());
+        JsonStreamUtils.write(writer, DATA, Base64.encodeToString(getData(), Base64.NO_WRAP));
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case ID:
+                setId(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case ERROR_ID:
+                setErrorId(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case CONTENT_TYPE:
+                setContentType(JsonStreamUtils.readString(reader));
+                return true;
+
+            case FILE_NAME:
+                setFileName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case DATA:
+                setData(Base64.decode(JsonStreamUtils.readString(reader), Base64.DEFAULT));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @SuppressWarnings({"SimplifiableIfStatement", "EqualsReplaceableByObjectsCall"})
     @Override
     public boolean equals(Object o) {
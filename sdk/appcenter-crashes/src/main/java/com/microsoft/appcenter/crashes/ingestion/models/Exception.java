@@ -5,15 +5,20 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.ExceptionFactory;
 import com.microsoft.appcenter.crashes.ingestion.models.json.StackFrameFactory;
-import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.FRAMES;
@@ -22,7 +27,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
 /**
  * The Exception model.
  */
-public class Exception implements Model {
+public class Exception implements StreamingModel {
 
     private static final String MESSAGE = "message";
 
@@ -222,6 +227,53 @@ public class Exception implements Model {
         JSONUtils.write(writer, MINIDUMP_FILE_PATH, getMinidumpFilePath());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        JsonStreamUtils.write(writer, TYPE, getType());
+        JsonStreamUtils.write(writer, MESSAGE, getMessage());
+        JsonStreamUtils.write(writer, STACK_TRACE, getStackTrace());
+        JsonStreamUtils.writeArray(writer, FRAMES, getFrames());
+        JsonStreamUtils.writeArray(writer, INNER_EXCEPTIONS, getInnerExceptions());
+        JsonStreamUtils.write(writer, WRAPPER_SDK_NAME, getWrapperSdkName());
+        JsonStreamUtils.write(writer, MINIDUMP_FILE_PATH, getMinidumpFilePath());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case TYPE:
+                setType(JsonStreamUtils.readString(reader));
+                return true;
+
+            case MESSAGE:
+                setMessage(JsonStreamUtils.readString(reader));
+                return true;
+
+            case STACK_TRACE:
+                setStackTrace(JsonStreamUtils.readString(reader));
+                return true;
+
+            case FRAMES:
+                setFrames(JsonStreamUtils.readArray(reader, StackFrameFactory.getInstance()));
+                return true;
+
+            case INNER_EXCEPTIONS:
+                setInnerExceptions(JsonStreamUtils.readArray(reader, ExceptionFactory.getInstance()));
+                return true;
+
+            case WRAPPER_SDK_NAME:
+                setWrapperSdkName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case MINIDUMP_FILE_PATH:
+                setMinidumpFilePath(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @SuppressWarnings("EqualsReplaceableByObjectsCall")
     @Override
     public boolean equals(Object o) {
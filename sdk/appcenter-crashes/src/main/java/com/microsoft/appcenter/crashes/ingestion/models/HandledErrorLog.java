@@ -5,12 +5,18 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.ID;
@@ -18,7 +24,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.ID;
 /**
  * Handled Error log for managed platforms (such as Xamarin, Unity, Android Dalvik/ART).
  */
-public class HandledErrorLog extends LogWithProperties {
+public class HandledErrorLog extends LogWithProperties implements StreamingModel {
 
     /**
      * Log type.
@@ -105,6 +111,34 @@ public class HandledErrorLog extends LogWithProperties {
         }
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.write(writer, ID, getId());
+        if (getException() != null) {
+            writer.name(EXCEPTION);
+            JsonStreamUtils.writeModel(writer, getException());
+        }
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case ID:
+                setId(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case EXCEPTION:
+                Exception exception = new Exception();
+                JsonStreamUtils.readModel(reader, exception);
+                setException(exception);
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @Override
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean equals(Object o) {
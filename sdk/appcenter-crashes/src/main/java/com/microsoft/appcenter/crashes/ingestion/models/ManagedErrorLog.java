@@ -5,19 +5,25 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.ThreadFactory;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
  * Error log for managed platforms (such as Android Dalvik).
  */
-public class ManagedErrorLog extends AbstractErrorLog {
+public class ManagedErrorLog extends AbstractErrorLog implements StreamingModel {
 
     /**
      * Log type.
@@ -102,6 +108,34 @@ public class ManagedErrorLog extends AbstractErrorLog {
         JSONUtils.writeArray(writer, THREADS, getThreads());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        if (getException() != null) {
+            writer.name(EXCEPTION);
+            JsonStreamUtils.writeModel(writer, getException());
+        }
+        JsonStreamUtils.writeArray(writer, THREADS, getThreads());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case EXCEPTION:
+                Exception exception = new Exception();
+                JsonStreamUtils.readModel(reader, exception);
+                setException(exception);
+                return true;
+
+            case THREADS:
+                setThreads(JsonStreamUtils.readArray(reader, ThreadFactory.getInstance()));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @Override
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean equals(Object o) {
@@ -5,17 +5,23 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
-import com.microsoft.appcenter.ingestion.models.Model;
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * The StackFrame model.
  */
-public class StackFrame implements Model {
+public class StackFrame implements StreamingModel {
 
     private static final String CLASS_NAME = "className";
 
@@ -137,6 +143,38 @@ public class StackFrame implements Model {
         JSONUtils.write(writer, FILE_NAME, getFileName());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        JsonStreamUtils.write(writer, CLASS_NAME, getClassName());
+        JsonStreamUtils.write(writer, METHOD_NAME, getMethodName());
+        JsonStreamUtils.write(writer, LINE_NUMBER, getLineNumber());
+        JsonStreamUtils.write(writer, FILE_NAME, getFileName());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case CLASS_NAME:
+                setClassName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case METHOD_NAME:
+                setMethodName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case LINE_NUMBER:
+                setLineNumber(JsonStreamUtils.readInteger(reader));
+                return true;
+
+            case FILE_NAME:
+                setFileName(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @Override
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean equals(Object o) {
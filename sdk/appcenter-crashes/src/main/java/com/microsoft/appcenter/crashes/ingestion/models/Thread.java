@@ -5,14 +5,19 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.StackFrameFactory;
-import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.FRAMES;
@@ -22,7 +27,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 /**
  * The Thread model.
  */
-public class Thread implements Model {
+public class Thread implements StreamingModel {
 
     /**
      * Thread identifier.
@@ -107,6 +112,33 @@ public class Thread implements Model {
         JSONUtils.writeArray(writer, FRAMES, getFrames());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        JsonStreamUtils.write(writer, ID, getId());
+        JsonStreamUtils.write(writer, NAME, getName());
+        JsonStreamUtils.writeArray(writer, FRAMES, getFrames());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case ID:
+                setId(reader.nextLong());
+                return true;
+
+            case NAME:
+                setName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case FRAMES:
+                setFrames(JsonStreamUtils.readArray(reader, StackFrameFactory.getInstance()));
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @Override
     @SuppressWarnings("SimplifiableIfStatement")
     public boolean equals(Object o) {
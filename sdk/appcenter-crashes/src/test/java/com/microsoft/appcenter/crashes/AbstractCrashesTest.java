@@ -7,7 +7,10 @@ package com.microsoft.appcenter.crashes;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.doAnswer;
@@ -18,8 +21,10 @@ import android.os.SystemClock;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.AppCenterHandler;
+import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.crashes.ingestion.models.ErrorAttachmentLog;
 import com.microsoft.appcenter.crashes.utils.ErrorLogHelper;
+import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.HandlerUtils;
 import com.microsoft.appcenter.utils.PrefStorageConstants;
@@ -64,6 +69,27 @@ public class AbstractCrashesTest {
     @Mock
     private AppCenter mAppCenter;
 
+    /**
+     * Mock a channel that enqueues logs passed to {@link Channel#enqueueAsync} synchronously when the filter accepts them.
+     */
+    static Channel mockChannel() {
+        final Channel channel = mock(Channel.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Log log = (Log) invocation.getArguments()[0];
+                String groupName = (String) invocation.getArguments()[1];
+                Channel.EnqueueFilter filter = (Channel.EnqueueFilter) invocation.getArguments()[3];
+                if (filter == null || filter.shouldEnqueue(log, groupName)) {
+                    channel.enqueue(log, groupName, (Integer) invocation.getArguments()[2]);
+                }
+                return null;
+            }
+        }).when(channel).enqueueAsync(any(Log.class), anyString(), anyInt(), nullable(Channel.EnqueueFilter.class));
+        return channel;
+    }
+
     @Before
     public void setUp() {
         Thread.setDefaultUncaughtExceptionHandler(null);
@@ -161,7 +161,7 @@ public class CrashesTest extends AbstractCrashesTest {
         crashes.setUncaughtExceptionHandler(mockHandler);
         when(SharedPreferencesManager.getBoolean(CRASHES_ENABLED_KEY, true)).thenReturn(false);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         /* Test. */
         verifyStatic(SharedPreferencesManager.class, times(4));
@@ -198,7 +198,7 @@ public class CrashesTest extends AbstractCrashesTest {
         /* Setup mock. */
         Crashes crashes = Crashes.getInstance();
         mockStatic(ErrorLogHelper.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         File dir = mock(File.class);
         File file1 = mock(File.class);
         File file2 = mock(File.class);
@@ -231,6 +231,7 @@ public class CrashesTest extends AbstractCrashesTest {
         assertFalse(verify(file1).delete());
         assertFalse(verify(file2).delete());
         Crashes.trackError(EXCEPTION);
+        verify(mockChannel).enqueueAsync(isA(HandledErrorLog.class), eq(crashes.getGroupName()), eq(DEFAULTS), notNull(Channel.EnqueueFilter.class));
         verifyNoMoreInteractions(mockChannel);
 
         /* Enable back, testing double calls. */
@@ -255,7 +256,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         mockStatic(ErrorLogHelper.class);
         Context context = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         File dir = mock(File.class);
         when(ErrorLogHelper.getErrorStorageDirectory()).thenReturn(dir);
         when(dir.listFiles()).thenReturn(null);
@@ -296,7 +297,7 @@ public class CrashesTest extends AbstractCrashesTest {
 
         /* Setup mock. */
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         ErrorReport report = new ErrorReport();
         mockStatic(ErrorLogHelper.class);
         when(ErrorLogHelper.getStoredErrorLogFiles()).thenReturn(new File[]{mock(File.class)});
@@ -337,7 +338,7 @@ public class CrashesTest extends AbstractCrashesTest {
     @Test
     public void queuePendingCrashesShouldNotProcess() throws JSONException {
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
 
         ErrorReport report = new ErrorReport();
 
@@ -369,7 +370,7 @@ public class CrashesTest extends AbstractCrashesTest {
     @Test
     public void queuePendingCrashesAlwaysSend() throws JSONException {
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
 
         ErrorAttachmentLog mockAttachment = mock(ErrorAttachmentLog.class);
         when(mockAttachment.getId()).thenReturn(UUID.randomUUID());
@@ -436,7 +437,7 @@ public class CrashesTest extends AbstractCrashesTest {
         CrashesListener listener = mock(CrashesListener.class);
         crashes.setInstanceListener(listener);
 
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         crashes.onStarting(mAppCenterHandler);
         crashes.onStarted(mock(Context.class), channel, "", null, true);
         verifyNoInteractions(listener);
@@ -448,7 +449,7 @@ public class CrashesTest extends AbstractCrashesTest {
         mockStatic(ErrorLogHelper.class);
         when(ErrorLogHelper.getErrorStorageDirectory()).thenReturn(mTemporaryFolder.getRoot());
         when(SharedPreferencesManager.getBoolean(CRASHES_ENABLED_KEY, true)).thenReturn(false);
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         Crashes crashes = Crashes.getInstance();
         crashes.onStarting(mAppCenterHandler);
         crashes.onStarted(mock(Context.class), channel, "", null, true);
@@ -458,7 +459,7 @@ public class CrashesTest extends AbstractCrashesTest {
     @Test
     public void noQueueNullLog() throws JSONException {
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
 
         mockStatic(ErrorLogHelper.class);
         when(ErrorLogHelper.getStoredErrorLogFiles()).thenReturn(new File[]{mock(File.class)});
@@ -478,7 +479,7 @@ public class CrashesTest extends AbstractCrashesTest {
     @Test
     public void printErrorOnJSONException() throws JSONException {
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         JSONException jsonException = new JSONException("Fake JSON exception");
 
         mockStatic(ErrorLogHelper.class);
@@ -540,7 +541,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         /* The error report was created and cached but device is null here. */
         verifyStatic(ErrorLogHelper.class);
@@ -588,7 +589,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setInstanceListener(mockListener);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         Channel.GroupListener listener = Crashes.getInstance().getChannelListener();
 
@@ -625,7 +626,7 @@ public class CrashesTest extends AbstractCrashesTest {
         crashes.setLogSerializer(logSerializer);
         crashes.setInstanceListener(mockListener);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         /* Verify. */
         Crashes.notifyUserConfirmation(Crashes.DONT_SEND);
@@ -661,7 +662,7 @@ public class CrashesTest extends AbstractCrashesTest {
         crashes.setLogSerializer(logSerializer);
         crashes.setInstanceListener(mockListener);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         Crashes.notifyUserConfirmation(Crashes.ALWAYS_SEND);
 
@@ -758,7 +759,7 @@ public class CrashesTest extends AbstractCrashesTest {
         when(ErrorLogHelper.getStoredErrorLogFiles()).thenReturn(new File[0]);
         when(ErrorLogHelper.getNewMinidumpFiles()).thenReturn(new File[0]);
         assertNull(Crashes.getLastSessionCrashReport().get());
-        Crashes.getInstance().onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        Crashes.getInstance().onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertFalse(Crashes.hasCrashedInLastSession().get());
         assertNull(Crashes.getLastSessionCrashReport().get());
         verifyStatic(AppCenterLog.class, never());
@@ -815,7 +816,7 @@ public class CrashesTest extends AbstractCrashesTest {
         verify(beforeCallback).accept(null);
 
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertTrue(Crashes.isEnabled().get());
         assertTrue(Crashes.hasCrashedInLastSession().get());
 
@@ -888,7 +889,7 @@ public class CrashesTest extends AbstractCrashesTest {
         assertFalse(Crashes.isEnabled().get());
         assertNull(Crashes.getLastSessionCrashReport().get());
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertTrue(Crashes.isEnabled().get());
         assertFalse(Crashes.hasCrashedInLastSession().get());
         assertNull(Crashes.getLastSessionCrashReport().get());
@@ -911,7 +912,7 @@ public class CrashesTest extends AbstractCrashesTest {
         when(ErrorLogHelper.getStoredErrorLogFiles()).thenReturn(new File[]{file});
         when(ErrorLogHelper.getNewMinidumpFiles()).thenReturn(new File[0]);
         when(ErrorLogHelper.getLastErrorLogFile()).thenReturn(file);
-        Crashes.getInstance().onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        Crashes.getInstance().onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertFalse(Crashes.hasCrashedInLastSession().get());
         assertNull(Crashes.getLastSessionCrashReport().get());
     }
@@ -929,7 +930,7 @@ public class CrashesTest extends AbstractCrashesTest {
         /* Call twice for multiple callbacks before initialize. */
         Crashes.getLastSessionCrashReport().thenAccept(callback);
         Crashes.getLastSessionCrashReport().thenAccept(callback);
-        Crashes.getInstance().onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        Crashes.getInstance().onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertFalse(Crashes.hasCrashedInLastSession().get());
         verify(callback, times(2)).accept(null);
     }
@@ -969,7 +970,7 @@ public class CrashesTest extends AbstractCrashesTest {
         crashes.setInstanceListener(listener);
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        Channel channel = mock(Channel.class);
+        Channel channel = mockChannel();
         crashes.onStarted(mock(Context.class), channel, "", null, true);
 
         /* Check we send only the text attachment as the binary is too big. */
@@ -982,7 +983,7 @@ public class CrashesTest extends AbstractCrashesTest {
 
         /* Setup mock for a crash in disk. */
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         ErrorReport report1 = new ErrorReport();
         report1.setId(UUID.randomUUID().toString());
         ErrorReport report2 = new ErrorReport();
@@ -1077,7 +1078,7 @@ public class CrashesTest extends AbstractCrashesTest {
         WrapperSdkExceptionManager.setAutomaticProcessing(false);
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        mockChannel = mock(Channel.class);
+        mockChannel = mockChannel();
         crashes.onStarted(mockContext, mockChannel, "", null, true);
         assertTrue(Crashes.isEnabled().get());
         verify(mockChannel, never()).enqueue(any(ManagedErrorLog.class), eq(crashes.getGroupName()), anyInt());
@@ -1092,7 +1093,7 @@ public class CrashesTest extends AbstractCrashesTest {
 
         /* Setup mock for a crash in disk. */
         Context mockContext = mock(Context.class);
-        Channel mockChannel = mock(Channel.class);
+        Channel mockChannel = mockChannel();
         ErrorReport report1 = new ErrorReport();
         report1.setId(UUID.randomUUID().toString());
         ErrorReport report2 = new ErrorReport();
@@ -1210,7 +1211,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         /* Verify timestamps on the crash log. */
         assertTrue(Crashes.hasCrashedInLastSession().get());
@@ -1324,7 +1325,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "secret-app-mock", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "secret-app-mock", null, true);
 
         /*
          * Verify that attachmentWithBinary doesn't get called if minidump is missing.
@@ -1378,7 +1379,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "secret-app-mock", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "secret-app-mock", null, true);
 
         /* Verify that attachmentWithBinary does get sent. */
         verifyStatic(ErrorAttachmentLog.class);
@@ -1418,7 +1419,7 @@ public class CrashesTest extends AbstractCrashesTest {
         Crashes crashes = Crashes.getInstance();
         crashes.setLogSerializer(logSerializer);
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
 
         /* Simulate crash. */
         Crashes.getInstance().saveUncaughtException(Thread.currentThread(), throwable);
@@ -1444,7 +1445,7 @@ public class CrashesTest extends AbstractCrashesTest {
 
         /* Instance crash module. */
         Crashes crashes = Crashes.getInstance();
-        crashes.onStarted(mockContext, mock(Channel.class), "", null, true);
+        crashes.onStarted(mockContext, mockChannel(), "", null, true);
         crashes.applyEnabledState(true);
         componentCallbacks2Captor.getValue().onConfigurationChanged(mock(Configuration.class));
 
@@ -1476,7 +1477,7 @@ public class CrashesTest extends AbstractCrashesTest {
         /* Instance crash module. */
         Crashes crashes = Crashes.getInstance();
         crashes.setInstanceEnabled(false);
-        crashes.onStarted(mockContext, mock(Channel.class), "", null, true);
+        crashes.onStarted(mockContext, mockChannel(), "", null, true);
 
         /* Verify register callback. */
         verify(mockContext, never()).registerComponentCallbacks(any(ComponentCallbacks.class));
@@ -1642,9 +1643,9 @@ public class CrashesTest extends AbstractCrashesTest {
     private void checkHasReceivedMemoryWarningInLastSession(boolean expected) {
         Crashes crashes = Crashes.getInstance();
         crashes.onStarting(mAppCenterHandler);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
         crashes.setInstanceEnabled(true);
-        crashes.onStarted(mock(Context.class), mock(Channel.class), "", null, true);
+        crashes.onStarted(mock(Context.class), mockChannel(), "", null, true);
         assertEquals(expected, Crashes.hasReceivedMemoryWarningInLastSession().get());
         crashes.setInstanceEnabled(false);
     }
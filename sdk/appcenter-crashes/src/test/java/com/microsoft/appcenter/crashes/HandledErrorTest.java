@@ -16,9 +16,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -41,7 +41,6 @@ import com.microsoft.appcenter.utils.context.UserIdContext;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.Mock;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -52,7 +51,6 @@ public class HandledErrorTest extends AbstractCrashesTest {
 
     private Crashes mCrashes;
 
-    @Mock
     private Channel mChannel;
 
     @Captor
@@ -60,6 +58,7 @@ public class HandledErrorTest extends AbstractCrashesTest {
 
     private void startCrashes() {
         mCrashes = Crashes.getInstance();
+        mChannel = mockChannel();
         mCrashes.onStarting(mAppCenterHandler);
         mCrashes.onStarted(mock(Context.class), mChannel, "mock", null, true);
     }
@@ -172,7 +171,7 @@ public class HandledErrorTest extends AbstractCrashesTest {
         exception.setFrames(singletonList(frame));
 
         mCrashes = Crashes.getInstance();
-        mChannel = mock(Channel.class);
+        mChannel = mockChannel();
 
         WrapperSdkExceptionManager.trackException(exception, null, null);
         verify(mChannel, never()).enqueue(any(Log.class), eq(mCrashes.getGroupName()), anyInt());
@@ -184,7 +183,7 @@ public class HandledErrorTest extends AbstractCrashesTest {
         HandledErrorLog errorLog = (HandledErrorLog) mLog.getValue();
         assertEquals(exception, errorLog.getException());
         assertNull(errorLog.getProperties());
-        reset(mChannel);
+        clearInvocations(mChannel);
 
         WrapperSdkExceptionManager.trackException(exception, new HashMap<String, String>() {{
             put(null, null);
@@ -198,7 +197,7 @@ public class HandledErrorTest extends AbstractCrashesTest {
         assertEquals(exception, errorLog.getException());
         assertNotNull(errorLog.getProperties());
         assertEquals(0, errorLog.getProperties().size());
-        reset(mChannel);
+        clearInvocations(mChannel);
 
         WrapperSdkExceptionManager.trackException(exception, new HashMap<String, String>() {{
             for (int i = 0; i < 30; i++) {
@@ -211,7 +210,7 @@ public class HandledErrorTest extends AbstractCrashesTest {
         assertEquals(exception, errorLog.getException());
         assertNotNull(errorLog.getProperties());
         assertEquals(20, errorLog.getProperties().size());
-        reset(mChannel);
+        clearInvocations(mChannel);
 
         final String longerMapItem = generateString(ErrorLogHelper.MAX_PROPERTY_ITEM_LENGTH + 1, '*');
         WrapperSdkExceptionManager.trackException(exception, new HashMap<String, String>() {{
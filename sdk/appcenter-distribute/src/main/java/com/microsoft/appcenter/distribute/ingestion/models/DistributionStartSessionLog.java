@@ -6,11 +6,12 @@
 package com.microsoft.appcenter.distribute.ingestion.models;
 
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 
 /**
  * Distribution start session log.
  */
-public class DistributionStartSessionLog extends AbstractLog {
+public class DistributionStartSessionLog extends AbstractLog implements StreamingModel {
 
     public static final String TYPE = "distributionStartSession";
 
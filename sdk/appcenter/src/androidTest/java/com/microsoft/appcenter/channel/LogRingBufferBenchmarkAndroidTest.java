@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.filters.LargeTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import com.microsoft.appcenter.AppCenter;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.MockLog;
+import com.microsoft.appcenter.utils.AppCenterLog;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.microsoft.appcenter.channel.DefaultChannel.ENQUEUE_BUFFER_CAPACITY;
+import static com.microsoft.appcenter.channel.DefaultChannel.ENQUEUE_DRAIN_MAX_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures enqueuing logs from several threads with {@link Channel#enqueueAsync},
+ * compared to posting a message per log to the channel thread.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class LogRingBufferBenchmarkAndroidTest {
+
+    /**
+     * Number of threads enqueuing logs at the same time.
+     */
+    private static final int PRODUCERS = 4;
+
+    /**
+     * Number of logs enqueued by each thread.
+     */
+    private static final int LOGS_PER_PRODUCER = 20000;
+
+    /**
+     * Number of rounds not measured, to let the runtime compile the code.
+     */
+    private static final int WARM_UP_ROUNDS = 2;
+
+    /**
+     * Number of measured rounds.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Maximum time to wait for a round to complete.
+     */
+    private static final long ROUND_TIMEOUT = 60;
+
+    /**
+     * Log enqueued by all threads.
+     */
+    private static final Log LOG = new MockLog();
+
+    /**
+     * Thread standing for the channel thread.
+     */
+    private static HandlerThread sHandlerThread;
+
+    /**
+     * Handler of the channel thread.
+     */
+    private static Handler sHandler;
+
+    @BeforeClass
+    public static void setUpClass() {
+        sHandlerThread = new HandlerThread("benchmark");
+        sHandlerThread.start();
+        sHandler = new Handler(sHandlerThread.getLooper());
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        sHandlerThread.quit();
+    }
+
+    @Test
+    public void enqueueFromSeveralThreads() throws InterruptedException {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            runRound(new PostingEnqueuer());
+            runRound(new BufferedEnqueuer());
+        }
+        long[] posting = new long[2];
+        long[] buffered = new long[2];
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] durations = runRound(new PostingEnqueuer());
+            posting[0] += durations[0];
+            posting[1] += durations[1];
+            durations = runRound(new BufferedEnqueuer());
+            buffered[0] += durations[0];
+            buffered[1] += durations[1];
+        }
+        AppCenterLog.info(AppCenter.LOG_TAG, "Enqueued " + PRODUCERS * LOGS_PER_PRODUCER + " logs from " + PRODUCERS + " threads"
+                + " postingProducerNanos=" + posting[0] / ROUNDS + " postingTotalNanos=" + posting[1] / ROUNDS
+                + " bufferedProducerNanos=" + buffered[0] / ROUNDS + " bufferedTotalNanos=" + buffered[1] / ROUNDS);
+    }
+
+    /**
+     * Enqueue logs from all producers and wait for the channel thread to consume them.
+     *
+     * @param enqueuer enqueue implementation.
+     * @return time spent by producers and total time in nanoseconds.
+     */
+    private static long[] runRound(final Enqueuer enqueuer) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch producersLatch = new CountDownLatch(PRODUCERS);
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            final String groupName = String.valueOf(producer);
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < LOGS_PER_PRODUCER; i++) {
+                        enqueuer.enqueue(LOG, groupName, i);
+                    }
+                    producersLatch.countDown();
+                }
+            }).start();
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        startLatch.countDown();
+        assertTrue(producersLatch.await(ROUND_TIMEOUT, TimeUnit.SECONDS));
+        long producerDuration = SystemClock.elapsedRealtimeNanos() - start;
+        assertTrue(enqueuer.mConsumer.mLatch.await(ROUND_TIMEOUT, TimeUnit.SECONDS));
+        long totalDuration = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals(0, enqueuer.mConsumer.mOutOfOrderCount);
+        return new long[]{producerDuration, totalDuration};
+    }
+
+    /**
+     * Consumer on the channel thread checking that logs of each producer arrive in order.
+     */
+    private static class CountingConsumer implements LogRingBuffer.Consumer {
+
+        /**
+         * Next expected index per producer.
+         */
+        private final int[] mNextIndexes = new int[PRODUCERS];
+
+        /**
+         * Released when all logs are consumed.
+         */
+        private final CountDownLatch mLatch = new CountDownLatch(PRODUCERS * LOGS_PER_PRODUCER);
+
+        /**
+         * Number of logs that did not arrive in order.
+         */
+        private volatile int mOutOfOrderCount;
+
+        @Override
+        public void accept(@NonNull Log log, @NonNull String groupName, int flags, @Nullable Channel.EnqueueFilter filter) {
+            int producer = Integer.parseInt(groupName);
+            if (mNextIndexes[producer]++ != flags) {
+                mOutOfOrderCount++;
+            }
+            mLatch.countDown();
+        }
+    }
+
+    /**
+     * Enqueue implementation under test.
+     */
+    private static abstract class Enqueuer {
+
+        final CountingConsumer mConsumer = new CountingConsumer();
+
+        abstract void enqueue(Log log, String groupName, int flags);
+    }
+
+    /**
+     * Posts a message per log, like {@link Channel#enqueue} callers did.
+     */
+    private static class PostingEnqueuer extends Enqueuer {
+
+        @Override
+        void enqueue(final Log log, final String groupName, final int flags) {
+            sHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    mConsumer.accept(log, groupName, flags, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Same buffering and draining as {@link DefaultChannel#enqueueAsync}.
+     */
+    private static class BufferedEnqueuer extends Enqueuer {
+
+        private final LogRingBuffer mBuffer = new LogRingBuffer(ENQUEUE_BUFFER_CAPACITY);
+
+        private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+        private final AtomicInteger mPostedEnqueueCount = new AtomicInteger();
+
+        private final Runnable mDrainRunnable = new Runnable() {
+
+            @Override
+            public void run() {
+                drain(ENQUEUE_DRAIN_MAX_SIZE);
+            }
+        };
+
+        private void drain(int maxCount) {
+            mDrainScheduled.set(false);
+            int count = mBuffer.drain(mConsumer, maxCount);
+            if (count == maxCount && mDrainScheduled.compareAndSet(false, true)) {
+                sHandler.post(mDrainRunnable);
+            }
+        }
+
+        @Override
+        void enqueue(final Log log, final String groupName, final int flags) {
+            if (mPostedEnqueueCount.get() == 0 && mBuffer.offer(log, groupName, flags, null)) {
+                if (mDrainScheduled.compareAndSet(false, true)) {
+                    sHandler.post(mDrainRunnable);
+                }
+            } else {
+                mPostedEnqueueCount.incrementAndGet();
+                sHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        drain(Integer.MAX_VALUE);
+                        mConsumer.accept(log, groupName, flags, null);
+                        mPostedEnqueueCount.decrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+}
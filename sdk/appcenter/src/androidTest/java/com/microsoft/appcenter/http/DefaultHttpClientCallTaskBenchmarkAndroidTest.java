@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import android.os.Debug;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import com.microsoft.appcenter.AppCenter;
+import com.microsoft.appcenter.utils.AppCenterLog;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the memory allocated to compress a request body.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class DefaultHttpClientCallTaskBenchmarkAndroidTest {
+
+    /**
+     * Size of the request body, close to the largest One Collector batch.
+     */
+    private static final int PAYLOAD_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * A serialized log.
+     */
+    private static final String LOG = "{\"type\":\"mock\",\"timestamp\":\"2021-01-01T00:00:00.000Z\",\"sid\":\"0c6a8da4-aaa4-4a38-8aea-f5e7b6d7e5a6\"}";
+
+    /**
+     * Gets the number of bytes allocated by the runtime since it started.
+     */
+    private static long getAllocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 23)
+    public void streamingAllocatesLessThanBuffering() throws IOException, JSONException {
+        HttpClient.StreamingCallTemplate callTemplate = new HttpClient.StreamingCallTemplate() {
+
+            @Override
+            public void writeRequestBody(Writer writer) throws IOException {
+                for (int size = 0; size < PAYLOAD_SIZE; size += LOG.length() + 1) {
+                    writer.write(LOG);
+                    writer.write('\n');
+                }
+            }
+
+            @Override
+            public long getRequestBodyLength() {
+                long length = 0;
+                while (length < PAYLOAD_SIZE) {
+                    length += LOG.length() + 1;
+                }
+                return length;
+            }
+
+            @Override
+            public String buildRequestBody() {
+                StringBuilder builder = new StringBuilder();
+                for (int size = 0; size < PAYLOAD_SIZE; size += LOG.length() + 1) {
+                    builder.append(LOG).append('\n');
+                }
+                return builder.toString();
+            }
+
+            @Override
+            public void onBeforeCalling(URL url, Map<String, String> headers) {
+            }
+        };
+        OutputStream connectionStream = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        /* Build the whole body then compress it in memory. */
+        long start = getAllocatedBytes();
+        byte[] compressed = DefaultHttpClientCallTask.compressPayload(callTemplate.buildRequestBody().getBytes("UTF-8"));
+        connectionStream.write(compressed, 0, compressed.length);
+        long buffered = getAllocatedBytes() - start;
+
+        /* Stream the body into the compressor. */
+        start = getAllocatedBytes();
+        DefaultHttpClientCallTask.writeCompressedPayload(connectionStream, callTemplate);
+        long streamed = getAllocatedBytes() - start;
+        AppCenterLog.info(AppCenter.LOG_TAG, "Compressed " + PAYLOAD_SIZE + " bytes bufferedAllocatedBytes=" + buffered + " streamedAllocatedBytes=" + streamed);
+
+        /* Streaming memory is bounded by buffer sizes, buffering holds several copies of the payload. */
+        assertTrue("Streaming allocated " + streamed + " bytes vs " + buffered + " bytes", streamed < PAYLOAD_SIZE / 10);
+        assertTrue("Buffering allocated only " + buffered + " bytes", buffered > PAYLOAD_SIZE);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.filters.MediumTest;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts TLS handshakes done by {@link DefaultHttpClient} against a local HTTPS server.
+ */
+@MediumTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+@SdkSuppress(minSdkVersion = 22)
+public class DefaultHttpClientConnectionReuseAndroidTest {
+
+    /**
+     * Number of calls made by each test.
+     */
+    private static final int CALLS = 5;
+
+    /**
+     * Maximum time to wait for a call.
+     */
+    private static final long CALL_TIMEOUT = 10;
+
+    /**
+     * Password of the self signed keystore in test resources.
+     */
+    private static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+
+    /**
+     * Server socket accepting connections.
+     */
+    private SSLServerSocket mServerSocket;
+
+    /**
+     * Number of handshakes completed by the server.
+     */
+    private final AtomicInteger mHandshakeCount = new AtomicInteger();
+
+    /**
+     * Socket factory to restore after the test.
+     */
+    private SSLSocketFactory mDefaultSocketFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        int keystoreId = context.getResources().getIdentifier("test_keystore", "raw", context.getPackageName());
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream keystoreStream = context.getResources().openRawResource(keystoreId);
+        try {
+            keyStore.load(keystoreStream, KEYSTORE_PASSWORD);
+        } finally {
+            keystoreStream.close();
+        }
+
+        /* Server uses the self signed certificate. */
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        mServerSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getByName("localhost"));
+
+        /* Client trusts it. */
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        mDefaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(clientContext.getSocketFactory());
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }).start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        HttpsURLConnection.setDefaultSSLSocketFactory(mDefaultSocketFactory);
+        mServerSocket.close();
+        HostConnectionLimiter.unsetInstance();
+    }
+
+    @Test
+    public void handshakeOnceWhenReuseEnabled() throws Exception {
+        makeCalls(true);
+        assertEquals(1, mHandshakeCount.get());
+    }
+
+    @Test
+    public void handshakeOnEachCallWhenReuseDisabled() throws Exception {
+        makeCalls(false);
+        assertEquals(CALLS, mHandshakeCount.get());
+    }
+
+    /**
+     * Make calls one after the other, like the channel does for a single group.
+     */
+    private void makeCalls(boolean connectionReuseEnabled) throws Exception {
+        DefaultHttpClient httpClient = new DefaultHttpClient(false, Executors.newSingleThreadExecutor(), connectionReuseEnabled);
+        String url = "https://localhost:" + mServerSocket.getLocalPort() + "/logs";
+        for (int i = 0; i < CALLS; i++) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final Exception[] error = new Exception[1];
+            httpClient.callAsync(url, METHOD_POST, new HashMap<String, String>(), new HttpClient.CallTemplate() {
+
+                @Override
+                public String buildRequestBody() {
+                    return "{\"logs\":[]}";
+                }
+
+                @Override
+                public void onBeforeCalling(URL url, Map<String, String> headers) {
+                }
+            }, new ServiceCallback() {
+
+                @Override
+                public void onCallSucceeded(HttpResponse httpResponse) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onCallFailed(Exception e) {
+                    error[0] = e;
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(CALL_TIMEOUT, TimeUnit.SECONDS));
+            assertNull(error[0]);
+        }
+        httpClient.close();
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            final SSLSocket socket;
+            try {
+                socket = (SSLSocket) mServerSocket.accept();
+            } catch (IOException e) {
+
+                /* Server socket closed. */
+                return;
+            }
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Answer requests on the connection until the client closes it.
+     */
+    private void serve(@NonNull SSLSocket socket) {
+        try {
+            socket.startHandshake();
+            mHandshakeCount.incrementAndGet();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (readRequest(in)) {
+                out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: keep-alive\r\n\r\nOK".getBytes("UTF-8"));
+                out.flush();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Read request headers and body.
+     *
+     * @return false if the connection was closed.
+     */
+    private static boolean readRequest(InputStream in) throws IOException {
+        int contentLength = 0;
+        String line = readLine(in);
+        if (line == null) {
+            return false;
+        }
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator > 0 && line.substring(0, separator).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(line.substring(separator + 1).trim());
+            }
+        }
+        if (line == null) {
+            return false;
+        }
+        for (int i = 0; i < contentLength; i++) {
+            if (in.read() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new IOException("Unexpected end of stream.");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("UTF-8");
+    }
+}
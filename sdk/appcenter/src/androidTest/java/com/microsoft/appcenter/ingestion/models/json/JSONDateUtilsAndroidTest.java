@@ -5,16 +5,38 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import androidx.annotation.NonNull;
+
 import org.json.JSONException;
 import org.junit.Test;
 
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
 
 @SuppressWarnings("unused")
 public class JSONDateUtilsAndroidTest {
 
+    @NonNull
+    static DateFormat newSimpleDateFormat() {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
+    }
+
+    private static void assertSameAsSimpleDateFormat(DateFormat dateFormat, long time) throws JSONException, ParseException {
+        Date date = new Date(time);
+        String dateString = dateFormat.format(date);
+        assertEquals(dateString, JSONDateUtils.toString(date));
+        assertEquals(dateFormat.parse(dateString), JSONDateUtils.toDate(dateString));
+    }
+
     @SuppressWarnings("InstantiationOfUtilityClass")
     @Test
     public void utilsCoverage() {
@@ -31,6 +53,32 @@ public class JSONDateUtilsAndroidTest {
         assertEquals(date, dateParsed);
     }
 
+    @Test
+    public void sameAsSimpleDateFormat() throws JSONException, ParseException {
+        DateFormat dateFormat = newSimpleDateFormat();
+
+        /* Epoch, leap days, limits of the fast path and dates converted by the fallback. */
+        long[] times = {0, -1, 1, 951782400000L, 951868799999L, -2208988800000L, -2208988800001L, 253402300799999L, 253402300800000L, -62135596800001L};
+        for (long time : times) {
+            assertSameAsSimpleDateFormat(dateFormat, time);
+        }
+
+        /* Random dates between 1897 and 9999. */
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertSameAsSimpleDateFormat(dateFormat, -2300000000000L + (long) (random.nextDouble() * 255700000000000L));
+        }
+    }
+
+    @Test
+    public void parseOtherFormatsLikeSimpleDateFormat() throws JSONException, ParseException {
+        DateFormat dateFormat = newSimpleDateFormat();
+        String[] dates = {"2021-13-04T05:06:07.089Z", "2021-02-29T05:06:07.089Z", "2021-03-04T05:06:60.089Z", "2021-03-04T05:06:07.089Z trailing", "1899-12-31T23:59:59.999Z"};
+        for (String date : dates) {
+            assertEquals(dateFormat.parse(date), JSONDateUtils.toDate(date));
+        }
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     @Test(expected = JSONException.class)
     public void formatNullDate() throws JSONException {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import android.os.SystemClock;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+
+import static com.microsoft.appcenter.test.TestUtils.TAG;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link JSONDateUtils} with the {@link java.text.SimpleDateFormat} it used before.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class JSONDateUtilsBenchmarkAndroidTest {
+
+    /**
+     * Number of rounds before measuring.
+     */
+    private static final int WARM_UP_ROUNDS = 10000;
+
+    /**
+     * Number of measured rounds.
+     */
+    private static final int ROUNDS = 100000;
+
+    @Test
+    public void formatAndParse() throws JSONException, ParseException {
+        DateFormat dateFormat = JSONDateUtilsAndroidTest.newSimpleDateFormat();
+        Date date = new Date();
+        String dateString = dateFormat.format(date);
+        assertEquals(dateString, JSONDateUtils.toString(date));
+
+        /* Warm up. */
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            dateFormat.parse(dateFormat.format(date));
+            JSONDateUtils.toDate(JSONDateUtils.toString(date));
+        }
+
+        /* Measure formatting. */
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            dateFormat.format(date);
+        }
+        long simpleDateFormatTime = (SystemClock.elapsedRealtimeNanos() - start) / ROUNDS;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            JSONDateUtils.toString(date);
+        }
+        long jsonDateUtilsTime = (SystemClock.elapsedRealtimeNanos() - start) / ROUNDS;
+        android.util.Log.i(TAG, String.format(Locale.ENGLISH, "Date format: SimpleDateFormat=%dns JSONDateUtils=%dns", simpleDateFormatTime, jsonDateUtilsTime));
+
+        /* Measure parsing. */
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            dateFormat.parse(dateString);
+        }
+        simpleDateFormatTime = (SystemClock.elapsedRealtimeNanos() - start) / ROUNDS;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            JSONDateUtils.toDate(dateString);
+        }
+        jsonDateUtilsTime = (SystemClock.elapsedRealtimeNanos() - start) / ROUNDS;
+        android.util.Log.i(TAG, String.format(Locale.ENGLISH, "Date parse: SimpleDateFormat=%dns JSONDateUtils=%dns", simpleDateFormatTime, jsonDateUtilsTime));
+    }
+}
@@ -6,6 +6,7 @@
 package com.microsoft.appcenter.ingestion.models.json;
 
 import com.microsoft.appcenter.AndroidTestUtils;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
@@ -15,6 +16,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -23,6 +25,7 @@ import java.util.UUID;
 import static com.microsoft.appcenter.ingestion.models.json.MockLog.MOCK_LOG_TYPE;
 import static com.microsoft.appcenter.test.TestUtils.TAG;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -52,6 +55,25 @@ public class LogSerializerAndroidTest {
         assertEquals(expectedContainer.hashCode(), actualContainer.hashCode());
     }
 
+    @Test
+    public void serializedLogs() throws JSONException {
+        LogContainer expectedContainer = AndroidTestUtils.generateMockLogContainer();
+        expectedContainer.getLogs().add(AndroidTestUtils.generateMockLog());
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String expectedPayload = serializer.serializeContainer(expectedContainer);
+
+        /* Envelope of already serialized logs is the same as serializing the logs. */
+        List<String> payloads = new ArrayList<>();
+        for (Log log : expectedContainer.getLogs()) {
+            payloads.add(serializer.serializeLog(log));
+        }
+        expectedContainer.setPayloads(payloads);
+        String payload = serializer.serializeContainer(expectedContainer);
+        assertEquals(expectedPayload, payload);
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, null));
+    }
+
     @Test(expected = JSONException.class)
     public void deserializeUnknownType() throws JSONException {
         MockLog log = AndroidTestUtils.generateMockLog();
@@ -135,4 +157,114 @@ public class LogSerializerAndroidTest {
         serializer.toCommonSchemaLog(log);
         verify(logFactory).toCommonSchemaLogs(log);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamingStartServiceLog() throws JSONException {
+        StartServiceLog log = new StartServiceLog();
+        log.setServices(Arrays.asList("FIRST", "SECOND"));
+        log.oneCollectorEnabled(true);
+        log.setSid(UUID.randomUUID());
+        log.setTimestamp(new Date());
+        log.setUserId("alice");
+        log.setDevice(AndroidTestUtils.generateMockLog().getDevice());
+        LogSerializer defaultSerializer = new DefaultLogSerializer();
+        defaultSerializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        LogSerializer streamingSerializer = new StreamingLogSerializer();
+        streamingSerializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+
+        /* Verify round trip. */
+        String payload = streamingSerializer.serializeLog(log);
+        android.util.Log.v(TAG, payload);
+        assertEquals(log, streamingSerializer.deserializeLog(payload, StartServiceLog.TYPE));
+        assertEquals(log, streamingSerializer.deserializeLog(payload, null));
+
+        /* Both serializers read what the other one wrote. */
+        assertEquals(log, defaultSerializer.deserializeLog(payload, null));
+        assertEquals(log, streamingSerializer.deserializeLog(defaultSerializer.serializeLog(log), StartServiceLog.TYPE));
+    }
+
+    @Test
+    public void device() throws JSONException {
+        Device device = AndroidTestUtils.generateMockLog().getDevice();
+        device.setOsBuild("LMY48B/1");
+        LogSerializer defaultSerializer = new DefaultLogSerializer();
+        LogSerializer streamingSerializer = new StreamingLogSerializer();
+        String defaultPayload = defaultSerializer.serializeDevice(device);
+        String streamingPayload = streamingSerializer.serializeDevice(device);
+        assertEquals(device, defaultSerializer.deserializeDevice(defaultPayload));
+        assertEquals(device, streamingSerializer.deserializeDevice(streamingPayload));
+
+        /* Both serializers read what the other one wrote. */
+        assertEquals(device, defaultSerializer.deserializeDevice(streamingPayload));
+        assertEquals(device, streamingSerializer.deserializeDevice(defaultPayload));
+    }
+
+    @Test
+    public void streamingBufferReuse() throws JSONException {
+        StreamingLogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        assertEquals(StreamingLogSerializer.DEFAULT_LOG_SIZE, serializer.getSizeEstimate(StartServiceLog.TYPE));
+
+        /* Serialize a log larger than the buffer kept between logs, then smaller logs. */
+        List<String> services = new ArrayList<>();
+        while (services.size() * 10 < StreamingLogSerializer.MAX_REUSED_BUFFER_SIZE) {
+            services.add(UUID.randomUUID().toString());
+        }
+        List<Integer> sizes = new ArrayList<>();
+        for (List<String> logServices : Arrays.asList(services, Collections.singletonList("FIRST"), Arrays.asList("FIRST", "SECOND"))) {
+            StartServiceLog log = new StartServiceLog();
+            log.setServices(logServices);
+            log.setTimestamp(new Date());
+            String payload = serializer.serializeLog(log);
+            assertEquals(log, serializer.deserializeLog(payload, StartServiceLog.TYPE));
+            sizes.add(payload.length());
+        }
+
+        /* The size estimate is a running average of the serialized logs. */
+        int sizeEstimate = serializer.getSizeEstimate(StartServiceLog.TYPE);
+        assertTrue(sizeEstimate < sizes.get(0));
+        assertTrue(sizeEstimate > sizes.get(2));
+    }
+
+    @Test
+    public void streamingContainerWithoutStreamingModel() throws JSONException {
+        LogContainer expectedContainer = AndroidTestUtils.generateMockLogContainer();
+        expectedContainer.getLogs().add(AndroidTestUtils.generateMockLog());
+        LogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeContainer(expectedContainer);
+        android.util.Log.v(TAG, payload);
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, MOCK_LOG_TYPE));
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, null));
+    }
+
+    @Test
+    public void streamingUnknownPropertiesAreSkipped() throws JSONException {
+        LogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        Log log = serializer.deserializeLog("{\"type\":\"startService\",\"timestamp\":\"2020-01-01T00:00:00.000Z\"," +
+                "\"unknown\":{\"a\":[1,2,{\"b\":null}]},\"services\":[\"FIRST\"]}", StartServiceLog.TYPE);
+        assertEquals(Collections.singletonList("FIRST"), ((StartServiceLog) log).getServices());
+    }
+
+    @Test(expected = JSONException.class)
+    public void streamingInvalidType() throws JSONException {
+        LogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\":\"other\",\"timestamp\":\"2020-01-01T00:00:00.000Z\"}", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void streamingMissingTimestamp() throws JSONException {
+        LogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\":\"startService\"}", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void streamingMalformedJson() throws JSONException {
+        LogSerializer serializer = new StreamingLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\":\"startService\",\"services\":{", StartServiceLog.TYPE);
+    }
+}
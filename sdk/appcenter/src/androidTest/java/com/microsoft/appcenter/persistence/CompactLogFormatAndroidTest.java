@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SmallTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class CompactLogFormatAndroidTest {
+
+    private static void assertRoundTrip(String json) throws JSONException {
+        assertEquals(json, CompactLogFormat.decode(CompactLogFormat.encode(json)));
+    }
+
+    private static void assertInvalid(byte[] record) {
+        try {
+            CompactLogFormat.decode(record);
+            fail("Expected JSONException");
+        } catch (JSONException ignored) {
+        }
+    }
+
+    @Test
+    public void roundTrip() throws JSONException {
+        assertRoundTrip("{}");
+        assertRoundTrip("[]");
+        assertRoundTrip("{\"type\":\"event\",\"timestamp\":\"2021-03-04T05:06:07.089Z\",\"sid\":\"0f4cdf09-cc56-4a32-8ed4-2a7e2d2c4f17\"}");
+        assertRoundTrip("{\"custom\":1,\"other\":[true,false,null],\"custom\":{\"custom\":-9223372036854775808}}");
+        assertRoundTrip("{\"value\":1.5,\"big\":123456789012345678901234567890,\"exp\":1e10,\"zero\":-0}");
+        assertRoundTrip("{\"name\":\"quote \\\" backslash \\\\ line\\n\\r\\t \\u0001 \\u2028 \u00e9\u4e2d\"}");
+
+        /* Strings that look like dates or identifiers but would not be written back identically. */
+        assertRoundTrip("[\"2021-03-04T05:06:07.089+0000\",\"2021-13-04T05:06:07.089Z\",\"0F4CDF09-CC56-4A32-8ED4-2A7E2D2C4F17\"]");
+    }
+
+    @Test
+    public void compactRecords() throws JSONException {
+        String json = "{\"timestamp\":\"2021-03-04T05:06:07.089Z\",\"id\":\"0f4cdf09-cc56-4a32-8ed4-2a7e2d2c4f17\",\"processId\":1234}";
+        byte[] record = CompactLogFormat.encode(json);
+        assertEquals(CompactLogFormat.VERSION, record[0]);
+        assertTrue(record.length * 2 < json.length());
+    }
+
+    @Test
+    public void invalidRecords() throws JSONException {
+        byte[] record = CompactLogFormat.encode("{\"name\":\"value\"}");
+        assertInvalid(new byte[0]);
+        assertInvalid(new byte[]{CompactLogFormat.VERSION + 1, 1, 0});
+        assertInvalid(Arrays.copyOf(record, record.length - 1));
+        assertInvalid(Arrays.copyOf(record, record.length + 1));
+        assertInvalid(new byte[]{CompactLogFormat.VERSION, 42});
+        assertInvalid(new byte[]{CompactLogFormat.VERSION, 1, 100, 3, 0});
+    }
+
+    @Test(expected = JSONException.class)
+    public void invalidJson() throws JSONException {
+        CompactLogFormat.encode("{\"name\":");
+    }
+}
@@ -20,12 +20,14 @@ import com.microsoft.appcenter.AndroidTestUtils;
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
 import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.MockLog;
 import com.microsoft.appcenter.ingestion.models.json.MockLogFactory;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.Data;
 import com.microsoft.appcenter.ingestion.models.one.MockCommonSchemaLog;
@@ -45,6 +47,7 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -67,6 +70,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.anyString;
@@ -320,6 +324,54 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void deleteBatchWithLargeLog() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Persist a large log between small ones. */
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            LogWithProperties log = AndroidTestUtils.generateMockLog();
+            int size = 2 * 1024 * 1024;
+            StringBuilder largeValue = new StringBuilder(size);
+            for (int i = 0; i < size; i++) {
+                largeValue.append("x");
+            }
+            Map<String, String> properties = new HashMap<>();
+            properties.put("key", largeValue.toString());
+            log.setProperties(properties);
+            long id = persistence.putLog(log, "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            assertEquals(4, persistence.countLogs("test-p1"));
+            File file = persistence.getLargePayloadFile(persistence.getLargePayloadGroupDirectory("test-p1"), id);
+            assertTrue(file.exists());
+
+            /* Get and delete a batch containing the large log. */
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test-p1", Collections.emptyList(), 3, outputLogs);
+            assertNotNull(batchId);
+            assertEquals(3, outputLogs.size());
+            assertEquals(1, persistence.mPendingLargePayloadDbIdentifiers.size());
+            persistence.deleteLogs("test-p1", batchId);
+
+            /* Verify only the remaining log is left, and the large payload file is deleted. */
+            assertEquals(1, persistence.countLogs("test-p1"));
+            assertFalse(file.exists());
+            assertTrue(persistence.mPendingDbIdentifiers.isEmpty());
+            assertTrue(persistence.mPendingLargePayloadDbIdentifiers.isEmpty());
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void putLargeLogNotSupportedOnCommonSchema() throws JSONException {
 
@@ -672,6 +724,99 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void putLogs() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Put a batch with one log that cannot be serialized. */
+            List<Log> logs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                logs.add(AndroidTestUtils.generateMockLog());
+            }
+            Log invalidLog = AndroidTestUtils.generateMockLog();
+            invalidLog.setTimestamp(null);
+            logs.add(5, invalidLog);
+            List<PersistenceException> exceptions = new ArrayList<>();
+            long[] ids = persistence.putLogs(logs, "test-p1", CRITICAL, exceptions);
+
+            /* Verify results. */
+            assertEquals(logs.size(), ids.length);
+            assertEquals(logs.size(), exceptions.size());
+            for (int i = 0; i < logs.size(); i++) {
+                if (i == 5) {
+                    assertEquals(-1, ids[i]);
+                    assertNotNull(exceptions.get(i));
+                } else {
+                    assertTrue(ids[i] >= 0);
+                    assertNull(exceptions.get(i));
+                }
+            }
+            assertEquals(10, persistence.countLogs("test-p1"));
+
+            /* Verify logs are stored in order with the expected priority. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.emptyList(), 10, outputLogs);
+            logs.remove(5);
+            assertEquals(logs, outputLogs);
+            ContentValues contentValues = getContentValues(persistence, "test-p1");
+            assertEquals((Integer) CRITICAL, contentValues.getAsInteger(DatabasePersistence.COLUMN_PRIORITY));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void putLogsWhenFullFallsBackToDiscardingOldLogs() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        assertTrue(persistence.setMaxStorageSize(MAX_STORAGE_SIZE_IN_BYTES));
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Fill the database one by one until eviction. */
+            int numberOfLogs = 0;
+            while (numberOfLogs == persistence.countLogs("test-p1")) {
+                persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+                numberOfLogs++;
+
+                /* Fail if no eviction happens after a long time to avoid infinite loop on bug. */
+                assertTrue("No eviction is happening", numberOfLogs < 1000);
+            }
+
+            /* Put as many logs in a batch: they cannot fit in a single transaction. */
+            List<Log> logs = new ArrayList<>();
+            for (int i = 0; i < numberOfLogs; i++) {
+                logs.add(AndroidTestUtils.generateMockLog());
+            }
+            List<PersistenceException> exceptions = new ArrayList<>();
+            persistence.putLogs(logs, "test-p1", NORMAL, exceptions);
+
+            /* Verify all were stored by discarding older ones. */
+            for (PersistenceException exception : exceptions) {
+                assertNull(exception);
+            }
+            int databaseCount = persistence.countLogs("test-p1");
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.emptyList(), numberOfLogs, outputLogs);
+            assertEquals(logs.subList(logs.size() - databaseCount, logs.size()), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void deleteLogs() throws PersistenceException {
 
@@ -766,6 +911,52 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void deleteOldestLogs() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext, 1, SCHEMA);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Persist logs. */
+            Log critical = AndroidTestUtils.generateMockLog();
+            Log pending = AndroidTestUtils.generateMockLog();
+            Log oldest = AndroidTestUtils.generateMockLog();
+            Log newest = AndroidTestUtils.generateMockLog();
+            persistence.putLog(critical, "test-p1", CRITICAL);
+            persistence.putLog(pending, "test-p1", NORMAL);
+            persistence.putLog(oldest, "test-p1", NORMAL);
+            persistence.putLog(newest, "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p2", NORMAL);
+
+            /* Mark one log as pending, it must not be deleted. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.emptyList(), 2, outputLogs);
+            assertEquals(2, outputLogs.size());
+
+            /* Delete the oldest normal log not being sent. */
+            assertEquals(1, persistence.deleteOldestLogs("test-p1", 1));
+            assertEquals(3, persistence.countLogs("test-p1"));
+            assertEquals(1, persistence.countLogs("test-p2"));
+
+            /* Only the newest log is left to delete. */
+            assertEquals(1, persistence.deleteOldestLogs("test-p1", 5));
+            assertEquals(0, persistence.deleteOldestLogs("test-p1", 5));
+            persistence.clearPendingLogState();
+            outputLogs.clear();
+            persistence.getLogs("test-p1", Collections.emptyList(), 5, outputLogs);
+            assertEquals(2, outputLogs.size());
+            assertThat(outputLogs, hasItems(critical, pending));
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void deleteLogsForGroup() throws PersistenceException {
 
@@ -1042,6 +1233,9 @@ public class DatabasePersistenceAndroidTest {
             for (Log log : logs)
                 persistence.putLog(log, "test", NORMAL);
 
+            /* Simulate a restart, otherwise logs are returned from memory without deserialization. */
+            persistence.close();
+
             /* Get. */
             List<Log> outputLogs = new ArrayList<>();
             persistence.getLogs("test", Collections.emptyList(), 10, outputLogs);
@@ -1178,4 +1372,470 @@ public class DatabasePersistenceAndroidTest {
             persistence.close();
         }
     }
+
+    @Test
+    public void upgradeFromVersion6to7() throws PersistenceException, JSONException, UnsupportedEncodingException {
+
+        /* Initialize database persistence with old version, without the size column. */
+        String createLogsSqlVersion6 = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT);";
+        ContentValues schema = new ContentValues(SCHEMA);
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_SIZE_COLUMN, schema, createLogsSqlVersion6, mock(DatabaseManager.Listener.class));
+
+        /* Init log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Insert old data before upgrade. */
+        Log oldLog = AndroidTestUtils.generateMockLog();
+        try {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DatabasePersistence.COLUMN_GROUP, "test");
+            contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(oldLog));
+            contentValues.put(DatabasePersistence.COLUMN_DATA_TYPE, MOCK_LOG_TYPE);
+            contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+            databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade keeps old data. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            assertEquals(1, persistence.countLogs("test"));
+            assertNull(getContentValues(persistence, "test").getAsInteger(DatabasePersistence.COLUMN_SIZE));
+
+            /* New logs have their size stored. */
+            Log newLog = AndroidTestUtils.generateMockLog();
+            persistence.putLog(newLog, "test/new", NORMAL);
+            assertEquals((Integer) logSerializer.serializeLog(newLog).getBytes("UTF-8").length,
+                    getContentValues(persistence, "test/new").getAsInteger(DatabasePersistence.COLUMN_SIZE));
+
+            /* Old logs are still returned. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.emptyList(), 1, outputLogs);
+            assertEquals(Collections.singletonList(oldLog), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion7to8() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence with old version, without the log count table. */
+        String createLogsSqlVersion7 = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT," +
+                "`size` INTEGER);";
+        ContentValues schema = new ContentValues(SCHEMA);
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_LOG_COUNTS_TABLE, schema, createLogsSqlVersion7, mock(DatabaseManager.Listener.class));
+
+        /* Init log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Insert old data before upgrade. */
+        try {
+            for (String group : new String[]{"test", "test", "other"}) {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(DatabasePersistence.COLUMN_GROUP, group);
+                contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(AndroidTestUtils.generateMockLog()));
+                contentValues.put(DatabasePersistence.COLUMN_DATA_TYPE, MOCK_LOG_TYPE);
+                contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+                databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+            }
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade counts old logs. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            assertEquals(2, persistence.countLogs("test"));
+            assertEquals(1, persistence.countLogs("other"));
+            assertEquals(0, persistence.countLogs("unknown"));
+
+            /* Counts are maintained by every write. */
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            persistence.putLogs(Arrays.asList(AndroidTestUtils.generateMockLog(), AndroidTestUtils.generateMockLog()), "other", NORMAL, new ArrayList<PersistenceException>());
+            assertEquals(3, persistence.countLogs("test"));
+            assertEquals(3, persistence.countLogs("other"));
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertNotNull(batchId);
+            persistence.deleteLogs("test", batchId);
+            assertEquals(1, persistence.countLogs("test"));
+            assertEquals(1, persistence.deleteOldestLogs("other", 1));
+            assertEquals(2, persistence.countLogs("other"));
+            persistence.deleteLogs("other");
+            assertEquals(0, persistence.countLogs("other"));
+            assertEquals(1, persistence.countLogs("test"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void deviceStoredOnce() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> logs = new ArrayList<>();
+        try {
+
+            /* Store logs sharing a device like the channel does. */
+            Device device = AndroidTestUtils.generateMockLog().getDevice();
+            for (int i = 0; i < 3; i++) {
+                Log log = AndroidTestUtils.generateMockLog();
+                log.setDevice(device);
+                logs.add(log);
+            }
+            persistence.putLog(logs.get(0), "test", NORMAL);
+            persistence.putLogs(logs.subList(1, 3), "test", NORMAL, new ArrayList<PersistenceException>());
+
+            /* Rows only reference the device. */
+            ContentValues values = getContentValues(persistence, "test");
+            assertNotNull(values.getAsString(DatabasePersistence.COLUMN_DEVICE_ID));
+            assertFalse(values.getAsString(DatabasePersistence.COLUMN_LOG).contains("\"device\""));
+            Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+
+            /* Simulate restart to read logs from the database. */
+            persistence.close();
+        }
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Logs are restored with a single device instance. */
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 3, outputLogs);
+            assertEquals(logs, outputLogs);
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(1).getDevice());
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(2).getDevice());
+
+            /* Payloads to send include the device. */
+            List<String> payloads = persistence.getLogPayloads("test", batchId);
+            assertNotNull(payloads);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(logs.get(i), logSerializer.deserializeLog(payloads.get(i), null));
+            }
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void deviceStoredOnceWithStreamingSerializer() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence, the streaming serializer doesn't escape '/' unlike JSONStringer. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new StreamingLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> logs = new ArrayList<>();
+        try {
+            Device device = AndroidTestUtils.generateMockLog().getDevice();
+            device.setOsBuild("LMY48B/1");
+            for (int i = 0; i < 2; i++) {
+                Log log = AndroidTestUtils.generateMockLog();
+                log.setDevice(device);
+                logs.add(log);
+            }
+            persistence.putLogs(logs, "test", NORMAL, new ArrayList<PersistenceException>());
+
+            /* Rows only reference the device. */
+            ContentValues values = getContentValues(persistence, "test");
+            assertNotNull(values.getAsString(DatabasePersistence.COLUMN_DEVICE_ID));
+            assertFalse(values.getAsString(DatabasePersistence.COLUMN_LOG).contains("\"device\""));
+            Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+
+            /* Simulate restart to read logs from the database. */
+            persistence.close();
+        }
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(logs, outputLogs);
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(1).getDevice());
+
+            /* Payloads to send are the ones the serializer writes for the logs. */
+            List<String> payloads = persistence.getLogPayloads("test", batchId);
+            assertNotNull(payloads);
+            for (int i = 0; i < 2; i++) {
+                assertEquals(logSerializer.serializeLog(logs.get(i)), payloads.get(i));
+            }
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void deviceStoredAgainWhenDatabaseIsCreatedAgain() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+            Device device = AndroidTestUtils.generateMockLog().getDevice();
+            Log log = AndroidTestUtils.generateMockLog();
+            log.setDevice(device);
+            persistence.putLog(log, "test", NORMAL);
+
+            /* Delete the database like when it's corrupted, it's created again on next access. */
+            persistence.mDatabaseManager.close();
+            assertTrue(sContext.deleteDatabase(DatabasePersistence.DATABASE));
+            log = AndroidTestUtils.generateMockLog();
+            log.setDevice(device);
+            persistence.putLog(log, "test", NORMAL);
+
+            /* The device is stored in the new database. */
+            Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(Collections.singletonList(log), outputLogs);
+            assertEquals(device, outputLogs.get(0).getDevice());
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void deviceNotStoredForCommonSchemaLogs() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MockCommonSchemaLog.TYPE, new MockCommonSchemaLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+            CommonSchemaLog log = new MockCommonSchemaLog();
+            log.setVer("3.0");
+            log.setName("test");
+            log.setTimestamp(new Date());
+            log.addTransmissionTarget("token");
+            log.setDevice(AndroidTestUtils.generateMockLog().getDevice());
+            persistence.putLog(log, "test", NORMAL);
+
+            /* The log is stored as is. */
+            ContentValues values = getContentValues(persistence, "test");
+            assertNull(values.getAsString(DatabasePersistence.COLUMN_DEVICE_ID));
+            Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+            try {
+                assertEquals(0, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion9to10() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence with old version, without the compact log column. */
+        String createLogsSqlVersion9 = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT," +
+                "`size` INTEGER," +
+                "`device_id` TEXT);";
+        ContentValues schema = new ContentValues(SCHEMA);
+        schema.remove(DatabasePersistence.COLUMN_COMPACT_LOG);
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_COMPACT_LOG_COLUMN, schema, createLogsSqlVersion9, mock(DatabaseManager.Listener.class));
+
+        /* Init log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Insert old data before upgrade. */
+        Log oldLog = AndroidTestUtils.generateMockLog();
+        try {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DatabasePersistence.COLUMN_GROUP, "test");
+            contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(oldLog));
+            contentValues.put(DatabasePersistence.COLUMN_DATA_TYPE, MOCK_LOG_TYPE);
+            contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+            databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade keeps old data, new logs are stored in compact encoding. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        persistence.setCompactEncodingEnabled(true);
+        try {
+            Log newLog = AndroidTestUtils.generateMockLog();
+            persistence.putLog(newLog, "test", NORMAL);
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(Arrays.asList(oldLog, newLog), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void compactEncoding() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(AndroidTestUtils.generateMockLog());
+        }
+        try {
+
+            /* Store a log as JSON then logs in compact encoding. */
+            persistence.putLog(logs.get(0), "test", NORMAL);
+            persistence.setCompactEncodingEnabled(true);
+            persistence.putLog(logs.get(1), "test", NORMAL);
+            persistence.putLogs(logs.subList(2, 3), "test", NORMAL, new ArrayList<PersistenceException>());
+
+            /* Check rows. */
+            Cursor cursor = persistence.mDatabaseManager.getCursor(SQLiteUtils.newSQLiteQueryBuilder(), null, null, DatabaseManager.PRIMARY_KEY);
+            try {
+                ContentValues values = persistence.mDatabaseManager.nextValues(cursor);
+                assertNotNull(values);
+                assertNotNull(values.getAsString(DatabasePersistence.COLUMN_LOG));
+                assertNull(values.getAsByteArray(DatabasePersistence.COLUMN_COMPACT_LOG));
+                for (int i = 1; i < 3; i++) {
+                    values = persistence.mDatabaseManager.nextValues(cursor);
+                    assertNotNull(values);
+                    assertNull(values.getAsString(DatabasePersistence.COLUMN_LOG));
+                    byte[] compactLog = values.getAsByteArray(DatabasePersistence.COLUMN_COMPACT_LOG);
+                    assertNotNull(compactLog);
+                    assertTrue(compactLog.length < values.getAsInteger(DatabasePersistence.COLUMN_SIZE));
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+
+            /* Simulate restart to read logs from the database. */
+            persistence.close();
+        }
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Both encodings are read, and sent as JSON. */
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 3, outputLogs);
+            assertEquals(logs, outputLogs);
+            List<String> payloads = persistence.getLogPayloads("test", batchId);
+            assertNotNull(payloads);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(logs.get(i), logSerializer.deserializeLog(payloads.get(i), null));
+            }
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void getLogsWithBatchSizeLimits() throws PersistenceException, JSONException, UnsupportedEncodingException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> logs = new ArrayList<>();
+        int logSize;
+        try {
+
+            /* Generate logs of the same size and a larger one. */
+            for (int i = 0; i < 4; i++) {
+                LogWithProperties log = AndroidTestUtils.generateMockLog();
+                Map<String, String> properties = new HashMap<>();
+                properties.put("key", generateString(1024, 'x'));
+                log.setProperties(properties);
+                persistence.putLog(log, "test", NORMAL);
+                logs.add(log);
+            }
+            logSize = logSerializer.serializeLog(logs.get(0)).getBytes("UTF-8").length;
+            LogWithProperties largeLog = AndroidTestUtils.generateMockLog();
+            Map<String, String> properties = new HashMap<>();
+            properties.put("key", generateString(16 * logSize, 'x'));
+            largeLog.setProperties(properties);
+            persistence.putLog(largeLog, "test", NORMAL);
+            logs.add(largeLog);
+        } finally {
+
+            /* Simulate restart to read logs from the database. */
+            persistence.close();
+        }
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        persistence.setBatchSizeLimits("test", logSize * 5 / 2, logSize * 4);
+        try {
+
+            /* First batch stops growing after reaching the target size. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.emptyList(), 10, outputLogs);
+            assertEquals(logs.subList(0, 3), outputLogs);
+            assertTrue(persistence.isBatchSizeLimitReached("test"));
+
+            /* Second batch does not exceed the maximum size. */
+            outputLogs.clear();
+            persistence.getLogs("test", Collections.emptyList(), 10, outputLogs);
+            assertEquals(logs.subList(3, 4), outputLogs);
+            assertTrue(persistence.isBatchSizeLimitReached("test"));
+
+            /* The large log is sent alone. */
+            outputLogs.clear();
+            persistence.getLogs("test", Collections.emptyList(), 10, outputLogs);
+            assertEquals(logs.subList(4, 5), outputLogs);
+            assertFalse(persistence.isBatchSizeLimitReached("test"));
+        } finally {
+            persistence.close();
+        }
+    }
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import android.annotation.SuppressLint;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.AndroidTestUtils;
+import com.microsoft.appcenter.AppCenter;
+import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.MockLogFactory;
+import com.microsoft.appcenter.persistence.Persistence.PersistenceException;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.storage.FileManager;
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.microsoft.appcenter.Flags.NORMAL;
+import static com.microsoft.appcenter.ingestion.models.json.MockLog.MOCK_LOG_TYPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the cost of {@link DatabasePersistence} operations.
+ */
+@SuppressWarnings("TryFinallyCanBeTryWithResources")
+@LargeTest
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class DatabasePersistenceBenchmarkAndroidTest {
+
+    /**
+     * Group used by the benchmark.
+     */
+    private static final String GROUP = "benchmark";
+
+    /**
+     * Number of logs per batch.
+     */
+    private static final int BATCH_SIZE = 50;
+
+    /**
+     * Number of batches kept in flight, like parallel batches in the channel.
+     */
+    private static final int PARALLEL_BATCHES = 3;
+
+    /**
+     * Number of measured fetch rounds per backlog size.
+     */
+    private static final int ROUNDS = 10;
+
+    /**
+     * Context instance.
+     */
+    @SuppressLint("StaticFieldLeak")
+    private static Context sContext;
+
+    @BeforeClass
+    public static void setUpClass() {
+        sContext = InstrumentationRegistry.getInstrumentation().getContext();
+        FileManager.initialize(sContext);
+        SharedPreferencesManager.initialize(sContext);
+        Constants.loadFromContext(sContext);
+    }
+
+    @Before
+    public void setUp() {
+        sContext.deleteDatabase(DatabasePersistence.DATABASE);
+    }
+
+    /**
+     * Fills the database directly in a single transaction to keep the benchmark setup fast.
+     */
+    private static void fillBacklog(int logCount) throws JSONException {
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        String payload = logSerializer.serializeLog(AndroidTestUtils.generateMockLog());
+        SQLiteDatabase database = sContext.openOrCreateDatabase(DatabasePersistence.DATABASE, Context.MODE_PRIVATE, null);
+        try {
+            database.beginTransaction();
+            try {
+                for (int i = 0; i < logCount; i++) {
+                    ContentValues values = new ContentValues();
+                    values.put(DatabasePersistence.COLUMN_GROUP, GROUP);
+                    values.put(DatabasePersistence.COLUMN_LOG, payload);
+                    values.put(DatabasePersistence.COLUMN_DATA_TYPE, MOCK_LOG_TYPE);
+                    values.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+                    database.insertOrThrow(DatabasePersistence.TABLE, null, values);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Returns the average time in nanoseconds to fetch one batch while other batches are pending.
+     */
+    private static long measureFetch(int backlog) throws JSONException {
+
+        /* Create schema then fill it. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.countLogs(GROUP);
+        persistence.close();
+        fillBacklog(backlog);
+
+        /* Measure. */
+        persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Warm up and keep batches pending as if they were being sent. */
+            List<Log> logs = new ArrayList<>();
+            for (int i = 0; i < PARALLEL_BATCHES; i++) {
+                persistence.getLogs(GROUP, Collections.<String>emptyList(), BATCH_SIZE, logs);
+            }
+            long total = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                logs.clear();
+                long start = SystemClock.elapsedRealtimeNanos();
+                String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), BATCH_SIZE, logs);
+                total += SystemClock.elapsedRealtimeNanos() - start;
+                assertEquals(BATCH_SIZE, logs.size());
+
+                /* Simulate successful upload to keep the number of pending batches constant. */
+                persistence.deleteLogs(GROUP, batchId);
+            }
+            long average = total / ROUNDS;
+            AppCenterLog.info(AppCenter.LOG_TAG, "getLogs backlog=" + backlog + " averageNanos=" + average);
+            return average;
+        } finally {
+            persistence.close();
+            sContext.deleteDatabase(DatabasePersistence.DATABASE);
+        }
+    }
+
+    @Test
+    public void putLogsIsFasterThanPutLog() throws PersistenceException {
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        int logCount = 500;
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < logCount; i++) {
+            logs.add(AndroidTestUtils.generateMockLog());
+        }
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* One transaction per log. */
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (Log log : logs) {
+                persistence.putLog(log, GROUP, NORMAL);
+            }
+            long putLogDuration = SystemClock.elapsedRealtimeNanos() - start;
+
+            /* One transaction for all logs. */
+            start = SystemClock.elapsedRealtimeNanos();
+            persistence.putLogs(logs, GROUP, NORMAL, new ArrayList<PersistenceException>());
+            long putLogsDuration = SystemClock.elapsedRealtimeNanos() - start;
+            AppCenterLog.info(AppCenter.LOG_TAG, "Inserted " + logCount + " logs putLogNanos=" + putLogDuration + " putLogsNanos=" + putLogsDuration);
+            assertEquals(2 * logCount, persistence.countLogs(GROUP));
+            assertTrue("putLogs is not faster: " + putLogsDuration + "ns vs " + putLogDuration + "ns", putLogsDuration < putLogDuration);
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void getLogsCostDoesNotGrowWithBacklog() throws JSONException {
+
+        /* The smallest backlog is 100 logs on top of the ones consumed by the measure itself. */
+        long small = measureFetch(100 + (PARALLEL_BATCHES + ROUNDS) * BATCH_SIZE);
+        measureFetch(10000);
+        long large = measureFetch(100000);
+
+        /*
+         * Bound absorbs device noise, the group index returns logs in sending order without sorting
+         * the group, materializing the whole group in Java would be orders of magnitude slower.
+         */
+        assertTrue("Fetch cost grew with backlog: " + small + "ns vs " + large + "ns", large < small * 5);
+    }
+
+    /**
+     * Returns the time in nanoseconds to count logs of the group when opening the database, like at group registration.
+     */
+    private static long measureCount(int backlog) throws JSONException {
+
+        /* Create schema then fill it. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.countLogs(GROUP);
+        persistence.close();
+        fillBacklog(backlog);
+        persistence = new DatabasePersistence(sContext);
+        try {
+
+            /* Open the database before measuring. */
+            persistence.countLogs("other");
+            long start = SystemClock.elapsedRealtimeNanos();
+            int count = persistence.countLogs(GROUP);
+            long duration = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(backlog, count);
+            AppCenterLog.info(AppCenter.LOG_TAG, "countLogs backlog=" + backlog + " nanos=" + duration);
+            return duration;
+        } finally {
+            persistence.close();
+            sContext.deleteDatabase(DatabasePersistence.DATABASE);
+        }
+    }
+
+    @Test
+    public void countLogsCostDoesNotGrowWithBacklog() throws JSONException {
+        long small = measureCount(100);
+        long large = measureCount(100000);
+
+        /* Counting 100000 rows takes milliseconds while reading a maintained count does not depend on the backlog. */
+        assertTrue("Count cost grew with backlog: " + small + "ns vs " + large + "ns", large < small * 5);
+    }
+}
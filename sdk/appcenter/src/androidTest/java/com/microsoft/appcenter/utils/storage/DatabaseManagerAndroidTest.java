@@ -9,6 +9,7 @@ import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 
@@ -278,6 +279,45 @@ public class DatabaseManagerAndroidTest {
         }
     }
 
+    @Test
+    public void writeAheadLogging() {
+
+        /* Get instance to access database. */
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DATABASE_NAME, "databaseManager", 1, mSchema, CREATE_TEST_SQL, mock(DatabaseManager.Listener.class));
+        databaseManager.setWriteAheadLoggingEnabled(true);
+        databaseManager.setCacheSize(1024);
+
+        //noinspection TryFinallyCanBeTryWithResources (try with resources statement is API >= 19)
+        try {
+
+            /* Check pragmas. */
+            assertTrue(databaseManager.setMaxSize(MAX_SIZE_IN_BYTES));
+            SQLiteDatabase database = databaseManager.getDatabase();
+            assertEquals("wal", DatabaseUtils.stringForQuery(database, "PRAGMA journal_mode", null).toLowerCase());
+            assertEquals(1, DatabaseUtils.longForQuery(database, "PRAGMA synchronous", null));
+            assertEquals(-1024, DatabaseUtils.longForQuery(database, "PRAGMA cache_size", null));
+
+            /* Fill the database: maximum size must still be enforced by discarding old entries. */
+            for (int i = 0; i < 100; i++) {
+                ContentValues value = generateContentValues();
+                value.put("COL_STRING", new String(new char[1024]).replace('\0', 'x'));
+                value.put("COL_INTEGER", 0);
+                assertTrue(databaseManager.put(value, "COL_INTEGER") >= 0);
+            }
+            databaseManager.checkpoint();
+            assertTrue(databaseManager.getRowCount() < 100);
+            assertEquals(MAX_SIZE_IN_BYTES, databaseManager.getMaxSize());
+
+            /* Regular operations work the same. */
+            databaseManager.clear();
+            runDatabaseManagerTest(databaseManager);
+        } finally {
+
+            /* Close. */
+            databaseManager.close();
+        }
+    }
+
     @SuppressWarnings("TryFinallyCanBeTryWithResources")
     private boolean checkTableExists(DatabaseManager databaseManager, String tableName) {
         SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
@@ -27,6 +27,8 @@ import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.LogFactory;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.StartServiceLogFactory;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
+import com.microsoft.appcenter.persistence.FileQueuePersistence;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.ApplicationLifecycleListener;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
@@ -73,6 +75,18 @@ public class AppCenter {
     @VisibleForTesting
     static final long DEFAULT_MAX_STORAGE_SIZE_IN_BYTES = 10 * 1024 * 1024;
 
+    /**
+     * Time window in milliseconds during which enqueued logs are coalesced before being persisted.
+     */
+    @VisibleForTesting
+    static final long DEFAULT_PERSISTENCE_BATCH_WINDOW = 100;
+
+    /**
+     * Maximum page cache size for SQLite database in kilobytes.
+     */
+    @VisibleForTesting
+    static final int MAXIMUM_STORAGE_CACHE_SIZE_IN_KILOBYTES = 16 * 1024;
+
     /**
      * Minimum size allowed for set maximum size (SQL limitation).
      */
@@ -226,6 +240,51 @@ public class AppCenter {
      */
     private DefaultAppCenterFuture<Boolean> mSetMaxStorageSizeFuture;
 
+    /**
+     * Use write-ahead logging in SQLite database.
+     */
+    private boolean mStorageWriteAheadLoggingEnabled;
+
+    /**
+     * Page cache size for SQLite database in kilobytes, 0 to use SQLite default.
+     */
+    private int mStorageCacheSizeInKilobytes;
+
+    /**
+     * Store logs in compact binary encoding in SQLite database.
+     */
+    private boolean mStorageCompactEncodingEnabled;
+
+    /**
+     * Storage engine used to persist logs.
+     */
+    private int mStorageEngine = StorageEngine.SQLITE;
+
+    /**
+     * Adjust batching to the network conditions.
+     */
+    private boolean mAdaptiveBatchingEnabled;
+
+    /**
+     * Merge batches of several services sent to the same endpoint into a single request.
+     */
+    private boolean mRequestMultiplexingEnabled;
+
+    /**
+     * Defer sending logs until it is cheap for the battery.
+     */
+    private boolean mDeferredUploadsEnabled;
+
+    /**
+     * Serialize logs with a streaming JSON reader and writer.
+     */
+    private boolean mStreamingSerializationEnabled;
+
+    /**
+     * Keep HTTPS connections alive between log uploads.
+     */
+    private boolean mConnectionReuseEnabled;
+
     /**
      * Redirect selected traffic to One Collector.
      */
@@ -499,6 +558,108 @@ public class AppCenter {
         return getInstance().setInstanceMaxStorageSizeAsync(storageSizeInBytes);
     }
 
+    /**
+     * Use write-ahead logging in the SQLite database. This makes storing logs faster as each
+     * transaction no longer writes the database file twice and waits for the disk less often.
+     * The trade-off is that the last logs stored before a power loss (not an application crash) may be lost.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to use write-ahead logging.
+     */
+    public static void setStorageWriteAheadLoggingEnabled(boolean enabled) {
+        getInstance().setInstanceStorageWriteAheadLoggingEnabled(enabled);
+    }
+
+    /**
+     * Set the SQLite database page cache size. A larger cache reduces disk reads when the
+     * storage holds many logs. Can only be called before AppCenter.start(...).
+     *
+     * @param cacheSizeInKilobytes page cache size in kilobytes, 0 to use SQLite default.
+     */
+    public static void setStorageCacheSize(int cacheSizeInKilobytes) {
+        getInstance().setInstanceStorageCacheSize(cacheSizeInKilobytes);
+    }
+
+    /**
+     * Store new logs in the SQLite database in a compact binary encoding instead of JSON, with dates,
+     * identifiers and common field names encoded in a few bytes. This reduces the storage used by logs
+     * waiting to be sent, they are converted back to JSON when read to be sent. Logs stored in either
+     * encoding can be read whether this option is enabled or not.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to use the compact encoding.
+     */
+    public static void setStorageCompactEncodingEnabled(boolean enabled) {
+        getInstance().setInstanceStorageCompactEncodingEnabled(enabled);
+    }
+
+    /**
+     * Set the engine used to store logs until they are sent. Logs stored by a previous engine
+     * are not migrated and are sent only when switching back to that engine.
+     * Can only be called before AppCenter.start(...). Default is {@link StorageEngine#SQLITE}.
+     *
+     * @param storageEngine one of the {@link StorageEngine} constants.
+     */
+    public static void setStorageEngine(@IntRange(from = StorageEngine.SQLITE, to = StorageEngine.FILE_QUEUE) int storageEngine) {
+        getInstance().setInstanceStorageEngine(storageEngine);
+    }
+
+    /**
+     * Enable or disable adaptive batching. When enabled, logs are sent in larger batches less often
+     * on metered, slow or unreliable networks and more often on fast unmetered networks.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to enable, false to disable.
+     */
+    public static void setAdaptiveBatchingEnabled(boolean enabled) {
+        getInstance().setInstanceAdaptiveBatchingEnabled(enabled);
+    }
+
+    /**
+     * Enable or disable request multiplexing. When enabled, logs of several services that are ready
+     * to be sent to the same endpoint are sent in a single request.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to enable, false to disable.
+     */
+    public static void setRequestMultiplexingEnabled(boolean enabled) {
+        getInstance().setInstanceRequestMultiplexingEnabled(enabled);
+    }
+
+    /**
+     * Enable or disable deferred uploads. When enabled, logs are sent only when the application is
+     * in foreground, the device is charging or the radio is already active because of other traffic,
+     * to save battery. Logs are never deferred for more than 30 minutes, critical logs are not deferred.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to enable, false to disable.
+     */
+    public static void setDeferredUploadsEnabled(boolean enabled) {
+        getInstance().setInstanceDeferredUploadsEnabled(enabled);
+    }
+
+    /**
+     * Enable or disable streaming serialization. When enabled, logs are converted to and from JSON
+     * with a streaming reader and writer instead of building a tree of JSON objects, which allocates less.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to enable, false to disable.
+     */
+    public static void setStreamingSerializationEnabled(boolean enabled) {
+        getInstance().setInstanceStreamingSerializationEnabled(enabled);
+    }
+
+    /**
+     * Enable or disable connection reuse. When enabled, HTTPS connections and TLS sessions are kept
+     * alive between log uploads, and at most 2 uploads to the same host run at the same time.
+     * Can only be called before AppCenter.start(...). Disabled by default.
+     *
+     * @param enabled true to enable, false to disable.
+     */
+    public static void setConnectionReuseEnabled(boolean enabled) {
+        getInstance().setInstanceConnectionReuseEnabled(enabled);
+    }
+
     /**
      * {@link #setUserId(String)} implementation at instance level.
      */
@@ -657,6 +818,130 @@ public class AppCenter {
         return setMaxStorageSizeFuture;
     }
 
+    /**
+     * {@link #setStorageWriteAheadLoggingEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceStorageWriteAheadLoggingEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setStorageWriteAheadLoggingEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mStorageWriteAheadLoggingEnabled = enabled;
+    }
+
+    /**
+     * {@link #setStorageCacheSize(int)} implementation at instance level.
+     */
+    private synchronized void setInstanceStorageCacheSize(int cacheSizeInKilobytes) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setStorageCacheSize may not be called after App Center has been configured.");
+            return;
+        }
+        if (cacheSizeInKilobytes < 0 || cacheSizeInKilobytes > MAXIMUM_STORAGE_CACHE_SIZE_IN_KILOBYTES) {
+            AppCenterLog.error(LOG_TAG, "Storage cache size must be between 0 and " + MAXIMUM_STORAGE_CACHE_SIZE_IN_KILOBYTES + " kilobytes.");
+            return;
+        }
+        mStorageCacheSizeInKilobytes = cacheSizeInKilobytes;
+    }
+
+    /**
+     * {@link #setStorageCompactEncodingEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceStorageCompactEncodingEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setStorageCompactEncodingEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mStorageCompactEncodingEnabled = enabled;
+    }
+
+    /**
+     * {@link #setStorageEngine(int)} implementation at instance level.
+     */
+    private synchronized void setInstanceStorageEngine(int storageEngine) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setStorageEngine may not be called after App Center has been configured.");
+            return;
+        }
+        if (storageEngine != StorageEngine.SQLITE && storageEngine != StorageEngine.FILE_QUEUE) {
+            AppCenterLog.error(LOG_TAG, "Invalid storage engine: " + storageEngine);
+            return;
+        }
+        mStorageEngine = storageEngine;
+    }
+
+    /**
+     * {@link #setAdaptiveBatchingEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceAdaptiveBatchingEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setAdaptiveBatchingEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mAdaptiveBatchingEnabled = enabled;
+    }
+
+    /**
+     * {@link #setRequestMultiplexingEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceRequestMultiplexingEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setRequestMultiplexingEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mRequestMultiplexingEnabled = enabled;
+    }
+
+    /**
+     * {@link #setDeferredUploadsEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceDeferredUploadsEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setDeferredUploadsEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mDeferredUploadsEnabled = enabled;
+    }
+
+    /**
+     * {@link #setStreamingSerializationEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceStreamingSerializationEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setStreamingSerializationEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mStreamingSerializationEnabled = enabled;
+    }
+
+    /**
+     * {@link #setConnectionReuseEnabled(boolean)} implementation at instance level.
+     */
+    private synchronized void setInstanceConnectionReuseEnabled(boolean enabled) {
+        if (mConfiguredFromApp) {
+            AppCenterLog.error(LOG_TAG, "setConnectionReuseEnabled may not be called after App Center has been configured.");
+            return;
+        }
+        mConnectionReuseEnabled = enabled;
+    }
+
+    /**
+     * Notify the channel that the application entered foreground or background, for deferred uploads.
+     *
+     * @param foreground true if in foreground, false if in background.
+     */
+    private void setChannelApplicationInForeground(final boolean foreground) {
+        mHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (mChannel != null) {
+                    mChannel.setApplicationInForeground(foreground);
+                }
+            }
+        });
+    }
+
     /**
      * {@link #isConfigured()} implementation at instance level.
      */
@@ -748,6 +1033,20 @@ public class AppCenter {
         };
         mApplicationLifecycleListener = new ApplicationLifecycleListener(mHandler);
         mApplication.registerActivityLifecycleCallbacks(mApplicationLifecycleListener);
+        if (mDeferredUploadsEnabled) {
+            mApplicationLifecycleListener.registerApplicationLifecycleCallbacks(new ApplicationLifecycleListener.ApplicationLifecycleCallbacks() {
+
+                @Override
+                public void onApplicationEnterForeground() {
+                    setChannelApplicationInForeground(true);
+                }
+
+                @Override
+                public void onApplicationEnterBackground() {
+                    setChannelApplicationInForeground(false);
+                }
+            });
+        }
 
         /* The rest of initialization is done in background as we need storage. */
         mServices = new HashSet<>();
@@ -867,13 +1166,38 @@ public class AppCenter {
         /* Instantiate HTTP client if it doesn't exist as a dependency. */
         HttpClient httpClient = DependencyConfiguration.getHttpClient();
         if (httpClient == null) {
-            httpClient = createHttpClient(mContext);
+            httpClient = createHttpClient(mContext, true, mConnectionReuseEnabled);
         }
 
         /* Init channel. */
-        mLogSerializer = new DefaultLogSerializer();
+        mLogSerializer = mStreamingSerializationEnabled ? new StreamingLogSerializer() : new DefaultLogSerializer();
         mLogSerializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
-        mChannel = new DefaultChannel(mContext, mAppSecret, mLogSerializer, httpClient, mHandler);
+        if (mStorageEngine == StorageEngine.FILE_QUEUE) {
+            mChannel = new DefaultChannel(mContext, mAppSecret, new FileQueuePersistence(mContext), mLogSerializer, httpClient, mHandler);
+        } else {
+            mChannel = new DefaultChannel(mContext, mAppSecret, mLogSerializer, httpClient, mHandler);
+        }
+        mChannel.setPersistenceBatchWindow(DEFAULT_PERSISTENCE_BATCH_WINDOW);
+        if (mAdaptiveBatchingEnabled) {
+            mChannel.setAdaptiveBatchingEnabled(true);
+        }
+        if (mRequestMultiplexingEnabled) {
+            mChannel.setRequestMultiplexingEnabled(true);
+        }
+        if (mDeferredUploadsEnabled) {
+            mChannel.setDeferredUploadsEnabled(true);
+        }
+
+        /* Storage options must be applied before the storage is opened by the maximum size. */
+        if (mStorageWriteAheadLoggingEnabled) {
+            mChannel.setWriteAheadLoggingEnabled(true);
+        }
+        if (mStorageCacheSizeInKilobytes > 0) {
+            mChannel.setStorageCacheSize(mStorageCacheSizeInKilobytes);
+        }
+        if (mStorageCompactEncodingEnabled) {
+            mChannel.setStorageCompactEncodingEnabled(true);
+        }
 
         /* Complete set maximum storage size future if starting from app. */
         if (configureFromApp) {
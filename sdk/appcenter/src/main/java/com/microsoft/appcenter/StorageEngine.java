@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+/**
+ * Storage engines used to persist logs until they are sent.
+ */
+public final class StorageEngine {
+
+    /**
+     * SQLite database, the default.
+     */
+    public static final int SQLITE = 0;
+
+    /**
+     * Append-only memory mapped files, cheaper than SQLite for high volumes of logs.
+     * Logs stored with another engine are not migrated.
+     */
+    public static final int FILE_QUEUE = 1;
+}
@@ -51,4 +51,16 @@ public class AbstractChannelListener implements Channel.Listener {
     @Override
     public void onResumed(@NonNull String groupName, String targetToken) {
     }
+
+    @Override
+    public void onBatchSettingsChanged(@NonNull String groupName, int maxLogsPerBatch, long batchTimeInterval, int maxParallelBatches) {
+    }
+
+    @Override
+    public void onLogsDropped(@NonNull String groupName, int droppedLogCount, long totalDroppedLogCount) {
+    }
+
+    @Override
+    public void onDeferredUploadResumed(@NonNull String groupName, long deferredTime, long totalDeferredTime) {
+    }
 }
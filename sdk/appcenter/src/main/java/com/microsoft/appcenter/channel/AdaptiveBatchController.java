@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.ingestion.Ingestion;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures round-trip time, throughput and failure rate of calls for each {@link Ingestion}
+ * and derives a sending profile from them and from the network being metered.
+ */
+class AdaptiveBatchController {
+
+    /**
+     * Send with default settings.
+     */
+    static final int PROFILE_DEFAULT = 0;
+
+    /**
+     * Send larger batches less often, on metered, slow or failing networks.
+     */
+    static final int PROFILE_CONSERVATIVE = 1;
+
+    /**
+     * Send more often and in parallel, on fast unmetered networks.
+     */
+    static final int PROFILE_AGGRESSIVE = 2;
+
+    /**
+     * Weight of a new sample in the moving averages.
+     */
+    @VisibleForTesting
+    static final double SMOOTHING_FACTOR = 0.3;
+
+    /**
+     * Number of calls to measure before deriving a profile from measures.
+     */
+    @VisibleForTesting
+    static final int MIN_SAMPLES = 3;
+
+    /**
+     * Round-trip time above which the network is considered slow, in ms.
+     */
+    @VisibleForTesting
+    static final long SLOW_ROUND_TRIP_TIME = 2000;
+
+    /**
+     * Round-trip time below which the network is considered fast, in ms.
+     */
+    @VisibleForTesting
+    static final long FAST_ROUND_TRIP_TIME = 500;
+
+    /**
+     * Throughput below which the network is considered slow, in bytes per second.
+     */
+    @VisibleForTesting
+    static final long SLOW_THROUGHPUT = 20 * 1024;
+
+    /**
+     * Throughput above which the network is considered fast, in bytes per second.
+     */
+    @VisibleForTesting
+    static final long FAST_THROUGHPUT = 200 * 1024;
+
+    /**
+     * Failure rate above which the network is considered unreliable.
+     */
+    @VisibleForTesting
+    static final double HIGH_FAILURE_RATE = 0.3;
+
+    /**
+     * Minimum request size in bytes to measure throughput, smaller requests mostly measure latency.
+     */
+    @VisibleForTesting
+    static final long MIN_THROUGHPUT_SAMPLE_SIZE = 16 * 1024;
+
+    /**
+     * Network state helper.
+     */
+    private final NetworkStateHelper mNetworkStateHelper;
+
+    /**
+     * Measures per ingestion.
+     */
+    private final Map<Ingestion, Measures> mMeasures = new HashMap<>();
+
+    AdaptiveBatchController(@NonNull NetworkStateHelper networkStateHelper) {
+        mNetworkStateHelper = networkStateHelper;
+    }
+
+    private Measures getMeasures(Ingestion ingestion) {
+        Measures measures = mMeasures.get(ingestion);
+        if (measures == null) {
+            measures = new Measures();
+            mMeasures.put(ingestion, measures);
+        }
+        return measures;
+    }
+
+    private static double average(double average, double sample, boolean first) {
+        return first ? sample : average + SMOOTHING_FACTOR * (sample - average);
+    }
+
+    /**
+     * Record a successful call.
+     *
+     * @param ingestion ingestion used for the call.
+     * @param size      request size in bytes, 0 if unknown.
+     * @param duration  duration in ms of the HTTP attempt that succeeded, excluding retries and waiting, -1 if unknown.
+     */
+    void onCallSucceeded(@NonNull Ingestion ingestion, long size, long duration) {
+        Measures measures = getMeasures(ingestion);
+        measures.mFailureRate = average(measures.mFailureRate, 0, measures.mSamples == 0);
+        if (duration >= 0) {
+            measures.mRoundTripTime = average(measures.mRoundTripTime, duration, measures.mRoundTripTime < 0);
+            if (size >= MIN_THROUGHPUT_SAMPLE_SIZE && duration > 0) {
+                double throughput = size * 1000.0 / duration;
+                measures.mThroughput = average(measures.mThroughput, throughput, measures.mThroughput < 0);
+            }
+        }
+        measures.mSamples++;
+    }
+
+    /**
+     * Record a failed call.
+     *
+     * @param ingestion ingestion used for the call.
+     */
+    void onCallFailed(@NonNull Ingestion ingestion) {
+        Measures measures = getMeasures(ingestion);
+        measures.mFailureRate = average(measures.mFailureRate, 1, measures.mSamples == 0);
+        measures.mSamples++;
+    }
+
+    /**
+     * Get the sending profile for an ingestion.
+     *
+     * @param ingestion ingestion.
+     * @return one of {@link #PROFILE_DEFAULT}, {@link #PROFILE_CONSERVATIVE} or {@link #PROFILE_AGGRESSIVE}.
+     */
+    int getProfile(@NonNull Ingestion ingestion) {
+        if (mNetworkStateHelper.isNetworkMetered()) {
+            return PROFILE_CONSERVATIVE;
+        }
+        Measures measures = mMeasures.get(ingestion);
+        if (measures == null || measures.mSamples < MIN_SAMPLES) {
+            return PROFILE_DEFAULT;
+        }
+        boolean slowThroughput = measures.mThroughput >= 0 && measures.mThroughput < SLOW_THROUGHPUT;
+        if (measures.mFailureRate > HIGH_FAILURE_RATE || measures.mRoundTripTime > SLOW_ROUND_TRIP_TIME || slowThroughput) {
+            return PROFILE_CONSERVATIVE;
+        }
+        boolean fastThroughput = measures.mThroughput < 0 || measures.mThroughput > FAST_THROUGHPUT;
+        if (measures.mRoundTripTime >= 0 && measures.mRoundTripTime < FAST_ROUND_TRIP_TIME && fastThroughput) {
+            return PROFILE_AGGRESSIVE;
+        }
+        return PROFILE_DEFAULT;
+    }
+
+    @VisibleForTesting
+    Measures getMeasuresForTesting(Ingestion ingestion) {
+        return mMeasures.get(ingestion);
+    }
+
+    /**
+     * Moving averages of calls for an ingestion.
+     */
+    @VisibleForTesting
+    static class Measures {
+
+        /**
+         * Number of calls measured.
+         */
+        int mSamples;
+
+        /**
+         * Round-trip time in ms, negative until measured.
+         */
+        double mRoundTripTime = -1;
+
+        /**
+         * Throughput in bytes per second, negative until measured.
+         */
+        double mThroughput = -1;
+
+        /**
+         * Ratio of failed calls.
+         */
+        double mFailureRate;
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+/**
+ * Thrown when a log is rejected by {@link BackpressurePolicy#REJECT}.
+ */
+public class BackpressureException extends Exception {
+
+    public BackpressureException() {
+        super("Log rejected because too many logs are waiting to be sent.");
+    }
+}
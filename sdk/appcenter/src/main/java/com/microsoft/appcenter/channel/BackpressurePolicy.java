@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+/**
+ * Policies applied to normal priority logs of a group when too many logs are waiting to be sent.
+ * Critical logs are never dropped by a policy.
+ */
+public final class BackpressurePolicy {
+
+    /**
+     * No policy, the storage evicts the oldest logs when it is full. This is the default.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * New logs are dropped.
+     */
+    public static final int DROP_NEWEST = 1;
+
+    /**
+     * The oldest logs are deleted in bulk to make room for new logs.
+     */
+    public static final int DROP_OLDEST = 2;
+
+    /**
+     * Only a sample of new logs is kept.
+     */
+    public static final int SAMPLE = 3;
+
+    /**
+     * New logs are rejected and reported as failed to the group listener with a {@link BackpressureException}.
+     */
+    public static final int REJECT = 4;
+}
@@ -7,6 +7,7 @@ package com.microsoft.appcenter.channel;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Log;
@@ -35,6 +36,36 @@ public interface Channel {
      */
     boolean setMaxStorageSize(long maxStorageSizeInBytes);
 
+    /**
+     * Set the time window during which enqueued logs are coalesced before being persisted in a single transaction.
+     * Critical logs are always persisted immediately.
+     *
+     * @param persistenceBatchWindow time window in milliseconds, 0 to persist every log immediately.
+     */
+    void setPersistenceBatchWindow(long persistenceBatchWindow);
+
+    /**
+     * Enable write-ahead logging in the storage, the write-ahead log is then periodically checkpointed.
+     * Must be called before the storage is used.
+     *
+     * @param enabled true to use write-ahead logging.
+     */
+    void setWriteAheadLoggingEnabled(boolean enabled);
+
+    /**
+     * Set the storage cache size. Must be called before the storage is used.
+     *
+     * @param cacheSizeInKilobytes cache size in kilobytes, 0 to use the default value.
+     */
+    void setStorageCacheSize(int cacheSizeInKilobytes);
+
+    /**
+     * Store new logs in a compact binary encoding instead of JSON, they are converted to JSON when read.
+     *
+     * @param enabled true to use the compact encoding.
+     */
+    void setStorageCompactEncodingEnabled(boolean enabled);
+
     /**
      * Add a group for logs to be persisted and sent.
      *
@@ -47,6 +78,65 @@ public interface Channel {
      */
     void addGroup(String groupName, int maxLogsPerBatch, long batchTimeInterval, int maxParallelBatches, Ingestion ingestion, GroupListener groupListener);
 
+    /**
+     * Set the size limits of batches sent for a group, using the serialized size of logs.
+     * A batch stops growing once it reaches the target size and never exceeds the maximum size,
+     * except when a single log is larger than the maximum size, it is then sent alone.
+     * Groups use a 256KB target and a 1MB maximum until this is called for the group.
+     *
+     * @param groupName       the name of a group.
+     * @param targetBatchSize target size of a batch in bytes.
+     * @param maxBatchSize    maximum size of a batch in bytes.
+     */
+    void setBatchSizeLimits(String groupName, long targetBatchSize, long maxBatchSize);
+
+    /**
+     * Enable or disable adaptive batching. When enabled, batch size, batch interval and parallel batches
+     * of each group are adjusted using the round-trip time, throughput and failure rate measured
+     * for its ingestion and whether the network is metered. Custom batch intervals are never changed.
+     * Changes are notified with {@link Listener#onBatchSettingsChanged}.
+     *
+     * @param enabled true to enable, false to use the settings of {@link #addGroup} as is.
+     */
+    void setAdaptiveBatchingEnabled(boolean enabled);
+
+    /**
+     * Enable or disable request multiplexing. When enabled, batches of several groups that are ready
+     * to be sent through the same ingestion are merged into a single request, and groups waiting
+     * for their batch interval with the default interval join the request of another group.
+     *
+     * @param enabled true to enable, false to send a request per batch.
+     */
+    void setRequestMultiplexingEnabled(boolean enabled);
+
+    /**
+     * Enable or disable deferred uploads. When enabled, normal priority logs are sent only when the
+     * application is in foreground, the device is charging or the radio is already active because of
+     * other traffic, so that sending logs does not wake up the radio. Logs are never deferred for more
+     * than a maximum duration and critical logs are never deferred.
+     * Deferrals are notified with {@link Listener#onDeferredUploadResumed}.
+     *
+     * @param enabled true to enable, false to send logs as soon as batches are ready.
+     */
+    void setDeferredUploadsEnabled(boolean enabled);
+
+    /**
+     * Notify the channel that the application entered foreground or background, used by deferred uploads.
+     *
+     * @param foreground true if in foreground, false if in background.
+     */
+    void setApplicationInForeground(boolean foreground);
+
+    /**
+     * Set the policy applied to normal priority logs of a group when more logs than the given limit
+     * are waiting to be sent. Dropped logs are notified with {@link Listener#onLogsDropped}.
+     *
+     * @param groupName      the name of a group.
+     * @param policy         one of the {@link BackpressurePolicy} constants.
+     * @param maxPendingLogs number of logs waiting to be sent from which the policy applies.
+     */
+    void setBackpressurePolicy(String groupName, int policy, @IntRange(from = 1) int maxPendingLogs);
+
     /**
      * Remove a group for logs.
      *
@@ -81,6 +171,21 @@ public interface Channel {
                  @NonNull String groupName,
                  @IntRange(from = NORMAL, to = CRITICAL) int flags);
 
+    /**
+     * Add log to queue to be persisted and sent, from any thread.
+     * Logs are buffered without allocating a message per log and are passed to
+     * {@link #enqueue} in the same order on the channel thread, in batches.
+     *
+     * @param log       the log to be enqueued.
+     * @param groupName the group to use.
+     * @param flags     the flags for this log.
+     * @param filter    optional filter called on the channel thread before the log is enqueued.
+     */
+    void enqueueAsync(@NonNull Log log,
+                      @NonNull String groupName,
+                      @IntRange(from = NORMAL, to = CRITICAL) int flags,
+                      @Nullable EnqueueFilter filter);
+
     /**
      * Check whether channel is enabled or disabled.
      *
@@ -219,6 +324,34 @@ public interface Channel {
          * @param targetToken The target token is resumed, or null when the entire group is resumed.
          */
         void onResumed(@NonNull String groupName, String targetToken);
+
+        /**
+         * Called when adaptive batching changes the settings used to send logs of a group.
+         *
+         * @param groupName          The group name.
+         * @param maxLogsPerBatch    The maximum number of logs per batch.
+         * @param batchTimeInterval  The time interval between batches, in ms.
+         * @param maxParallelBatches The maximum number of batches sent in parallel.
+         */
+        void onBatchSettingsChanged(@NonNull String groupName, int maxLogsPerBatch, long batchTimeInterval, int maxParallelBatches);
+
+        /**
+         * Called when logs are dropped by a backpressure policy.
+         *
+         * @param groupName            The group name.
+         * @param droppedLogCount      The number of logs just dropped.
+         * @param totalDroppedLogCount The number of logs dropped for this group since the channel was created.
+         */
+        void onLogsDropped(@NonNull String groupName, int droppedLogCount, long totalDroppedLogCount);
+
+        /**
+         * Called when logs of a group that were deferred by deferred uploads are sent.
+         *
+         * @param groupName         The group name.
+         * @param deferredTime      How long logs were deferred, in ms.
+         * @param totalDeferredTime How long logs of this group were deferred since the channel was created, in ms.
+         */
+        void onDeferredUploadResumed(@NonNull String groupName, long deferredTime, long totalDeferredTime);
     }
 
     /**
@@ -248,4 +381,21 @@ public interface Channel {
          */
         void onFailure(Log log, Exception e);
     }
+
+    /**
+     * Filter of logs enqueued with {@link #enqueueAsync}, so that a service can check its state
+     * on the channel thread in the same order as its other commands.
+     */
+    interface EnqueueFilter {
+
+        /**
+         * Called on the channel thread before enqueuing a log.
+         * The filter can also complete the log with state that is read on that thread.
+         *
+         * @param log       The log.
+         * @param groupName The group name.
+         * @return true to enqueue the log, false to discard it.
+         */
+        boolean shouldEnqueue(@NonNull Log log, @NonNull String groupName);
+    }
 }
@@ -6,13 +6,18 @@
 package com.microsoft.appcenter.channel;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
 import android.os.Handler;
+import android.os.SystemClock;
+import androidx.annotation.AnyThread;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.microsoft.appcenter.CancellationException;
+import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpResponse;
 import com.microsoft.appcenter.http.HttpUtils;
@@ -29,6 +34,8 @@ import com.microsoft.appcenter.persistence.Persistence;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.IdHelper;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+import com.microsoft.appcenter.utils.Utf8Utils;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
 import java.io.IOException;
@@ -39,11 +46,14 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 
@@ -66,6 +76,80 @@ public class DefaultChannel implements Channel {
      */
     private static final long MINIMUM_TRANSMISSION_INTERVAL = 3000;
 
+    /**
+     * Maximum number of logs coalesced before persisting them without waiting for the end of the window.
+     */
+    @VisibleForTesting
+    static final int PERSISTENCE_BATCH_MAX_SIZE = 100;
+
+    /**
+     * Delay in ms between a storage write and the checkpoint of the write-ahead log.
+     */
+    @VisibleForTesting
+    static final long CHECKPOINT_INTERVAL = 30000;
+
+    /**
+     * Default target size of a batch in bytes.
+     */
+    @VisibleForTesting
+    static final long DEFAULT_TARGET_BATCH_SIZE = 256 * 1024;
+
+    /**
+     * Default maximum size of a batch in bytes.
+     */
+    @VisibleForTesting
+    static final long DEFAULT_MAX_BATCH_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum size in bytes of a request sending batches of several groups together.
+     */
+    @VisibleForTesting
+    static final long MAX_MULTIPLEXED_REQUEST_SIZE = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * Maximum number of logs in a request sending batches of several groups together
+     * when the size of some batches is unknown as the persistence doesn't provide their serialized logs.
+     */
+    @VisibleForTesting
+    static final int MAX_MULTIPLEXED_REQUEST_LOG_COUNT = 100;
+
+    /**
+     * Capacity of the buffer of logs enqueued from any thread.
+     */
+    @VisibleForTesting
+    static final int ENQUEUE_BUFFER_CAPACITY = 1024;
+
+    /**
+     * Maximum number of buffered logs enqueued at once before letting other messages of the channel thread run.
+     */
+    @VisibleForTesting
+    static final int ENQUEUE_DRAIN_MAX_SIZE = 256;
+
+    /**
+     * One log is kept out of this number of logs with {@link BackpressurePolicy#SAMPLE}.
+     */
+    @VisibleForTesting
+    static final int BACKPRESSURE_SAMPLING_INTERVAL = 10;
+
+    /**
+     * Divider of the maximum pending log count giving the number of oldest logs deleted at once
+     * with {@link BackpressurePolicy#DROP_OLDEST}.
+     */
+    @VisibleForTesting
+    static final int BACKPRESSURE_DROP_OLDEST_DIVIDER = 10;
+
+    /**
+     * Maximum time normal priority logs are deferred by deferred uploads, in ms.
+     */
+    @VisibleForTesting
+    static final long MAX_UPLOAD_DEFERRAL = 30 * 60 * 1000;
+
+    /**
+     * Interval at which deferred groups check again whether logs can be sent, in ms.
+     */
+    @VisibleForTesting
+    static final long UPLOAD_DEFERRAL_CHECK_INTERVAL = 5 * 60 * 1000;
+
     /**
      * Application context.
      */
@@ -133,6 +217,145 @@ public class DefaultChannel implements Channel {
      */
     private int mCurrentState;
 
+    /**
+     * Time window in ms during which enqueued logs are coalesced before being persisted. 0 to persist logs immediately.
+     */
+    private long mPersistenceBatchWindow;
+
+    /**
+     * Logs waiting to be persisted, in enqueue order.
+     */
+    private final List<PendingLog> mLogsToPersist = new ArrayList<>();
+
+    /**
+     * Logs enqueued from any thread waiting to be enqueued on the channel thread.
+     */
+    private final LogRingBuffer mEnqueueBuffer = new LogRingBuffer(ENQUEUE_BUFFER_CAPACITY);
+
+    /**
+     * Is a drain of {@link #mEnqueueBuffer} posted to the channel thread?
+     */
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+    /**
+     * Number of logs posted to the channel thread because {@link #mEnqueueBuffer} was full, and not enqueued yet.
+     */
+    private final AtomicInteger mPostedEnqueueCount = new AtomicInteger();
+
+    /**
+     * Enqueues logs drained from {@link #mEnqueueBuffer}.
+     */
+    private final LogRingBuffer.Consumer mEnqueueConsumer = new LogRingBuffer.Consumer() {
+
+        @Override
+        public void accept(@NonNull Log log, @NonNull String groupName, int flags, @Nullable EnqueueFilter filter) {
+            enqueueIfAccepted(log, groupName, flags, filter);
+        }
+    };
+
+    /**
+     * Runnable that drains {@link #mEnqueueBuffer}.
+     */
+    private final Runnable mDrainRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            drainEnqueueBuffer(ENQUEUE_DRAIN_MAX_SIZE);
+        }
+    };
+
+    /**
+     * Batches waiting to be sent in a single request per ingestion when multiplexing is enabled.
+     */
+    private final Map<Ingestion, List<OutgoingBatch>> mOutgoingBatches = new LinkedHashMap<>();
+
+    /**
+     * Runnable that sends {@link #mOutgoingBatches}.
+     */
+    private final Runnable mSendOutgoingBatchesRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            sendOutgoingBatches();
+        }
+    };
+
+    /**
+     * Is request multiplexing enabled?
+     */
+    private boolean mRequestMultiplexingEnabled;
+
+    /**
+     * Circuit breakers per ingestion.
+     */
+    private final Map<Ingestion, IngestionCircuitBreaker> mCircuitBreakers = new HashMap<>();
+
+    /**
+     * Ingestion endpoints that rejected logs with a non-recoverable error.
+     * New logs of the groups sending logs through them are discarded until the channel is enabled again.
+     */
+    private final Set<Ingestion> mRejectingIngestions = new HashSet<>();
+
+    /**
+     * Adjusts batch settings from network measures, null when adaptive batching is disabled.
+     */
+    private AdaptiveBatchController mAdaptiveBatchController;
+
+    /**
+     * Tells whether logs can be sent without waking up the radio, null when deferred uploads are disabled.
+     */
+    private UploadConditions mUploadConditions;
+
+    /**
+     * Sends deferred logs when the radio becomes active because of other traffic.
+     */
+    private final ConnectivityManager.OnNetworkActiveListener mNetworkActiveListener = new ConnectivityManager.OnNetworkActiveListener() {
+
+        @Override
+        public void onNetworkActive() {
+            mAppCenterHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    resumeDeferredUploads();
+                }
+            });
+        }
+    };
+
+    /**
+     * Runnable that persists coalesced logs at the end of the window.
+     */
+    private final Runnable mPersistRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            persistPendingLogs();
+        }
+    };
+
+    /**
+     * Is write-ahead logging enabled in the storage?
+     */
+    private boolean mWriteAheadLoggingEnabled;
+
+    /**
+     * Is a checkpoint of the storage scheduled?
+     */
+    private boolean mCheckpointScheduled;
+
+    /**
+     * Runnable that checkpoints the storage.
+     */
+    private final Runnable mCheckpointRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mCheckpointScheduled = false;
+            mPersistence.checkpoint();
+        }
+    };
+
     /**
      * Creates and initializes a new instance.
      *
@@ -146,6 +369,21 @@ public class DefaultChannel implements Channel {
         this(context, appSecret, buildDefaultPersistence(context, logSerializer), new AppCenterIngestion(httpClient, logSerializer), appCenterHandler);
     }
 
+    /**
+     * Creates and initializes a new instance storing logs in the given persistence.
+     *
+     * @param context          The context.
+     * @param appSecret        The application secret.
+     * @param persistence      The persistence, its log serializer is set by this constructor.
+     * @param logSerializer    The log serializer.
+     * @param httpClient       The HTTP client instance.
+     * @param appCenterHandler App Center looper thread handler.
+     */
+    public DefaultChannel(@NonNull Context context, String appSecret, @NonNull Persistence persistence, @NonNull LogSerializer logSerializer, @NonNull HttpClient httpClient, @NonNull Handler appCenterHandler) {
+        this(context, appSecret, persistence, new AppCenterIngestion(httpClient, logSerializer), appCenterHandler);
+        persistence.setLogSerializer(logSerializer);
+    }
+
     /**
      * Overloaded constructor with limited visibility that allows for dependency injection.
      *
@@ -185,6 +423,95 @@ public class DefaultChannel implements Channel {
         return mPersistence.setMaxStorageSize(maxStorageSizeInBytes);
     }
 
+    @Override
+    public void setAdaptiveBatchingEnabled(boolean enabled) {
+        if (enabled == (mAdaptiveBatchController != null)) {
+            return;
+        }
+        mAdaptiveBatchController = enabled ? new AdaptiveBatchController(NetworkStateHelper.getSharedInstance(mContext)) : null;
+        for (GroupState groupState : mGroupStates.values()) {
+            applyBatchSettings(groupState);
+        }
+    }
+
+    @Override
+    public void setRequestMultiplexingEnabled(boolean enabled) {
+        mRequestMultiplexingEnabled = enabled;
+        if (!enabled) {
+            sendOutgoingBatches();
+        }
+    }
+
+    @Override
+    public void setDeferredUploadsEnabled(boolean enabled) {
+        if (enabled == (mUploadConditions != null)) {
+            return;
+        }
+        NetworkStateHelper networkStateHelper = NetworkStateHelper.getSharedInstance(mContext);
+        if (enabled) {
+            mUploadConditions = new UploadConditions(mContext, networkStateHelper);
+            networkStateHelper.addNetworkActiveListener(mNetworkActiveListener);
+        } else {
+            networkStateHelper.removeNetworkActiveListener(mNetworkActiveListener);
+            mUploadConditions = null;
+            resumeDeferredUploads();
+        }
+    }
+
+    @Override
+    public void setApplicationInForeground(boolean foreground) {
+        if (mUploadConditions != null) {
+            mUploadConditions.setForeground(foreground);
+            if (foreground) {
+                resumeDeferredUploads();
+            }
+        }
+    }
+
+    @Override
+    public void setBackpressurePolicy(String groupName, int policy, int maxPendingLogs) {
+        GroupState groupState = mGroupStates.get(groupName);
+        if (groupState == null) {
+            AppCenterLog.error(LOG_TAG, "Invalid group name:" + groupName);
+            return;
+        }
+        if (policy < BackpressurePolicy.NONE || policy > BackpressurePolicy.REJECT || maxPendingLogs < 1) {
+            AppCenterLog.error(LOG_TAG, "Invalid backpressure policy " + policy + " with maxPendingLogs=" + maxPendingLogs);
+            return;
+        }
+        groupState.mBackpressurePolicy = policy;
+        groupState.mMaxPendingLogs = maxPendingLogs;
+        groupState.mSampledLogCount = 0;
+    }
+
+    @Override
+    public void setPersistenceBatchWindow(long persistenceBatchWindow) {
+        mPersistenceBatchWindow = persistenceBatchWindow;
+        if (persistenceBatchWindow <= 0) {
+            persistPendingLogs();
+        }
+    }
+
+    @Override
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+        mWriteAheadLoggingEnabled = enabled;
+        mPersistence.setWriteAheadLoggingEnabled(enabled);
+        if (!enabled && mCheckpointScheduled && !mPersistence.isCheckpointRequired()) {
+            mCheckpointScheduled = false;
+            mAppCenterHandler.removeCallbacks(mCheckpointRunnable);
+        }
+    }
+
+    @Override
+    public void setStorageCacheSize(int cacheSizeInKilobytes) {
+        mPersistence.setCacheSize(cacheSizeInKilobytes);
+    }
+
+    @Override
+    public void setStorageCompactEncodingEnabled(boolean enabled) {
+        mPersistence.setCompactEncodingEnabled(enabled);
+    }
+
     /**
      * Call this after every async (such as database/ingestion) callback and stop processing if it returns false.
      * That means either the groupState was removed (or removed/added again),
@@ -225,6 +552,10 @@ public class DefaultChannel implements Channel {
         mIngestions.add(ingestion);
         final GroupState groupState = new GroupState(groupName, maxLogsPerBatch, batchTimeInterval, maxParallelBatches, ingestion, groupListener);
         mGroupStates.put(groupName, groupState);
+        mPersistence.setBatchSizeLimits(groupName, DEFAULT_TARGET_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+        if (mAdaptiveBatchController != null) {
+            applyBatchSettings(groupState);
+        }
 
         /* Count pending logs. */
         groupState.mPendingLogCount = mPersistence.countLogs(groupName);
@@ -246,9 +577,17 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    @Override
+    public void setBatchSizeLimits(String groupName, long targetBatchSize, long maxBatchSize) {
+        if (mGroupStates.containsKey(groupName)) {
+            mPersistence.setBatchSizeLimits(groupName, targetBatchSize, maxBatchSize);
+        }
+    }
+
     @Override
     public void removeGroup(String groupName) {
         AppCenterLog.debug(LOG_TAG, "removeGroup(" + groupName + ")");
+        persistPendingLogs();
         GroupState groupState = mGroupStates.remove(groupName);
         if (groupState != null) {
             cancelTimer(groupState);
@@ -328,6 +667,9 @@ public class DefaultChannel implements Channel {
      */
     @Override
     public void setEnabled(boolean enabled) {
+        if (enabled) {
+            mRejectingIngestions.clear();
+        }
         if (mEnabled == enabled) {
             return;
         }
@@ -368,7 +710,9 @@ public class DefaultChannel implements Channel {
             return;
         }
         AppCenterLog.debug(LOG_TAG, "clear(" + groupName + ")");
+        persistPendingLogs();
         mPersistence.deleteLogs(groupName);
+        mGroupStates.get(groupName).mPendingCriticalLogCount = 0;
 
         /* Call listeners so that they can react on group clearing. */
         for (Listener listener : mListeners) {
@@ -388,10 +732,23 @@ public class DefaultChannel implements Channel {
      * @param exception  the exception that caused suspension.
      */
     private void suspend(boolean deleteLogs, Exception exception) {
+
+        /* Persist coalesced logs first so that they are either kept or deleted like any other log. */
+        persistPendingLogs();
         mDiscardLogs = deleteLogs;
         mCurrentState++;
+        for (IngestionCircuitBreaker circuitBreaker : mCircuitBreakers.values()) {
+            if (circuitBreaker.getState() == IngestionCircuitBreaker.OPEN) {
+                mAppCenterHandler.removeCallbacks(circuitBreaker.mProbeRunnable);
+            }
+            circuitBreaker.reset();
+        }
         for (GroupState groupState : mGroupStates.values()) {
             cancelTimer(groupState);
+            groupState.mCriticalBatchId = null;
+            if (deleteLogs) {
+                groupState.mPendingCriticalLogCount = 0;
+            }
 
             /* Delete all other batches and call callback method that are currently in progress. */
             for (Iterator<Map.Entry<String, List<Log>>> iterator = groupState.mSendingBatches.entrySet().iterator(); iterator.hasNext(); ) {
@@ -423,6 +780,104 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * Get the circuit breaker of an ingestion.
+     *
+     * @param ingestion the ingestion.
+     * @return the circuit breaker.
+     */
+    @VisibleForTesting
+    IngestionCircuitBreaker getCircuitBreaker(@NonNull final Ingestion ingestion) {
+        IngestionCircuitBreaker circuitBreaker = mCircuitBreakers.get(ingestion);
+        if (circuitBreaker == null) {
+            circuitBreaker = new IngestionCircuitBreaker(new Runnable() {
+
+                @Override
+                public void run() {
+                    probeIngestion(ingestion);
+                }
+            });
+            mCircuitBreakers.put(ingestion, circuitBreaker);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Stop sending logs through an ingestion after a failure until its backoff elapses.
+     * Groups sending logs through other ingestion endpoints are not affected.
+     *
+     * @param ingestion  the failing ingestion.
+     * @param deleteLogs if true, delete logs of the groups sending logs through this ingestion
+     *                   and discard their new logs until the channel is enabled again.
+     * @param exception  the exception that caused the failure.
+     */
+    private void openCircuitBreaker(@NonNull Ingestion ingestion, boolean deleteLogs, @NonNull Exception exception) {
+        IngestionCircuitBreaker circuitBreaker = getCircuitBreaker(ingestion);
+        long backoff = circuitBreaker.onFailure();
+        if (backoff > 0) {
+            AppCenterLog.warn(LOG_TAG, "Pausing groups sending logs through " + ingestion + " for " + backoff + " ms.");
+            mAppCenterHandler.postDelayed(circuitBreaker.mProbeRunnable, backoff);
+        }
+        if (!deleteLogs) {
+            return;
+        }
+
+        /* Discard new logs until the channel is enabled again, as they would be rejected as well. */
+        mRejectingIngestions.add(ingestion);
+
+        /* Persist coalesced logs first so that they are deleted like any other log. */
+        persistPendingLogs();
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mIngestion != ingestion) {
+                continue;
+            }
+            cancelTimer(groupState);
+            groupState.mCriticalBatchId = null;
+            groupState.mPendingCriticalLogCount = 0;
+            groupState.mPendingLogCount = 0;
+
+            /* Delete other batches of the group and call callback method that are currently in progress. */
+            for (Iterator<Map.Entry<String, List<Log>>> iterator = groupState.mSendingBatches.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, List<Log>> entry = iterator.next();
+                iterator.remove();
+                GroupListener groupListener = groupState.mListener;
+                if (groupListener != null) {
+                    for (Log log : entry.getValue()) {
+                        groupListener.onFailure(log, exception);
+                    }
+                }
+            }
+            deleteLogsOnSuspended(groupState);
+        }
+    }
+
+    /**
+     * Let a batch probe an ingestion whose backoff elapsed.
+     *
+     * @param ingestion the ingestion.
+     */
+    private void probeIngestion(@NonNull Ingestion ingestion) {
+        AppCenterLog.debug(LOG_TAG, "Probing " + ingestion + " after failures.");
+        getCircuitBreaker(ingestion).startProbing();
+        if (mEnabled) {
+            checkPendingLogsOfIngestion(ingestion, null);
+        }
+    }
+
+    /**
+     * Check pending logs of all groups sending logs through an ingestion.
+     *
+     * @param ingestion          the ingestion.
+     * @param excludedGroupState a group not to check, can be null.
+     */
+    private void checkPendingLogsOfIngestion(@NonNull Ingestion ingestion, @Nullable GroupState excludedGroupState) {
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mIngestion == ingestion && groupState != excludedGroupState) {
+                checkPendingLogs(groupState);
+            }
+        }
+    }
+
     private void deleteLogsOnSuspended(final GroupState groupState) {
         final List<Log> logs = new ArrayList<>();
         mPersistence.getLogs(groupState.mName, Collections.<String>emptyList(), CLEAR_BATCH_SIZE, logs);
@@ -444,7 +899,7 @@ public class DefaultChannel implements Channel {
         if (groupState.mScheduled) {
             groupState.mScheduled = false;
             mAppCenterHandler.removeCallbacks(groupState.mRunnable);
-            SharedPreferencesManager.remove(START_TIMER_PREFIX + groupState.mName);
+            setStartTimer(groupState, 0);
         }
     }
 
@@ -464,14 +919,22 @@ public class DefaultChannel implements Channel {
             AppCenterLog.debug(LOG_TAG, "SDK is in offline mode.");
             return;
         }
+        if (!getCircuitBreaker(groupState.mIngestion).allowsBatch()) {
+            AppCenterLog.debug(LOG_TAG, "Sending logs of " + groupState.mName + " is paused after ingestion failures.");
+            return;
+        }
+        if (mUploadConditions != null && groupState.mPendingLogCount > 0 && !checkUploadConditions(groupState)) {
+            return;
+        }
         int pendingLogCount = groupState.mPendingLogCount;
-        int maxFetch = Math.min(pendingLogCount, groupState.mMaxLogsPerBatch);
+        int maxFetch = Math.min(pendingLogCount, groupState.mEffectiveMaxLogsPerBatch);
         AppCenterLog.debug(LOG_TAG, "triggerIngestion(" + groupState.mName + ") pendingLogCount=" + pendingLogCount);
         cancelTimer(groupState);
 
         /* Check if we have reached the maximum number of pending batches, log to LogCat and don't trigger another sending. */
-        if (groupState.mSendingBatches.size() == groupState.mMaxParallelBatches) {
-            AppCenterLog.debug(LOG_TAG, "Already sending " + groupState.mMaxParallelBatches + " batches of analytics data to the server.");
+        int sendingBatchCount = groupState.mSendingBatches.size() - (groupState.mCriticalBatchId != null ? 1 : 0);
+        if (sendingBatchCount >= groupState.mEffectiveMaxParallelBatches) {
+            AppCenterLog.debug(LOG_TAG, "Already sending " + groupState.mEffectiveMaxParallelBatches + " batches of analytics data to the server.");
             return;
         }
 
@@ -479,49 +942,317 @@ public class DefaultChannel implements Channel {
         final List<Log> batch = new ArrayList<>(maxFetch);
         final String batchId = mPersistence.getLogs(groupState.mName, groupState.mPausedTargetKeys, maxFetch, batch);
 
-        /* Decrement counter. */
-        groupState.mPendingLogCount -= maxFetch;
+        /* Decrement counter, logs left out of a batch that reached its size limits are still pending. */
+        if (batchId != null && mPersistence.isBatchSizeLimitReached(groupState.mName)) {
+            groupState.mPendingLogCount -= batch.size();
+        } else {
+            groupState.mPendingLogCount -= maxFetch;
+        }
 
         /* Nothing more to do if no logs. */
         if (batchId == null) {
             return;
         }
-        AppCenterLog.debug(LOG_TAG, "ingestLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
-
-        /* Call group listener before sending logs to ingestion service. */
-        if (groupState.mListener != null) {
-            for (Log log : batch) {
-                groupState.mListener.onBeforeSending(log);
-            }
-        }
 
-        /* Remember this batch. */
-        groupState.mSendingBatches.put(batchId, batch);
-        sendLogs(groupState, mCurrentState, batch, batchId);
+        /* Critical logs are read first, they are now part of this batch. */
+        groupState.mPendingCriticalLogCount = Math.max(groupState.mPendingCriticalLogCount - batch.size(), 0);
+        AppCenterLog.debug(LOG_TAG, "ingestLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
+        sendBatch(groupState, batch, batchId);
     }
 
     /**
-     * Send logs.
+     * Check whether a group can send normal priority logs now with deferred uploads. If not, the group
+     * is deferred and checks again later, until the maximum deferral elapses.
      *
-     * @param groupState   The group state.
-     * @param currentState The current state.
+     * @param groupState the group state.
+     * @return true if logs can be sent now.
+     */
+    private boolean checkUploadConditions(@NonNull GroupState groupState) {
+        long now = SystemClock.elapsedRealtime();
+        boolean deferred = groupState.mDeferredSince >= 0;
+        long deferredTime = deferred ? now - groupState.mDeferredSince : 0;
+        if (mUploadConditions.isUploadAllowed() || deferredTime >= MAX_UPLOAD_DEFERRAL) {
+            if (deferred) {
+                groupState.mDeferredSince = -1;
+                groupState.mTotalDeferredTime += deferredTime;
+                AppCenterLog.debug(LOG_TAG, "Sending logs of " + groupState.mName + " deferred for " + deferredTime + " ms.");
+                for (Listener listener : mListeners) {
+                    listener.onDeferredUploadResumed(groupState.mName, deferredTime, groupState.mTotalDeferredTime);
+                }
+            }
+            return true;
+        }
+        if (!deferred) {
+            groupState.mDeferredSince = now;
+            AppCenterLog.debug(LOG_TAG, "Deferring logs of " + groupState.mName + " until sending is cheap for the battery.");
+        }
+        cancelTimer(groupState);
+        groupState.mScheduled = true;
+        mAppCenterHandler.postDelayed(groupState.mRunnable, Math.min(UPLOAD_DEFERRAL_CHECK_INTERVAL, MAX_UPLOAD_DEFERRAL - deferredTime));
+        return false;
+    }
+
+    /**
+     * Send logs of deferred groups, called when sending logs became cheap for the battery.
+     */
+    private void resumeDeferredUploads() {
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mDeferredSince >= 0 && !groupState.mPaused) {
+                triggerIngestion(groupState);
+            }
+        }
+    }
+
+    /**
+     * Send pending critical logs right away without waiting for the batch interval.
+     * Critical logs are read first from storage, so a batch of the pending critical log count contains them.
+     * One parallel batch is reserved to critical logs: more critical logs wait for the current critical
+     * batch to complete, which bounds the number of requests while keeping latency to one round trip.
+     *
+     * @param groupState the group state.
+     */
+    private void triggerCriticalIngestion(@NonNull GroupState groupState) {
+        if (!mEnabled || groupState.mPaused || groupState.mCriticalBatchId != null || !mIngestion.isEnabled()
+                || !getCircuitBreaker(groupState.mIngestion).allowsBatch()) {
+            return;
+        }
+        int maxFetch = Math.min(groupState.mPendingCriticalLogCount, groupState.mEffectiveMaxLogsPerBatch);
+        List<Log> batch = new ArrayList<>(maxFetch);
+        String batchId = mPersistence.getLogs(groupState.mName, groupState.mPausedTargetKeys, maxFetch, batch);
+        if (batchId == null) {
+            groupState.mPendingCriticalLogCount = 0;
+            return;
+        }
+        groupState.mPendingCriticalLogCount = Math.max(groupState.mPendingCriticalLogCount - batch.size(), 0);
+        groupState.mPendingLogCount = Math.max(groupState.mPendingLogCount - batch.size(), 0);
+        groupState.mCriticalBatchId = batchId;
+        AppCenterLog.debug(LOG_TAG, "ingestCriticalLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
+        sendBatch(groupState, batch, batchId);
+    }
+
+    /**
+     * Send a batch read from storage.
+     *
+     * @param groupState the group state.
+     * @param batch      the logs.
+     * @param batchId    the batch ID.
+     */
+    private void sendBatch(@NonNull GroupState groupState, @NonNull List<Log> batch, @NonNull String batchId) {
+
+        /* Call group listener before sending logs to ingestion service. */
+        if (groupState.mListener != null) {
+            for (Log log : batch) {
+                groupState.mListener.onBeforeSending(log);
+            }
+        }
+
+        /* Remember this batch, logs are sent as stored when possible to avoid serializing them again. */
+        groupState.mSendingBatches.put(batchId, batch);
+        List<String> payloads = mPersistence.getLogPayloads(groupState.mName, batchId);
+        if (payloads != null && payloads.size() != batch.size()) {
+            payloads = null;
+        }
+        getCircuitBreaker(groupState.mIngestion).onBatchSent();
+        if (mRequestMultiplexingEnabled) {
+            addOutgoingBatch(new OutgoingBatch(groupState, batch, payloads, batchId));
+        } else {
+            sendLogs(groupState, mCurrentState, batch, payloads, batchId);
+        }
+
+        /* The radio is now active, deferred groups piggyback on this request. */
+        if (mUploadConditions != null) {
+            mUploadConditions.onTraffic();
+            resumeDeferredUploads();
+        }
+    }
+
+    /**
+     * Wait for the other batches ready to be sent through the same ingestion before sending a batch.
+     * The first batch of a request also takes along the groups of the ingestion that wait for the default
+     * batch interval, custom intervals are kept.
+     *
+     * @param outgoingBatch the batch.
+     */
+    private void addOutgoingBatch(@NonNull OutgoingBatch outgoingBatch) {
+        GroupState groupState = outgoingBatch.mGroupState;
+        List<OutgoingBatch> outgoingBatches = mOutgoingBatches.get(groupState.mIngestion);
+        if (outgoingBatches != null) {
+            outgoingBatches.add(outgoingBatch);
+            return;
+        }
+        outgoingBatches = new ArrayList<>();
+        outgoingBatches.add(outgoingBatch);
+        if (mOutgoingBatches.isEmpty()) {
+            mAppCenterHandler.post(mSendOutgoingBatchesRunnable);
+        }
+        mOutgoingBatches.put(groupState.mIngestion, outgoingBatches);
+        for (GroupState otherGroupState : mGroupStates.values()) {
+            if (otherGroupState != groupState && otherGroupState.mIngestion == groupState.mIngestion && otherGroupState.mScheduled
+                    && otherGroupState.mBatchTimeInterval <= MINIMUM_TRANSMISSION_INTERVAL) {
+                triggerIngestion(otherGroupState);
+            }
+        }
+    }
+
+    /**
+     * Send batches waiting in {@link #mOutgoingBatches}, merging batches of the same ingestion up to the maximum request size,
+     * or up to the maximum log count if the size of a batch is unknown.
+     */
+    private void sendOutgoingBatches() {
+        mAppCenterHandler.removeCallbacks(mSendOutgoingBatchesRunnable);
+        if (mOutgoingBatches.isEmpty()) {
+            return;
+        }
+        List<List<OutgoingBatch>> ingestionBatches = new ArrayList<>(mOutgoingBatches.values());
+        mOutgoingBatches.clear();
+        for (List<OutgoingBatch> outgoingBatches : ingestionBatches) {
+            List<OutgoingBatch> request = new ArrayList<>();
+            long requestSize = 0;
+            int requestLogCount = 0;
+            boolean requestSizeKnown = true;
+            for (OutgoingBatch outgoingBatch : outgoingBatches) {
+
+                /* Skip batches cancelled while waiting. */
+                GroupState groupState = outgoingBatch.mGroupState;
+                if (groupState != mGroupStates.get(groupState.mName) || !groupState.mSendingBatches.containsKey(outgoingBatch.mBatchId)) {
+                    continue;
+                }
+
+                /* Limit the log count instead of the size when the size of a batch is unknown. */
+                long size = getPayloadsSize(outgoingBatch.mPayloads);
+                int logCount = outgoingBatch.mLogs.size();
+                boolean sizeKnown = requestSizeKnown && outgoingBatch.mPayloads != null;
+                if (!request.isEmpty() && (requestSize + size > MAX_MULTIPLEXED_REQUEST_SIZE
+                        || !sizeKnown && requestLogCount + logCount > MAX_MULTIPLEXED_REQUEST_LOG_COUNT)) {
+                    sendOutgoingBatches(request);
+                    request = new ArrayList<>();
+                    requestSize = 0;
+                    requestLogCount = 0;
+                    sizeKnown = outgoingBatch.mPayloads != null;
+                }
+                request.add(outgoingBatch);
+                requestSize += size;
+                requestLogCount += logCount;
+                requestSizeKnown = sizeKnown;
+            }
+            if (!request.isEmpty()) {
+                sendOutgoingBatches(request);
+            }
+        }
+    }
+
+    /**
+     * Send batches of the same ingestion in a single request.
+     *
+     * @param request the batches.
+     */
+    private void sendOutgoingBatches(@NonNull final List<OutgoingBatch> request) {
+        if (request.size() == 1) {
+            OutgoingBatch outgoingBatch = request.get(0);
+            sendLogs(outgoingBatch.mGroupState, mCurrentState, outgoingBatch.mLogs, outgoingBatch.mPayloads, outgoingBatch.mBatchId);
+            return;
+        }
+
+        /* Merge logs, payloads are used only if available for all batches. */
+        List<Log> logs = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        for (OutgoingBatch outgoingBatch : request) {
+            logs.addAll(outgoingBatch.mLogs);
+            if (payloads != null) {
+                if (outgoingBatch.mPayloads == null) {
+                    payloads = null;
+                } else {
+                    payloads.addAll(outgoingBatch.mPayloads);
+                }
+            }
+        }
+        AppCenterLog.debug(LOG_TAG, "Sending " + request.size() + " batches with " + logs.size() + " logs in a single request.");
+        LogContainer logContainer = new LogContainer();
+        logContainer.setLogs(logs);
+        logContainer.setPayloads(payloads);
+        final Ingestion ingestion = request.get(0).mGroupState.mIngestion;
+        final int currentState = mCurrentState;
+        final long size = getPayloadsSize(payloads);
+        ingestion.sendAsync(mAppSecret, mInstallId, logContainer, new ServiceCallback() {
+
+            @Override
+            public void onCallSucceeded(HttpResponse httpResponse) {
+                final long duration = httpResponse.getCallDuration();
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (mAdaptiveBatchController != null) {
+                            mAdaptiveBatchController.onCallSucceeded(ingestion, size, duration);
+                            applyBatchSettings(ingestion);
+                        }
+                        for (OutgoingBatch outgoingBatch : request) {
+                            handleSendingSuccess(outgoingBatch.mGroupState, outgoingBatch.mBatchId);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCallFailed(final Exception e) {
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (mAdaptiveBatchController != null) {
+                            mAdaptiveBatchController.onCallFailed(ingestion);
+                            applyBatchSettings(ingestion);
+                        }
+                        for (OutgoingBatch outgoingBatch : request) {
+                            handleSendingFailure(outgoingBatch.mGroupState, outgoingBatch.mBatchId, e);
+                        }
+                    }
+                });
+            }
+        });
+
+        /* Check for more pending logs. */
+        mAppCenterHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                for (OutgoingBatch outgoingBatch : request) {
+                    checkPendingLogsAfterPost(outgoingBatch.mGroupState, currentState);
+                }
+            }
+        });
+    }
+
+    /**
+     * Send logs.
+     *
+     * @param groupState   The group state.
+     * @param currentState The current state.
      * @param batch        The log batch.
+     * @param payloads     The serialized logs of the batch, if available.
      * @param batchId      The batch ID.
      */
     @MainThread
-    private void sendLogs(final GroupState groupState, final int currentState, List<Log> batch, final String batchId) {
+    private void sendLogs(final GroupState groupState, final int currentState, List<Log> batch, List<String> payloads, final String batchId) {
 
         /* Send logs. */
         LogContainer logContainer = new LogContainer();
         logContainer.setLogs(batch);
+        logContainer.setPayloads(payloads);
+        final long size = getPayloadsSize(payloads);
         groupState.mIngestion.sendAsync(mAppSecret, mInstallId, logContainer, new ServiceCallback() {
 
             @Override
             public void onCallSucceeded(HttpResponse httpResponse) {
+                final long duration = httpResponse.getCallDuration();
                 mAppCenterHandler.post(new Runnable() {
 
                     @Override
                     public void run() {
+                        if (mAdaptiveBatchController != null) {
+                            mAdaptiveBatchController.onCallSucceeded(groupState.mIngestion, size, duration);
+                            applyBatchSettings(groupState.mIngestion);
+                        }
                         handleSendingSuccess(groupState, batchId);
                     }
                 });
@@ -533,6 +1264,10 @@ public class DefaultChannel implements Channel {
 
                     @Override
                     public void run() {
+                        if (mAdaptiveBatchController != null) {
+                            mAdaptiveBatchController.onCallFailed(groupState.mIngestion);
+                            applyBatchSettings(groupState.mIngestion);
+                        }
                         handleSendingFailure(groupState, batchId, e);
                     }
                 });
@@ -549,6 +1284,73 @@ public class DefaultChannel implements Channel {
         });
     }
 
+    /**
+     * Get the size of serialized logs once encoded in UTF-8, as sent on the wire.
+     *
+     * @param payloads serialized logs, can be null.
+     * @return size in bytes, 0 if payloads are null.
+     */
+    private static long getPayloadsSize(List<String> payloads) {
+        long size = 0;
+        if (payloads != null) {
+            for (String payload : payloads) {
+                size += Utf8Utils.getLength(payload);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Apply batch settings to all groups sending logs with the given ingestion.
+     *
+     * @param ingestion ingestion.
+     */
+    private void applyBatchSettings(@NonNull Ingestion ingestion) {
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mIngestion == ingestion) {
+                applyBatchSettings(groupState);
+            }
+        }
+    }
+
+    /**
+     * Compute the batch settings of a group from the adaptive batching profile of its ingestion
+     * and notify listeners if they changed.
+     *
+     * @param groupState the group state.
+     */
+    private void applyBatchSettings(@NonNull GroupState groupState) {
+        int maxLogsPerBatch = groupState.mMaxLogsPerBatch;
+        long batchTimeInterval = groupState.mBatchTimeInterval;
+        int maxParallelBatches = groupState.mMaxParallelBatches;
+        boolean customInterval = groupState.mBatchTimeInterval > MINIMUM_TRANSMISSION_INTERVAL;
+        int profile = mAdaptiveBatchController == null ? AdaptiveBatchController.PROFILE_DEFAULT : mAdaptiveBatchController.getProfile(groupState.mIngestion);
+        if (profile == AdaptiveBatchController.PROFILE_CONSERVATIVE) {
+            maxLogsPerBatch *= 2;
+            if (!customInterval) {
+                batchTimeInterval *= 4;
+            }
+            maxParallelBatches = 1;
+        } else if (profile == AdaptiveBatchController.PROFILE_AGGRESSIVE) {
+            if (!customInterval) {
+                batchTimeInterval /= 2;
+            }
+            maxParallelBatches *= 2;
+        }
+        if (maxLogsPerBatch != groupState.mEffectiveMaxLogsPerBatch
+                || batchTimeInterval != groupState.mEffectiveBatchTimeInterval
+                || maxParallelBatches != groupState.mEffectiveMaxParallelBatches) {
+            groupState.mEffectiveMaxLogsPerBatch = maxLogsPerBatch;
+            groupState.mEffectiveBatchTimeInterval = batchTimeInterval;
+            groupState.mEffectiveMaxParallelBatches = maxParallelBatches;
+            AppCenterLog.debug(LOG_TAG, "Batch settings changed for " + groupState.mName + ": maxLogsPerBatch=" + maxLogsPerBatch +
+                    " batchTimeInterval=" + batchTimeInterval + " maxParallelBatches=" + maxParallelBatches);
+            for (Listener listener : mListeners) {
+                listener.onBatchSettingsChanged(groupState.mName, maxLogsPerBatch, batchTimeInterval, maxParallelBatches);
+            }
+        }
+    }
+
     private void checkPendingLogsAfterPost(@NonNull final GroupState groupState, int currentState) {
         if (checkStateDidNotChange(groupState, currentState)) {
             checkPendingLogs(groupState);
@@ -564,21 +1366,31 @@ public class DefaultChannel implements Channel {
     private void handleSendingSuccess(@NonNull GroupState groupState, @NonNull String batchId) {
         List<Log> removedLogsForBatchId = groupState.mSendingBatches.remove(batchId);
         if (removedLogsForBatchId != null) {
+            if (batchId.equals(groupState.mCriticalBatchId)) {
+                groupState.mCriticalBatchId = null;
+            }
             mPersistence.deleteLogs(groupState.mName, batchId);
+            scheduleCheckpoint();
             GroupListener groupListener = groupState.mListener;
             if (groupListener != null) {
                 for (Log log : removedLogsForBatchId) {
                     groupListener.onSuccess(log);
                 }
             }
+
+            /* Resume the other groups sending logs through this ingestion if it was probed. */
+            if (getCircuitBreaker(groupState.mIngestion).onSuccess()) {
+                AppCenterLog.info(LOG_TAG, "Ingestion recovered, resuming sending logs through it.");
+                checkPendingLogsOfIngestion(groupState.mIngestion, groupState);
+            }
             checkPendingLogs(groupState);
         }
     }
 
     /**
      * The actual implementation to react to not being able to send a batch to the server.
-     * Will disable the sender in case of a recoverable error.
-     * Will delete batch of data in case of a non-recoverable error.
+     * Will pause the groups sending logs through the same ingestion with an exponential backoff.
+     * Will also delete their logs in case of a non-recoverable error.
      *
      * @param groupState the group state
      * @param batchId    the batch ID
@@ -590,8 +1402,16 @@ public class DefaultChannel implements Channel {
         if (removedLogsForBatchId != null) {
             AppCenterLog.error(LOG_TAG, "Sending logs groupName=" + groupName + " id=" + batchId + " failed", e);
             boolean recoverableError = HttpUtils.isRecoverableError(e);
+            boolean criticalBatch = batchId.equals(groupState.mCriticalBatchId);
+            if (criticalBatch) {
+                groupState.mCriticalBatchId = null;
+            }
             if (recoverableError) {
                 groupState.mPendingLogCount += removedLogsForBatchId.size();
+                if (criticalBatch) {
+                    groupState.mPendingCriticalLogCount += removedLogsForBatchId.size();
+                }
+                mPersistence.clearPendingLogState(groupName, batchId);
             } else {
                 GroupListener groupListener = groupState.mListener;
                 if (groupListener != null) {
@@ -600,8 +1420,7 @@ public class DefaultChannel implements Channel {
                     }
                 }
             }
-            mEnabled = false;
-            suspend(!recoverableError, e);
+            openCircuitBreaker(groupState.mIngestion, !recoverableError, e);
         }
     }
 
@@ -616,7 +1435,7 @@ public class DefaultChannel implements Channel {
         }
 
         /* Check if disabled with discarding logs. */
-        if (mDiscardLogs) {
+        if (mDiscardLogs || mRejectingIngestions.contains(groupState.mIngestion)) {
             AppCenterLog.warn(LOG_TAG, "Channel is disabled, the log is discarded.");
             if (groupState.mListener != null) {
                 groupState.mListener.onBeforeSending(log);
@@ -673,35 +1492,268 @@ public class DefaultChannel implements Channel {
                 AppCenterLog.debug(LOG_TAG, "Log of type '" + log.getType() + "' was not filtered out by listener(s) but no app secret was provided. Not persisting/sending the log.");
                 return;
             }
+
+            /* Apply backpressure policy, critical logs are never dropped. */
+            if (Flags.getPersistenceFlag(flags, false) != Flags.CRITICAL && !applyBackpressurePolicy(groupState, log)) {
+                return;
+            }
+
+            /* Coalesce log with others to persist them at once, unless critical. */
+            if (mPersistenceBatchWindow > 0 && Flags.getPersistenceFlag(flags, false) != Flags.CRITICAL) {
+                mLogsToPersist.add(new PendingLog(groupState, log, flags));
+                groupState.mCoalescedLogCount++;
+                if (mLogsToPersist.size() >= PERSISTENCE_BATCH_MAX_SIZE) {
+                    persistPendingLogs();
+                } else if (mLogsToPersist.size() == 1) {
+                    mAppCenterHandler.postDelayed(mPersistRunnable, mPersistenceBatchWindow);
+                }
+                return;
+            }
+
+            /* Keep logs order. */
+            persistPendingLogs();
             try {
 
                 /* Persist log. */
                 mPersistence.putLog(log, groupName, flags);
             } catch (Persistence.PersistenceException e) {
-                AppCenterLog.error(LOG_TAG, "Error persisting log", e);
-                if (groupState.mListener != null) {
-                    groupState.mListener.onBeforeSending(log);
-                    groupState.mListener.onFailure(log, e);
-                }
+                handlePersistenceFailure(groupState, log, e);
                 return;
             }
+            scheduleCheckpoint();
+            if (countPersistedLog(groupState, log, flags)) {
+                checkPendingLogsIfEnabled(groupState);
+            }
+        }
+    }
 
-            /* Nothing more to do if the log is from a paused transmission target. */
-            Iterator<String> targetKeys = log.getTransmissionTargetTokens().iterator();
-            String targetKey = targetKeys.hasNext() ? PartAUtils.getTargetKey(targetKeys.next()) : null;
-            if (groupState.mPausedTargetKeys.contains(targetKey)) {
-                AppCenterLog.debug(LOG_TAG, "Transmission target ikey=" + targetKey + " is paused.");
-                return;
+    @AnyThread
+    @Override
+    public void enqueueAsync(@NonNull final Log log, @NonNull final String groupName, final int flags, @Nullable final EnqueueFilter filter) {
+        if (mPostedEnqueueCount.get() == 0 && mEnqueueBuffer.offer(log, groupName, flags, filter)) {
+            if (mDrainScheduled.compareAndSet(false, true)) {
+                mAppCenterHandler.post(mDrainRunnable);
             }
+        } else {
 
-            /* Increment counters and schedule ingestion if we are enabled. */
-            groupState.mPendingLogCount++;
-            AppCenterLog.debug(LOG_TAG, "enqueue(" + groupState.mName + ") pendingLogCount=" + groupState.mPendingLogCount);
-            if (mEnabled) {
-                checkPendingLogs(groupState);
-            } else {
-                AppCenterLog.debug(LOG_TAG, "Channel is temporarily disabled, log was saved to disk.");
+            /*
+             * Buffer is full, post this log after the buffered ones. Until it is enqueued, the next logs
+             * are posted as well, otherwise a drain posted earlier could enqueue them before this one.
+             */
+            mPostedEnqueueCount.incrementAndGet();
+            mAppCenterHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        drainEnqueueBuffer(Integer.MAX_VALUE);
+                        enqueueIfAccepted(log, groupName, flags, filter);
+                    } finally {
+                        mPostedEnqueueCount.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Enqueue a log buffered by {@link #enqueueAsync} unless its filter discards it.
+     */
+    private void enqueueIfAccepted(@NonNull Log log, @NonNull String groupName, int flags, @Nullable EnqueueFilter filter) {
+        if (filter == null || filter.shouldEnqueue(log, groupName)) {
+            enqueue(log, groupName, flags);
+        }
+    }
+
+    /**
+     * Enqueue logs buffered by {@link #enqueueAsync}.
+     *
+     * @param maxCount maximum number of logs to enqueue, another drain is posted if there could be more.
+     */
+    private void drainEnqueueBuffer(int maxCount) {
+        mDrainScheduled.set(false);
+        int count = mEnqueueBuffer.drain(mEnqueueConsumer, maxCount);
+        if (count == maxCount && mDrainScheduled.compareAndSet(false, true)) {
+            mAppCenterHandler.post(mDrainRunnable);
+        }
+    }
+
+    /**
+     * Apply the backpressure policy of a group to a new log.
+     *
+     * @param groupState The group state.
+     * @param log        The new log.
+     * @return true if the log must be persisted, false if it was dropped.
+     */
+    private boolean applyBackpressurePolicy(@NonNull GroupState groupState, @NonNull Log log) {
+        if (groupState.mBackpressurePolicy == BackpressurePolicy.NONE
+                || groupState.mPendingLogCount + groupState.mCoalescedLogCount < groupState.mMaxPendingLogs) {
+            return true;
+        }
+        switch (groupState.mBackpressurePolicy) {
+
+            case BackpressurePolicy.DROP_OLDEST:
+
+                /* Persist coalesced logs first so that they can be deleted if they are the oldest. */
+                persistPendingLogs();
+                int deletedLogCount = mPersistence.deleteOldestLogs(groupState.mName,
+                        Math.max(groupState.mMaxPendingLogs / BACKPRESSURE_DROP_OLDEST_DIVIDER, 1));
+                if (deletedLogCount > 0) {
+                    groupState.mPendingLogCount = Math.max(groupState.mPendingLogCount - deletedLogCount, 0);
+                    notifyLogsDropped(groupState, deletedLogCount);
+                }
+                return true;
+
+            case BackpressurePolicy.SAMPLE:
+                if (groupState.mSampledLogCount++ % BACKPRESSURE_SAMPLING_INTERVAL == 0) {
+                    return true;
+                }
+                notifyLogsDropped(groupState, 1);
+                return false;
+
+            case BackpressurePolicy.REJECT:
+                if (groupState.mListener != null) {
+                    groupState.mListener.onBeforeSending(log);
+                    groupState.mListener.onFailure(log, new BackpressureException());
+                }
+                notifyLogsDropped(groupState, 1);
+                return false;
+
+            default:
+                notifyLogsDropped(groupState, 1);
+                return false;
+        }
+    }
+
+    /**
+     * Count and notify logs dropped by a backpressure policy.
+     *
+     * @param groupState      The group state.
+     * @param droppedLogCount The number of logs just dropped.
+     */
+    private void notifyLogsDropped(@NonNull GroupState groupState, int droppedLogCount) {
+        groupState.mDroppedLogCount += droppedLogCount;
+        AppCenterLog.debug(LOG_TAG, "Dropped " + droppedLogCount + " log(s) from " + groupState.mName +
+                " by backpressure policy, total=" + groupState.mDroppedLogCount);
+        for (Listener listener : mListeners) {
+            listener.onLogsDropped(groupState.mName, droppedLogCount, groupState.mDroppedLogCount);
+        }
+    }
+
+    /**
+     * Persist logs coalesced during the batch window, grouping them by group and flags.
+     */
+    @VisibleForTesting
+    void persistPendingLogs() {
+        if (mLogsToPersist.isEmpty()) {
+            return;
+        }
+        mAppCenterHandler.removeCallbacks(mPersistRunnable);
+        Map<GroupState, Map<Integer, List<Log>>> batches = new LinkedHashMap<>();
+        for (PendingLog pendingLog : mLogsToPersist) {
+            Map<Integer, List<Log>> groupBatches = batches.get(pendingLog.mGroupState);
+            if (groupBatches == null) {
+                groupBatches = new LinkedHashMap<>();
+                batches.put(pendingLog.mGroupState, groupBatches);
+            }
+            List<Log> logs = groupBatches.get(pendingLog.mFlags);
+            if (logs == null) {
+                logs = new ArrayList<>();
+                groupBatches.put(pendingLog.mFlags, logs);
             }
+            logs.add(pendingLog.mLog);
+        }
+        mLogsToPersist.clear();
+        for (GroupState groupState : batches.keySet()) {
+            groupState.mCoalescedLogCount = 0;
+        }
+        scheduleCheckpoint();
+        for (Map.Entry<GroupState, Map<Integer, List<Log>>> groupBatches : batches.entrySet()) {
+            GroupState groupState = groupBatches.getKey();
+            boolean counted = false;
+            for (Map.Entry<Integer, List<Log>> batch : groupBatches.getValue().entrySet()) {
+                List<Log> logs = batch.getValue();
+                List<Persistence.PersistenceException> exceptions = new ArrayList<>(logs.size());
+                mPersistence.putLogs(logs, groupState.mName, batch.getKey(), exceptions);
+                for (int i = 0; i < logs.size(); i++) {
+                    Log log = logs.get(i);
+                    Persistence.PersistenceException exception = exceptions.get(i);
+                    if (exception != null) {
+                        handlePersistenceFailure(groupState, log, exception);
+                    } else {
+                        counted |= countPersistedLog(groupState, log, batch.getKey());
+                    }
+                }
+            }
+            if (counted) {
+                checkPendingLogsIfEnabled(groupState);
+            }
+        }
+    }
+
+    /**
+     * Schedule a checkpoint of the storage after a storage write, if not already scheduled.
+     * Checkpoints are needed with write-ahead logging or if the storage requires them.
+     */
+    private void scheduleCheckpoint() {
+        if ((mWriteAheadLoggingEnabled || mPersistence.isCheckpointRequired()) && !mCheckpointScheduled) {
+            mCheckpointScheduled = true;
+            mAppCenterHandler.postDelayed(mCheckpointRunnable, CHECKPOINT_INTERVAL);
+        }
+    }
+
+    /**
+     * Notify the group listener that a log could not be persisted.
+     *
+     * @param groupState The group state.
+     * @param log        The log.
+     * @param exception  The persistence exception.
+     */
+    private void handlePersistenceFailure(@NonNull GroupState groupState, @NonNull Log log, @NonNull Persistence.PersistenceException exception) {
+        AppCenterLog.error(LOG_TAG, "Error persisting log", exception);
+        if (groupState.mListener != null) {
+            groupState.mListener.onBeforeSending(log);
+            groupState.mListener.onFailure(log, exception);
+        }
+    }
+
+    /**
+     * Increment pending log count after a log was persisted.
+     *
+     * @param groupState The group state.
+     * @param log        The persisted log.
+     * @param flags      The persistence flags of the log.
+     * @return false if the log is from a paused transmission target and was not counted, true otherwise.
+     */
+    private boolean countPersistedLog(@NonNull GroupState groupState, @NonNull Log log, int flags) {
+
+        /* Nothing more to do if the log is from a paused transmission target. */
+        Iterator<String> targetKeys = log.getTransmissionTargetTokens().iterator();
+        String targetKey = targetKeys.hasNext() ? PartAUtils.getTargetKey(targetKeys.next()) : null;
+        if (groupState.mPausedTargetKeys.contains(targetKey)) {
+            AppCenterLog.debug(LOG_TAG, "Transmission target ikey=" + targetKey + " is paused.");
+            return false;
+        }
+
+        /* Increment counters. */
+        groupState.mPendingLogCount++;
+        if (Flags.getPersistenceFlag(flags, false) == Flags.CRITICAL) {
+            groupState.mPendingCriticalLogCount++;
+        }
+        AppCenterLog.debug(LOG_TAG, "enqueue(" + groupState.mName + ") pendingLogCount=" + groupState.mPendingLogCount);
+        return true;
+    }
+
+    /**
+     * Schedule ingestion if we are enabled.
+     *
+     * @param groupState The group state.
+     */
+    private void checkPendingLogsIfEnabled(@NonNull GroupState groupState) {
+        if (mEnabled) {
+            checkPendingLogs(groupState);
+        } else {
+            AppCenterLog.debug(LOG_TAG, "Channel is temporarily disabled, log was saved to disk.");
         }
     }
 
@@ -714,6 +1766,11 @@ public class DefaultChannel implements Channel {
     void checkPendingLogs(@NonNull GroupState groupState) {
         AppCenterLog.debug(LOG_TAG, String.format("checkPendingLogs(%s) pendingLogCount=%s batchTimeInterval=%s",
                 groupState.mName, groupState.mPendingLogCount, groupState.mBatchTimeInterval));
+
+        /* Critical logs don't wait for the batch interval. */
+        if (groupState.mPendingCriticalLogCount > 0) {
+            triggerCriticalIngestion(groupState);
+        }
         Long batchTimeInterval = resolveTriggerInterval(groupState);
 
         /* Check if there is no need to trigger ingestion. */
@@ -753,12 +1810,12 @@ public class DefaultChannel implements Channel {
     @WorkerThread
     private Long resolveCustomTriggerInterval(@NonNull GroupState groupState) {
         long now = System.currentTimeMillis();
-        long startTimer = SharedPreferencesManager.getLong(START_TIMER_PREFIX + groupState.mName);
+        long startTimer = getStartTimer(groupState);
         if (groupState.mPendingLogCount > 0) {
 
             /* The timer isn't started or has invalid value (start time in the future), so start it and store the current time. */
             if (startTimer == 0 || startTimer > now) {
-                SharedPreferencesManager.putLong(START_TIMER_PREFIX + groupState.mName, now);
+                setStartTimer(groupState, now);
                 AppCenterLog.debug(LOG_TAG, "The timer value for " + groupState.mName + " has been saved.");
                 return groupState.mBatchTimeInterval;
             }
@@ -769,18 +1826,51 @@ public class DefaultChannel implements Channel {
 
             /* If the interval is over. */
             if (startTimer + groupState.mBatchTimeInterval < now) {
-                SharedPreferencesManager.remove(START_TIMER_PREFIX + groupState.mName);
+                setStartTimer(groupState, 0);
                 AppCenterLog.debug(LOG_TAG, "The timer for " + groupState.mName + " channel finished.");
             }
             return null;
         }
     }
 
+    /**
+     * Get the start time of the custom interval timer, read from preferences only the first time.
+     *
+     * @param groupState the group state.
+     * @return start time, 0 if timer not started.
+     */
+    private long getStartTimer(@NonNull GroupState groupState) {
+        if (!groupState.mStartTimerLoaded) {
+            groupState.mStartTimer = SharedPreferencesManager.getLong(groupState.mStartTimerKey);
+            groupState.mStartTimerLoaded = true;
+        }
+        return groupState.mStartTimer;
+    }
+
+    /**
+     * Set the start time of the custom interval timer, preferences are written only if the value changes.
+     *
+     * @param groupState the group state.
+     * @param startTimer start time, 0 to clear.
+     */
+    private void setStartTimer(@NonNull GroupState groupState, long startTimer) {
+        if (groupState.mStartTimerLoaded && groupState.mStartTimer == startTimer) {
+            return;
+        }
+        groupState.mStartTimer = startTimer;
+        groupState.mStartTimerLoaded = true;
+        if (startTimer == 0) {
+            SharedPreferencesManager.remove(groupState.mStartTimerKey);
+        } else {
+            SharedPreferencesManager.putLong(groupState.mStartTimerKey, startTimer);
+        }
+    }
+
     private Long resolveDefaultTriggerInterval(@NonNull GroupState groupState) {
-        if (groupState.mPendingLogCount >= groupState.mMaxLogsPerBatch) {
+        if (groupState.mPendingLogCount >= groupState.mEffectiveMaxLogsPerBatch) {
             return 0L;
         }
-        return groupState.mPendingLogCount > 0 ? groupState.mBatchTimeInterval : null;
+        return groupState.mPendingLogCount > 0 ? groupState.mEffectiveBatchTimeInterval : null;
     }
 
     @VisibleForTesting
@@ -817,6 +1907,66 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * A batch waiting to be sent with other batches of the same ingestion.
+     */
+    private static class OutgoingBatch {
+
+        /**
+         * Group state.
+         */
+        final GroupState mGroupState;
+
+        /**
+         * Logs.
+         */
+        final List<Log> mLogs;
+
+        /**
+         * Serialized logs, null if not available.
+         */
+        final List<String> mPayloads;
+
+        /**
+         * Batch identifier.
+         */
+        final String mBatchId;
+
+        OutgoingBatch(GroupState groupState, List<Log> logs, List<String> payloads, String batchId) {
+            mGroupState = groupState;
+            mLogs = logs;
+            mPayloads = payloads;
+            mBatchId = batchId;
+        }
+    }
+
+    /**
+     * A log waiting to be persisted.
+     */
+    private static class PendingLog {
+
+        /**
+         * Group state of the log.
+         */
+        final GroupState mGroupState;
+
+        /**
+         * The log.
+         */
+        final Log mLog;
+
+        /**
+         * Persistence flags.
+         */
+        final int mFlags;
+
+        PendingLog(GroupState groupState, Log log, int flags) {
+            mGroupState = groupState;
+            mLog = log;
+            mFlags = flags;
+        }
+    }
+
     /**
      * State for a specific log group.
      */
@@ -843,6 +1993,21 @@ public class DefaultChannel implements Channel {
          */
         final int mMaxParallelBatches;
 
+        /**
+         * Maximum log count per batch currently applied, can differ from {@link #mMaxLogsPerBatch} with adaptive batching.
+         */
+        int mEffectiveMaxLogsPerBatch;
+
+        /**
+         * Time to wait before 2 batches currently applied, in ms.
+         */
+        long mEffectiveBatchTimeInterval;
+
+        /**
+         * Maximum number of batches in parallel currently applied.
+         */
+        int mEffectiveMaxParallelBatches;
+
         /**
          * Batches being currently sent to ingestion.
          */
@@ -863,6 +2028,52 @@ public class DefaultChannel implements Channel {
          */
         int mPendingLogCount;
 
+        /**
+         * Pending critical log count not part of a batch yet.
+         */
+        int mPendingCriticalLogCount;
+
+        /**
+         * Identifier of the batch of critical logs being sent, null if none.
+         */
+        String mCriticalBatchId;
+
+        /**
+         * Policy applied when too many logs are waiting to be sent, one of the {@link BackpressurePolicy} constants.
+         */
+        int mBackpressurePolicy = BackpressurePolicy.NONE;
+
+        /**
+         * Number of logs waiting to be sent from which {@link #mBackpressurePolicy} applies.
+         */
+        int mMaxPendingLogs = Integer.MAX_VALUE;
+
+        /**
+         * Logs of this group coalesced and not persisted yet.
+         */
+        int mCoalescedLogCount;
+
+        /**
+         * Logs considered by {@link BackpressurePolicy#SAMPLE} since the policy was set.
+         */
+        int mSampledLogCount;
+
+        /**
+         * Logs dropped by backpressure policies since the channel was created.
+         */
+        long mDroppedLogCount;
+
+        /**
+         * Time at which logs of this group started being deferred by deferred uploads,
+         * from {@link SystemClock#elapsedRealtime()}, negative if not deferred.
+         */
+        long mDeferredSince = -1;
+
+        /**
+         * Time logs of this group were deferred since the channel was created, in ms.
+         */
+        long mTotalDeferredTime;
+
         /**
          * Is timer scheduled.
          */
@@ -878,6 +2089,21 @@ public class DefaultChannel implements Channel {
          */
         final Collection<String> mPausedTargetKeys = new HashSet<>();
 
+        /**
+         * Preferences key of the custom interval timer start time.
+         */
+        final String mStartTimerKey;
+
+        /**
+         * Custom interval timer start time, 0 if not started. Cached from preferences.
+         */
+        long mStartTimer;
+
+        /**
+         * Whether {@link #mStartTimer} was read from preferences yet.
+         */
+        boolean mStartTimerLoaded;
+
         /**
          * Runnable that triggers ingestion of this group data
          * and triggers itself in {@link #mBatchTimeInterval} ms.
@@ -903,9 +2129,13 @@ public class DefaultChannel implements Channel {
          */
         GroupState(String name, int maxLogsPerBatch, long batchTimeInterval, int maxParallelBatches, Ingestion ingestion, GroupListener listener) {
             mName = name;
+            mStartTimerKey = START_TIMER_PREFIX + name;
             mMaxLogsPerBatch = maxLogsPerBatch;
             mBatchTimeInterval = batchTimeInterval;
             mMaxParallelBatches = maxParallelBatches;
+            mEffectiveMaxLogsPerBatch = maxLogsPerBatch;
+            mEffectiveBatchTimeInterval = batchTimeInterval;
+            mEffectiveMaxParallelBatches = maxParallelBatches;
             mIngestion = ingestion;
             mListener = listener;
         }
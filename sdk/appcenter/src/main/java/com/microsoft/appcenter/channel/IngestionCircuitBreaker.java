@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Random;
+
+/**
+ * Circuit breaker of an ingestion endpoint. After a failure, groups sending logs through the ingestion
+ * stop sending for an exponential backoff, then a single batch probes whether the endpoint recovered.
+ * Other ingestion endpoints are not affected.
+ */
+class IngestionCircuitBreaker {
+
+    /**
+     * Logs are sent normally.
+     */
+    static final int CLOSED = 0;
+
+    /**
+     * Logs are not sent until the backoff elapses.
+     */
+    static final int OPEN = 1;
+
+    /**
+     * A single batch is sent to probe the endpoint.
+     */
+    static final int HALF_OPEN = 2;
+
+    /**
+     * Backoff after the first failure, in ms.
+     */
+    @VisibleForTesting
+    static final long INITIAL_BACKOFF = 60 * 1000;
+
+    /**
+     * Maximum backoff, in ms.
+     */
+    @VisibleForTesting
+    static final long MAX_BACKOFF = 30 * 60 * 1000;
+
+    /**
+     * Runnable moving the breaker to {@link #HALF_OPEN} when the backoff elapses.
+     */
+    final Runnable mProbeRunnable;
+
+    /**
+     * Random object for backoff randomness.
+     */
+    private final Random mRandom = new Random();
+
+    /**
+     * Current state.
+     */
+    private int mState = CLOSED;
+
+    /**
+     * Consecutive failures.
+     */
+    private int mFailureCount;
+
+    /**
+     * Whether the probing batch is being sent.
+     */
+    private boolean mProbing;
+
+    /**
+     * Init.
+     *
+     * @param probeRunnable runnable to post when the breaker opens.
+     */
+    IngestionCircuitBreaker(@NonNull Runnable probeRunnable) {
+        mProbeRunnable = probeRunnable;
+    }
+
+    /**
+     * Get state.
+     *
+     * @return one of {@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}.
+     */
+    int getState() {
+        return mState;
+    }
+
+    /**
+     * Check if a new batch can be sent.
+     *
+     * @return true if closed or if the probing batch can be sent.
+     */
+    boolean allowsBatch() {
+        return mState == CLOSED || (mState == HALF_OPEN && !mProbing);
+    }
+
+    /**
+     * Record that a batch is being sent.
+     */
+    void onBatchSent() {
+        if (mState == HALF_OPEN) {
+            mProbing = true;
+        }
+    }
+
+    /**
+     * Record a successful batch.
+     *
+     * @return true if the endpoint just recovered.
+     */
+    boolean onSuccess() {
+        if (mState != HALF_OPEN) {
+            return false;
+        }
+        reset();
+        return true;
+    }
+
+    /**
+     * Record a failed batch. Failures of batches sent before the breaker opened don't extend the backoff.
+     *
+     * @return the backoff in ms before probing the endpoint, or 0 if the breaker was already open.
+     */
+    long onFailure() {
+        if (mState == OPEN) {
+            return 0;
+        }
+        mState = OPEN;
+        mProbing = false;
+        long backoff = INITIAL_BACKOFF << Math.min(mFailureCount++, 16);
+        backoff = Math.min(backoff, MAX_BACKOFF) / 2;
+        return backoff + (long) (mRandom.nextDouble() * backoff);
+    }
+
+    /**
+     * Let a probing batch be sent.
+     */
+    void startProbing() {
+        mState = HALF_OPEN;
+        mProbing = false;
+    }
+
+    /**
+     * Close the breaker and forget failures.
+     */
+    void reset() {
+        mState = CLOSED;
+        mFailureCount = 0;
+        mProbing = false;
+    }
+}
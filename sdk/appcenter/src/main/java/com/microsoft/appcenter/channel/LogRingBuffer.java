@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.appcenter.ingestion.models.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of logs with their group, flags and filter, written by any number of threads
+ * and read by a single thread. Slots are allocated once so that offering a log does not allocate.
+ * Each slot has a sequence number telling whether it can be written or read at a given position.
+ */
+class LogRingBuffer {
+
+    /**
+     * Logs per slot.
+     */
+    private final Log[] mLogs;
+
+    /**
+     * Group names per slot.
+     */
+    private final String[] mGroupNames;
+
+    /**
+     * Flags per slot.
+     */
+    private final int[] mFlags;
+
+    /**
+     * Filters per slot.
+     */
+    private final Channel.EnqueueFilter[] mFilters;
+
+    /**
+     * Sequence number per slot.
+     */
+    private final AtomicLongArray mSequences;
+
+    /**
+     * Capacity - 1, capacity being a power of 2.
+     */
+    private final int mMask;
+
+    /**
+     * Next position to write.
+     */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * Next position to read, only accessed by the consumer thread.
+     */
+    private long mHead;
+
+    /**
+     * Init.
+     *
+     * @param capacity minimum capacity, rounded up to a power of 2.
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mLogs = new Log[size];
+        mGroupNames = new String[size];
+        mFlags = new int[size];
+        mFilters = new Channel.EnqueueFilter[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Get capacity.
+     *
+     * @return capacity.
+     */
+    int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Add a log, can be called from any thread.
+     *
+     * @param log       log.
+     * @param groupName group name.
+     * @param flags     flags.
+     * @param filter    optional filter.
+     * @return false if the buffer is full, true otherwise.
+     */
+    boolean offer(@NonNull Log log, @NonNull String groupName, int flags, @Nullable Channel.EnqueueFilter filter) {
+        long position = mTail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mMask);
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = mTail.get();
+            }
+        }
+        mLogs[index] = log;
+        mGroupNames[index] = groupName;
+        mFlags[index] = flags;
+        mFilters[index] = filter;
+
+        /* Publish the slot to the consumer. */
+        mSequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Read and remove logs in the order they were offered, must always be called from the same thread.
+     *
+     * @param consumer receives the logs.
+     * @param maxCount maximum number of logs to read.
+     * @return number of logs read.
+     */
+    int drain(@NonNull Consumer consumer, int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            int index = (int) (mHead & mMask);
+            if (mSequences.get(index) != mHead + 1) {
+                break;
+            }
+            Log log = mLogs[index];
+            String groupName = mGroupNames[index];
+            int flags = mFlags[index];
+            Channel.EnqueueFilter filter = mFilters[index];
+            mLogs[index] = null;
+            mGroupNames[index] = null;
+            mFilters[index] = null;
+
+            /* Release the slot to producers for the next lap. */
+            mSequences.set(index, mHead + mMask + 1);
+            mHead++;
+            count++;
+            consumer.accept(log, groupName, flags, filter);
+        }
+        return count;
+    }
+
+    /**
+     * Receives drained logs.
+     */
+    interface Consumer {
+
+        /**
+         * Called for each drained log.
+         *
+         * @param log       log.
+         * @param groupName group name.
+         * @param flags     flags.
+         * @param filter    optional filter.
+         */
+        void accept(@NonNull Log log, @NonNull String groupName, int flags, @Nullable Channel.EnqueueFilter filter);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+
+/**
+ * Tells whether sending logs now is cheap for the battery: the application is in foreground,
+ * the device is charging or the radio is already active because of other traffic.
+ */
+class UploadConditions {
+
+    /**
+     * Duration the radio stays active after a request, in ms.
+     */
+    @VisibleForTesting
+    static final long RADIO_TAIL_DURATION = 10 * 1000;
+
+    /**
+     * Any context.
+     */
+    private final Context mContext;
+
+    /**
+     * Network state helper.
+     */
+    private final NetworkStateHelper mNetworkStateHelper;
+
+    /**
+     * Whether the application is in foreground.
+     */
+    private boolean mForeground;
+
+    /**
+     * Time of the last request, from {@link SystemClock#elapsedRealtime()}.
+     */
+    private long mLastTrafficTime = -RADIO_TAIL_DURATION;
+
+    /**
+     * Init.
+     *
+     * @param context            any context.
+     * @param networkStateHelper network state helper.
+     */
+    UploadConditions(@NonNull Context context, @NonNull NetworkStateHelper networkStateHelper) {
+        mContext = context;
+        mNetworkStateHelper = networkStateHelper;
+    }
+
+    /**
+     * Set whether the application is in foreground.
+     *
+     * @param foreground true if in foreground.
+     */
+    void setForeground(boolean foreground) {
+        mForeground = foreground;
+    }
+
+    /**
+     * Record that a request is being sent, keeping the radio active for a while.
+     */
+    void onTraffic() {
+        mLastTrafficTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Check whether logs can be sent now.
+     *
+     * @return true if in foreground, charging or if the radio is active.
+     */
+    boolean isUploadAllowed() {
+        return mForeground
+                || SystemClock.elapsedRealtime() - mLastTrafficTime < RADIO_TAIL_DURATION
+                || mNetworkStateHelper.isDefaultNetworkActive()
+                || isCharging();
+    }
+
+    /**
+     * Check whether the device is plugged, using the sticky battery broadcast without registering a receiver.
+     *
+     * @return true if plugged or if the state cannot be read.
+     */
+    private boolean isCharging() {
+        try {
+            Intent batteryStatus = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            return batteryStatus != null && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot access battery state.", e);
+            return true;
+        }
+    }
+}
@@ -5,15 +5,18 @@
 
 package com.microsoft.appcenter.http;
 
-import android.os.AsyncTask;
+import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.HandlerUtils;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
@@ -78,12 +81,46 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
      */
     private final boolean mCompressionEnabled;
 
+    /**
+     * Executor running the calls.
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Indicates whether connections are kept alive for reuse after a call.
+     */
+    private final boolean mConnectionReuseEnabled;
+
     public DefaultHttpClient() {
         this(true);
     }
 
     public DefaultHttpClient(boolean compressionEnabled) {
+        this(compressionEnabled, HttpCallExecutor.getSharedInstance());
+    }
+
+    /**
+     * Init.
+     *
+     * @param compressionEnabled true to compress large request bodies.
+     * @param executor           executor running the calls, such as {@link HttpCallExecutor}.
+     */
+    public DefaultHttpClient(boolean compressionEnabled, @NonNull Executor executor) {
+        this(compressionEnabled, executor, false);
+    }
+
+    /**
+     * Init.
+     *
+     * @param compressionEnabled     true to compress large request bodies.
+     * @param executor               executor running the calls, such as {@link HttpCallExecutor}.
+     * @param connectionReuseEnabled true to keep connections alive once the response is read
+     *                               and limit concurrent connections per host.
+     */
+    public DefaultHttpClient(boolean compressionEnabled, @NonNull Executor executor, boolean connectionReuseEnabled) {
         mCompressionEnabled = compressionEnabled;
+        mExecutor = executor;
+        mConnectionReuseEnabled = connectionReuseEnabled;
     }
 
     @VisibleForTesting
@@ -93,24 +130,11 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
 
     @Override
     public ServiceCall callAsync(String url, String method, Map<String, String> headers, CallTemplate callTemplate, final ServiceCallback serviceCallback) {
-        final DefaultHttpClientCallTask task = new DefaultHttpClientCallTask(url, method, headers, callTemplate, serviceCallback, this, mCompressionEnabled);
+        final DefaultHttpClientCallTask task = new DefaultHttpClientCallTask(url, method, headers, callTemplate, serviceCallback, this, mCompressionEnabled, mConnectionReuseEnabled);
         try {
-            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-        } catch (final RejectedExecutionException e) {
-
-            /*
-             * When executor saturated (shared with app), we should use the retry mechanism
-             * rather than creating more threads to avoid putting too much pressure on the hosting app.
-             * Also we need to return the method before calling the listener,
-             * so we post the callback on handler to make sure of that.
-             */
-            HandlerUtils.runOnUiThread(new Runnable() {
-
-                @Override
-                public void run() {
-                    serviceCallback.onCallFailed(e);
-                }
-            });
+            task.executeOnExecutor(getCallExecutor(url, task, serviceCallback));
+        } catch (RejectedExecutionException e) {
+            failRejectedCall(serviceCallback, e);
         }
         return new ServiceCall() {
 
@@ -123,6 +147,68 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
         };
     }
 
+    /**
+     * Fail a call rejected by the executor.
+     *
+     * @param serviceCallback callback of the call.
+     * @param e               rejection.
+     */
+    private static void failRejectedCall(final ServiceCallback serviceCallback, final RejectedExecutionException e) {
+
+        /*
+         * When executor saturated, we should use the retry mechanism
+         * rather than creating more threads to avoid putting too much pressure on the hosting app.
+         * Also we need to return the method before calling the listener,
+         * so we post the callback on handler to make sure of that.
+         */
+        HandlerUtils.runOnUiThread(new Runnable() {
+
+            @Override
+            public void run() {
+                serviceCallback.onCallFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Get the executor of a call. When connection reuse is enabled, calls wait for a connection
+     * to the host to be available before they are submitted to {@link #mExecutor}.
+     *
+     * @param url             call URL.
+     * @param task            the call.
+     * @param serviceCallback callback of the call, failed if the call is rejected after waiting for a connection.
+     * @return executor.
+     */
+    private Executor getCallExecutor(String url, final DefaultHttpClientCallTask task, final ServiceCallback serviceCallback) {
+        if (!mConnectionReuseEnabled) {
+            return mExecutor;
+        }
+        final String host;
+        try {
+            host = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+
+            /* The call will fail with the same error. */
+            return mExecutor;
+        }
+        return new Executor() {
+
+            @Override
+            public void execute(@NonNull Runnable command) {
+                HostConnectionLimiter.getSharedInstance().execute(mExecutor, host, command, new HostConnectionLimiter.RejectedCallListener() {
+
+                    @Override
+                    public void onCallRejected(@NonNull RejectedExecutionException e) {
+
+                        /* The task will not run, cancel it so that it's no longer tracked. */
+                        task.cancel(true);
+                        failRejectedCall(serviceCallback, e);
+                    }
+                });
+            }
+        };
+    }
+
     @Override
     public synchronized void onStart(DefaultHttpClientCallTask task) {
         mTasks.add(task);
@@ -154,4 +240,14 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
     boolean isCompressionEnabled() {
         return mCompressionEnabled;
     }
+
+    @VisibleForTesting
+    Executor getExecutor() {
+        return mExecutor;
+    }
+
+    @VisibleForTesting
+    boolean isConnectionReuseEnabled() {
+        return mConnectionReuseEnabled;
+    }
 }
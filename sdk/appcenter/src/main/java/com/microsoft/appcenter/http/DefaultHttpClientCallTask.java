@@ -7,10 +7,14 @@ package com.microsoft.appcenter.http;
 
 import android.net.TrafficStats;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.microsoft.appcenter.utils.AppCenterLog;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
@@ -18,7 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
@@ -91,7 +97,13 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
 
     private final boolean mCompressionEnabled;
 
+    private final boolean mConnectionReuseEnabled;
+
     DefaultHttpClientCallTask(String url, String method, Map<String, String> headers, HttpClient.CallTemplate callTemplate, ServiceCallback serviceCallback, Tracker tracker, boolean compressionEnabled) {
+        this(url, method, headers, callTemplate, serviceCallback, tracker, compressionEnabled, false);
+    }
+
+    DefaultHttpClientCallTask(String url, String method, Map<String, String> headers, HttpClient.CallTemplate callTemplate, ServiceCallback serviceCallback, Tracker tracker, boolean compressionEnabled, boolean connectionReuseEnabled) {
         mUrl = url;
         mMethod = method;
         mHeaders = headers;
@@ -99,6 +111,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         mServiceCallback = serviceCallback;
         mTracker = tracker;
         mCompressionEnabled = compressionEnabled;
+        mConnectionReuseEnabled = connectionReuseEnabled;
     }
 
     private static InputStream getInputStream(HttpsURLConnection httpsURLConnection) throws IOException {
@@ -122,6 +135,37 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Compress payload with gzip.
+     */
+    @VisibleForTesting
+    static byte[] compressPayload(byte[] payload) throws IOException {
+        ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(payload.length);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBuffer);
+        gzipStream.write(payload);
+        gzipStream.close();
+        return gzipBuffer.toByteArray();
+    }
+
+    /**
+     * Write payload from call template to output stream with gzip, memory usage is bounded by buffers.
+     * The output stream is closed.
+     */
+    @VisibleForTesting
+    static void writeCompressedPayload(OutputStream out, HttpClient.StreamingCallTemplate callTemplate) throws IOException, JSONException {
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            Writer writer = new OutputStreamWriter(new GZIPOutputStream(out, WRITE_BUFFER_SIZE), CHARSET_NAME);
+            callTemplate.writeRequestBody(writer);
+
+            /* Closing writes the gzip trailer. */
+            writer.close();
+        } finally {
+            out.close();
+        }
+    }
+
     /**
      * Dump response stream to a string.
      */
@@ -158,6 +202,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
     private HttpResponse doHttpCall() throws Exception {
         URL url = new URL(mUrl);
         HttpsURLConnection httpsURLConnection = createHttpsConnection(url);
+        boolean responseConsumed = false;
         try {
 
             /* Build payload now if POST. */
@@ -166,12 +211,23 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             byte[] binaryPayload = null;
             boolean shouldCompress = false;
             boolean isPost = mMethod.equals(METHOD_POST);
+
+            /*
+             * Stream compressed payload if possible, unless we need the payload to log it
+             * or it is too small to be worth compressing.
+             */
+            boolean shouldStream = isPost && mCompressionEnabled
+                    && mCallTemplate instanceof HttpClient.StreamingCallTemplate
+                    && AppCenterLog.getLogLevel() > Log.VERBOSE
+                    && ((HttpClient.StreamingCallTemplate) mCallTemplate).getRequestBodyLength() >= MIN_GZIP_LENGTH;
             if (isPost && mCallTemplate != null) {
 
                 /* Get bytes, check if large enough to compress. */
-                payload = mCallTemplate.buildRequestBody();
-                binaryPayload = payload.getBytes(CHARSET_NAME);
-                shouldCompress = mCompressionEnabled && binaryPayload.length >= MIN_GZIP_LENGTH;
+                if (!shouldStream) {
+                    payload = mCallTemplate.buildRequestBody();
+                    binaryPayload = payload.getBytes(CHARSET_NAME);
+                    shouldCompress = mCompressionEnabled && binaryPayload.length >= MIN_GZIP_LENGTH;
+                }
 
                 /* If no content type specified, assume json. */
                 if (!mHeaders.containsKey(CONTENT_TYPE_KEY)) {
@@ -180,7 +236,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             }
 
             /* If about to compress, add corresponding header. */
-            if (shouldCompress) {
+            if (shouldCompress || shouldStream) {
                 mHeaders.put(CONTENT_ENCODING_KEY, CONTENT_ENCODING_VALUE);
             }
 
@@ -198,7 +254,14 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             }
 
             /* Send payload. */
-            if (binaryPayload != null) {
+            long startTime = SystemClock.elapsedRealtime();
+            if (shouldStream) {
+
+                /* Size is unknown until the end, use chunked transfer encoding. */
+                httpsURLConnection.setDoOutput(true);
+                httpsURLConnection.setChunkedStreamingMode(WRITE_BUFFER_SIZE);
+                writeCompressedPayload(httpsURLConnection.getOutputStream(), (HttpClient.StreamingCallTemplate) mCallTemplate);
+            } else if (binaryPayload != null) {
 
                 /* Log payload. */
                 if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
@@ -213,11 +276,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
 
                 /* Compress payload if large enough to be worth it. */
                 if (shouldCompress) {
-                    ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(binaryPayload.length);
-                    GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBuffer);
-                    gzipStream.write(binaryPayload);
-                    gzipStream.close();
-                    binaryPayload = gzipBuffer.toByteArray();
+                    binaryPayload = compressPayload(binaryPayload);
                 }
 
                 /* Send payload on the wire. */
@@ -239,6 +298,8 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             /* Read response. */
             int status = httpsURLConnection.getResponseCode();
             String response = readResponse(httpsURLConnection);
+            long callDuration = SystemClock.elapsedRealtime() - startTime;
+            responseConsumed = !isCancelled();
             if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
                 String contentType = httpsURLConnection.getHeaderField(CONTENT_TYPE_KEY);
                 String logPayload;
@@ -254,7 +315,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             for (Map.Entry<String, List<String>> header : httpsURLConnection.getHeaderFields().entrySet()) {
                 responseHeaders.put(header.getKey(), header.getValue().iterator().next());
             }
-            HttpResponse httpResponse = new HttpResponse(status, response, responseHeaders);
+            HttpResponse httpResponse = new HttpResponse(status, response, responseHeaders, callDuration);
 
             /* Accept all 2xx codes. */
             if (status >= 200 && status < 300) {
@@ -265,8 +326,13 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             throw new HttpException(httpResponse);
         } finally {
 
-            /* Release connection. */
-            httpsURLConnection.disconnect();
+            /*
+             * Release connection. When reuse is enabled and the response was fully read,
+             * closing the response stream already returned the connection to the keep-alive pool.
+             */
+            if (!mConnectionReuseEnabled || !responseConsumed) {
+                httpsURLConnection.disconnect();
+            }
         }
     }
 
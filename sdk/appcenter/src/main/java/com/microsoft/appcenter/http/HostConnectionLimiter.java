@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of concurrent connections to each host so that reused connections
+ * are not outnumbered by new connections opened when several groups flush together.
+ * Calls waiting for a connection are queued here, they don't hold a thread of the executor.
+ */
+class HostConnectionLimiter {
+
+    /**
+     * Default maximum number of concurrent connections per host.
+     */
+    @VisibleForTesting
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+
+    /**
+     * Shared instance.
+     */
+    private static HostConnectionLimiter sSharedInstance;
+
+    /**
+     * Number of calls submitted to the executor per host.
+     */
+    private final Map<String, Integer> mActiveCalls = new HashMap<>();
+
+    /**
+     * Calls waiting for a connection per host.
+     */
+    private final Map<String, Queue<WaitingCall>> mWaitingCalls = new HashMap<>();
+
+    /**
+     * Maximum number of concurrent connections per host.
+     */
+    private final int mMaxConnectionsPerHost;
+
+    @VisibleForTesting
+    HostConnectionLimiter(int maxConnectionsPerHost) {
+        mMaxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Get shared instance.
+     *
+     * @return shared instance.
+     */
+    static synchronized HostConnectionLimiter getSharedInstance() {
+        if (sSharedInstance == null) {
+            sSharedInstance = new HostConnectionLimiter(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        }
+        return sSharedInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void unsetInstance() {
+        sSharedInstance = null;
+    }
+
+    /**
+     * Run a call on the executor once a connection to the host can be opened.
+     * When a call completes, the thread runs the next call waiting for the same host.
+     *
+     * @param executor         executor running the calls.
+     * @param host             host name.
+     * @param call             the call.
+     * @param rejectedListener notified if the executor rejects the call after it waited for a connection.
+     * @throws RejectedExecutionException if the executor rejects the call without waiting.
+     */
+    void execute(@NonNull Executor executor, @NonNull String host, @NonNull Runnable call, @NonNull RejectedCallListener rejectedListener) {
+        synchronized (this) {
+            int activeCalls = getActiveCalls(host);
+            if (activeCalls >= mMaxConnectionsPerHost) {
+                Queue<WaitingCall> waitingCalls = mWaitingCalls.get(host);
+                if (waitingCalls == null) {
+                    waitingCalls = new LinkedList<>();
+                    mWaitingCalls.put(host, waitingCalls);
+                }
+                waitingCalls.add(new WaitingCall(executor, call, rejectedListener));
+                return;
+            }
+            mActiveCalls.put(host, activeCalls + 1);
+        }
+        try {
+            submit(executor, host, call);
+        } catch (RejectedExecutionException e) {
+            release(host);
+            throw e;
+        }
+    }
+
+    /**
+     * Submit a call holding a connection to the executor.
+     *
+     * @param executor executor running the calls.
+     * @param host     host name.
+     * @param call     the call.
+     * @throws RejectedExecutionException if the executor rejects the call.
+     */
+    private void submit(@NonNull Executor executor, @NonNull final String host, @NonNull final Runnable call) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                Runnable nextCall = call;
+                while (nextCall != null) {
+                    try {
+                        nextCall.run();
+                    } catch (RuntimeException e) {
+                        release(host);
+                        throw e;
+                    }
+                    nextCall = next(host);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the next call waiting for the host, or release the connection if none.
+     *
+     * @param host host name.
+     * @return next call or null.
+     */
+    private synchronized Runnable next(String host) {
+        WaitingCall waitingCall = pollWaitingCall(host);
+        if (waitingCall != null) {
+            return waitingCall.mCall;
+        }
+        decrementActiveCalls(host);
+        return null;
+    }
+
+    /**
+     * Release a connection without running the waiting calls on the current thread.
+     * If it was the last connection to the host, waiting calls are submitted to the executor
+     * as no other call would run them, calls the executor rejects are failed.
+     *
+     * @param host host name.
+     */
+    private void release(String host) {
+        synchronized (this) {
+            decrementActiveCalls(host);
+        }
+        while (true) {
+            WaitingCall waitingCall;
+            synchronized (this) {
+                if (getActiveCalls(host) > 0) {
+                    return;
+                }
+                waitingCall = pollWaitingCall(host);
+                if (waitingCall == null) {
+                    return;
+                }
+                mActiveCalls.put(host, 1);
+            }
+            try {
+                submit(waitingCall.mExecutor, host, waitingCall.mCall);
+                return;
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    decrementActiveCalls(host);
+                }
+                waitingCall.mRejectedListener.onCallRejected(e);
+            }
+        }
+    }
+
+    private WaitingCall pollWaitingCall(String host) {
+        Queue<WaitingCall> waitingCalls = mWaitingCalls.get(host);
+        if (waitingCalls == null) {
+            return null;
+        }
+        WaitingCall waitingCall = waitingCalls.poll();
+        if (waitingCalls.isEmpty()) {
+            mWaitingCalls.remove(host);
+        }
+        return waitingCall;
+    }
+
+    private int getActiveCalls(String host) {
+        Integer activeCalls = mActiveCalls.get(host);
+        return activeCalls == null ? 0 : activeCalls;
+    }
+
+    private void decrementActiveCalls(String host) {
+        int activeCalls = getActiveCalls(host) - 1;
+        if (activeCalls > 0) {
+            mActiveCalls.put(host, activeCalls);
+        } else {
+            mActiveCalls.remove(host);
+        }
+    }
+
+    /**
+     * Get the number of connections that can still be opened to the host without waiting.
+     *
+     * @param host host name.
+     * @return available connections.
+     */
+    @VisibleForTesting
+    synchronized int getAvailableConnections(@NonNull String host) {
+        return mMaxConnectionsPerHost - getActiveCalls(host);
+    }
+
+    /**
+     * Get the number of calls waiting for a connection to the host.
+     *
+     * @param host host name.
+     * @return waiting calls.
+     */
+    @VisibleForTesting
+    synchronized int getWaitingCalls(@NonNull String host) {
+        Queue<WaitingCall> waitingCalls = mWaitingCalls.get(host);
+        return waitingCalls == null ? 0 : waitingCalls.size();
+    }
+
+    /**
+     * Listener for calls rejected by the executor once a connection was available.
+     */
+    interface RejectedCallListener {
+
+        /**
+         * Called when the executor rejects the call, the call will not run.
+         *
+         * @param e rejection.
+         */
+        void onCallRejected(@NonNull RejectedExecutionException e);
+    }
+
+    /**
+     * Call waiting for a connection.
+     */
+    private static class WaitingCall {
+
+        /**
+         * Executor running the call.
+         */
+        final Executor mExecutor;
+
+        /**
+         * The call.
+         */
+        final Runnable mCall;
+
+        /**
+         * Notified if the executor rejects the call.
+         */
+        final RejectedCallListener mRejectedListener;
+
+        WaitingCall(Executor executor, Runnable call, RejectedCallListener rejectedListener) {
+            mExecutor = executor;
+            mCall = call;
+            mRejectedListener = rejectedListener;
+        }
+    }
+}
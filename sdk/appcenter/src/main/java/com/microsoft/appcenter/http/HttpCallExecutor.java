@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor dedicated to App Center HTTP calls so that they don't compete
+ * with the application tasks running on {@link android.os.AsyncTask#THREAD_POOL_EXECUTOR}.
+ * When both threads and queue are busy, calls are rejected with {@link RejectedExecutionException}
+ * which is handled as a recoverable error.
+ */
+public class HttpCallExecutor implements Executor {
+
+    /**
+     * Default maximum number of concurrent calls.
+     */
+    @VisibleForTesting
+    static final int DEFAULT_MAX_CONCURRENT_CALLS = 4;
+
+    /**
+     * Default maximum number of calls waiting for a thread.
+     */
+    @VisibleForTesting
+    static final int DEFAULT_MAX_QUEUED_CALLS = 64;
+
+    /**
+     * Idle threads are terminated after this time in milliseconds.
+     */
+    private static final long KEEP_ALIVE_TIME = 30000;
+
+    /**
+     * Thread name prefix.
+     */
+    private static final String THREAD_NAME_PREFIX = "AppCenter.Http-";
+
+    /**
+     * Shared instance.
+     */
+    private static HttpCallExecutor sSharedInstance;
+
+    /**
+     * Thread pool.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Number of calls currently running.
+     */
+    private final AtomicInteger mActiveCallCount = new AtomicInteger();
+
+    /**
+     * Number of calls that started running.
+     */
+    private final AtomicLong mStartedCallCount = new AtomicLong();
+
+    /**
+     * Sum of the time calls waited in queue, in milliseconds.
+     */
+    private final AtomicLong mTotalWaitTime = new AtomicLong();
+
+    /**
+     * Init.
+     *
+     * @param maxConcurrentCalls maximum number of concurrent calls.
+     * @param maxQueuedCalls     maximum number of calls waiting for a thread.
+     * @param threadPriority     Linux priority of the threads, see {@link Process#setThreadPriority(int)}.
+     */
+    public HttpCallExecutor(int maxConcurrentCalls, int maxQueuedCalls, final int threadPriority) {
+        mExecutor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(maxQueuedCalls), new ThreadFactory() {
+
+            private final AtomicInteger mThreadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(threadPriority);
+                        runnable.run();
+                    }
+                }, THREAD_NAME_PREFIX + mThreadCount.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get shared instance, running calls on background priority threads.
+     *
+     * @return shared instance.
+     */
+    public static synchronized HttpCallExecutor getSharedInstance() {
+        if (sSharedInstance == null) {
+            sSharedInstance = new HttpCallExecutor(DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_MAX_QUEUED_CALLS, Process.THREAD_PRIORITY_BACKGROUND);
+        }
+        return sSharedInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void unsetInstance() {
+        sSharedInstance = null;
+    }
+
+    @Override
+    public void execute(@NonNull final Runnable command) {
+        final long queuedTime = SystemClock.elapsedRealtime();
+        mExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                mTotalWaitTime.addAndGet(SystemClock.elapsedRealtime() - queuedTime);
+                mStartedCallCount.incrementAndGet();
+                mActiveCallCount.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    mActiveCallCount.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the number of calls waiting for a thread.
+     *
+     * @return queue depth.
+     */
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * Get the number of calls currently running.
+     *
+     * @return active call count.
+     */
+    public int getActiveCallCount() {
+        return mActiveCallCount.get();
+    }
+
+    /**
+     * Get the average time calls waited for a thread.
+     *
+     * @return average wait time in milliseconds, 0 if no call started yet.
+     */
+    public long getAverageWaitTime() {
+        long startedCallCount = mStartedCallCount.get();
+        return startedCallCount == 0 ? 0 : mTotalWaitTime.get() / startedCallCount;
+    }
+}
@@ -8,6 +8,8 @@ package com.microsoft.appcenter.http;
 import org.json.JSONException;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.Map;
 
@@ -50,6 +52,30 @@ public interface HttpClient extends Closeable {
         void onBeforeCalling(URL url, Map<String, String> headers);
     }
 
+    /**
+     * Call callbacks that can also write the request body as a stream,
+     * so that a compressed body is never fully held in memory.
+     */
+    interface StreamingCallTemplate extends CallTemplate {
+
+        /**
+         * Called when the method is POST to write request body, must write the same content as {@link #buildRequestBody()}.
+         *
+         * @param writer request body writer.
+         * @throws JSONException callback can throw this to make the call fail if a JSON error occurs.
+         * @throws IOException   if writing fails.
+         */
+        void writeRequestBody(Writer writer) throws JSONException, IOException;
+
+        /**
+         * Get the number of characters of the request body without building it.
+         * The body is at least as long once encoded in UTF-8.
+         *
+         * @return request body length, or -1 if it cannot be known without serializing logs.
+         */
+        long getRequestBodyLength();
+    }
+
     /**
      * Make this client active again after closing.
      */
@@ -30,6 +30,11 @@ public class HttpResponse {
      */
     private final Map<String, String> headers;
 
+    /**
+     * Duration of the HTTP attempt that got this response, in ms.
+     */
+    private final long callDuration;
+
     /**
      * Init with empty response body.
      *
@@ -57,9 +62,22 @@ public class HttpResponse {
      * @param headers HTTP responseHeaders.
      */
     public HttpResponse(int status, @NonNull String payload, @NonNull Map<String, String> headers) {
+        this(status, payload, headers, -1);
+    }
+
+    /**
+     * Init.
+     *
+     * @param status       HTTP status code.
+     * @param payload      HTTP payload.
+     * @param headers      HTTP responseHeaders.
+     * @param callDuration duration in ms from sending the request to reading the response, -1 if unknown.
+     */
+    public HttpResponse(int status, @NonNull String payload, @NonNull Map<String, String> headers, long callDuration) {
         this.payload = payload;
         this.statusCode = status;
         this.headers = headers;
+        this.callDuration = callDuration;
     }
 
     /**
@@ -91,6 +109,16 @@ public class HttpResponse {
         return headers;
     }
 
+    /**
+     * Get the duration of the HTTP attempt that got this response, from sending the request to reading the response.
+     * It does not include time spent waiting for a thread, a connection or a retry.
+     *
+     * @return duration in ms, -1 if unknown.
+     */
+    public long getCallDuration() {
+        return callDuration;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
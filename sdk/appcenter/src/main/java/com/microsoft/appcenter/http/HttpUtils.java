@@ -27,6 +27,7 @@ import java.util.regex.Pattern;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
 
 /**
  * HTTP utilities.
@@ -58,6 +59,12 @@ public class HttpUtils {
      */
     public static final int READ_TIMEOUT = 10000;
 
+    /**
+     * Socket factory forcing TLS 1.2, shared so that its TLS session cache lets connections resume sessions
+     * and so that pooled connections, which are keyed by socket factory, can be reused.
+     */
+    private static SSLSocketFactory sTLS1_2SocketFactory;
+
     /**
      * Maximum characters to be displayed in a log for application secret.
      */
@@ -193,18 +200,33 @@ public class HttpUtils {
     }
 
     public static HttpClient createHttpClient(@NonNull Context context, boolean compressionEnabled) {
+        return createHttpClient(context, compressionEnabled, false);
+    }
+
+    public static HttpClient createHttpClient(@NonNull Context context, boolean compressionEnabled, boolean connectionReuseEnabled) {
 
         /* Retryer should be applied last to avoid retries in offline. */
-        return new HttpClientRetryer(createHttpClientWithoutRetryer(context, compressionEnabled));
+        return new HttpClientRetryer(createHttpClientWithoutRetryer(context, compressionEnabled, connectionReuseEnabled));
     }
 
     public static HttpClient createHttpClientWithoutRetryer(@NonNull Context context, boolean compressionEnabled) {
-        HttpClient httpClient = new DefaultHttpClient(compressionEnabled);
+        return createHttpClientWithoutRetryer(context, compressionEnabled, false);
+    }
+
+    public static HttpClient createHttpClientWithoutRetryer(@NonNull Context context, boolean compressionEnabled, boolean connectionReuseEnabled) {
+        HttpClient httpClient = new DefaultHttpClient(compressionEnabled, HttpCallExecutor.getSharedInstance(), connectionReuseEnabled);
         NetworkStateHelper networkStateHelper = NetworkStateHelper.getSharedInstance(context);
         httpClient = new HttpClientNetworkStateHandler(httpClient, networkStateHelper);
         return httpClient;
     }
 
+    private static synchronized SSLSocketFactory getTLS1_2SocketFactory() {
+        if (sTLS1_2SocketFactory == null) {
+            sTLS1_2SocketFactory = new TLS1_2SocketFactory();
+        }
+        return sTLS1_2SocketFactory;
+    }
+
     /**
      * Create HTTPS connection.
      *
@@ -239,7 +261,7 @@ public class HttpUtils {
          * See https://github.com/square/okhttp/issues/2372#issuecomment-244807676
          */
         if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
-            httpsURLConnection.setSSLSocketFactory(new TLS1_2SocketFactory());
+            httpsURLConnection.setSSLSocketFactory(getTLS1_2SocketFactory());
         }
 
         /* Configure connection timeouts. */
@@ -12,13 +12,16 @@ import com.microsoft.appcenter.http.AbstractAppCallTemplate;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -77,7 +80,7 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
     /**
      * Inner class is used to be able to mock System.currentTimeMillis, does not work if using anonymous inner class...
      */
-    private static class IngestionCallTemplate extends AbstractAppCallTemplate {
+    private static class IngestionCallTemplate extends AbstractAppCallTemplate implements HttpClient.StreamingCallTemplate {
 
         private final LogSerializer mLogSerializer;
 
@@ -94,5 +97,36 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
             /* Serialize payload. */
             return mLogSerializer.serializeContainer(mLogContainer);
         }
+
+        @Override
+        public void writeRequestBody(Writer writer) throws JSONException, IOException {
+
+            /* Write the same JSON as the container serialization, one log at a time. */
+            List<String> payloads = mLogContainer.getPayloads();
+            List<Log> logs = mLogContainer.getLogs();
+            writer.write("{\"logs\":[");
+            for (int i = 0; i < logs.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(payloads != null ? payloads.get(i) : mLogSerializer.serializeLog(logs.get(i)));
+            }
+            writer.write("]}");
+        }
+
+        @Override
+        public long getRequestBodyLength() {
+            List<String> payloads = mLogContainer.getPayloads();
+            if (payloads == null) {
+                return -1;
+            }
+
+            /* Envelope and separators. */
+            long length = "{\"logs\":[]}".length() + Math.max(0, payloads.size() - 1);
+            for (String payload : payloads) {
+                length += payload.length();
+            }
+            return length;
+        }
     }
 }
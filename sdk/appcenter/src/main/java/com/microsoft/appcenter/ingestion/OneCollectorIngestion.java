@@ -24,6 +24,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -171,7 +172,7 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
     /**
      * Call template implementation for One Collector.
      */
-    private static class IngestionCallTemplate implements HttpClient.CallTemplate {
+    private static class IngestionCallTemplate implements HttpClient.StreamingCallTemplate {
 
         /**
          * Log serializer.
@@ -194,8 +195,15 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
         @Override
         public String buildRequestBody() throws JSONException {
 
-            /* Serialize payload. */
+            /* Serialize payload, unless logs are already serialized. */
             StringBuilder jsonStream = new StringBuilder();
+            List<String> payloads = mLogContainer.getPayloads();
+            if (payloads != null) {
+                for (String payload : payloads) {
+                    jsonStream.append(payload).append('\n');
+                }
+                return jsonStream.toString();
+            }
             for (Log log : mLogContainer.getLogs()) {
                 jsonStream.append(mLogSerializer.serializeLog(log));
 
@@ -205,6 +213,31 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
             return jsonStream.toString();
         }
 
+        @Override
+        public void writeRequestBody(Writer writer) throws JSONException, IOException {
+            List<String> payloads = mLogContainer.getPayloads();
+            List<Log> logs = mLogContainer.getLogs();
+            for (int i = 0; i < logs.size(); i++) {
+                writer.write(payloads != null ? payloads.get(i) : mLogSerializer.serializeLog(logs.get(i)));
+                writer.write('\n');
+            }
+        }
+
+        @Override
+        public long getRequestBodyLength() {
+            List<String> payloads = mLogContainer.getPayloads();
+            if (payloads == null) {
+                return -1;
+            }
+
+            /* Each log is followed by a new line. */
+            long length = payloads.size();
+            for (String payload : payloads) {
+                length += payload.length();
+            }
+            return length;
+        }
+
         @Override
         public void onBeforeCalling(URL url, Map<String, String> headers) {
             if (AppCenterLog.getLogLevel() <= VERBOSE) {
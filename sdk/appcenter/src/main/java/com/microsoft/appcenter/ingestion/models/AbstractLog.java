@@ -6,15 +6,20 @@
 package com.microsoft.appcenter.ingestion.models;
 
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
@@ -191,6 +196,59 @@ public abstract class AbstractLog implements Log {
         }
     }
 
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#write(JsonWriter)}.
+     */
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        JsonStreamUtils.write(writer, TYPE, getType());
+        writer.name(TIMESTAMP).value(JSONDateUtils.toString(getTimestamp()));
+        JsonStreamUtils.write(writer, SID, getSid());
+        JsonStreamUtils.write(writer, DISTRIBUTION_GROUP_ID, getDistributionGroupId());
+        JsonStreamUtils.write(writer, USER_ID, getUserId());
+        if (getDevice() != null) {
+            writer.name(DEVICE);
+            JsonStreamUtils.writeModel(writer, getDevice());
+        }
+    }
+
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#readProperty(String, JsonReader)}.
+     */
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case TYPE:
+                if (!getType().equals(JsonStreamUtils.readString(reader))) {
+                    throw new JSONException("Invalid type");
+                }
+                return true;
+
+            case TIMESTAMP:
+                setTimestamp(JsonStreamUtils.readDate(reader));
+                return true;
+
+            case SID:
+                setSid(JsonStreamUtils.readUUID(reader));
+                return true;
+
+            case DISTRIBUTION_GROUP_ID:
+                setDistributionGroupId(JsonStreamUtils.readString(reader));
+                return true;
+
+            case USER_ID:
+                setUserId(JsonStreamUtils.readString(reader));
+                return true;
+
+            case DEVICE:
+                Device device = new Device();
+                JsonStreamUtils.readModel(reader, device);
+                setDevice(device);
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @SuppressWarnings("EqualsReplaceableByObjectsCall")
     @Override
     public boolean equals(Object o) {
@@ -5,16 +5,22 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * Device characteristic log.
  */
-public class Device extends WrapperSdk {
+public class Device extends WrapperSdk implements StreamingModel {
 
     private static final String SDK_NAME = "sdkName";
 
@@ -460,6 +466,99 @@ public class Device extends WrapperSdk {
         JSONUtils.write(writer, APP_NAMESPACE, getAppNamespace());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        writer.name(SDK_NAME).value(getSdkName());
+        writer.name(SDK_VERSION).value(getSdkVersion());
+        writer.name(MODEL).value(getModel());
+        writer.name(OEM_NAME).value(getOemName());
+        writer.name(OS_NAME).value(getOsName());
+        writer.name(OS_VERSION).value(getOsVersion());
+        JsonStreamUtils.write(writer, OS_BUILD, getOsBuild());
+        JsonStreamUtils.write(writer, OS_API_LEVEL, getOsApiLevel());
+        writer.name(LOCALE).value(getLocale());
+        writer.name(TIME_ZONE_OFFSET).value(getTimeZoneOffset());
+        writer.name(SCREEN_SIZE).value(getScreenSize());
+        writer.name(APP_VERSION).value(getAppVersion());
+        JsonStreamUtils.write(writer, CARRIER_NAME, getCarrierName());
+        JsonStreamUtils.write(writer, CARRIER_COUNTRY, getCarrierCountry());
+        writer.name(APP_BUILD).value(getAppBuild());
+        JsonStreamUtils.write(writer, APP_NAMESPACE, getAppNamespace());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case SDK_NAME:
+                setSdkName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case SDK_VERSION:
+                setSdkVersion(JsonStreamUtils.readString(reader));
+                return true;
+
+            case MODEL:
+                setModel(JsonStreamUtils.readString(reader));
+                return true;
+
+            case OEM_NAME:
+                setOemName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case OS_NAME:
+                setOsName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case OS_VERSION:
+                setOsVersion(JsonStreamUtils.readString(reader));
+                return true;
+
+            case OS_BUILD:
+                setOsBuild(JsonStreamUtils.readString(reader));
+                return true;
+
+            case OS_API_LEVEL:
+                setOsApiLevel(JsonStreamUtils.readInteger(reader));
+                return true;
+
+            case LOCALE:
+                setLocale(JsonStreamUtils.readString(reader));
+                return true;
+
+            case TIME_ZONE_OFFSET:
+                setTimeZoneOffset(JsonStreamUtils.readInteger(reader));
+                return true;
+
+            case SCREEN_SIZE:
+                setScreenSize(JsonStreamUtils.readString(reader));
+                return true;
+
+            case APP_VERSION:
+                setAppVersion(JsonStreamUtils.readString(reader));
+                return true;
+
+            case CARRIER_NAME:
+                setCarrierName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case CARRIER_COUNTRY:
+                setCarrierCountry(JsonStreamUtils.readString(reader));
+                return true;
+
+            case APP_BUILD:
+                setAppBuild(JsonStreamUtils.readString(reader));
+                return true;
+
+            case APP_NAMESPACE:
+                setAppNamespace(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @Override
     @SuppressWarnings({"SimplifiableIfStatement", "EqualsReplaceableByObjectsCall"})
     public boolean equals(Object o) {
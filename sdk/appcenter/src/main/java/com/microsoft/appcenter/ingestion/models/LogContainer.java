@@ -17,6 +17,12 @@ public class LogContainer {
      */
     private List<Log> logs;
 
+    /**
+     * The logs in serialized form, in the same order as {@link #logs}, or null to serialize logs.
+     * This is the stored copy of the same logs so it's not part of equality.
+     */
+    private List<String> payloads;
+
     /**
      * Get the logs value.
      *
@@ -35,6 +41,24 @@ public class LogContainer {
         this.logs = logs;
     }
 
+    /**
+     * Get the serialized logs.
+     *
+     * @return the serialized logs, or null if logs must be serialized.
+     */
+    public List<String> getPayloads() {
+        return this.payloads;
+    }
+
+    /**
+     * Set the serialized logs, used instead of serializing logs.
+     *
+     * @param payloads the serialized logs in the same order as logs.
+     */
+    public void setPayloads(List<String> payloads) {
+        this.payloads = payloads;
+    }
+
     @SuppressWarnings("EqualsReplaceableByObjectsCall")
     @Override
     public boolean equals(Object o) {
@@ -5,12 +5,17 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -55,6 +60,21 @@ public abstract class LogWithProperties extends AbstractLog {
         JSONUtils.writeMap(writer, PROPERTIES, getProperties());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.writeMap(writer, PROPERTIES, getProperties());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        if (PROPERTIES.equals(name)) {
+            setProperties(JsonStreamUtils.readMap(reader));
+            return true;
+        }
+        return super.readProperty(name, reader);
+    }
+
     @SuppressWarnings("EqualsReplaceableByObjectsCall")
     @Override
     public boolean equals(Object o) {
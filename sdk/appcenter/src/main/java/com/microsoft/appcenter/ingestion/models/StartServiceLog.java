@@ -5,19 +5,24 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
  * Describe a AppCenter.start call from the SDK.
  */
 @SuppressWarnings("RedundantSuppression")
-public class StartServiceLog extends AbstractLog {
+public class StartServiceLog extends AbstractLog implements StreamingModel {
 
     /**
      * Log type.
@@ -83,6 +88,29 @@ public class StartServiceLog extends AbstractLog {
         JSONUtils.write(writer, IS_ONE_COLLECTOR_ENABLED, isOneCollectorEnabled());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        JsonStreamUtils.writeStringArray(writer, SERVICES, getServices());
+        JsonStreamUtils.write(writer, IS_ONE_COLLECTOR_ENABLED, isOneCollectorEnabled());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case SERVICES:
+                setServices(JsonStreamUtils.readStringArray(reader));
+                return true;
+
+            case IS_ONE_COLLECTOR_ENABLED:
+                oneCollectorEnabled(JsonStreamUtils.readBoolean(reader));
+                return true;
+
+            default:
+                return super.readProperty(name, reader);
+        }
+    }
+
     @Override
     @SuppressWarnings({"EqualsReplaceableByObjectsCall", "RedundantSuppression"})
     public boolean equals(Object o) {
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models;
+
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+
+/**
+ * Model that can also be read and written with a streaming JSON reader or writer, without building a tree.
+ * Only classes that handle all of their properties declare this interface.
+ */
+public interface StreamingModel extends Model {
+
+    /**
+     * Write the properties of this model, the enclosing object is already started.
+     *
+     * @param writer JSON writer.
+     * @throws IOException   if the JSON cannot be written.
+     * @throws JSONException if a property cannot be converted.
+     */
+    void write(JsonWriter writer) throws IOException, JSONException;
+
+    /**
+     * Read a property of this model.
+     *
+     * @param name   property name.
+     * @param reader JSON reader positioned on the property value.
+     * @return true if the value was consumed, false if the property is unknown and must be skipped by the caller.
+     * @throws IOException   if the JSON cannot be read.
+     * @throws JSONException if the value is invalid.
+     */
+    boolean readProperty(String name, JsonReader reader) throws IOException, JSONException;
+}
@@ -5,12 +5,18 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 public class WrapperSdk implements Model {
 
     private static final String WRAPPER_SDK_VERSION = "wrapperSdkVersion";
@@ -188,6 +194,52 @@ public class WrapperSdk implements Model {
         JSONUtils.write(writer, LIVE_UPDATE_PACKAGE_HASH, getLiveUpdatePackageHash());
     }
 
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#write(JsonWriter)}.
+     */
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        JsonStreamUtils.write(writer, WRAPPER_SDK_VERSION, getWrapperSdkVersion());
+        JsonStreamUtils.write(writer, WRAPPER_SDK_NAME, getWrapperSdkName());
+        JsonStreamUtils.write(writer, WRAPPER_RUNTIME_VERSION, getWrapperRuntimeVersion());
+        JsonStreamUtils.write(writer, LIVE_UPDATE_RELEASE_LABEL, getLiveUpdateReleaseLabel());
+        JsonStreamUtils.write(writer, LIVE_UPDATE_DEPLOYMENT_KEY, getLiveUpdateDeploymentKey());
+        JsonStreamUtils.write(writer, LIVE_UPDATE_PACKAGE_HASH, getLiveUpdatePackageHash());
+    }
+
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#readProperty(String, JsonReader)}.
+     */
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case WRAPPER_SDK_VERSION:
+                setWrapperSdkVersion(JsonStreamUtils.readString(reader));
+                return true;
+
+            case WRAPPER_SDK_NAME:
+                setWrapperSdkName(JsonStreamUtils.readString(reader));
+                return true;
+
+            case WRAPPER_RUNTIME_VERSION:
+                setWrapperRuntimeVersion(JsonStreamUtils.readString(reader));
+                return true;
+
+            case LIVE_UPDATE_RELEASE_LABEL:
+                setLiveUpdateReleaseLabel(JsonStreamUtils.readString(reader));
+                return true;
+
+            case LIVE_UPDATE_DEPLOYMENT_KEY:
+                setLiveUpdateDeploymentKey(JsonStreamUtils.readString(reader));
+                return true;
+
+            case LIVE_UPDATE_PACKAGE_HASH:
+                setLiveUpdatePackageHash(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @Override
     @SuppressWarnings({"SimplifiableIfStatement", "EqualsReplaceableByObjectsCall"})
     public boolean equals(Object o) {
@@ -7,6 +7,7 @@ package com.microsoft.appcenter.ingestion.models.json;
 
 import androidx.annotation.NonNull;
 
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
@@ -26,7 +27,7 @@ import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
 
 public class DefaultLogSerializer implements LogSerializer {
 
-    private static final String LOGS = "logs";
+    static final String LOGS = "logs";
 
     private final Map<String, LogFactory> mLogFactories = new HashMap<>();
 
@@ -43,13 +44,18 @@ public class DefaultLogSerializer implements LogSerializer {
         if (type == null) {
             type = object.getString(TYPE);
         }
+        Log log = createLog(type);
+        log.read(object);
+        return log;
+    }
+
+    @NonNull
+    Log createLog(String type) throws JSONException {
         LogFactory logFactory = mLogFactories.get(type);
         if (logFactory == null) {
             throw new JSONException("Unknown log type: " + type);
         }
-        Log log = logFactory.create();
-        log.read(object);
-        return log;
+        return logFactory.create();
     }
 
     @NonNull
@@ -64,6 +70,24 @@ public class DefaultLogSerializer implements LogSerializer {
         return readLog(new JSONObject(json), type);
     }
 
+    @NonNull
+    @Override
+    public String serializeDevice(@NonNull Device device) throws JSONException {
+        JSONStringer writer = new JSONStringer();
+        writer.object();
+        device.write(writer);
+        writer.endObject();
+        return writer.toString();
+    }
+
+    @NonNull
+    @Override
+    public Device deserializeDevice(@NonNull String json) throws JSONException {
+        Device device = new Device();
+        device.read(new JSONObject(json));
+        return device;
+    }
+
     @Override
     public Collection<CommonSchemaLog> toCommonSchemaLog(@NonNull Log log) {
         return mLogFactories.get(log.getType()).toCommonSchemaLogs(log);
@@ -73,6 +97,26 @@ public class DefaultLogSerializer implements LogSerializer {
     @Override
     public String serializeContainer(@NonNull LogContainer logContainer) throws JSONException {
 
+        /* Logs are already serialized, only write the envelope. */
+        List<String> payloads = logContainer.getPayloads();
+        if (payloads != null) {
+
+            /* The length is known, allocate once: envelope, payloads and separators. */
+            int length = LOGS.length() + 8 + payloads.size();
+            for (String payload : payloads) {
+                length += payload.length();
+            }
+            StringBuilder builder = new StringBuilder(length);
+            builder.append("{\"").append(LOGS).append("\":[");
+            for (int i = 0; i < payloads.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(payloads.get(i));
+            }
+            return builder.append("]}").toString();
+        }
+
         /* Init JSON serializer. */
         JSONStringer writer = new JSONStringer();
 
@@ -18,11 +18,35 @@ import java.util.TimeZone;
  * Utility to convert date to string and vice versa to use in JSON payloads.
  * The date format is using ISO 8601 and includes date and time to milliseconds accuracy.
  * It also always uses UTC timezone.
+ * <p>
+ * Dates between {@link #MIN_FAST_TIME} and {@link #MAX_FAST_TIME} in the exact format are converted
+ * without {@link SimpleDateFormat}, which allocates a calendar and formats with locale support on every call.
  */
 public final class JSONDateUtils {
 
     /**
-     * Date formatter.
+     * Length of a date in the exact format.
+     */
+    private static final int DATE_LENGTH = 24;
+
+    /**
+     * Milliseconds in a day.
+     */
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    /**
+     * 1900-01-01T00:00:00.000Z, earlier dates are converted by {@link SimpleDateFormat}
+     * which switches to the Julian calendar before 1582.
+     */
+    private static final long MIN_FAST_TIME = -2208988800000L;
+
+    /**
+     * 10000-01-01T00:00:00.000Z excluded, later years have more than 4 digits.
+     */
+    private static final long MAX_FAST_TIME = 253402300800000L;
+
+    /**
+     * Date formatter, used for dates outside of the fast path.
      */
     private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
 
@@ -55,7 +79,43 @@ public final class JSONDateUtils {
      */
     public static String toString(Date date) throws JSONException {
         checkNull(date);
-        return DATE_FORMAT.get().format(date);
+        long time = date.getTime();
+        if (time < MIN_FAST_TIME || time >= MAX_FAST_TIME) {
+            return DATE_FORMAT.get().format(date);
+        }
+        long days = time / MILLIS_PER_DAY;
+        int millisOfDay = (int) (time % MILLIS_PER_DAY);
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+
+        /* Civil date from days since epoch, in a proleptic Gregorian calendar with eras of 400 years starting in March. */
+        long shiftedDays = days + 719468;
+        int dayOfEra = (int) (shiftedDays % 146097);
+        long era = shiftedDays / 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (era * 400) + yearOfEra + (month <= 2 ? 1 : 0);
+        char[] chars = new char[DATE_LENGTH];
+        writeDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, day, 2);
+        chars[10] = 'T';
+        writeDigits(chars, 11, millisOfDay / 3600000, 2);
+        chars[13] = ':';
+        writeDigits(chars, 14, millisOfDay / 60000 % 60, 2);
+        chars[16] = ':';
+        writeDigits(chars, 17, millisOfDay / 1000 % 60, 2);
+        chars[19] = '.';
+        writeDigits(chars, 20, millisOfDay % 1000, 3);
+        chars[23] = 'Z';
+        return new String(chars);
     }
 
     /**
@@ -67,10 +127,81 @@ public final class JSONDateUtils {
      */
     public static Date toDate(String date) throws JSONException {
         checkNull(date);
+        long time = parseExactFormat(date);
+        if (time != Long.MIN_VALUE) {
+            return new Date(time);
+        }
         try {
             return DATE_FORMAT.get().parse(date);
         } catch (ParseException e) {
             throw new JSONException(e.getMessage());
         }
     }
+
+    /**
+     * Parse a date in the exact format with valid fields.
+     *
+     * @param date date.
+     * @return time in milliseconds, or {@link Long#MIN_VALUE} if {@link SimpleDateFormat} must be used.
+     */
+    private static long parseExactFormat(String date) {
+        if (date.length() != DATE_LENGTH || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T' ||
+                date.charAt(13) != ':' || date.charAt(16) != ':' || date.charAt(19) != '.' || date.charAt(23) != 'Z') {
+            return Long.MIN_VALUE;
+        }
+        int year = readDigits(date, 0, 4);
+        int month = readDigits(date, 5, 2);
+        int day = readDigits(date, 8, 2);
+        int hour = readDigits(date, 11, 2);
+        int minute = readDigits(date, 14, 2);
+        int second = readDigits(date, 17, 2);
+        int millis = readDigits(date, 20, 3);
+        if (year < 1900 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month) ||
+                hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return Long.MIN_VALUE;
+        }
+
+        /* Days since epoch from civil date, in a proleptic Gregorian calendar with years starting in March. */
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = shiftedYear / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097L + dayOfEra - 719468;
+        return days * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L + second * 1000L + millis;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Read a fixed number of decimal digits.
+     *
+     * @return the value, or -1 if a character is not a digit.
+     */
+    private static int readDigits(String date, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Write a value as a fixed number of decimal digits, padded with zeros.
+     */
+    private static void writeDigits(char[] chars, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Streaming counterpart of {@link JSONUtils} used by {@link StreamingModel} implementations.
+ */
+public class JsonStreamUtils {
+
+    /**
+     * Initial capacity of arrays, the length is not known before reading them.
+     */
+    private static final int DEFAULT_ARRAY_CAPACITY = 10;
+
+    @VisibleForTesting
+    JsonStreamUtils() {
+    }
+
+    public static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    public static Integer readInteger(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextInt();
+    }
+
+    public static Long readLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextLong();
+    }
+
+    public static Boolean readBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextBoolean();
+    }
+
+    public static UUID readUUID(JsonReader reader) throws IOException {
+        String value = readString(reader);
+        return value == null ? null : UUID.fromString(value);
+    }
+
+    public static Date readDate(JsonReader reader) throws IOException, JSONException {
+        return JSONDateUtils.toDate(readString(reader));
+    }
+
+    public static Map<String, String> readMap(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        Map<String, String> properties = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            properties.put(reader.nextName(), readString(reader));
+        }
+        reader.endObject();
+        return properties;
+    }
+
+    public static <M extends Model> List<M> readArray(JsonReader reader, ModelFactory<M> factory) throws IOException, JSONException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        List<M> array = factory.createList(DEFAULT_ARRAY_CAPACITY);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            M model = factory.create();
+            readModel(reader, model);
+            array.add(model);
+        }
+        reader.endArray();
+        return array;
+    }
+
+    public static List<String> readStringArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        List<String> array = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.add(readString(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Read an object into a model. Models without streaming hooks read a tree built for their object only.
+     *
+     * @param reader JSON reader positioned on the object.
+     * @param model  model to fill.
+     * @throws IOException   if the JSON cannot be read.
+     * @throws JSONException if the model is invalid.
+     */
+    public static void readModel(JsonReader reader, Model model) throws IOException, JSONException {
+        if (model instanceof StreamingModel) {
+            StreamingModel streamingModel = (StreamingModel) model;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!streamingModel.readProperty(reader.nextName(), reader)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } else {
+            model.read(readObject(reader));
+        }
+    }
+
+    public static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NUMBER:
+                return readNumber(reader.nextString());
+
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * Convert a number literal the way {@link JSONObject} does when parsing a string.
+     */
+    private static Number readNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException ignored) {
+
+                /* Too large for a long, use a double. */
+            }
+        }
+        return Double.valueOf(literal);
+    }
+
+    public static void write(JsonWriter writer, String key, Object value) throws IOException, JSONException {
+        if (value != null) {
+            writer.name(key);
+            writeValue(writer, value);
+        }
+    }
+
+    public static void writeMap(JsonWriter writer, String key, Map<String, String> value) throws IOException {
+        if (value != null) {
+            writer.name(key).beginObject();
+            for (Map.Entry<String, String> property : value.entrySet()) {
+                writer.name(property.getKey()).value(property.getValue());
+            }
+            writer.endObject();
+        }
+    }
+
+    public static void writeArray(JsonWriter writer, String key, List<? extends Model> value) throws IOException, JSONException {
+        if (value != null) {
+            writer.name(key).beginArray();
+            for (Model model : value) {
+                writeModel(writer, model);
+            }
+            writer.endArray();
+        }
+    }
+
+    public static void writeStringArray(JsonWriter writer, String key, List<String> values) throws IOException {
+        if (values != null) {
+            writer.name(key).beginArray();
+            for (String value : values) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Write a model as an object. Models without streaming hooks are written to a tree first.
+     *
+     * @param writer JSON writer.
+     * @param model  model to write.
+     * @throws IOException   if the JSON cannot be written.
+     * @throws JSONException if the model is invalid.
+     */
+    public static void writeModel(JsonWriter writer, Model model) throws IOException, JSONException {
+        if (model instanceof StreamingModel) {
+            writer.beginObject();
+            ((StreamingModel) model).write(writer);
+            writer.endObject();
+        } else {
+            JSONStringer stringer = new JSONStringer();
+            stringer.object();
+            model.write(stringer);
+            stringer.endObject();
+            writeValue(writer, new JSONObject(stringer.toString()));
+        }
+    }
+
+    private static void writeValue(JsonWriter writer, Object value) throws IOException, JSONException {
+        if (value == JSONObject.NULL) {
+            writer.nullValue();
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            writer.beginObject();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                writer.name(key);
+                writeValue(writer, object.get(key));
+            }
+            writer.endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            writer.beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(writer, array.get(i));
+            }
+            writer.endArray();
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
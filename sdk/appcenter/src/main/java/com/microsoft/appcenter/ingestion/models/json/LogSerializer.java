@@ -7,6 +7,7 @@ package com.microsoft.appcenter.ingestion.models.json;
 
 import androidx.annotation.NonNull;
 
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
@@ -23,6 +24,12 @@ public interface LogSerializer {
     @NonNull
     Log deserializeLog(@NonNull String json, String type) throws JSONException;
 
+    @NonNull
+    String serializeDevice(@NonNull Device device) throws JSONException;
+
+    @NonNull
+    Device deserializeDevice(@NonNull String json) throws JSONException;
+
     Collection<CommonSchemaLog> toCommonSchemaLog(@NonNull Log log);
 
     @NonNull
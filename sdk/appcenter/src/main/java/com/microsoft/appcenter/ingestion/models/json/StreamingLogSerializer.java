@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.ingestion.models.Device;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log serializer using a streaming JSON reader and writer instead of building a tree of
+ * {@link org.json.JSONObject}. Logs that are not {@link StreamingModel} are handled by {@link DefaultLogSerializer}.
+ */
+public class StreamingLogSerializer extends DefaultLogSerializer {
+
+    /**
+     * Maximum capacity in characters of the buffer a thread keeps to serialize the next log.
+     */
+    @VisibleForTesting
+    static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Size estimate of a log type not serialized yet.
+     */
+    @VisibleForTesting
+    static final int DEFAULT_LOG_SIZE = 1024;
+
+    /**
+     * Each new size counts for 1 / 2^AVERAGE_SHIFT in the running average of a log type.
+     */
+    private static final int AVERAGE_SHIFT = 3;
+
+    /**
+     * Buffer reused by each thread to serialize logs, the string is copied out of it.
+     */
+    private final ThreadLocal<StringWriter> mLogBuffers = new ThreadLocal<>();
+
+    /**
+     * Running average of serialized log sizes in characters by log type.
+     */
+    private final Map<String, Integer> mAverageSizes = new HashMap<>();
+
+    @NonNull
+    private static JSONException toJSONException(Exception e) {
+        return new JSONException(e.getMessage());
+    }
+
+    private static void readLog(JsonReader reader, Log log) throws IOException, JSONException {
+        JsonStreamUtils.readModel(reader, log);
+        if (log.getTimestamp() == null) {
+            throw new JSONException("Missing timestamp");
+        }
+    }
+
+    /**
+     * Get the running average size of a log type.
+     *
+     * @param type log type.
+     * @return size in characters.
+     */
+    @VisibleForTesting
+    int getSizeEstimate(String type) {
+        synchronized (mAverageSizes) {
+            Integer size = mAverageSizes.get(type);
+            return size != null ? size : DEFAULT_LOG_SIZE;
+        }
+    }
+
+    private void updateSizeEstimate(String type, int size) {
+        synchronized (mAverageSizes) {
+            Integer average = mAverageSizes.get(type);
+            mAverageSizes.put(type, average == null ? size : average + ((size - average) >> AVERAGE_SHIFT));
+        }
+    }
+
+    @NonNull
+    @Override
+    public String serializeLog(@NonNull Log log) throws JSONException {
+        if (!(log instanceof StreamingModel)) {
+            return super.serializeLog(log);
+        }
+
+        /* Reuse the buffer of the thread, sized for the log type the first time. */
+        StringWriter output = mLogBuffers.get();
+        if (output == null) {
+            output = new StringWriter(getSizeEstimate(log.getType()));
+            mLogBuffers.set(output);
+        } else {
+            output.getBuffer().setLength(0);
+        }
+        try {
+            JsonWriter writer = new JsonWriter(output);
+            JsonStreamUtils.writeModel(writer, log);
+            writer.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        String json = output.toString();
+
+        /* Don't keep the memory of an unusually large log. */
+        if (output.getBuffer().capacity() > MAX_REUSED_BUFFER_SIZE) {
+            mLogBuffers.remove();
+        }
+        updateSizeEstimate(log.getType(), json.length());
+        return json;
+    }
+
+    @NonNull
+    @Override
+    public Log deserializeLog(@NonNull String json, String type) throws JSONException {
+
+        /* The type must be known before reading the properties. */
+        if (type == null) {
+            return super.deserializeLog(json, null);
+        }
+        Log log = createLog(type);
+        if (!(log instanceof StreamingModel)) {
+            return super.deserializeLog(json, type);
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            readLog(reader, log);
+            reader.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        return log;
+    }
+
+    @NonNull
+    @Override
+    public String serializeDevice(@NonNull Device device) throws JSONException {
+        StringWriter output = new StringWriter();
+        try {
+            JsonWriter writer = new JsonWriter(output);
+            JsonStreamUtils.writeModel(writer, device);
+            writer.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        return output.toString();
+    }
+
+    @NonNull
+    @Override
+    public Device deserializeDevice(@NonNull String json) throws JSONException {
+        Device device = new Device();
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            JsonStreamUtils.readModel(reader, device);
+            reader.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        return device;
+    }
+
+    @NonNull
+    @Override
+    public String serializeContainer(@NonNull LogContainer logContainer) throws JSONException {
+
+        /* Logs are already serialized, only the envelope is written. */
+        if (logContainer.getPayloads() != null) {
+            return super.serializeContainer(logContainer);
+        }
+        int sizeEstimate = LOGS.length() + 8;
+        for (Log log : logContainer.getLogs()) {
+            sizeEstimate += getSizeEstimate(log.getType()) + 1;
+        }
+        StringWriter output = new StringWriter(sizeEstimate);
+        try {
+            JsonWriter writer = new JsonWriter(output);
+            writer.beginObject();
+            writer.name(LOGS).beginArray();
+            for (Log log : logContainer.getLogs()) {
+                JsonStreamUtils.writeModel(writer, log);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        return output.toString();
+    }
+
+    @NonNull
+    @Override
+    public LogContainer deserializeContainer(@NonNull String json, String type) throws JSONException {
+
+        /* The type must be known before reading the properties. */
+        if (type == null) {
+            return super.deserializeContainer(json, null);
+        }
+        List<Log> logs = null;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (LOGS.equals(reader.nextName())) {
+                    logs = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Log log = createLog(type);
+                        readLog(reader, log);
+                        logs.add(log);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            reader.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        if (logs == null) {
+            throw new JSONException("Missing logs");
+        }
+        LogContainer container = new LogContainer();
+        container.setLogs(logs);
+        return container;
+    }
+}
@@ -5,17 +5,23 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Date;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
-public class DateTimeTypedProperty extends TypedProperty {
+public class DateTimeTypedProperty extends TypedProperty implements StreamingModel {
 
     public static final String TYPE = "dateTime";
 
@@ -59,6 +65,21 @@ public class DateTimeTypedProperty extends TypedProperty {
         writer.key(VALUE).value(JSONDateUtils.toString(getValue()));
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        writer.name(VALUE).value(JSONDateUtils.toString(getValue()));
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        if (VALUE.equals(name)) {
+            setValue(JsonStreamUtils.readDate(reader));
+            return true;
+        }
+        return super.readProperty(name, reader);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,13 +5,20 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
-public class DoubleTypedProperty extends TypedProperty {
+public class DoubleTypedProperty extends TypedProperty implements StreamingModel {
 
     public static final String TYPE = "double";
 
@@ -55,6 +62,21 @@ public class DoubleTypedProperty extends TypedProperty {
         writer.key(VALUE).value(getValue());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        writer.name(VALUE).value(getValue());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        if (VALUE.equals(name)) {
+            setValue(reader.nextDouble());
+            return true;
+        }
+        return super.readProperty(name, reader);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
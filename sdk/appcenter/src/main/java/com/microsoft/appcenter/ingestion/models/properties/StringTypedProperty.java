@@ -5,13 +5,21 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
-public class StringTypedProperty extends TypedProperty {
+public class StringTypedProperty extends TypedProperty implements StreamingModel {
 
     public static final String TYPE = "string";
 
@@ -55,6 +63,21 @@ public class StringTypedProperty extends TypedProperty {
         writer.key(VALUE).value(getValue());
     }
 
+    @Override
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        super.write(writer);
+        writer.name(VALUE).value(getValue());
+    }
+
+    @Override
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        if (VALUE.equals(name)) {
+            setValue(JsonStreamUtils.readString(reader));
+            return true;
+        }
+        return super.readProperty(name, reader);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,12 +5,19 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.StreamingModel;
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
 
@@ -60,6 +67,34 @@ public abstract class TypedProperty implements Model {
         writer.key(NAME).value(getName());
     }
 
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#write(JsonWriter)}.
+     */
+    public void write(JsonWriter writer) throws IOException, JSONException {
+        writer.name(TYPE).value(getType());
+        writer.name(NAME).value(getName());
+    }
+
+    /**
+     * Streaming hook for subclasses declaring {@link StreamingModel}, see {@link StreamingModel#readProperty(String, JsonReader)}.
+     */
+    public boolean readProperty(String name, JsonReader reader) throws IOException, JSONException {
+        switch (name) {
+            case TYPE:
+                if (!getType().equals(JsonStreamUtils.readString(reader))) {
+                    throw new JSONException("Invalid type");
+                }
+                return true;
+
+            case NAME:
+                setName(JsonStreamUtils.readString(reader));
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,12 +5,18 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import androidx.annotation.NonNull;
 
+import com.microsoft.appcenter.ingestion.models.json.JsonStreamUtils;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,4 +55,31 @@ public class TypedPropertyUtils {
         }
         return null;
     }
+
+    public static List<TypedProperty> read(JsonReader reader) throws IOException, JSONException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        List<TypedProperty> array = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+
+            /* The type is always written first, it selects the property class. */
+            reader.beginObject();
+            if (!TYPE.equals(reader.nextName())) {
+                throw new JSONException("Typed property must start with its type");
+            }
+            TypedProperty typedProperty = TypedPropertyUtils.create(JsonStreamUtils.readString(reader));
+            while (reader.hasNext()) {
+                if (!typedProperty.readProperty(reader.nextName(), reader)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            array.add(typedProperty);
+        }
+        reader.endArray();
+        return array;
+    }
 }
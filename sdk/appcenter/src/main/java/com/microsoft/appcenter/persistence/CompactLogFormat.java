@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of serialized logs stored in the database.
+ * <p>
+ * A record starts with the format version followed by a single value. Strings are length-prefixed UTF-8,
+ * integers are variable-length, dates and identifiers in the SDK format are stored as epoch milliseconds and
+ * 16 bytes, and object keys refer to {@link #KEYS} or to keys defined earlier in the same record.
+ * Records are converted back to JSON when read, the JSON being what is sent.
+ */
+class CompactLogFormat {
+
+    /**
+     * Current format version, stored as the first byte of every record.
+     */
+    @VisibleForTesting
+    static final int VERSION = 1;
+
+    /**
+     * Keys known by {@link #VERSION}. Identifiers are indexes in this array, so keys can only be appended.
+     */
+    private static final String[] KEYS = {
+            "type", "timestamp", "sid", "distributionGroupId", "userId", "device", "id", "properties",
+            "name", "value", "typedProperties", "sdkName", "sdkVersion", "model", "oemName", "osName",
+            "osVersion", "osBuild", "osApiLevel", "locale", "timeZoneOffset", "screenSize", "appVersion", "carrierName",
+            "carrierCountry", "appBuild", "appNamespace", "wrapperSdkName", "wrapperSdkVersion", "wrapperRuntimeVersion", "liveUpdateReleaseLabel", "liveUpdateDeploymentKey",
+            "liveUpdatePackageHash", "services", "processId", "processName", "parentProcessId", "parentProcessName", "errorThreadId", "errorThreadName",
+            "fatal", "appLaunchTimestamp", "architecture", "exception", "threads", "frames", "message", "stackTrace",
+            "innerExceptions", "className", "methodName", "lineNumber", "fileName", "minidumpFilePath", "errorId", "contentType",
+            "data"
+    };
+
+    /**
+     * Identifiers of {@link #KEYS}.
+     */
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+
+    /**
+     * Ends an object or an array. In an object, key references are shifted by {@link #KEY_FIRST_ID}.
+     */
+    private static final int END = 0;
+
+    /**
+     * Key reference followed by a key not known yet, it gets the next identifier.
+     */
+    private static final int KEY_DEFINITION = 1;
+
+    /**
+     * Key reference of the first key.
+     */
+    private static final int KEY_FIRST_ID = 2;
+
+    private static final int TAG_OBJECT = 1;
+
+    private static final int TAG_ARRAY = 2;
+
+    private static final int TAG_NULL = 3;
+
+    private static final int TAG_TRUE = 4;
+
+    private static final int TAG_FALSE = 5;
+
+    /**
+     * Integer as a zigzag variable-length number.
+     */
+    private static final int TAG_INTEGER = 6;
+
+    /**
+     * Other numbers as their length-prefixed literal.
+     */
+    private static final int TAG_NUMBER = 7;
+
+    private static final int TAG_STRING = 8;
+
+    /**
+     * Date in the SDK format as zigzag variable-length epoch milliseconds.
+     */
+    private static final int TAG_DATE = 9;
+
+    /**
+     * UUID in canonical form as 16 bytes.
+     */
+    private static final int TAG_UUID = 10;
+
+    /**
+     * Length of a date in the SDK format.
+     */
+    private static final int DATE_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSSZ".length();
+
+    /**
+     * Length of a UUID in canonical form.
+     */
+    private static final int UUID_LENGTH = 36;
+
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_IDS.put(KEYS[i], i);
+        }
+    }
+
+    @VisibleForTesting
+    CompactLogFormat() {
+
+        /* Hide constructor in utils pattern. */
+    }
+
+    /**
+     * Encodes a serialized log.
+     *
+     * @param json the serialized log.
+     * @return the record.
+     * @throws JSONException if the JSON is invalid.
+     */
+    @NonNull
+    static byte[] encode(@NonNull String json) throws JSONException {
+        Encoder encoder = new Encoder(json.length());
+        encoder.write(VERSION);
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            encoder.writeValue(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JSONException("Unexpected content after the log.");
+            }
+            reader.close();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Decodes a record to the serialized log.
+     *
+     * @param record the record.
+     * @return the serialized log.
+     * @throws JSONException if the record is invalid or was written by an unknown version.
+     */
+    @NonNull
+    static String decode(@NonNull byte[] record) throws JSONException {
+        if (record.length == 0 || record[0] != VERSION) {
+            throw new JSONException("Unsupported compact log format.");
+        }
+        Decoder decoder = new Decoder(record);
+        StringBuilder json = new StringBuilder(record.length * 2);
+        try {
+            decoder.readValue(json);
+        } catch (ArrayIndexOutOfBoundsException | UnsupportedEncodingException e) {
+            throw new JSONException("Truncated compact log.");
+        }
+        if (decoder.mPosition != record.length) {
+            throw new JSONException("Unexpected content after the log.");
+        }
+        return json.toString();
+    }
+
+    /**
+     * Checks that a string is a date written by {@link JSONDateUtils}, so that it can be written back identically.
+     */
+    private static Date toExactDate(String value) {
+        if (value.length() != DATE_LENGTH || value.charAt(10) != 'T' || value.charAt(DATE_LENGTH - 1) != 'Z') {
+            return null;
+        }
+        try {
+            Date date = JSONDateUtils.toDate(value);
+            return value.equals(JSONDateUtils.toString(date)) ? date : null;
+        } catch (JSONException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that a string is a UUID in lower case canonical form, so that it can be written back identically.
+     */
+    private static UUID toExactUUID(String value) {
+        if (value.length() != UUID_LENGTH || value.charAt(8) != '-') {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return value.equals(uuid.toString()) ? uuid : null;
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a record.
+     */
+    private static class Encoder extends ByteArrayOutputStream {
+
+        /**
+         * Identifiers of keys defined in this record.
+         */
+        private final Map<String, Integer> mDefinedKeys = new HashMap<>();
+
+        Encoder(int jsonLength) {
+            super(jsonLength / 2);
+        }
+
+        void writeValue(JsonReader reader) throws IOException, JSONException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    write(TAG_OBJECT);
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        writeKey(reader.nextName());
+                        writeValue(reader);
+                    }
+                    reader.endObject();
+                    writeVarInt(END);
+                    break;
+
+                case BEGIN_ARRAY:
+                    write(TAG_ARRAY);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        writeValue(reader);
+                    }
+                    reader.endArray();
+                    write(END);
+                    break;
+
+                case NULL:
+                    reader.nextNull();
+                    write(TAG_NULL);
+                    break;
+
+                case BOOLEAN:
+                    write(reader.nextBoolean() ? TAG_TRUE : TAG_FALSE);
+                    break;
+
+                case NUMBER:
+                    writeNumber(reader.nextString());
+                    break;
+
+                case STRING:
+                    writeString(reader.nextString());
+                    break;
+
+                default:
+                    throw new JSONException("Unexpected token: " + reader.peek());
+            }
+        }
+
+        private void writeKey(String key) throws UnsupportedEncodingException {
+            Integer id = KEY_IDS.get(key);
+            if (id == null) {
+                id = mDefinedKeys.get(key);
+            }
+            if (id != null) {
+                writeVarInt(KEY_FIRST_ID + id);
+            } else {
+                mDefinedKeys.put(key, KEYS.length + mDefinedKeys.size());
+                writeVarInt(KEY_DEFINITION);
+                writeUTF8(key);
+            }
+        }
+
+        private void writeNumber(String literal) throws UnsupportedEncodingException {
+            try {
+                long value = Long.parseLong(literal);
+                if (literal.equals(String.valueOf(value))) {
+                    write(TAG_INTEGER);
+                    writeZigZag(value);
+                    return;
+                }
+            } catch (NumberFormatException ignored) {
+
+                /* Not an integer, keep the literal. */
+            }
+            write(TAG_NUMBER);
+            writeUTF8(literal);
+        }
+
+        private void writeString(String value) throws UnsupportedEncodingException {
+            Date date = toExactDate(value);
+            if (date != null) {
+                write(TAG_DATE);
+                writeZigZag(date.getTime());
+                return;
+            }
+            UUID uuid = toExactUUID(value);
+            if (uuid != null) {
+                write(TAG_UUID);
+                writeFixedLong(uuid.getMostSignificantBits());
+                writeFixedLong(uuid.getLeastSignificantBits());
+                return;
+            }
+            write(TAG_STRING);
+            writeUTF8(value);
+        }
+
+        private void writeUTF8(String value) throws UnsupportedEncodingException {
+
+            //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
+            byte[] bytes = value.getBytes("UTF-8");
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void writeZigZag(long value) {
+            writeVarInt((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarInt(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeFixedLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+    }
+
+    /**
+     * Reads a record.
+     */
+    private static class Decoder {
+
+        private final byte[] mRecord;
+
+        /**
+         * Keys defined in this record, identifiers following {@link #KEYS}.
+         */
+        private final List<String> mDefinedKeys = new ArrayList<>();
+
+        private int mPosition = 1;
+
+        Decoder(byte[] record) {
+            mRecord = record;
+        }
+
+        void readValue(StringBuilder json) throws JSONException, UnsupportedEncodingException {
+            int tag = mRecord[mPosition++];
+            switch (tag) {
+                case TAG_OBJECT:
+                    json.append('{');
+                    long keyReference;
+                    boolean first = true;
+                    while ((keyReference = readVarInt()) != END) {
+                        if (!first) {
+                            json.append(',');
+                        }
+                        first = false;
+                        appendString(json, readKey(keyReference));
+                        json.append(':');
+                        readValue(json);
+                    }
+                    json.append('}');
+                    break;
+
+                case TAG_ARRAY:
+                    json.append('[');
+                    for (int i = 0; mRecord[mPosition] != END; i++) {
+                        if (i > 0) {
+                            json.append(',');
+                        }
+                        readValue(json);
+                    }
+                    mPosition++;
+                    json.append(']');
+                    break;
+
+                case TAG_NULL:
+                    json.append("null");
+                    break;
+
+                case TAG_TRUE:
+                    json.append("true");
+                    break;
+
+                case TAG_FALSE:
+                    json.append("false");
+                    break;
+
+                case TAG_INTEGER:
+                    json.append(readZigZag());
+                    break;
+
+                case TAG_NUMBER:
+                    json.append(readUTF8());
+                    break;
+
+                case TAG_STRING:
+                    appendString(json, readUTF8());
+                    break;
+
+                case TAG_DATE:
+                    json.append('"').append(JSONDateUtils.toString(new Date(readZigZag()))).append('"');
+                    break;
+
+                case TAG_UUID:
+                    json.append('"');
+                    appendUUID(json);
+                    json.append('"');
+                    break;
+
+                default:
+                    throw new JSONException("Invalid compact log tag: " + tag);
+            }
+        }
+
+        private String readKey(long keyReference) throws JSONException, UnsupportedEncodingException {
+            if (keyReference == KEY_DEFINITION) {
+                String key = readUTF8();
+                mDefinedKeys.add(key);
+                return key;
+            }
+            long id = keyReference - KEY_FIRST_ID;
+            if (id < KEYS.length) {
+                return KEYS[(int) id];
+            }
+            id -= KEYS.length;
+            if (id >= mDefinedKeys.size()) {
+                throw new JSONException("Invalid compact log key: " + keyReference);
+            }
+            return mDefinedKeys.get((int) id);
+        }
+
+        private String readUTF8() throws JSONException, UnsupportedEncodingException {
+            long length = readVarInt();
+            if (length < 0 || length > mRecord.length - mPosition) {
+                throw new JSONException("Invalid compact log string length: " + length);
+            }
+            String value = new String(mRecord, mPosition, (int) length, "UTF-8");
+            mPosition += length;
+            return value;
+        }
+
+        private long readZigZag() {
+            long value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarInt() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mRecord[mPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 64);
+            return value;
+        }
+
+        private void appendUUID(StringBuilder json) {
+            for (int i = 0; i < 16; i++) {
+                if (i == 4 || i == 6 || i == 8 || i == 10) {
+                    json.append('-');
+                }
+                int b = mRecord[mPosition++];
+                json.append(HEXADECIMAL[(b >> 4) & 0xF]).append(HEXADECIMAL[b & 0xF]);
+            }
+        }
+
+        /**
+         * Appends a quoted string with the escapes required by JSON.
+         */
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        json.append('\\').append(c);
+                        break;
+
+                    case '\n':
+                        json.append("\\n");
+                        break;
+
+                    case '\r':
+                        json.append("\\r");
+                        break;
+
+                    case '\t':
+                        json.append("\\t");
+                        break;
+
+                    default:
+                        if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                            json.append("\\u");
+                            for (int shift = 12; shift >= 0; shift -= 4) {
+                                json.append(HEXADECIMAL[(c >> shift) & 0xF]);
+                            }
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
@@ -17,10 +17,14 @@ import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HashUtils;
+import com.microsoft.appcenter.utils.Utf8Utils;
 import com.microsoft.appcenter.utils.crypto.CryptoUtils;
 import com.microsoft.appcenter.utils.storage.DatabaseManager;
 import com.microsoft.appcenter.utils.storage.FileManager;
@@ -32,6 +36,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -80,10 +85,34 @@ public class DatabasePersistence extends Persistence {
     @VisibleForTesting
     static final int VERSION_TIMESTAMP_COLUMN = 5;
 
+    /**
+     * Version before the size column was added, the column is added when upgrading from this version.
+     */
+    @VisibleForTesting
+    static final int VERSION_SIZE_COLUMN = 6;
+
+    /**
+     * Version before the group index and the log count table were added, they are created when upgrading from this version.
+     */
+    @VisibleForTesting
+    static final int VERSION_LOG_COUNTS_TABLE = 7;
+
+    /**
+     * Version before the device table was added, the device column is added when upgrading from this version.
+     */
+    @VisibleForTesting
+    static final int VERSION_DEVICE_COLUMN = 8;
+
+    /**
+     * Version before the compact log column was added, the column is added when upgrading from this version.
+     */
+    @VisibleForTesting
+    static final int VERSION_COMPACT_LOG_COLUMN = 9;
+
     /**
      * Current version of the schema.
      */
-    private static final int VERSION = 6;
+    private static final int VERSION = 10;
 
     /**
      * Project identifier part of the target token in clear text (the target token key).
@@ -100,7 +129,58 @@ public class DatabasePersistence extends Persistence {
     /**
      * Name of target token column in the table.
      */
-    private static final String COLUMN_DATA_TYPE = "type";
+    @VisibleForTesting
+    static final String COLUMN_DATA_TYPE = "type";
+
+    /**
+     * Name of the column storing the size of the serialized log in bytes.
+     */
+    @VisibleForTesting
+    static final String COLUMN_SIZE = "size";
+
+    /**
+     * Name of the column referencing the device of the log in {@link #DEVICES_TABLE},
+     * null if the device is part of the serialized log.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE_ID = "device_id";
+
+    /**
+     * Name of the column storing the log in {@link CompactLogFormat} instead of {@link #COLUMN_LOG},
+     * null if the log is stored as JSON.
+     */
+    @VisibleForTesting
+    static final String COLUMN_COMPACT_LOG = "compact_log";
+
+    /**
+     * Table storing each distinct device once.
+     */
+    @VisibleForTesting
+    static final String DEVICES_TABLE = "devices";
+
+    /**
+     * Name of the content hash column in {@link #DEVICES_TABLE}.
+     */
+    @VisibleForTesting
+    static final String COLUMN_HASH = "hash";
+
+    /**
+     * Name of the serialized device column in {@link #DEVICES_TABLE}.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE = "device";
+
+    /**
+     * Table maintaining the number of logs per group.
+     */
+    @VisibleForTesting
+    static final String LOG_COUNTS_TABLE = "log_counts";
+
+    /**
+     * Name of the log count column in {@link #LOG_COUNTS_TABLE}.
+     */
+    @VisibleForTesting
+    static final String COLUMN_COUNT = "count";
 
     /**
      * Database name.
@@ -112,7 +192,7 @@ public class DatabasePersistence extends Persistence {
      * Table schema for Persistence.
      */
     @VisibleForTesting
-    static final ContentValues SCHEMA = getContentValues("", "", "", "", "", 0);
+    static final ContentValues SCHEMA = getSchema();
 
     /**
      * Order by clause to select logs.
@@ -135,6 +215,12 @@ public class DatabasePersistence extends Persistence {
      */
     private static final String PAYLOAD_FILE_EXTENSION = ".json";
 
+    /**
+     * Maximum total size (in bytes) of serialized payloads of logs kept in memory after being stored.
+     */
+    @VisibleForTesting
+    static final int HOT_LOGS_MAX_SIZE = 512 * 1024;
+
     /**
      * SQL command to create logs table
      */
@@ -146,18 +232,85 @@ public class DatabasePersistence extends Persistence {
             "`priority` INTEGER," +
             "`log` TEXT," +
             "`persistence_group` TEXT," +
-            "`target_key` TEXT);";
+            "`target_key` TEXT," +
+            "`size` INTEGER," +
+            "`device_id` TEXT," +
+            "`compact_log` BLOB);";
 
     /**
      * SQL command to drop logs table
      */
     private static final String DROP_LOGS_SQL = "DROP TABLE `logs`";
+
+    /**
+     * SQL command to add the size column, logs stored before have a null size.
+     */
+    private static final String ADD_SIZE_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `size` INTEGER";
+
+    /**
+     * SQL command to add the device column, logs stored before have their device in the serialized log.
+     */
+    private static final String ADD_DEVICE_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `device_id` TEXT";
+
+    /**
+     * SQL command to add the compact log column, logs stored before are JSON.
+     */
+    private static final String ADD_COMPACT_LOG_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `compact_log` BLOB";
+
+    /**
+     * SQL command to create the device table.
+     */
+    private static final String CREATE_DEVICES_SQL = "CREATE TABLE IF NOT EXISTS `devices`" +
+            "(`hash` TEXT PRIMARY KEY," +
+            "`device` TEXT);";
+
+    /**
+     * Where clause matching devices no longer referenced by any log.
+     */
+    private static final String UNUSED_DEVICES_WHERE = "`hash` NOT IN (SELECT `device_id` FROM `logs` WHERE `device_id` IS NOT NULL)";
     
     /**
      * SQL command to create index for logs
      */
     private static final String CREATE_PRIORITY_INDEX_LOGS = "CREATE INDEX `ix_logs_priority` ON logs (`priority`)";
 
+    /**
+     * SQL command to create the index used to read logs of a group in sending order,
+     * priority is descending like in {@link #GET_SORT_ORDER} so that no sort is needed.
+     */
+    private static final String CREATE_GROUP_INDEX_LOGS = "CREATE INDEX IF NOT EXISTS `ix_logs_group_priority_oid` " +
+            "ON logs (`persistence_group`, `priority` DESC, `oid`)";
+
+    /**
+     * SQL command to create the table maintaining the number of logs per group.
+     */
+    private static final String CREATE_LOG_COUNTS_SQL = "CREATE TABLE IF NOT EXISTS `log_counts`" +
+            "(`persistence_group` TEXT PRIMARY KEY," +
+            "`count` INTEGER NOT NULL);";
+
+    /**
+     * SQL command to count logs stored before the log count table existed.
+     */
+    private static final String INIT_LOG_COUNTS_SQL = "INSERT OR REPLACE INTO `log_counts` " +
+            "SELECT `persistence_group`, COUNT(*) FROM `logs` GROUP BY `persistence_group`";
+
+    /**
+     * SQL command to count inserted logs, including logs inserted by any code path.
+     */
+    private static final String CREATE_LOG_COUNTS_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS `tr_logs_count_insert` " +
+            "AFTER INSERT ON `logs` BEGIN " +
+            "INSERT OR IGNORE INTO `log_counts` VALUES (NEW.`persistence_group`, 0); " +
+            "UPDATE `log_counts` SET `count` = `count` + 1 WHERE `persistence_group` = NEW.`persistence_group`; " +
+            "END";
+
+    /**
+     * SQL command to count deleted logs, including logs discarded when the storage is full.
+     */
+    private static final String CREATE_LOG_COUNTS_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS `tr_logs_count_delete` " +
+            "AFTER DELETE ON `logs` BEGIN " +
+            "UPDATE `log_counts` SET `count` = `count` - 1 WHERE `persistence_group` = OLD.`persistence_group`; " +
+            "END";
+
     /**
      * Database manager instance to access Persistence database.
      */
@@ -176,6 +329,55 @@ public class DatabasePersistence extends Persistence {
     @VisibleForTesting
     final Set<Long> mPendingDbIdentifiers;
 
+    /**
+     * Pending logs whose payload is stored in a file rather than in the database.
+     */
+    @VisibleForTesting
+    final Set<Long> mPendingLargePayloadDbIdentifiers;
+
+    /**
+     * Serialized logs of pending log groups. Key is a group name and batch identifier.
+     */
+    @VisibleForTesting
+    final Map<String, List<String>> mPendingPayloadsGroups;
+
+    /**
+     * Most recently stored logs still in memory, by database identifier in insertion order.
+     * They are returned by {@link #getLogs(String, Collection, int, List)} without deserializing the database copy.
+     */
+    @VisibleForTesting
+    final LinkedHashMap<Long, HotLog> mHotLogs;
+
+    /**
+     * Total payload size of {@link #mHotLogs}.
+     */
+    private int mHotLogsSize;
+
+    /**
+     * Devices stored in {@link #DEVICES_TABLE} or read from it, by content hash.
+     */
+    private final Map<String, StoredDevice> mStoredDevices = new HashMap<>();
+
+    /**
+     * Device of the last stored log, to avoid hashing and storing the same device again.
+     */
+    private StoredDevice mLastStoredDevice;
+
+    /**
+     * Whether devices no longer referenced by logs were deleted since the database was opened.
+     */
+    private boolean mUnusedDevicesDeleted;
+
+    /**
+     * Incremented each time the database is created, including when a corrupted database is deleted and created again.
+     */
+    private int mDatabaseGeneration;
+
+    /**
+     * Whether new logs are stored in {@link CompactLogFormat}.
+     */
+    private boolean mCompactEncodingEnabled;
+
     /**
      * Application context.
      */
@@ -206,12 +408,24 @@ public class DatabasePersistence extends Persistence {
         mContext = context;
         mPendingDbIdentifiersGroups = new HashMap<>();
         mPendingDbIdentifiers = new HashSet<>();
+        mPendingLargePayloadDbIdentifiers = new HashSet<>();
+        mPendingPayloadsGroups = new HashMap<>();
+        mHotLogs = new LinkedHashMap<>();
         mDatabaseManager = new DatabaseManager(context, DATABASE, TABLE, version, schema, CREATE_LOGS_SQL, new DatabaseManager.Listener() {
 
 
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                createLogCounts(db);
+                db.execSQL(CREATE_DEVICES_SQL);
+
+                /* Logs and devices cached from a previous database are gone. */
+                mDatabaseGeneration++;
+                mHotLogs.clear();
+                mHotLogsSize = 0;
+                mStoredDevices.clear();
+                mLastStoredDevice = null;
             }
 
             @Override
@@ -220,12 +434,29 @@ public class DatabasePersistence extends Persistence {
                 /*
                  * With version 3.0 of the SDK we decided to remove timestamp column and as
                  * it's a major SDK version and SQLite does not support removing column we just start over.
-                 * When adding a new column in a future version, update this code by something like
-                 * if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {drop/create} else {add missing columns}
+                 * Newer versions only add columns.
                  */
-                db.execSQL(DROP_LOGS_SQL);
-                db.execSQL(CREATE_LOGS_SQL);
-                db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {
+                    db.execSQL(DROP_LOGS_SQL);
+                    db.execSQL(CREATE_LOGS_SQL);
+                    db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                } else {
+                    if (oldVersion <= VERSION_SIZE_COLUMN) {
+                        db.execSQL(ADD_SIZE_COLUMN_SQL);
+                    }
+                    if (oldVersion <= VERSION_DEVICE_COLUMN) {
+                        db.execSQL(ADD_DEVICE_COLUMN_SQL);
+                    }
+                    if (oldVersion <= VERSION_COMPACT_LOG_COLUMN) {
+                        db.execSQL(ADD_COMPACT_LOG_COLUMN_SQL);
+                    }
+                }
+                if (oldVersion <= VERSION_LOG_COUNTS_TABLE) {
+                    createLogCounts(db);
+                }
+                if (oldVersion <= VERSION_DEVICE_COLUMN) {
+                    db.execSQL(CREATE_DEVICES_SQL);
+                }
             }
         });
         mLargePayloadDirectory = new File(Constants.FILES_PATH + PAYLOAD_LARGE_DIRECTORY);
@@ -234,6 +465,30 @@ public class DatabasePersistence extends Persistence {
         mLargePayloadDirectory.mkdirs();
     }
 
+    /**
+     * Creates the group index and the log count table maintained by triggers, counting existing logs once.
+     *
+     * @param db The database.
+     */
+    private static void createLogCounts(SQLiteDatabase db) {
+        db.execSQL(CREATE_GROUP_INDEX_LOGS);
+        db.execSQL(CREATE_LOG_COUNTS_SQL);
+        db.execSQL(INIT_LOG_COUNTS_SQL);
+        db.execSQL(CREATE_LOG_COUNTS_INSERT_TRIGGER);
+        db.execSQL(CREATE_LOG_COUNTS_DELETE_TRIGGER);
+    }
+
+    /**
+     * Gets the table schema, the compact log is the only binary column.
+     *
+     * @return A {@link ContentValues} instance with a value of the type of each column.
+     */
+    private static ContentValues getSchema() {
+        ContentValues schema = getContentValues("", "", "", "", "", 0, 0);
+        schema.put(COLUMN_COMPACT_LOG, new byte[0]);
+        return schema;
+    }
+
     /**
      * Instantiates {@link ContentValues} with the give values.
      *
@@ -242,9 +497,10 @@ public class DatabasePersistence extends Persistence {
      * @param targetToken The target token if the log is common schema.
      * @param targetKey   The project identifier part of the target token in clear text.
      * @param priority    The persistence priority.
+     * @param size        The size of the serialized log in bytes.
      * @return A {@link ContentValues} instance.
      */
-    private static ContentValues getContentValues(@Nullable String group, @Nullable String logJ, String targetToken, String type, String targetKey, int priority) {
+    private static ContentValues getContentValues(@Nullable String group, @Nullable String logJ, String targetToken, String type, String targetKey, int priority, int size) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_GROUP, group);
         values.put(COLUMN_LOG, logJ);
@@ -252,6 +508,7 @@ public class DatabasePersistence extends Persistence {
         values.put(COLUMN_DATA_TYPE, type);
         values.put(COLUMN_TARGET_KEY, targetKey);
         values.put(COLUMN_PRIORITY, priority);
+        values.put(COLUMN_SIZE, size);
         return values;
     }
 
@@ -260,6 +517,26 @@ public class DatabasePersistence extends Persistence {
         return mDatabaseManager.setMaxSize(maxStorageSizeInBytes);
     }
 
+    @Override
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+        mDatabaseManager.setWriteAheadLoggingEnabled(enabled);
+    }
+
+    @Override
+    public void setCacheSize(int cacheSizeInKilobytes) {
+        mDatabaseManager.setCacheSize(cacheSizeInKilobytes);
+    }
+
+    @Override
+    public void setCompactEncodingEnabled(boolean enabled) {
+        mCompactEncodingEnabled = enabled;
+    }
+
+    @Override
+    public void checkpoint() {
+        mDatabaseManager.checkpoint();
+    }
+
     @Override
     public long putLog(@NonNull Log log, @NonNull String group, @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException {
 
@@ -267,60 +544,357 @@ public class DatabasePersistence extends Persistence {
         try {
             AppCenterLog.debug(LOG_TAG, "Storing a log to the Persistence database for log type " + log.getType() + " with flags=" + flags);
             String payload = getLogSerializer().serializeLog(log);
-            ContentValues contentValues;
-
-            //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
-            int payloadSize = payload.getBytes("UTF-8").length;
+            int payloadSize = Utf8Utils.getLength(payload);
+            ContentValues contentValues = getLogContentValues(log, group, flags, payload, payloadSize);
             boolean isLargePayload = payloadSize >= PAYLOAD_MAX_SIZE;
-            String targetKey;
-            String targetToken;
-            if (log instanceof CommonSchemaLog) {
-                if (isLargePayload) {
-                    throw new PersistenceException("Log is larger than " + PAYLOAD_MAX_SIZE + " bytes, cannot send to OneCollector.");
-                }
-                targetToken = log.getTransmissionTargetTokens().iterator().next();
-                targetKey = PartAUtils.getTargetKey(targetToken);
-                targetToken = CryptoUtils.getInstance(mContext).encrypt(targetToken);
-            } else {
-                targetKey = null;
-                targetToken = null;
+            int databaseGeneration = mDatabaseGeneration;
+            StoredDevice storedDevice = null;
+            if (!isLargePayload) {
+                storedDevice = storeDeviceOnce(log, contentValues);
+                compactLogContentValues(contentValues);
             }
-            long maxSize = mDatabaseManager.getMaxSize();
-            if (maxSize == -1) {
-                throw new PersistenceException("Failed to store a log to the Persistence database.");
+            long databaseId = storeLog(log, group, contentValues, isLargePayload ? payload : null);
+            if (storedDevice != null) {
+                storeDevicesAgainIfRecreated(databaseGeneration, Collections.singleton(storedDevice));
+            }
+            if (!isLargePayload) {
+                addHotLog(databaseId, log, group, payload, payloadSize);
+            }
+            return databaseId;
+        } catch (JSONException e) {
+            throw new PersistenceException("Cannot convert to JSON string.", e);
+        } catch (IOException e) {
+            throw new PersistenceException("Cannot save large payload in a file.", e);
+        }
+    }
+
+    @Override
+    public long[] putLogs(@NonNull List<Log> logs, @NonNull String group, @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags, @NonNull List<PersistenceException> outExceptions) {
+        AppCenterLog.debug(LOG_TAG, "Storing " + logs.size() + " logs to the Persistence database with flags=" + flags);
+        long[] databaseIds = new long[logs.size()];
+        PersistenceException[] exceptions = new PersistenceException[logs.size()];
+        List<ContentValues> batchValues = new ArrayList<>(logs.size());
+        List<Integer> batchIndexes = new ArrayList<>(logs.size());
+        List<String> batchPayloads = new ArrayList<>(logs.size());
+        List<Integer> batchPayloadSizes = new ArrayList<>(logs.size());
+        Set<StoredDevice> storedDevices = new HashSet<>();
+        int databaseGeneration = mDatabaseGeneration;
+
+        /* Serialize logs and store large payloads separately as they need the database identifier for their file. */
+        for (int i = 0; i < logs.size(); i++) {
+            Log log = logs.get(i);
+            databaseIds[i] = -1;
+            try {
+                String payload = getLogSerializer().serializeLog(log);
+                int payloadSize = Utf8Utils.getLength(payload);
+                ContentValues contentValues = getLogContentValues(log, group, flags, payload, payloadSize);
+                if (payloadSize >= PAYLOAD_MAX_SIZE) {
+                    databaseIds[i] = storeLog(log, group, contentValues, payload);
+                } else {
+                    StoredDevice storedDevice = storeDeviceOnce(log, contentValues);
+                    if (storedDevice != null) {
+                        storedDevices.add(storedDevice);
+                    }
+                    compactLogContentValues(contentValues);
+                    batchValues.add(contentValues);
+                    batchIndexes.add(i);
+                    batchPayloads.add(payload);
+                    batchPayloadSizes.add(payloadSize);
+                }
+            } catch (JSONException e) {
+                exceptions[i] = new PersistenceException("Cannot convert to JSON string.", e);
+            } catch (IOException e) {
+                exceptions[i] = new PersistenceException("Cannot save large payload in a file.", e);
+            } catch (PersistenceException e) {
+                exceptions[i] = e;
             }
-            if (!isLargePayload && maxSize <= payloadSize) {
-                throw new PersistenceException("Log is too large (" + payloadSize + " bytes) to store in database. " +
-                        "Current maximum database size is " + maxSize + " bytes.");
+        }
+
+        /* Insert all other logs in a single transaction. */
+        if (!batchValues.isEmpty()) {
+            long[] batchIds = mDatabaseManager.putAll(batchValues);
+            if (batchIds == null) {
+                AppCenterLog.debug(LOG_TAG, "Failed to store logs in a single transaction, storing them one by one.");
             }
-            contentValues = getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, Flags.getPersistenceFlag(flags, false));
-            long databaseId = mDatabaseManager.put(contentValues, COLUMN_PRIORITY);
-            if (databaseId == -1) {
-                throw new PersistenceException("Failed to store a log to the Persistence database for log type " + log.getType() + ".");
+            for (int j = 0; j < batchIndexes.size(); j++) {
+                int i = batchIndexes.get(j);
+                Log log = logs.get(i);
+                if (batchIds != null) {
+                    databaseIds[i] = batchIds[j];
+                    AppCenterLog.debug(LOG_TAG, "Stored a log to the Persistence database for log type " + log.getType() + " with databaseId=" + databaseIds[i]);
+                } else {
+
+                    /* Storing one by one can discard old logs when storage is full. */
+                    try {
+                        databaseIds[i] = storeLog(log, group, batchValues.get(j), null);
+                    } catch (IOException e) {
+                        exceptions[i] = new PersistenceException("Cannot save large payload in a file.", e);
+                    } catch (PersistenceException e) {
+                        exceptions[i] = e;
+                    }
+                }
+                if (databaseIds[i] != -1) {
+                    addHotLog(databaseIds[i], log, group, batchPayloads.get(j), batchPayloadSizes.get(j));
+                }
             }
-            AppCenterLog.debug(LOG_TAG, "Stored a log to the Persistence database for log type " + log.getType() + " with databaseId=" + databaseId);
+            storeDevicesAgainIfRecreated(databaseGeneration, storedDevices);
+        }
+        Collections.addAll(outExceptions, exceptions);
+        return databaseIds;
+    }
+
+    /**
+     * Validates a serialized log and converts it to {@link ContentValues}.
+     * The log column is left empty if the payload is too large to be stored in the database.
+     *
+     * @param log         The log.
+     * @param group       The group of the storage for the log.
+     * @param flags       The persistence flags.
+     * @param payload     The serialized log.
+     * @param payloadSize The size of the serialized log in bytes.
+     * @return The values to store in the database.
+     * @throws PersistenceException if the log cannot be stored.
+     */
+    private ContentValues getLogContentValues(@NonNull Log log, @NonNull String group, int flags, @NonNull String payload, int payloadSize) throws PersistenceException {
+        boolean isLargePayload = payloadSize >= PAYLOAD_MAX_SIZE;
+        String targetKey;
+        String targetToken;
+        if (log instanceof CommonSchemaLog) {
             if (isLargePayload) {
-                AppCenterLog.debug(LOG_TAG, "Payload is larger than what SQLite supports, storing payload in a separate file.");
-                File directory = getLargePayloadGroupDirectory(group);
+                throw new PersistenceException("Log is larger than " + PAYLOAD_MAX_SIZE + " bytes, cannot send to OneCollector.");
+            }
+            targetToken = log.getTransmissionTargetTokens().iterator().next();
+            targetKey = PartAUtils.getTargetKey(targetToken);
+            targetToken = CryptoUtils.getInstance(mContext).encrypt(targetToken);
+        } else {
+            targetKey = null;
+            targetToken = null;
+        }
+        long maxSize = mDatabaseManager.getMaxSize();
+        if (maxSize == -1) {
+            throw new PersistenceException("Failed to store a log to the Persistence database.");
+        }
+        if (!isLargePayload && maxSize <= payloadSize) {
+            throw new PersistenceException("Log is too large (" + payloadSize + " bytes) to store in database. " +
+                    "Current maximum database size is " + maxSize + " bytes.");
+        }
+        return getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, Flags.getPersistenceFlag(flags, false), payloadSize);
+    }
 
-                //noinspection ResultOfMethodCallIgnored we'll get an error anyway at write time.
-                directory.mkdir();
-                File payloadFile = getLargePayloadFile(directory, databaseId);
-                try {
-                    FileManager.write(payloadFile, payload);
-                } catch (IOException e) {
+    /**
+     * Stores the device of a log once in {@link #DEVICES_TABLE} and replaces the serialized log by one without device,
+     * the row then only references the device. The serialized log is kept as is if the device cannot be stored.
+     * Common Schema logs are kept as is, their device is not serialized as a property of the log.
+     *
+     * @param log           The log.
+     * @param contentValues The values to insert, updated if the device is stored separately.
+     * @return The device referenced by the values, or null if the serialized log is kept as is.
+     */
+    @Nullable
+    private StoredDevice storeDeviceOnce(@NonNull Log log, @NonNull ContentValues contentValues) {
+        Device device = log.getDevice();
+        if (device == null || log instanceof CommonSchemaLog) {
+            return null;
+        }
+        LogSerializer logSerializer = getLogSerializer();
+        String logPayload;
+        StoredDevice storedDevice;
+        try {
 
-                    /* Remove database entry if we cannot save payload as a file. */
-                    mDatabaseManager.delete(databaseId);
-                    throw e;
+            /* The device may have been modified since it was stored, reuse the stored one only if its content matches. */
+            String devicePayload = logSerializer.serializeDevice(device);
+            if (mLastStoredDevice != null && mLastStoredDevice.mPayload.equals(devicePayload)) {
+                storedDevice = mLastStoredDevice;
+            } else {
+                storedDevice = storeDevice(devicePayload);
+                if (storedDevice == null) {
+                    return null;
                 }
-                AppCenterLog.debug(LOG_TAG, "Payload written to " + payloadFile);
+                mLastStoredDevice = storedDevice;
+            }
+
+            /* Serialize the log again without its device, it's restored when reading the log. */
+            log.setDevice(null);
+            try {
+                logPayload = logSerializer.serializeLog(log);
+            } finally {
+                log.setDevice(device);
             }
-            return databaseId;
         } catch (JSONException e) {
-            throw new PersistenceException("Cannot convert to JSON string.", e);
-        } catch (IOException e) {
-            throw new PersistenceException("Cannot save large payload in a file.", e);
+            AppCenterLog.error(LOG_TAG, "Cannot serialize log without device.", e);
+            return null;
+        }
+        contentValues.put(COLUMN_LOG, logPayload);
+        contentValues.put(COLUMN_DEVICE_ID, storedDevice.mHash);
+        return storedDevice;
+    }
+
+    /**
+     * Stores devices again if the database was created again while inserting logs that reference them.
+     *
+     * @param databaseGeneration The value of {@link #mDatabaseGeneration} before the devices were stored.
+     * @param storedDevices      The devices referenced by the inserted logs.
+     */
+    private void storeDevicesAgainIfRecreated(int databaseGeneration, @NonNull Collection<StoredDevice> storedDevices) {
+        if (databaseGeneration != mDatabaseGeneration) {
+            for (StoredDevice storedDevice : storedDevices) {
+                storeDevice(storedDevice.mPayload);
+            }
+        }
+    }
+
+    /**
+     * Moves the serialized log to {@link #COLUMN_COMPACT_LOG} if compact encoding is enabled.
+     * The serialized log is kept as is if it cannot be encoded.
+     *
+     * @param contentValues The values to insert, updated if the log is encoded.
+     */
+    private void compactLogContentValues(@NonNull ContentValues contentValues) {
+        if (!mCompactEncodingEnabled) {
+            return;
+        }
+        try {
+            contentValues.put(COLUMN_COMPACT_LOG, CompactLogFormat.encode(contentValues.getAsString(COLUMN_LOG)));
+            contentValues.putNull(COLUMN_LOG);
+        } catch (JSONException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot encode log in compact format.", e);
+        }
+    }
+
+    /**
+     * Stores a serialized device in {@link #DEVICES_TABLE} if not stored yet.
+     * Devices no longer referenced by logs are deleted before storing the first new device.
+     *
+     * @param devicePayload The serialized device.
+     * @return The stored device, or null if it cannot be stored.
+     */
+    @Nullable
+    private StoredDevice storeDevice(@NonNull String devicePayload) {
+        String hash = HashUtils.sha256(devicePayload);
+        StoredDevice storedDevice = mStoredDevices.get(hash);
+        if (storedDevice != null) {
+            return storedDevice;
+        }
+        if (!mUnusedDevicesDeleted) {
+            mUnusedDevicesDeleted = true;
+            int deletedCount = mDatabaseManager.deleteWhere(DEVICES_TABLE, UNUSED_DEVICES_WHERE);
+            if (deletedCount > 0) {
+                AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " unused devices.");
+                mStoredDevices.clear();
+                mLastStoredDevice = null;
+            }
+        }
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_HASH, hash);
+        values.put(COLUMN_DEVICE, devicePayload);
+        if (!mDatabaseManager.putIfAbsent(DEVICES_TABLE, values)) {
+            return null;
+        }
+        storedDevice = new StoredDevice(hash, devicePayload);
+        mStoredDevices.put(hash, storedDevice);
+        return storedDevice;
+    }
+
+    /**
+     * Gets a device stored in {@link #DEVICES_TABLE}, read from the database once.
+     *
+     * @param hash The device hash.
+     * @return The stored device.
+     * @throws JSONException if the device cannot be found.
+     */
+    @NonNull
+    private StoredDevice getStoredDevice(@NonNull String hash) throws JSONException {
+        StoredDevice storedDevice = mStoredDevices.get(hash);
+        if (storedDevice != null) {
+            return storedDevice;
+        }
+        String devicePayload = null;
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(COLUMN_HASH + " = ?");
+        try {
+            Cursor cursor = mDatabaseManager.getCursor(DEVICES_TABLE, builder, new String[]{COLUMN_DEVICE}, new String[]{hash}, null);
+            try {
+                if (cursor.moveToNext()) {
+                    devicePayload = cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to get device: ", e);
+        }
+        if (devicePayload == null) {
+            throw new JSONException("Device " + hash + " is not stored.");
+        }
+        storedDevice = new StoredDevice(hash, devicePayload);
+        mStoredDevices.put(hash, storedDevice);
+        return storedDevice;
+    }
+
+    /**
+     * Inserts a log in the database, discarding old logs if storage is full, and writes its payload to a file if too large.
+     *
+     * @param log           The log.
+     * @param group         The group of the storage for the log.
+     * @param contentValues The values to insert.
+     * @param largePayload  The serialized log if it's too large to be stored in the database, null otherwise.
+     * @return Log identifier from persistence after saving.
+     * @throws PersistenceException if the log cannot be inserted.
+     * @throws IOException          if the large payload file cannot be written.
+     */
+    private long storeLog(@NonNull Log log, @NonNull String group, @NonNull ContentValues contentValues, @Nullable String largePayload) throws PersistenceException, IOException {
+        long databaseId = mDatabaseManager.put(contentValues, COLUMN_PRIORITY);
+        if (databaseId == -1) {
+            throw new PersistenceException("Failed to store a log to the Persistence database for log type " + log.getType() + ".");
+        }
+        AppCenterLog.debug(LOG_TAG, "Stored a log to the Persistence database for log type " + log.getType() + " with databaseId=" + databaseId);
+        if (largePayload != null) {
+            AppCenterLog.debug(LOG_TAG, "Payload is larger than what SQLite supports, storing payload in a separate file.");
+            File directory = getLargePayloadGroupDirectory(group);
+
+            //noinspection ResultOfMethodCallIgnored we'll get an error anyway at write time.
+            directory.mkdir();
+            File payloadFile = getLargePayloadFile(directory, databaseId);
+            try {
+                FileManager.write(payloadFile, largePayload);
+            } catch (IOException e) {
+
+                /* Remove database entry if we cannot save payload as a file. */
+                mDatabaseManager.delete(databaseId);
+                throw e;
+            }
+            AppCenterLog.debug(LOG_TAG, "Payload written to " + payloadFile);
+        }
+        return databaseId;
+    }
+
+    /**
+     * Keeps a stored log in memory so that it can be sent without deserializing it,
+     * the oldest logs are evicted when the total payload size exceeds {@link #HOT_LOGS_MAX_SIZE}.
+     *
+     * @param databaseId  The database identifier of the log.
+     * @param log         The stored log.
+     * @param group       The group of the storage for the log.
+     * @param payload     The serialized log.
+     * @param payloadSize The size of the serialized log in bytes.
+     */
+    private void addHotLog(long databaseId, @NonNull Log log, @NonNull String group, @NonNull String payload, int payloadSize) {
+        if (payloadSize > HOT_LOGS_MAX_SIZE) {
+            return;
+        }
+        mHotLogs.put(databaseId, new HotLog(log, group, payload, payloadSize));
+        mHotLogsSize += payloadSize;
+        Iterator<HotLog> iterator = mHotLogs.values().iterator();
+        while (mHotLogsSize > HOT_LOGS_MAX_SIZE) {
+            mHotLogsSize -= iterator.next().mSize;
+            iterator.remove();
+        }
+    }
+
+    private void removeHotLog(long databaseId) {
+        HotLog hotLog = mHotLogs.remove(databaseId);
+        if (hotLog != null) {
+            mHotLogsSize -= hotLog.mSize;
         }
     }
 
@@ -341,6 +915,7 @@ public class DatabasePersistence extends Persistence {
         //noinspection ResultOfMethodCallIgnored SQLite delete does not have return type either.
         getLargePayloadFile(groupLargePayloadDirectory, id).delete();
         mDatabaseManager.delete(id);
+        removeHotLog(id);
     }
 
     @Override
@@ -350,15 +925,24 @@ public class DatabasePersistence extends Persistence {
         AppCenterLog.debug(LOG_TAG, "Deleting logs from the Persistence database for " + group + " with " + id);
         AppCenterLog.debug(LOG_TAG, "The IDs for deleting log(s) is/are:");
 
-        /* Delete logs. */
+        /* Delete large payload files, only for logs that were stored as files. */
         List<Long> dbIdentifiers = mPendingDbIdentifiersGroups.remove(group + id);
-        File directory = getLargePayloadGroupDirectory(group);
+        mPendingPayloadsGroups.remove(group + id);
         if (dbIdentifiers != null) {
+            File directory = getLargePayloadGroupDirectory(group);
             for (Long dbIdentifier : dbIdentifiers) {
                 AppCenterLog.debug(LOG_TAG, "\t" + dbIdentifier);
-                deleteLog(directory, dbIdentifier);
+                if (mPendingLargePayloadDbIdentifiers.remove(dbIdentifier)) {
+
+                    //noinspection ResultOfMethodCallIgnored SQLite delete does not have return type either.
+                    getLargePayloadFile(directory, dbIdentifier).delete();
+                }
                 mPendingDbIdentifiers.remove(dbIdentifier);
+                removeHotLog(dbIdentifier);
             }
+
+            /* Delete logs from database at once. */
+            mDatabaseManager.delete(dbIdentifiers);
         }
     }
 
@@ -393,20 +977,88 @@ public class DatabasePersistence extends Persistence {
                 iterator.remove();
             }
         }
+        for (Iterator<String> iterator = mPendingPayloadsGroups.keySet().iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            if (key.startsWith(group)) {
+                iterator.remove();
+            }
+        }
+
+        /* Delete from memory. */
+        for (Iterator<HotLog> iterator = mHotLogs.values().iterator(); iterator.hasNext(); ) {
+            HotLog hotLog = iterator.next();
+            if (hotLog.mGroup.equals(group)) {
+                mHotLogsSize -= hotLog.mSize;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Deletes the oldest normal priority logs first, critical logs are never deleted by this method.
+     */
+    @Override
+    public int deleteOldestLogs(@NonNull String group, @IntRange(from = 1) int count) {
+
+        /* Select the oldest normal priority logs that are not being sent. */
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(COLUMN_GROUP + " = ? AND " + COLUMN_PRIORITY + " = " + Flags.NORMAL);
+        if (!mPendingDbIdentifiers.isEmpty()) {
+            StringBuilder filter = new StringBuilder();
+            for (Long pendingDbIdentifier : mPendingDbIdentifiers) {
+                filter.append(pendingDbIdentifier).append(",");
+            }
+            filter.deleteCharAt(filter.length() - 1);
+            builder.appendWhere(" AND " + PRIMARY_KEY + " NOT IN (" + filter.toString() + ")");
+        }
+        List<Long> dbIdentifiers = new ArrayList<>();
+        File directory = getLargePayloadGroupDirectory(group);
+        try {
+            Cursor cursor = mDatabaseManager.getCursor(builder, new String[]{PRIMARY_KEY, COLUMN_SIZE}, new String[]{group}, PRIMARY_KEY, String.valueOf(count));
+            try {
+                while (cursor.moveToNext()) {
+                    ContentValues values = mDatabaseManager.buildValues(cursor);
+                    Long dbIdentifier = values.getAsLong(PRIMARY_KEY);
+                    Long size = values.getAsLong(COLUMN_SIZE);
+                    dbIdentifiers.add(dbIdentifier);
+
+                    /* Only logs stored as files have a large payload, size is unknown for logs stored by previous versions. */
+                    if (size == null || size >= PAYLOAD_MAX_SIZE) {
+
+                        //noinspection ResultOfMethodCallIgnored SQLite delete does not have return type either.
+                        getLargePayloadFile(directory, dbIdentifier).delete();
+                    }
+                    removeHotLog(dbIdentifier);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to get oldest logs: ", e);
+        }
+
+        /* Delete them at once. */
+        if (dbIdentifiers.isEmpty()) {
+            return 0;
+        }
+        int deletedCount = mDatabaseManager.delete(dbIdentifiers);
+        AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " oldest logs from " + group + ".");
+        return deletedCount;
     }
 
     @Override
     public int countLogs(@NonNull String group) {
 
-        /* Query database and get scanner. */
+        /* Read the count maintained by triggers rather than scanning logs of the group. */
         SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
         builder.appendWhere(COLUMN_GROUP + " = ?");
         int count = 0;
         try {
-            Cursor cursor = mDatabaseManager.getCursor(builder, new String[]{"COUNT(*)"}, new String[]{group}, null);
+            Cursor cursor = mDatabaseManager.getCursor(LOG_COUNTS_TABLE, builder, new String[]{COLUMN_COUNT}, new String[]{group}, null);
             try {
-                cursor.moveToNext();
-                count = cursor.getInt(0);
+                if (cursor.moveToNext()) {
+                    count = cursor.getInt(0);
+                }
             } finally {
                 cursor.close();
             }
@@ -439,16 +1091,35 @@ public class DatabasePersistence extends Persistence {
             selectionArgs.addAll(pausedTargetKeys);
         }
 
+        /*
+         * Exclude logs that are already part of a batch being sent directly in SQL so that the
+         * LIMIT clause can be applied, otherwise we would have to scan the whole group.
+         * Identifiers are numbers generated by the database, so it's safe to inline them and
+         * it avoids hitting the maximum number of SQL variables.
+         */
+        if (!mPendingDbIdentifiers.isEmpty()) {
+            StringBuilder filter = new StringBuilder();
+            for (Long pendingDbIdentifier : mPendingDbIdentifiers) {
+                filter.append(pendingDbIdentifier).append(",");
+            }
+            filter.deleteCharAt(filter.length() - 1);
+            builder.appendWhere(" AND ");
+            builder.appendWhere(PRIMARY_KEY + " NOT IN (" + filter.toString() + ")");
+        }
+
         /* Add logs to output parameter after deserialization if logs are not already sent. */
         int count = 0;
+        long batchSize = 0;
         Map<Long, Log> candidates = new LinkedHashMap<>();
+        Map<Long, String> candidatePayloads = new HashMap<>();
+        Set<Long> largePayloadDbIdentifiers = new HashSet<>();
         List<Long> failedDbIdentifiers = new ArrayList<>();
         File largePayloadGroupDirectory = getLargePayloadGroupDirectory(group);
         String[] selectionArgsArray = selectionArgs.toArray(new String[0]);
         Cursor cursor = null;
         ContentValues values;
         try {
-            cursor = mDatabaseManager.getCursor(builder, null, selectionArgsArray, GET_SORT_ORDER);
+            cursor = mDatabaseManager.getCursor(builder, null, selectionArgsArray, GET_SORT_ORDER, String.valueOf(limit));
         } catch (RuntimeException e) {
             AppCenterLog.error(LOG_TAG, "Failed to get logs: ", e);
         }
@@ -478,26 +1149,63 @@ public class DatabasePersistence extends Persistence {
                 continue;
             }
 
-            /* If the log is already in pending state, then skip. Otherwise put the log to candidate container. */
+            /*
+             * Pending logs are already filtered out by the query, this is just a safety net.
+             * If the log is already in pending state, then skip. Otherwise put the log to candidate container.
+             */
             if (!mPendingDbIdentifiers.contains(dbIdentifier)) {
+
+                /* Stop when the batch reaches its size limits, using the size recorded when the log was stored. */
+                HotLog hotLog = mHotLogs.get(dbIdentifier);
+                Integer size = hotLog != null ? Integer.valueOf(hotLog.mSize) : values.getAsInteger(COLUMN_SIZE);
+                if (size == null) {
+
+                    /* Logs stored by a previous version have no size, approximate it. */
+                    String databasePayload = values.getAsString(COLUMN_LOG);
+                    size = databasePayload != null ? databasePayload.length() : PAYLOAD_MAX_SIZE;
+                }
+                if (!canAddToBatch(group, count, batchSize, size)) {
+                    break;
+                }
+
+                /* Use the log still in memory if it was stored by this process. */
+                if (hotLog != null) {
+                    candidates.put(dbIdentifier, hotLog.mLog);
+                    candidatePayloads.put(dbIdentifier, hotLog.mPayload);
+                    batchSize += hotLog.mSize;
+                    count++;
+                    continue;
+                }
                 try {
 
                     /* Deserialize JSON to Log. */
                     String logPayload;
                     String databasePayload = values.getAsString(COLUMN_LOG);
-                    if (databasePayload == null) {
+                    byte[] compactPayload = values.getAsByteArray(COLUMN_COMPACT_LOG);
+                    if (compactPayload != null) {
+                        logPayload = CompactLogFormat.decode(compactPayload);
+                    } else if (databasePayload == null) {
                         File file = getLargePayloadFile(largePayloadGroupDirectory, dbIdentifier);
                         AppCenterLog.debug(LOG_TAG, "Read payload file " + file);
                         logPayload = FileManager.read(file);
                         if (logPayload == null) {
                             throw new JSONException("Log payload is null and not stored as a file.");
                         }
+                        largePayloadDbIdentifiers.add(dbIdentifier);
                     } else {
                         logPayload = databasePayload;
                     }
                     String databasePayloadType = values.getAsString(COLUMN_DATA_TYPE);
                     Log log = getLogSerializer().deserializeLog(logPayload, databasePayloadType);
 
+                    /* Share one device instance between logs and serialize the log to send with it. */
+                    String deviceId = values.getAsString(COLUMN_DEVICE_ID);
+                    if (deviceId != null) {
+                        StoredDevice storedDevice = getStoredDevice(deviceId);
+                        log.setDevice(storedDevice.getDevice(getLogSerializer()));
+                        logPayload = getLogSerializer().serializeLog(log);
+                    }
+
                     /* Restore target token. */
                     String targetToken = values.getAsString(COLUMN_TARGET_TOKEN);
                     if (targetToken != null) {
@@ -507,6 +1215,8 @@ public class DatabasePersistence extends Persistence {
 
                     /* Add log to list and count. */
                     candidates.put(dbIdentifier, log);
+                    candidatePayloads.put(dbIdentifier, logPayload);
+                    batchSize += size;
                     count++;
                 } catch (JSONException e) {
 
@@ -546,14 +1256,19 @@ public class DatabasePersistence extends Persistence {
         AppCenterLog.debug(LOG_TAG, "Returning " + candidates.size() + " log(s) with an ID, " + id);
         AppCenterLog.debug(LOG_TAG, "The SID/ID pairs for returning log(s) is/are:");
         List<Long> pendingDbIdentifiersGroup = new ArrayList<>();
+        List<String> pendingPayloadsGroup = new ArrayList<>();
         for (Map.Entry<Long, Log> entry : candidates.entrySet()) {
             Long dbIdentifier = entry.getKey();
 
             /* Change a database identifier to pending state. */
             mPendingDbIdentifiers.add(dbIdentifier);
+            if (largePayloadDbIdentifiers.contains(dbIdentifier)) {
+                mPendingLargePayloadDbIdentifiers.add(dbIdentifier);
+            }
 
             /* Store a database identifier to a group of the ID. */
             pendingDbIdentifiersGroup.add(dbIdentifier);
+            pendingPayloadsGroup.add(candidatePayloads.get(dbIdentifier));
 
             /* Add to output parameter. */
             outLogs.add(entry.getValue());
@@ -564,18 +1279,43 @@ public class DatabasePersistence extends Persistence {
 
         /* Update pending IDs. */
         mPendingDbIdentifiersGroups.put(group + id, pendingDbIdentifiersGroup);
+        mPendingPayloadsGroups.put(group + id, pendingPayloadsGroup);
         return id;
     }
 
+    @Nullable
+    @Override
+    public List<String> getLogPayloads(@NonNull String group, @NonNull String batchId) {
+        return mPendingPayloadsGroups.get(group + batchId);
+    }
+
     @Override
     public void clearPendingLogState() {
+        mPendingPayloadsGroups.clear();
         mPendingDbIdentifiers.clear();
+        mPendingLargePayloadDbIdentifiers.clear();
         mPendingDbIdentifiersGroups.clear();
         AppCenterLog.debug(LOG_TAG, "Cleared pending log states");
     }
 
+    @Override
+    public void clearPendingLogState(@NonNull String group, @NonNull String batchId) {
+        mPendingPayloadsGroups.remove(group + batchId);
+        List<Long> dbIdentifiers = mPendingDbIdentifiersGroups.remove(group + batchId);
+        if (dbIdentifiers != null) {
+            mPendingDbIdentifiers.removeAll(dbIdentifiers);
+            mPendingLargePayloadDbIdentifiers.removeAll(dbIdentifiers);
+        }
+        AppCenterLog.debug(LOG_TAG, "Cleared pending log state for " + group + " with " + batchId);
+    }
+
     @Override
     public void close() {
+        mHotLogs.clear();
+        mHotLogsSize = 0;
+        mStoredDevices.clear();
+        mLastStoredDevice = null;
+        mUnusedDevicesDeleted = false;
         mDatabaseManager.close();
     }
 
@@ -597,4 +1337,79 @@ public class DatabasePersistence extends Persistence {
         }
         return result;
     }
+
+    /**
+     * Log kept in memory after being stored.
+     */
+    @VisibleForTesting
+    static class HotLog {
+
+        /**
+         * The log.
+         */
+        final Log mLog;
+
+        /**
+         * The group of the storage for the log.
+         */
+        final String mGroup;
+
+        /**
+         * The serialized log.
+         */
+        final String mPayload;
+
+        /**
+         * Size of the serialized log in bytes.
+         */
+        final int mSize;
+
+        HotLog(@NonNull Log log, @NonNull String group, @NonNull String payload, int size) {
+            mLog = log;
+            mGroup = group;
+            mPayload = payload;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Device stored once in {@link #DEVICES_TABLE}.
+     */
+    private static class StoredDevice {
+
+        /**
+         * Key of the device in {@link #DEVICES_TABLE}.
+         */
+        final String mHash;
+
+        /**
+         * The serialized device.
+         */
+        final String mPayload;
+
+        /**
+         * Device instance shared by logs read from the database, read lazily.
+         */
+        private Device mDevice;
+
+        StoredDevice(@NonNull String hash, @NonNull String payload) {
+            mHash = hash;
+            mPayload = payload;
+        }
+
+        /**
+         * Gets the device, deserialized only once.
+         *
+         * @param logSerializer The serializer that serialized the device.
+         * @return The device.
+         * @throws JSONException if the device cannot be deserialized.
+         */
+        @NonNull
+        Device getDevice(@NonNull LogSerializer logSerializer) throws JSONException {
+            if (mDevice == null) {
+                mDevice = logSerializer.deserializeDevice(mPayload);
+            }
+            return mDevice;
+        }
+    }
 }
@@ -0,0 +1,657 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import android.content.Context;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.crypto.CryptoUtils;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+
+/**
+ * Persistence that stores logs in append-only memory mapped segment files instead of SQLite.
+ * Each group has one queue of segments per priority, critical logs are read first.
+ */
+public class FileQueuePersistence extends Persistence {
+
+    /**
+     * Sub path for directory where to store segments.
+     */
+    private static final String SEGMENTS_DIRECTORY = "/appcenter/log_segments";
+
+    /**
+     * Temporary file extension used while compacting a segment.
+     */
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    /**
+     * Separator between priority and identifier in a segment file name.
+     */
+    private static final String FILE_NAME_SEPARATOR = "-";
+
+    /**
+     * Default capacity of a segment. A larger log gets a segment of its own size.
+     * Segment files are created with their full capacity, which counts towards the maximum storage size.
+     */
+    @VisibleForTesting
+    static final int SEGMENT_SIZE = 256 * 1024;
+
+    /**
+     * A new segment takes at most this fraction of the remaining storage size, so that other queues can still store logs.
+     */
+    private static final int REMAINING_SIZE_DIVIDER = 4;
+
+    /**
+     * Size limit (in bytes) of a common schema log, same as in {@link DatabasePersistence}.
+     */
+    private static final int COMMON_SCHEMA_PAYLOAD_MAX_SIZE = (int) (1.9 * 1024 * 1024);
+
+    /**
+     * Application context.
+     */
+    private final Context mContext;
+
+    /**
+     * Base directory, one sub directory per group.
+     */
+    private final File mDirectory;
+
+    /**
+     * Segments by group then by priority (highest first), in creation order.
+     */
+    private final Map<String, TreeMap<Integer, List<LogSegment>>> mGroupSegments = new HashMap<>();
+
+    /**
+     * All segments by identifier.
+     */
+    private final Map<Long, LogSegment> mSegments = new HashMap<>();
+
+    /**
+     * Pending log groups. Key is group name and batch identifier, value is a list of record identifiers.
+     */
+    @VisibleForTesting
+    final Map<String, List<Long>> mPendingIdentifiersGroups = new HashMap<>();
+
+    /**
+     * Pending logs across all groups.
+     */
+    @VisibleForTesting
+    final Set<Long> mPendingIdentifiers = new HashSet<>();
+
+    /**
+     * Serialized logs of pending log groups. Key is group name and batch identifier.
+     */
+    private final Map<String, List<String>> mPendingPayloadsGroups = new HashMap<>();
+
+    /**
+     * Maximum size of all segment files.
+     */
+    private long mMaxSize = Long.MAX_VALUE;
+
+    /**
+     * Size of all segment files, segments being mapped with their full capacity.
+     */
+    private long mSize;
+
+    /**
+     * Identifier of the next segment.
+     */
+    private long mNextSegmentId;
+
+    /**
+     * True once existing segments have been loaded.
+     */
+    private boolean mLoaded;
+
+    /**
+     * Init.
+     *
+     * @param context application context.
+     */
+    public FileQueuePersistence(Context context) {
+        mContext = context;
+        mDirectory = new File(Constants.FILES_PATH + SEGMENTS_DIRECTORY);
+    }
+
+    /**
+     * Loads existing segments on first use.
+     */
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        File[] groupDirectories = mDirectory.listFiles();
+        if (groupDirectories == null) {
+            return;
+        }
+        for (File groupDirectory : groupDirectories) {
+            File[] files = groupDirectory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                loadSegment(groupDirectory.getName(), file);
+            }
+        }
+        for (TreeMap<Integer, List<LogSegment>> lanes : mGroupSegments.values()) {
+            for (List<LogSegment> segments : lanes.values()) {
+                Collections.sort(segments, new Comparator<LogSegment>() {
+
+                    @Override
+                    public int compare(LogSegment left, LogSegment right) {
+                        return left.mId < right.mId ? -1 : left.mId == right.mId ? 0 : 1;
+                    }
+                });
+            }
+        }
+        AppCenterLog.debug(LOG_TAG, "Loaded " + mSegments.size() + " log segments using " + mSize + " bytes.");
+    }
+
+    private void loadSegment(@NonNull String group, @NonNull File file) {
+        String name = file.getName();
+        String[] parts = name.endsWith(LogSegment.FILE_EXTENSION) ? name.substring(0, name.length() - LogSegment.FILE_EXTENSION.length()).split(FILE_NAME_SEPARATOR) : null;
+        try {
+            if (parts == null || parts.length != 2) {
+                throw new IOException("Not a segment file.");
+            }
+            int priority = Integer.parseInt(parts[0]);
+            long id = Long.parseLong(parts[1]);
+            LogSegment segment = LogSegment.open(file, id, priority);
+            mNextSegmentId = Math.max(mNextSegmentId, id + 1);
+            if (segment.mLiveCount == 0) {
+                deleteFile(file);
+                return;
+            }
+            getSegments(group, priority).add(segment);
+            mSegments.put(id, segment);
+            mSize += segment.getCapacity();
+        } catch (IOException e) {
+
+            /* Interrupted compaction or corrupted file. */
+            AppCenterLog.warn(LOG_TAG, "Deleting invalid log segment " + file, e);
+            deleteFile(file);
+        } catch (NumberFormatException e) {
+            AppCenterLog.warn(LOG_TAG, "Deleting invalid log segment " + file, e);
+            deleteFile(file);
+        }
+    }
+
+    private static void deleteFile(@NonNull File file) {
+
+        //noinspection ResultOfMethodCallIgnored we can't do anything about it.
+        file.delete();
+    }
+
+    @NonNull
+    private List<LogSegment> getSegments(@NonNull String group, int priority) {
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.get(group);
+        if (lanes == null) {
+            lanes = new TreeMap<>(Collections.<Integer>reverseOrder());
+            mGroupSegments.put(group, lanes);
+        }
+        List<LogSegment> segments = lanes.get(priority);
+        if (segments == null) {
+            segments = new ArrayList<>();
+            lanes.put(priority, segments);
+        }
+        return segments;
+    }
+
+    @NonNull
+    private File getGroupDirectory(@NonNull String group) {
+        return new File(mDirectory, group);
+    }
+
+    @Override
+    public long putLog(@NonNull Log log, @NonNull String group, @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException {
+        AppCenterLog.debug(LOG_TAG, "Storing a log to the file queue for log type " + log.getType() + " with flags=" + flags);
+        byte[] body;
+        String targetKey = null;
+        try {
+            String payload = getLogSerializer().serializeLog(log);
+            String targetToken = null;
+            if (log instanceof CommonSchemaLog) {
+                targetToken = log.getTransmissionTargetTokens().iterator().next();
+                targetKey = PartAUtils.getTargetKey(targetToken);
+                targetToken = CryptoUtils.getInstance(mContext).encrypt(targetToken);
+            }
+            body = LogSegment.encode(log.getType(), targetToken, targetKey, payload);
+            if (log instanceof CommonSchemaLog && body.length >= COMMON_SCHEMA_PAYLOAD_MAX_SIZE) {
+                throw new PersistenceException("Log is larger than " + COMMON_SCHEMA_PAYLOAD_MAX_SIZE + " bytes, cannot send to OneCollector.");
+            }
+        } catch (JSONException e) {
+            throw new PersistenceException("Cannot convert to JSON string.", e);
+        } catch (IOException e) {
+            throw new PersistenceException("Cannot encode log.", e);
+        }
+
+        /* Check the log can fit in a segment of its own. */
+        load();
+        int priority = Flags.getPersistenceFlag(flags, false);
+        long requiredSize = LogSegment.HEADER_SIZE + LogSegment.FRAME_HEADER_SIZE + body.length;
+        if (requiredSize > mMaxSize) {
+            throw new PersistenceException("Log is too large (" + body.length + " bytes) to store in the file queue. " +
+                    "Current maximum storage size is " + mMaxSize + " bytes.");
+        }
+
+        /* Append to the last segment of the queue or start a new one, discarding old logs if needed. */
+        List<LogSegment> segments = getSegments(group, priority);
+        LogSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        try {
+            if (segment == null || !segment.hasRoom(body)) {
+                while (mSize + requiredSize > mMaxSize) {
+                    if (!reclaimSpace(priority)) {
+                        throw new PersistenceException("Storage is full and no log with lower or equal priority can be discarded.");
+                    }
+                }
+                File directory = getGroupDirectory(group);
+
+                //noinspection ResultOfMethodCallIgnored we'll get an error anyway when creating the file.
+                directory.mkdirs();
+                long id = mNextSegmentId++;
+                File file = new File(directory, priority + FILE_NAME_SEPARATOR + id + LogSegment.FILE_EXTENSION);
+                int capacity = (int) Math.max(requiredSize, Math.min(SEGMENT_SIZE, (mMaxSize - mSize) / REMAINING_SIZE_DIVIDER));
+                segment = LogSegment.create(file, id, priority, capacity);
+                segments = getSegments(group, priority);
+                segments.add(segment);
+                mSegments.put(id, segment);
+                mSize += segment.getCapacity();
+            }
+            LogSegment.Record record = segment.append(body, targetKey);
+
+            /* Critical logs must survive a power loss. */
+            if (priority == Flags.CRITICAL) {
+                segment.force();
+            }
+            long id = segment.getRecordId(record);
+            AppCenterLog.debug(LOG_TAG, "Stored a log to the file queue for log type " + log.getType() + " with id=" + id);
+            return id;
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to store a log to the file queue for log type " + log.getType() + ".", e);
+        }
+    }
+
+    /**
+     * Reclaims space by compacting a segment, or else by discarding the oldest segment
+     * that has the lowest priority which is lower or equal priority than the new log.
+     * Segments with logs being sent are neither compacted nor discarded.
+     *
+     * @param priority The priority of the new log.
+     * @return false if no space could be reclaimed.
+     */
+    private boolean reclaimSpace(int priority) {
+        LogSegment compactable = null;
+        LogSegment oldest = null;
+        for (LogSegment segment : mSegments.values()) {
+            if (segment.mDeletedSize > 0 && (compactable == null || segment.mDeletedSize > compactable.mDeletedSize) && !hasPendingRecords(segment)) {
+                compactable = segment;
+            }
+            if (segment.mPriority <= priority && (oldest == null || segment.mPriority < oldest.mPriority
+                    || (segment.mPriority == oldest.mPriority && segment.mId < oldest.mId)) && !hasPendingRecords(segment)) {
+                oldest = segment;
+            }
+        }
+        if (compactable != null && compact(compactable)) {
+            return true;
+        }
+        if (oldest == null) {
+            return false;
+        }
+        AppCenterLog.debug(LOG_TAG, "Storage is full, discarding " + oldest.mLiveCount + " logs of segment " + oldest.mFile);
+        deleteSegment(oldest);
+        return true;
+    }
+
+    private boolean hasPendingRecords(@NonNull LogSegment segment) {
+        if (!mPendingIdentifiers.isEmpty()) {
+            for (LogSegment.Record record : segment.mRecords) {
+                if (mPendingIdentifiers.contains(segment.getRecordId(record))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites a segment without its deleted records in a file sized for the remaining records, keeping its position in the queue.
+     * Segments with pending logs are not compacted as record identifiers change.
+     *
+     * @param segment The segment to compact.
+     * @return true if the segment was compacted.
+     */
+    private boolean compact(@NonNull LogSegment segment) {
+        File temporaryFile = new File(segment.mFile.getPath() + TEMPORARY_FILE_EXTENSION);
+        try {
+            LogSegment compacted = LogSegment.create(temporaryFile, segment.mId, segment.mPriority, segment.getSize() - segment.mDeletedSize);
+            for (LogSegment.Record record : segment.mRecords) {
+                if (!record.mDeleted) {
+                    compacted.append(segment.readBody(record), record.mTargetKey);
+                }
+            }
+            compacted.force();
+            if (!temporaryFile.renameTo(segment.mFile)) {
+                throw new IOException("Failed to rename " + temporaryFile);
+            }
+            compacted = LogSegment.open(segment.mFile, segment.mId, segment.mPriority);
+            for (List<LogSegment> segments : mGroupSegments.get(segment.mFile.getParentFile().getName()).values()) {
+                int index = segments.indexOf(segment);
+                if (index >= 0) {
+                    segments.set(index, compacted);
+                }
+            }
+            mSegments.put(segment.mId, compacted);
+            mSize += compacted.getCapacity() - segment.getCapacity();
+            AppCenterLog.debug(LOG_TAG, "Compacted log segment " + segment.mFile + " from " + segment.getCapacity() + " to " + compacted.getCapacity() + " bytes.");
+            return true;
+        } catch (IOException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to compact log segment " + segment.mFile, e);
+            deleteFile(temporaryFile);
+            return false;
+        }
+    }
+
+    private void deleteSegment(@NonNull LogSegment segment) {
+        mSegments.remove(segment.mId);
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.get(segment.mFile.getParentFile().getName());
+        if (lanes != null) {
+            List<LogSegment> segments = lanes.get(segment.mPriority);
+            if (segments != null) {
+                segments.remove(segment);
+            }
+        }
+        mSize -= segment.getCapacity();
+        deleteFile(segment.mFile);
+    }
+
+    @Override
+    public void deleteLogs(@NonNull String group, @NonNull String batchId) {
+        AppCenterLog.debug(LOG_TAG, "Deleting logs from the file queue for " + group + " with " + batchId);
+        List<Long> identifiers = mPendingIdentifiersGroups.remove(group + batchId);
+        mPendingPayloadsGroups.remove(group + batchId);
+        if (identifiers == null) {
+            return;
+        }
+        Set<LogSegment> segments = new HashSet<>();
+        for (Long identifier : identifiers) {
+            mPendingIdentifiers.remove(identifier);
+            LogSegment segment = mSegments.get(identifier >>> 32);
+            LogSegment.Record record = segment == null ? null : segment.findRecord((int) (identifier & 0xFFFFFFFFL));
+            if (record != null) {
+                segment.delete(record);
+                segments.add(segment);
+            }
+        }
+
+        /* Reclaim space of fully deleted segments, compact mostly deleted ones. */
+        for (LogSegment segment : segments) {
+            if (segment.mLiveCount == 0) {
+                deleteSegment(segment);
+            } else if (segment.mDeletedSize * 2 > segment.getSize() && !hasPendingRecords(segment)) {
+                compact(segment);
+            }
+        }
+    }
+
+    @Override
+    public void deleteLogs(String group) {
+        AppCenterLog.debug(LOG_TAG, "Deleting all logs from the file queue for " + group);
+        load();
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.remove(group);
+        if (lanes != null) {
+            for (List<LogSegment> segments : lanes.values()) {
+                for (LogSegment segment : segments) {
+                    mSegments.remove(segment.mId);
+                    mSize -= segment.getCapacity();
+                    deleteFile(segment.mFile);
+                }
+            }
+        }
+        deleteFile(getGroupDirectory(group));
+        for (Iterator<String> iterator = mPendingIdentifiersGroups.keySet().iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            if (key.startsWith(group)) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<String> iterator = mPendingPayloadsGroups.keySet().iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            if (key.startsWith(group)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Deletes the oldest normal priority logs in segment order, critical logs are never deleted by this method.
+     */
+    @Override
+    public int deleteOldestLogs(@NonNull String group, @IntRange(from = 1) int count) {
+        load();
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.get(group);
+        List<LogSegment> segments = lanes == null ? null : lanes.get(Flags.NORMAL);
+        if (segments == null) {
+            return 0;
+        }
+        int deletedCount = 0;
+        List<LogSegment> emptySegments = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            for (LogSegment.Record record : segment.mRecords) {
+                if (deletedCount >= count) {
+                    break;
+                }
+                if (!record.mDeleted && !mPendingIdentifiers.contains(segment.getRecordId(record))) {
+                    segment.delete(record);
+                    deletedCount++;
+                }
+            }
+            if (segment.mLiveCount == 0) {
+                emptySegments.add(segment);
+            }
+            if (deletedCount >= count) {
+                break;
+            }
+        }
+        for (LogSegment segment : emptySegments) {
+            deleteSegment(segment);
+        }
+        AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " oldest logs from the file queue for " + group);
+        return deletedCount;
+    }
+
+    @Override
+    public int countLogs(@NonNull String group) {
+        load();
+        int count = 0;
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.get(group);
+        if (lanes != null) {
+            for (List<LogSegment> segments : lanes.values()) {
+                for (LogSegment segment : segments) {
+                    count += segment.mLiveCount;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Nullable
+    @Override
+    public String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<Log> outLogs) {
+        AppCenterLog.debug(LOG_TAG, "Trying to get " + limit + " logs from the file queue for " + group);
+        load();
+        TreeMap<Integer, List<LogSegment>> lanes = mGroupSegments.get(group);
+        if (lanes == null) {
+            return null;
+        }
+
+        /* Read queues by priority, highest first. */
+        List<Long> identifiers = new ArrayList<>();
+        List<Log> logs = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        Set<LogSegment> corruptedSegments = new HashSet<>();
+        long batchSize = 0;
+        boolean batchComplete = false;
+        for (List<LogSegment> segments : lanes.values()) {
+            for (LogSegment segment : segments) {
+                if (batchComplete || identifiers.size() >= limit) {
+                    break;
+                }
+                if (segment.mLiveCount == 0) {
+                    continue;
+                }
+                for (LogSegment.Record record : segment.mRecords) {
+                    if (identifiers.size() >= limit) {
+                        break;
+                    }
+                    long identifier = segment.getRecordId(record);
+                    if (record.mDeleted || mPendingIdentifiers.contains(identifier) || pausedTargetKeys.contains(record.mTargetKey)) {
+                        continue;
+                    }
+
+                    /* Check the size budget with the frame size before reading the log. */
+                    if (!canAddToBatch(group, identifiers.size(), batchSize, record.mSize)) {
+                        batchComplete = true;
+                        break;
+                    }
+                    try {
+                        String[] fields = LogSegment.decode(segment.readBody(record));
+                        Log log = getLogSerializer().deserializeLog(fields[3], fields[1]);
+                        if (fields[2] != null) {
+                            CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(fields[2]);
+                            log.addTransmissionTarget(data.getDecryptedData());
+                        }
+                        identifiers.add(identifier);
+                        logs.add(log);
+                        payloads.add(fields[3]);
+                        batchSize += record.mSize;
+                    } catch (JSONException e) {
+
+                        /* If it is not able to deserialize, delete and get another log. */
+                        AppCenterLog.error(LOG_TAG, "Cannot deserialize a log in the file queue", e);
+                        segment.delete(record);
+                        corruptedSegments.add(segment);
+                    } catch (IOException e) {
+                        AppCenterLog.error(LOG_TAG, "Cannot decode a log in the file queue", e);
+                        segment.delete(record);
+                        corruptedSegments.add(segment);
+                    }
+                }
+            }
+        }
+        for (LogSegment segment : corruptedSegments) {
+            if (segment.mLiveCount == 0) {
+                deleteSegment(segment);
+            }
+        }
+        if (logs.isEmpty()) {
+            AppCenterLog.debug(LOG_TAG, "No logs found in the file queue at the moment");
+            return null;
+        }
+        String batchId = UUID.randomUUID().toString();
+        mPendingIdentifiers.addAll(identifiers);
+        mPendingIdentifiersGroups.put(group + batchId, identifiers);
+        mPendingPayloadsGroups.put(group + batchId, payloads);
+        outLogs.addAll(logs);
+        AppCenterLog.debug(LOG_TAG, "Returning " + logs.size() + " log(s) with an ID, " + batchId);
+        return batchId;
+    }
+
+    @Nullable
+    @Override
+    public List<String> getLogPayloads(@NonNull String group, @NonNull String batchId) {
+        return mPendingPayloadsGroups.get(group + batchId);
+    }
+
+    @Override
+    public void clearPendingLogState() {
+        mPendingPayloadsGroups.clear();
+        mPendingIdentifiers.clear();
+        mPendingIdentifiersGroups.clear();
+        AppCenterLog.debug(LOG_TAG, "Cleared pending log states");
+    }
+
+    @Override
+    public void clearPendingLogState(@NonNull String group, @NonNull String batchId) {
+        mPendingPayloadsGroups.remove(group + batchId);
+        List<Long> identifiers = mPendingIdentifiersGroups.remove(group + batchId);
+        if (identifiers != null) {
+            mPendingIdentifiers.removeAll(identifiers);
+        }
+        AppCenterLog.debug(LOG_TAG, "Cleared pending log state for " + group + " with " + batchId);
+    }
+
+    @Override
+    public boolean setMaxStorageSize(long maxStorageSizeInBytes) {
+        load();
+        if (maxStorageSizeInBytes < mSize) {
+            mMaxSize = mSize;
+            AppCenterLog.error(LOG_TAG, "Could not change maximum storage size to " + maxStorageSizeInBytes + " bytes, current size is " + mSize + " bytes.");
+            return false;
+        }
+        mMaxSize = maxStorageSizeInBytes;
+        AppCenterLog.info(LOG_TAG, "Changed maximum storage size to " + maxStorageSizeInBytes + " bytes.");
+        return true;
+    }
+
+    /**
+     * Compacts segments in the background, so checkpoints are required even without write-ahead logging.
+     */
+    @Override
+    public boolean isCheckpointRequired() {
+        return true;
+    }
+
+    /**
+     * Compacts segments that have deleted records and no logs being sent.
+     */
+    @Override
+    public void checkpoint() {
+        for (LogSegment segment : new ArrayList<>(mSegments.values())) {
+            if (segment.mDeletedSize > 0 && !hasPendingRecords(segment)) {
+                compact(segment);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        /* Mappings are released when segments are garbage collected. */
+        mGroupSegments.clear();
+        mSegments.clear();
+        mSize = 0;
+        mLoaded = false;
+    }
+}
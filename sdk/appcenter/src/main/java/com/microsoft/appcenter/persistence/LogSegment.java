@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only memory mapped file of log records for one group and one priority.
+ * <p>
+ * The file starts with a header (magic number and format version) followed by frames.
+ * Each frame is: body length (int), CRC32 of body (int), state (byte), body.
+ * The length is written last so a torn write is read as the end of the segment.
+ * Deleting a record only flips its state byte, space is reclaimed by compaction or
+ * when all records of the segment are deleted.
+ */
+class LogSegment {
+
+    /**
+     * Magic number at the start of a segment file ("ACLQ").
+     */
+    @VisibleForTesting
+    static final int MAGIC = 0x41434c51;
+
+    /**
+     * Segment format version.
+     */
+    @VisibleForTesting
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the file header.
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of the frame header: length, CRC and state.
+     */
+    static final int FRAME_HEADER_SIZE = 9;
+
+    /**
+     * Segment file extension.
+     */
+    static final String FILE_EXTENSION = ".segment";
+
+    /**
+     * State of a record that was not deleted.
+     */
+    private static final byte STATE_LIVE = 0;
+
+    /**
+     * State of a deleted record.
+     */
+    private static final byte STATE_DELETED = 1;
+
+    /**
+     * Length marker for a null string in a record body.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Encoding of strings in a record body.
+     */
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Segment identifier, increases with segment creation order.
+     */
+    final long mId;
+
+    /**
+     * Persistence priority of the records in this segment.
+     */
+    final int mPriority;
+
+    /**
+     * Segment file.
+     */
+    final File mFile;
+
+    /**
+     * Records in append order, including deleted ones.
+     */
+    final List<Record> mRecords = new ArrayList<>();
+
+    /**
+     * Number of records that are not deleted.
+     */
+    int mLiveCount;
+
+    /**
+     * Size in bytes of deleted records, reclaimed by compaction.
+     */
+    int mDeletedSize;
+
+    /**
+     * Mapped file content.
+     */
+    private final MappedByteBuffer mBuffer;
+
+    /**
+     * Offset where the next record will be appended, also the used size of the segment.
+     */
+    private int mWritePosition;
+
+    /**
+     * Init.
+     */
+    private LogSegment(@NonNull File file, long id, int priority, @NonNull MappedByteBuffer buffer) {
+        mFile = file;
+        mId = id;
+        mPriority = priority;
+        mBuffer = buffer;
+    }
+
+    /**
+     * Maps a file in memory, the file is extended if smaller than capacity.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static MappedByteBuffer map(@NonNull File file, long capacity) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+
+            /* The mapping stays valid after closing the file. */
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Creates an empty segment.
+     *
+     * @param file     The segment file.
+     * @param id       The segment identifier.
+     * @param priority The persistence priority of records.
+     * @param capacity The maximum size of the segment file.
+     * @return The segment.
+     * @throws IOException if the file cannot be created.
+     */
+    static LogSegment create(@NonNull File file, long id, int priority, int capacity) throws IOException {
+        LogSegment segment = new LogSegment(file, id, priority, map(file, capacity));
+        segment.mBuffer.putInt(0, MAGIC);
+        segment.mBuffer.putInt(4, FORMAT_VERSION);
+        segment.mWritePosition = HEADER_SIZE;
+        segment.writeEndMarker();
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment and reads its records, stopping at the first corrupted frame.
+     *
+     * @param file     The segment file.
+     * @param id       The segment identifier.
+     * @param priority The persistence priority of records.
+     * @return The segment.
+     * @throws IOException if the file cannot be read or is not a segment.
+     */
+    static LogSegment open(@NonNull File file, long id, int priority) throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid segment size: " + length);
+        }
+        LogSegment segment = new LogSegment(file, id, priority, map(file, length));
+        if (segment.mBuffer.getInt(0) != MAGIC || segment.mBuffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported segment format.");
+        }
+        int position = HEADER_SIZE;
+        int capacity = segment.mBuffer.capacity();
+        while (position + FRAME_HEADER_SIZE <= capacity) {
+            int bodyLength = segment.mBuffer.getInt(position);
+            if (bodyLength <= 0 || bodyLength > capacity - position - FRAME_HEADER_SIZE) {
+                break;
+            }
+            byte[] body = segment.read(position + FRAME_HEADER_SIZE, bodyLength);
+            if (crc(body) != segment.mBuffer.getInt(position + 4)) {
+                break;
+            }
+            Record record = new Record(position, FRAME_HEADER_SIZE + bodyLength, readTargetKey(body));
+            segment.mRecords.add(record);
+            if (segment.mBuffer.get(position + 8) == STATE_LIVE) {
+                segment.mLiveCount++;
+            } else {
+                record.mDeleted = true;
+                segment.mDeletedSize += record.mSize;
+            }
+            position += record.mSize;
+        }
+
+        /* Anything after the last valid frame is overwritten by next append. */
+        segment.mWritePosition = position;
+        segment.writeEndMarker();
+        return segment;
+    }
+
+    /**
+     * Encodes a record body.
+     *
+     * @param type        The log type.
+     * @param targetToken The encrypted target token, if any.
+     * @param targetKey   The target key, if any.
+     * @param payload     The serialized log.
+     * @return The record body.
+     */
+    static byte[] encode(@NonNull String type, @Nullable String targetToken, @Nullable String targetKey, @NonNull String payload) throws UnsupportedEncodingException {
+        byte[][] fields = {
+                targetKey == null ? null : targetKey.getBytes(CHARSET),
+                type.getBytes(CHARSET),
+                targetToken == null ? null : targetToken.getBytes(CHARSET),
+                payload.getBytes(CHARSET)
+        };
+        int size = 0;
+        for (byte[] field : fields) {
+            size += 4 + (field == null ? 0 : field.length);
+        }
+        ByteBuffer body = ByteBuffer.allocate(size);
+        for (byte[] field : fields) {
+            if (field == null) {
+                body.putInt(NULL_LENGTH);
+            } else {
+                body.putInt(field.length);
+                body.put(field);
+            }
+        }
+        return body.array();
+    }
+
+    /**
+     * Decodes a record body.
+     *
+     * @param body The record body.
+     * @return Fields in this order: target key, type, target token, payload.
+     */
+    static String[] decode(@NonNull byte[] body) throws UnsupportedEncodingException {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        String[] fields = new String[4];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readString(buffer);
+        }
+        return fields;
+    }
+
+    /**
+     * Reads only the target key, the first field of a record body.
+     */
+    private static String readTargetKey(@NonNull byte[] body) throws UnsupportedEncodingException {
+        return readString(ByteBuffer.wrap(body));
+    }
+
+    private static String readString(@NonNull ByteBuffer buffer) throws UnsupportedEncodingException {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, CHARSET);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int crc(@NonNull byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+    private byte[] read(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = mBuffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private void writeEndMarker() {
+        if (mWritePosition + 4 <= mBuffer.capacity()) {
+            mBuffer.putInt(mWritePosition, 0);
+        }
+    }
+
+    /**
+     * Gets the used size of the segment in bytes.
+     *
+     * @return the used size.
+     */
+    int getSize() {
+        return mWritePosition;
+    }
+
+    /**
+     * Checks if a record fits in the remaining space.
+     *
+     * @param body The record body.
+     * @return true if the record can be appended.
+     */
+    boolean hasRoom(@NonNull byte[] body) {
+        return mWritePosition + FRAME_HEADER_SIZE + body.length <= mBuffer.capacity();
+    }
+
+    /**
+     * Appends a record, {@link #hasRoom(byte[])} must be checked first.
+     *
+     * @param body      The record body.
+     * @param targetKey The target key of the record, kept in memory to filter paused targets.
+     * @return The new record.
+     */
+    Record append(@NonNull byte[] body, @Nullable String targetKey) {
+        int position = mWritePosition;
+        ByteBuffer view = mBuffer.duplicate();
+        view.position(position + FRAME_HEADER_SIZE);
+        view.put(body);
+        Record record = new Record(position, FRAME_HEADER_SIZE + body.length, targetKey);
+        mWritePosition += record.mSize;
+        writeEndMarker();
+        mBuffer.putInt(position + 4, crc(body));
+        mBuffer.put(position + 8, STATE_LIVE);
+
+        /* Commit the frame. */
+        mBuffer.putInt(position, body.length);
+        mRecords.add(record);
+        mLiveCount++;
+        return record;
+    }
+
+    /**
+     * Reads the body of a record.
+     *
+     * @param record The record.
+     * @return The record body.
+     */
+    byte[] readBody(@NonNull Record record) {
+        return read(record.mOffset + FRAME_HEADER_SIZE, record.mSize - FRAME_HEADER_SIZE);
+    }
+
+    /**
+     * Finds a record by its offset.
+     *
+     * @param offset The record offset.
+     * @return The record or null if not found.
+     */
+    @Nullable
+    Record findRecord(int offset) {
+        int low = 0;
+        int high = mRecords.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Record record = mRecords.get(middle);
+            if (record.mOffset < offset) {
+                low = middle + 1;
+            } else if (record.mOffset > offset) {
+                high = middle - 1;
+            } else {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks a record as deleted.
+     *
+     * @param record The record.
+     */
+    void delete(@NonNull Record record) {
+        if (!record.mDeleted) {
+            mBuffer.put(record.mOffset + 8, STATE_DELETED);
+            record.mDeleted = true;
+            mLiveCount--;
+            mDeletedSize += record.mSize;
+        }
+    }
+
+    /**
+     * Writes mapped changes to the storage device.
+     */
+    void force() {
+        mBuffer.force();
+    }
+
+    /**
+     * Gets the capacity of the segment file.
+     *
+     * @return the capacity in bytes.
+     */
+    int getCapacity() {
+        return mBuffer.capacity();
+    }
+
+    /**
+     * Gets a record identifier unique across segments.
+     *
+     * @param record The record.
+     * @return The identifier.
+     */
+    long getRecordId(@NonNull Record record) {
+        return mId << 32 | record.mOffset;
+    }
+
+    /**
+     * Record location and metadata.
+     */
+    static class Record {
+
+        /**
+         * Offset of the frame in the segment.
+         */
+        final int mOffset;
+
+        /**
+         * Size of the frame in bytes.
+         */
+        final int mSize;
+
+        /**
+         * Target key, if any.
+         */
+        final String mTargetKey;
+
+        /**
+         * Is record deleted?
+         */
+        boolean mDeleted;
+
+        Record(int offset, int size, String targetKey) {
+            mOffset = offset;
+            mSize = size;
+            mTargetKey = targetKey;
+        }
+    }
+}
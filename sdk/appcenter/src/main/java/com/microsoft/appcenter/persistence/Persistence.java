@@ -16,7 +16,11 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import java.io.Closeable;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract class for Persistence service.
@@ -28,6 +32,16 @@ public abstract class Persistence implements Closeable {
      */
     private LogSerializer mLogSerializer;
 
+    /**
+     * Batch size limits in bytes per group, first value is the target size and second value is the maximum size.
+     */
+    private final Map<String, long[]> mBatchSizeLimits = new HashMap<>();
+
+    /**
+     * Groups whose last batch was completed because of its size limits.
+     */
+    private final Set<String> mSizeLimitedGroups = new HashSet<>();
+
     /**
      * Writes a log to the storage with the given {@code group}.
      *
@@ -40,6 +54,33 @@ public abstract class Persistence implements Closeable {
     public abstract long putLog(@NonNull Log log, @NonNull String group,
                                 @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException;
 
+    /**
+     * Writes logs to the storage with the given {@code group}, implementations can override
+     * this to store all the logs at once, by default logs are written one by one.
+     * A failure to write a log does not prevent writing the other ones.
+     *
+     * @param logs          The logs to be placed in the storage.
+     * @param group         The group of the storage for the logs.
+     * @param flags         The persistence flags.
+     * @param outExceptions A list to receive, for each log in the same order, {@code null} if the log was written
+     *                      or the {@link PersistenceException} that {@link #putLog(Log, String, int)} would have thrown.
+     * @return Log identifiers from persistence after saving, in the same order as {@code logs}, -1 for logs that could not be written.
+     */
+    public long[] putLogs(@NonNull List<Log> logs, @NonNull String group,
+                          @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags, @NonNull List<PersistenceException> outExceptions) {
+        long[] databaseIds = new long[logs.size()];
+        for (int i = 0; i < logs.size(); i++) {
+            try {
+                databaseIds[i] = putLog(logs.get(i), group, flags);
+                outExceptions.add(null);
+            } catch (PersistenceException e) {
+                databaseIds[i] = -1;
+                outExceptions.add(e);
+            }
+        }
+        return databaseIds;
+    }
+
     /**
      * Deletes a log with the give ID from the {@code group}.
      *
@@ -55,6 +96,16 @@ public abstract class Persistence implements Closeable {
      */
     public abstract void deleteLogs(String group);
 
+    /**
+     * Deletes the oldest normal priority logs of the {@code group} that are not part of a batch being sent, in bulk.
+     * Critical logs are never deleted by this method.
+     *
+     * @param group The group of the storage for logs.
+     * @param count The maximum number of logs to delete.
+     * @return The number of deleted logs.
+     */
+    public abstract int deleteOldestLogs(@NonNull String group, @IntRange(from = 1) int count);
+
     /**
      * Gets the number of logs for the given {@code group}.
      *
@@ -75,11 +126,82 @@ public abstract class Persistence implements Closeable {
     @Nullable
     public abstract String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<Log> outLogs);
 
+    /**
+     * Gets the logs of a batch returned by {@link #getLogs(String, Collection, int, List)} in their stored serialized form,
+     * in the same order, so that they can be sent without serializing them again.
+     * Returns {@code null} by default.
+     *
+     * @param group   The group of the storage for logs.
+     * @param batchId The ID returned by {@link #getLogs(String, Collection, int, List)}.
+     * @return The serialized logs or {@code null} if not available.
+     */
+    @Nullable
+    public List<String> getLogPayloads(@NonNull String group, @NonNull String batchId) {
+        return null;
+    }
+
+    /**
+     * Sets the size limits of batches returned by {@link #getLogs(String, Collection, int, List)} for the {@code group},
+     * using the serialized size of logs recorded when they were stored.
+     * A batch stops growing once it reaches the target size and never exceeds the maximum size,
+     * except when it contains a single log larger than the maximum size.
+     *
+     * @param group           The group of the storage for logs.
+     * @param targetBatchSize The target size of a batch in bytes.
+     * @param maxBatchSize    The maximum size of a batch in bytes.
+     */
+    public void setBatchSizeLimits(@NonNull String group, @IntRange(from = 1) long targetBatchSize, @IntRange(from = 1) long maxBatchSize) {
+        mBatchSizeLimits.put(group, new long[]{targetBatchSize, maxBatchSize});
+    }
+
+    /**
+     * Checks if a log can be added to a batch being built by {@link #getLogs(String, Collection, int, List)}.
+     * The first log is always accepted so that a log larger than the limits is sent alone instead of blocking the group.
+     *
+     * @param group     The group of the storage for logs.
+     * @param logCount  The number of logs already in the batch.
+     * @param batchSize The size in bytes of the logs already in the batch.
+     * @param logSize   The size in bytes of the log to add.
+     * @return true if the log can be added to the batch, false if the batch is complete.
+     */
+    boolean canAddToBatch(@NonNull String group, int logCount, long batchSize, long logSize) {
+        if (logCount == 0) {
+            mSizeLimitedGroups.remove(group);
+            return true;
+        }
+        long[] limits = mBatchSizeLimits.get(group);
+        if (limits == null || (batchSize < limits[0] && batchSize + logSize <= limits[1])) {
+            return true;
+        }
+        mSizeLimitedGroups.add(group);
+        return false;
+    }
+
+    /**
+     * Checks if the last batch returned by {@link #getLogs(String, Collection, int, List)} for the {@code group}
+     * has fewer logs than requested because it reached its size limits, other logs are then still pending.
+     *
+     * @param group The group of the storage for logs.
+     * @return true if the last batch was completed by its size limits.
+     */
+    public boolean isBatchSizeLimitReached(@NonNull String group) {
+        return mSizeLimitedGroups.contains(group);
+    }
+
     /**
      * Clears all associations between logs of the {@code group} and ids returned by {@link #getLogs(String, Collection, int, List)}}.
      */
     public abstract void clearPendingLogState();
 
+    /**
+     * Clears the association between logs of the {@code group} and the {@code batchId} returned by
+     * {@link #getLogs(String, Collection, int, List)}, so that these logs can be read again.
+     *
+     * @param group   The group of the logs.
+     * @param batchId The batch identifier.
+     */
+    public abstract void clearPendingLogState(@NonNull String group, @NonNull String batchId);
+
     /**
      * Gets a {@link LogSerializer}.
      *
@@ -109,6 +231,50 @@ public abstract class Persistence implements Closeable {
      */
     public abstract boolean setMaxStorageSize(long maxStorageSizeInBytes);
 
+    /**
+     * Enables write-ahead logging in the storage if supported, must be called before the storage is opened.
+     * Does nothing by default.
+     *
+     * @param enabled true to use write-ahead logging.
+     */
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+    }
+
+    /**
+     * Sets the storage cache size if supported, must be called before the storage is opened.
+     * Does nothing by default.
+     *
+     * @param cacheSizeInKilobytes cache size in kilobytes, 0 to use the default value.
+     */
+    public void setCacheSize(@IntRange(from = 0) int cacheSizeInKilobytes) {
+    }
+
+    /**
+     * Stores new logs in a compact binary encoding if supported, logs already stored can still be read.
+     * Does nothing by default.
+     *
+     * @param enabled true to use the compact encoding.
+     */
+    public void setCompactEncodingEnabled(boolean enabled) {
+    }
+
+    /**
+     * Flushes pending writes to the main storage, called periodically from the App Center thread.
+     * Does nothing by default.
+     */
+    public void checkpoint() {
+    }
+
+    /**
+     * Checks if {@link #checkpoint()} must be called periodically even without write-ahead logging.
+     * Returns {@code false} by default.
+     *
+     * @return true if checkpoints are required.
+     */
+    public boolean isCheckpointRequired() {
+        return false;
+    }
+
     /**
      * Thrown when {@link Persistence} cannot write a log to the storage.
      */
@@ -132,6 +132,61 @@ public class NetworkStateHelper implements Closeable {
         return mConnected.get() || isAnyNetworkConnected();
     }
 
+    /**
+     * Check whether the active network is metered, such as a cellular network.
+     *
+     * @return true if metered or if the state cannot be read, false otherwise.
+     */
+    public boolean isNetworkMetered() {
+        try {
+            return mConnectivityManager.isActiveNetworkMetered();
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot access network metered state.", e);
+            return true;
+        }
+    }
+
+    /**
+     * Check whether the radio of the default network is currently active, meaning sending data now
+     * does not require powering it up.
+     *
+     * @return true if active or if the state cannot be read, false otherwise.
+     */
+    public boolean isDefaultNetworkActive() {
+        try {
+            return mConnectivityManager.isDefaultNetworkActive();
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot access network activity state.", e);
+            return true;
+        }
+    }
+
+    /**
+     * Add a listener called when the radio of the default network becomes active because of other traffic.
+     *
+     * @param listener listener to add.
+     */
+    public void addNetworkActiveListener(ConnectivityManager.OnNetworkActiveListener listener) {
+        try {
+            mConnectivityManager.addDefaultNetworkActiveListener(listener);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot listen to network activity.", e);
+        }
+    }
+
+    /**
+     * Remove a listener added with {@link #addNetworkActiveListener}.
+     *
+     * @param listener listener to remove.
+     */
+    public void removeNetworkActiveListener(ConnectivityManager.OnNetworkActiveListener listener) {
+        try {
+            mConnectivityManager.removeDefaultNetworkActiveListener(listener);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot stop listening to network activity.", e);
+        }
+    }
+
     /**
      * Check if any network is connected.
      *
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Utility class relating to UTF-8 encoding.
+ */
+public class Utf8Utils {
+
+    @VisibleForTesting
+    Utf8Utils() {
+
+        /* Hide constructor in utils pattern. */
+    }
+
+    /**
+     * Get the length of a string encoded in UTF-8 without encoding it.
+     * Unpaired surrogates count as the one byte replacement character used by {@link String#getBytes(String)}.
+     *
+     * @param value string.
+     * @return length in bytes.
+     */
+    public static int getLength(@NonNull CharSequence value) {
+        int length = value.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length++;
+            } else if (!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+
+                /* 4 bytes for the 2 characters. */
+                utf8Length += 2;
+                i++;
+            }
+        }
+        return utf8Length;
+    }
+}
@@ -22,6 +22,8 @@ import com.microsoft.appcenter.utils.AppCenterLog;
 
 import java.io.Closeable;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import static com.microsoft.appcenter.utils.AppCenterLog.LOG_TAG;
 
@@ -70,6 +72,16 @@ public class DatabaseManager implements Closeable {
      */
     private SQLiteOpenHelper mSQLiteOpenHelper;
 
+    /**
+     * Whether the database uses write-ahead logging instead of a rollback journal.
+     */
+    private boolean mWriteAheadLoggingEnabled;
+
+    /**
+     * Page cache size in kilobytes, 0 to use SQLite default.
+     */
+    private int mCacheSizeInKilobytes;
+
     /**
      * Initializes the table in the database.
      *
@@ -89,6 +101,11 @@ public class DatabaseManager implements Closeable {
         mListener = listener;
         mSQLiteOpenHelper = new SQLiteOpenHelper(context, database, null, version) {
 
+            @Override
+            public void onConfigure(SQLiteDatabase db) {
+                configure(db);
+            }
+
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(sqlCreateCommand);
@@ -102,6 +119,26 @@ public class DatabaseManager implements Closeable {
         };
     }
 
+    /**
+     * Applies storage mode and pragmas, called each time the database is opened.
+     *
+     * @param db The database.
+     */
+    @VisibleForTesting
+    void configure(SQLiteDatabase db) {
+        if (mWriteAheadLoggingEnabled) {
+            db.enableWriteAheadLogging();
+
+            /* Must be set after journal mode as enabling WAL resets synchronous to the platform default. */
+            db.execSQL("PRAGMA synchronous = NORMAL");
+        }
+        if (mCacheSizeInKilobytes > 0) {
+
+            /* Negative value means size in KiB instead of a number of pages. */
+            db.execSQL("PRAGMA cache_size = -" + mCacheSizeInKilobytes);
+        }
+    }
+
     /**
      * Converts a cursor to an entry.
      *
@@ -220,6 +257,69 @@ public class DatabaseManager implements Closeable {
         return id;
     }
 
+    /**
+     * Stores the entries to the table in a single transaction. Unlike {@link #put(ContentValues, String)},
+     * this does not discard old logs if the table is full: either all entries are stored or none.
+     *
+     * @param valuesList The entries to be stored.
+     * @return The database identifiers in the same order as {@code valuesList},
+     * or null if the entries could not be inserted (e.g. the table is full).
+     */
+    @Nullable
+    public long[] putAll(@NonNull List<ContentValues> valuesList) {
+        try {
+            SQLiteDatabase database = getDatabase();
+            database.beginTransaction();
+            try {
+                long[] ids = new long[valuesList.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = database.insertOrThrow(mDefaultTable, null, valuesList.get(i));
+                }
+                database.setTransactionSuccessful();
+                return ids;
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to insert %s values to database %s in a transaction.", valuesList.size(), mDatabase), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry to a table other than the default one, unless an entry with the same primary key already exists.
+     * Unlike {@link #put(ContentValues, String)}, this does not discard old logs if the database is full.
+     *
+     * @param table  The table to perform the operation on.
+     * @param values The entry to be stored.
+     * @return true if the entry is stored, false if the operation failed.
+     */
+    public boolean putIfAbsent(@NonNull String table, @NonNull ContentValues values) {
+        try {
+            getDatabase().insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            return true;
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to insert values to table %s of database %s.", table, mDatabase), e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the entries of a table that match a where clause.
+     *
+     * @param table       The table to perform the operation on.
+     * @param whereClause The where clause without WHERE itself.
+     * @return the number of rows affected.
+     */
+    public int deleteWhere(@NonNull String table, @NonNull String whereClause) {
+        try {
+            return getDatabase().delete(table, whereClause, null);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete values that match condition=\"%s\" from table %s of database %s.", whereClause, table, mDatabase), e);
+            return 0;
+        }
+    }
+
     /**
      * Deletes the entry by the identifier from the database.
      *
@@ -229,6 +329,31 @@ public class DatabaseManager implements Closeable {
         delete(mDefaultTable, PRIMARY_KEY, id);
     }
 
+    /**
+     * Deletes the entries by their identifiers from the database in a single statement.
+     *
+     * @param ids The database identifiers.
+     * @return the number of rows affected.
+     */
+    public int delete(@NonNull Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        /* Identifiers are numbers, inline them to avoid hitting the maximum number of SQL variables. */
+        StringBuilder whereClause = new StringBuilder(PRIMARY_KEY).append(" IN (");
+        for (Long id : ids) {
+            whereClause.append(id).append(",");
+        }
+        whereClause.setCharAt(whereClause.length() - 1, ')');
+        try {
+            return getDatabase().delete(mDefaultTable, whereClause.toString(), null);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete values that match condition=\"%s\" from database %s.", whereClause, mDatabase), e);
+            return 0;
+        }
+    }
+
     /**
      * Deletes the entries that matches key == value.
      *
@@ -308,7 +433,22 @@ public class DatabaseManager implements Closeable {
      * @throws RuntimeException If an error occurs.
      */
     public Cursor getCursor(@Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
-        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder);
+        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Gets a cursor for at most {@code limit} rows in the table, all rows where key matches value if specified.
+     *
+     * @param queryBuilder  The query builder that contains SQL query.
+     * @param columns       Columns to select, null for all.
+     * @param selectionArgs The array of values for selection.
+     * @param sortOrder     Sorting order (ORDER BY clause without ORDER BY itself).
+     * @param limit         Limits the number of rows returned (LIMIT clause without LIMIT itself), null for no limit.
+     * @return A cursor for all rows that matches the given criteria.
+     * @throws RuntimeException If an error occurs.
+     */
+    public Cursor getCursor(@Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder, @Nullable String limit) throws RuntimeException {
+        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder, limit);
     }
 
     /**
@@ -322,12 +462,28 @@ public class DatabaseManager implements Closeable {
      * @return A cursor for all rows that matches the given criteria.
      * @throws RuntimeException If an error occurs.
      */
-    Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
+    public Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
+        return getCursor(table, queryBuilder, columns, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Gets a cursor for at most {@code limit} rows in the table, all rows where key matches value if specified.
+     *
+     * @param table         The table to perform the operation on.
+     * @param queryBuilder  The query builder that contains SQL query.
+     * @param columns       Columns to select, null for all.
+     * @param selectionArgs The array of values for selection.
+     * @param sortOrder     Sorting order (ORDER BY clause without ORDER BY itself).
+     * @param limit         Limits the number of rows returned (LIMIT clause without LIMIT itself), null for no limit.
+     * @return A cursor for all rows that matches the given criteria.
+     * @throws RuntimeException If an error occurs.
+     */
+    private Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder, @Nullable String limit) throws RuntimeException {
         if (queryBuilder == null) {
             queryBuilder = SQLiteUtils.newSQLiteQueryBuilder();
         }
         queryBuilder.setTables(table);
-        return queryBuilder.query(getDatabase(), columns, null, selectionArgs, null, null, sortOrder);
+        return queryBuilder.query(getDatabase(), columns, null, selectionArgs, null, null, sortOrder, limit);
     }
 
     /**
@@ -404,6 +560,45 @@ public class DatabaseManager implements Closeable {
         }
     }
 
+    /**
+     * Enables write-ahead logging with relaxed synchronous mode, data written before a power loss
+     * may be lost but the database cannot be corrupted. Must be called before the database is opened.
+     * The maximum size set by {@link #setMaxSize(long)} applies to the main database file,
+     * the write-ahead log is merged into it by {@link #checkpoint()}.
+     *
+     * @param enabled true to use write-ahead logging, false to use the default rollback journal.
+     */
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+        mWriteAheadLoggingEnabled = enabled;
+    }
+
+    /**
+     * Sets the page cache size. Must be called before the database is opened.
+     *
+     * @param cacheSizeInKilobytes page cache size in kilobytes, 0 to use SQLite default.
+     */
+    public void setCacheSize(@IntRange(from = 0) int cacheSizeInKilobytes) {
+        mCacheSizeInKilobytes = cacheSizeInKilobytes;
+    }
+
+    /**
+     * Copies the content of the write-ahead log into the database file and truncates the log.
+     * Does nothing if write-ahead logging is not enabled.
+     */
+    public void checkpoint() {
+        if (!mWriteAheadLoggingEnabled) {
+            return;
+        }
+        try {
+
+            /* Older SQLite versions do not know TRUNCATE and fall back to a passive checkpoint. */
+            long busy = DatabaseUtils.longForQuery(getDatabase(), "PRAGMA wal_checkpoint(TRUNCATE)", null);
+            AppCenterLog.debug(LOG_TAG, "Checkpoint of database " + mDatabase + (busy == 0 ? " completed." : " could not complete, will retry later."));
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to checkpoint the database.", e);
+        }
+    }
+
     /**
      * Gets the maximum size of the database.
      *
@@ -5,15 +5,30 @@
 
 package com.microsoft.appcenter;
 
+import android.content.Context;
+import android.os.Handler;
+
+import com.microsoft.appcenter.channel.DefaultChannel;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.persistence.FileQueuePersistence;
 import com.microsoft.appcenter.utils.async.AppCenterFuture;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.verifyNew;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 public class AppCenterStorageTest extends AbstractAppCenterTest {
@@ -106,4 +121,69 @@ public class AppCenterStorageTest extends AbstractAppCenterTest {
         /* And result returned to developer. */
         assertTrue(future.get());
     }
+
+    @Test
+    public void storageOptionsAreNotAppliedByDefault() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel, never()).setWriteAheadLoggingEnabled(anyBoolean());
+        verify(mChannel, never()).setStorageCacheSize(anyInt());
+        verify(mChannel, never()).setStorageCompactEncodingEnabled(anyBoolean());
+    }
+
+    @Test
+    public void configureStorageOptionsFromApp() {
+
+        /* Invalid cache sizes are ignored. */
+        AppCenter.setStorageCacheSize(-1);
+        AppCenter.setStorageCacheSize(AppCenter.MAXIMUM_STORAGE_CACHE_SIZE_IN_KILOBYTES + 1);
+
+        /* Configure before start. */
+        AppCenter.setStorageWriteAheadLoggingEnabled(true);
+        AppCenter.setStorageCacheSize(2048);
+        AppCenter.setStorageCompactEncodingEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+
+        /* Verify options applied before storage is opened to set its size. */
+        InOrder inOrder = inOrder(mChannel);
+        inOrder.verify(mChannel).setWriteAheadLoggingEnabled(true);
+        inOrder.verify(mChannel).setStorageCacheSize(2048);
+        inOrder.verify(mChannel).setStorageCompactEncodingEnabled(true);
+        inOrder.verify(mChannel).setMaxStorageSize(AppCenter.DEFAULT_MAX_STORAGE_SIZE_IN_BYTES);
+        verify(mChannel).setStorageCacheSize(anyInt());
+    }
+
+    @Test
+    public void cannotConfigureStorageOptionsAfterStart() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        AppCenter.setStorageWriteAheadLoggingEnabled(true);
+        AppCenter.setStorageCacheSize(2048);
+        AppCenter.setStorageCompactEncodingEnabled(true);
+
+        /* Start again another service to check options are not applied. */
+        AppCenter.start(AnotherDummyService.class);
+        verify(mChannel, never()).setWriteAheadLoggingEnabled(anyBoolean());
+        verify(mChannel, never()).setStorageCacheSize(anyInt());
+        verify(mChannel, never()).setStorageCompactEncodingEnabled(anyBoolean());
+    }
+
+    @Test
+    public void configureFileQueueStorageEngine() throws Exception {
+
+        /* Invalid value is ignored. */
+        AppCenter.setStorageEngine(42);
+        AppCenter.setStorageEngine(StorageEngine.FILE_QUEUE);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+
+        /* Verify the channel was instantiated with file queue persistence. */
+        verifyNew(DefaultChannel.class).withArguments(any(Context.class), eq(DUMMY_APP_SECRET), isA(FileQueuePersistence.class), any(LogSerializer.class), any(HttpClient.class), any(Handler.class));
+    }
+
+    @Test
+    public void cannotConfigureStorageEngineAfterStart() throws Exception {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        AppCenter.setStorageEngine(StorageEngine.FILE_QUEUE);
+
+        /* Verify the channel was instantiated with default persistence. */
+        verifyNew(DefaultChannel.class).withArguments(any(Context.class), eq(DUMMY_APP_SECRET), any(LogSerializer.class), any(HttpClient.class), any(Handler.class));
+    }
 }
@@ -34,16 +34,24 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.verifyNew;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.Handler;
 
 import com.microsoft.appcenter.channel.Channel;
+import com.microsoft.appcenter.channel.DefaultChannel;
+import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.channel.OneCollectorChannelListener;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.ingestion.models.WrapperSdk;
+import com.microsoft.appcenter.ingestion.models.json.LogFactory;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.StartServiceLogFactory;
+import com.microsoft.appcenter.ingestion.models.json.StreamingLogSerializer;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.ApplicationLifecycleListener;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
@@ -56,6 +64,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -1247,4 +1256,119 @@ public class AppCenterTest extends AbstractAppCenterTest {
         verifyStatic(SharedPreferencesManager.class);
         SharedPreferencesManager.getBoolean(eq(PrefStorageConstants.ALLOWED_NETWORK_REQUEST), eq(false));
     }
+
+    @Test
+    public void adaptiveBatchingCanOnlyBeEnabledBeforeStart() {
+        AppCenter.setAdaptiveBatchingEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel).setAdaptiveBatchingEnabled(true);
+
+        /* Ignored after start. */
+        AppCenter.setAdaptiveBatchingEnabled(false);
+        verify(mChannel, never()).setAdaptiveBatchingEnabled(false);
+    }
+
+    @Test
+    public void adaptiveBatchingDisabledByDefault() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel, never()).setAdaptiveBatchingEnabled(anyBoolean());
+    }
+
+    @Test
+    public void requestMultiplexing() {
+        AppCenter.setRequestMultiplexingEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel).setRequestMultiplexingEnabled(true);
+
+        /* Ignored after start. */
+        AppCenter.setRequestMultiplexingEnabled(false);
+        verify(mChannel, never()).setRequestMultiplexingEnabled(false);
+    }
+
+    @Test
+    public void requestMultiplexingDisabledByDefault() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel, never()).setRequestMultiplexingEnabled(anyBoolean());
+    }
+
+    @Test
+    public void deferredUploads() {
+        ArgumentCaptor<ApplicationLifecycleListener> lifecycleListenerCaptor = ArgumentCaptor.forClass(ApplicationLifecycleListener.class);
+        doNothing().when(mApplication).registerActivityLifecycleCallbacks(lifecycleListenerCaptor.capture());
+        AppCenter.setDeferredUploadsEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel).setDeferredUploadsEnabled(true);
+
+        /* Application state is forwarded to the channel. */
+        ApplicationLifecycleListener lifecycleListener = lifecycleListenerCaptor.getAllValues().get(0);
+        Activity mockActivity = mock(Activity.class);
+        lifecycleListener.onActivityStarted(mockActivity);
+        verify(mChannel).setApplicationInForeground(true);
+        lifecycleListener.onActivityStopped(mockActivity);
+        verify(mChannel).setApplicationInForeground(false);
+
+        /* Ignored after start. */
+        AppCenter.setDeferredUploadsEnabled(false);
+        verify(mChannel, never()).setDeferredUploadsEnabled(false);
+    }
+
+    @Test
+    public void deferredUploadsDisabledByDefault() {
+        ArgumentCaptor<ApplicationLifecycleListener> lifecycleListenerCaptor = ArgumentCaptor.forClass(ApplicationLifecycleListener.class);
+        doNothing().when(mApplication).registerActivityLifecycleCallbacks(lifecycleListenerCaptor.capture());
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        lifecycleListenerCaptor.getAllValues().get(0).onActivityStarted(mock(Activity.class));
+        verify(mChannel, never()).setDeferredUploadsEnabled(anyBoolean());
+        verify(mChannel, never()).setApplicationInForeground(anyBoolean());
+    }
+
+    @Test
+    public void streamingSerialization() throws Exception {
+        StreamingLogSerializer logSerializer = mock(StreamingLogSerializer.class);
+        whenNew(StreamingLogSerializer.class).withAnyArguments().thenReturn(logSerializer);
+        AppCenter.setStreamingSerializationEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(logSerializer).addLogFactory(eq(StartServiceLog.TYPE), isA(StartServiceLogFactory.class));
+
+        /* Ignored after start. */
+        AppCenter.setStreamingSerializationEnabled(false);
+        verifyStatic(AppCenterLog.class);
+        AppCenterLog.error(eq(LOG_TAG), eq("setStreamingSerializationEnabled may not be called after App Center has been configured."));
+    }
+
+    @Test
+    public void streamingSerializationDisabledByDefault() throws Exception {
+        StreamingLogSerializer logSerializer = mock(StreamingLogSerializer.class);
+        whenNew(StreamingLogSerializer.class).withAnyArguments().thenReturn(logSerializer);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(logSerializer, never()).addLogFactory(anyString(), any(LogFactory.class));
+    }
+
+    @Test
+    public void connectionReuse() throws Exception {
+        AppCenter.setConnectionReuseEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        assertTrue(isConnectionReuseEnabled());
+
+        /* Ignored after start. */
+        AppCenter.setConnectionReuseEnabled(false);
+        verifyStatic(AppCenterLog.class);
+        AppCenterLog.error(eq(LOG_TAG), eq("setConnectionReuseEnabled may not be called after App Center has been configured."));
+    }
+
+    @Test
+    public void connectionReuseDisabledByDefault() throws Exception {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        assertFalse(isConnectionReuseEnabled());
+    }
+
+    private static boolean isConnectionReuseEnabled() throws Exception {
+        ArgumentCaptor<HttpClient> httpClient = ArgumentCaptor.forClass(HttpClient.class);
+        verifyNew(DefaultChannel.class).withArguments(any(Context.class), anyString(), any(LogSerializer.class), httpClient.capture(), any(Handler.class));
+
+        /* Unwrap the retryer and the network state handler. */
+        Object networkStateHandler = Whitebox.getInternalState(httpClient.getValue(), "mDecoratedApi");
+        Object defaultHttpClient = Whitebox.getInternalState(networkStateHandler, "mDecoratedApi");
+        return Whitebox.<Boolean>getInternalState(defaultHttpClient, "mConnectionReuseEnabled");
+    }
 }
@@ -65,4 +65,9 @@ public class InstantiationTest {
     public void flags() {
         new Flags();
     }
+
+    @Test
+    public void storageEngine() {
+        new StorageEngine();
+    }
 }
@@ -7,6 +7,7 @@ package com.microsoft.appcenter.channel;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 
 import com.microsoft.appcenter.http.HttpResponse;
 import com.microsoft.appcenter.http.ServiceCallback;
@@ -16,6 +17,7 @@ import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.HandlerUtils;
 import com.microsoft.appcenter.utils.IdHelper;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
 import org.junit.Before;
@@ -43,8 +45,10 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
         DeviceInfoHelper.class,
         HandlerUtils.class,
         IdHelper.class,
+        NetworkStateHelper.class,
         SharedPreferencesManager.class,
-        System.class
+        System.class,
+        SystemClock.class
 })
 public class AbstractDefaultChannelTest {
 
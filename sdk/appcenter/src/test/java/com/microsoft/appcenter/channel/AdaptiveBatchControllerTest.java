@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import static com.microsoft.appcenter.channel.AdaptiveBatchController.PROFILE_AGGRESSIVE;
+import static com.microsoft.appcenter.channel.AdaptiveBatchController.PROFILE_CONSERVATIVE;
+import static com.microsoft.appcenter.channel.AdaptiveBatchController.PROFILE_DEFAULT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.appcenter.ingestion.Ingestion;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveBatchControllerTest {
+
+    private NetworkStateHelper mNetworkStateHelper;
+
+    private AdaptiveBatchController mController;
+
+    private Ingestion mIngestion;
+
+    @Before
+    public void setUp() {
+        mNetworkStateHelper = mock(NetworkStateHelper.class);
+        mController = new AdaptiveBatchController(mNetworkStateHelper);
+        mIngestion = mock(Ingestion.class);
+    }
+
+    @Test
+    public void meteredNetworkIsConservative() {
+        when(mNetworkStateHelper.isNetworkMetered()).thenReturn(true);
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallSucceeded(mIngestion, 100 * 1024, 100);
+        }
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+    }
+
+    @Test
+    public void defaultUntilEnoughSamples() {
+        assertEquals(PROFILE_DEFAULT, mController.getProfile(mIngestion));
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES - 1; i++) {
+            mController.onCallSucceeded(mIngestion, 100 * 1024, 100);
+            assertEquals(PROFILE_DEFAULT, mController.getProfile(mIngestion));
+        }
+        mController.onCallSucceeded(mIngestion, 100 * 1024, 100);
+        assertEquals(PROFILE_AGGRESSIVE, mController.getProfile(mIngestion));
+
+        /* Other ingestions are measured separately. */
+        Ingestion otherIngestion = mock(Ingestion.class);
+        assertEquals(PROFILE_DEFAULT, mController.getProfile(otherIngestion));
+        assertNull(mController.getMeasuresForTesting(otherIngestion));
+    }
+
+    @Test
+    public void fastNetworkWithoutThroughputSamples() {
+
+        /* Small requests measure only round-trip time. */
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallSucceeded(mIngestion, 1024, 100);
+        }
+        AdaptiveBatchController.Measures measures = mController.getMeasuresForTesting(mIngestion);
+        assertEquals(-1, measures.mThroughput, 0);
+        assertEquals(100, measures.mRoundTripTime, 0);
+        assertEquals(PROFILE_AGGRESSIVE, mController.getProfile(mIngestion));
+    }
+
+    @Test
+    public void slowRoundTripTime() {
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallSucceeded(mIngestion, 0, 3000);
+        }
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+
+        /* Average goes down progressively. */
+        mController.onCallSucceeded(mIngestion, 0, 1000);
+        assertEquals(2400, mController.getMeasuresForTesting(mIngestion).mRoundTripTime, 0.001);
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+        for (int i = 0; i < 10; i++) {
+            mController.onCallSucceeded(mIngestion, 0, 1000);
+        }
+        assertEquals(PROFILE_DEFAULT, mController.getProfile(mIngestion));
+    }
+
+    @Test
+    public void slowThroughput() {
+
+        /* 32KB in 2s is 16KB/s with an acceptable round-trip time. */
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallSucceeded(mIngestion, 32 * 1024, 2000);
+        }
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+    }
+
+    @Test
+    public void failures() {
+        mController.onCallSucceeded(mIngestion, 0, 100);
+        mController.onCallSucceeded(mIngestion, 0, 100);
+        mController.onCallFailed(mIngestion);
+        assertEquals(AdaptiveBatchController.SMOOTHING_FACTOR, mController.getMeasuresForTesting(mIngestion).mFailureRate, 0.001);
+        assertEquals(PROFILE_AGGRESSIVE, mController.getProfile(mIngestion));
+        mController.onCallFailed(mIngestion);
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(mIngestion));
+
+        /* Failures only don't measure round-trip time. */
+        Ingestion otherIngestion = mock(Ingestion.class);
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallFailed(otherIngestion);
+        }
+        assertEquals(1, mController.getMeasuresForTesting(otherIngestion).mFailureRate, 0);
+        assertEquals(PROFILE_CONSERVATIVE, mController.getProfile(otherIngestion));
+    }
+
+    @Test
+    public void roundTripTimeSeededByFirstSuccess() {
+
+        /* A failure first does not count as a 0ms round-trip time. */
+        mController.onCallFailed(mIngestion);
+        assertEquals(-1, mController.getMeasuresForTesting(mIngestion).mRoundTripTime, 0);
+        mController.onCallSucceeded(mIngestion, 0, 1000);
+        assertEquals(1000, mController.getMeasuresForTesting(mIngestion).mRoundTripTime, 0);
+    }
+
+    @Test
+    public void unknownDurationOnlyCountsSuccess() {
+        for (int i = 0; i < AdaptiveBatchController.MIN_SAMPLES; i++) {
+            mController.onCallSucceeded(mIngestion, 100 * 1024, -1);
+        }
+        AdaptiveBatchController.Measures measures = mController.getMeasuresForTesting(mIngestion);
+        assertEquals(-1, measures.mRoundTripTime, 0);
+        assertEquals(-1, measures.mThroughput, 0);
+        assertEquals(0, measures.mFailureRate, 0);
+
+        /* Not fast without a measured round-trip time. */
+        assertEquals(PROFILE_DEFAULT, mController.getProfile(mIngestion));
+    }
+}
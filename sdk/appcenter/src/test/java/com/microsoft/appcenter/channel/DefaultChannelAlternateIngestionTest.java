@@ -15,11 +15,14 @@ import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.persistence.Persistence;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.net.SocketException;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -224,4 +227,52 @@ public class DefaultChannelAlternateIngestionTest extends AbstractDefaultChannel
         verify(defaultIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
         verify(alternateIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
     }
+
+    @Test
+    public void failingIngestionDoesNotPauseOtherIngestion() {
+
+        /* Set up channel with a failing default ingestion and a working alternate ingestion. */
+        Persistence mockPersistence = mock(Persistence.class);
+        when(mockPersistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).thenAnswer(getGetLogsAnswer(1));
+        Ingestion defaultIngestion = mock(Ingestion.class);
+        when(defaultIngestion.isEnabled()).thenReturn(true);
+        when(defaultIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer(new SocketException()));
+        Ingestion alternateIngestion = mock(Ingestion.class);
+        when(alternateIngestion.isEnabled()).thenReturn(true);
+        when(alternateIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, defaultIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "2", 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, alternateIngestion, null);
+
+        /* First batch fails, next logs of the group wait for the backoff. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(defaultIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        IngestionCircuitBreaker circuitBreaker = channel.getCircuitBreaker(defaultIngestion);
+        assertEquals(IngestionCircuitBreaker.OPEN, circuitBreaker.getState());
+        assertEquals(2, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+
+        /* The group using the other ingestion keeps sending and the channel is not suspended. */
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.DEFAULTS);
+        verify(alternateIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(IngestionCircuitBreaker.CLOSED, channel.getCircuitBreaker(alternateIngestion).getState());
+        assertTrue(channel.isEnabled());
+        verify(mockPersistence, never()).clearPendingLogState();
+        verify(mockPersistence).clearPendingLogState(eq(TEST_GROUP), anyString());
+
+        /* A failing probe opens the breaker again with a longer backoff. */
+        circuitBreaker.mProbeRunnable.run();
+        verify(defaultIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(IngestionCircuitBreaker.OPEN, circuitBreaker.getState());
+        ArgumentCaptor<Long> backoff = ArgumentCaptor.forClass(Long.class);
+        verify(mAppCenterHandler, times(2)).postDelayed(eq(circuitBreaker.mProbeRunnable), backoff.capture());
+        assertTrue(backoff.getAllValues().get(0) < IngestionCircuitBreaker.INITIAL_BACKOFF);
+        assertTrue(backoff.getAllValues().get(1) >= IngestionCircuitBreaker.INITIAL_BACKOFF);
+
+        /* Disabling the channel cancels the probe. */
+        channel.setEnabled(false);
+        verify(mAppCenterHandler).removeCallbacks(circuitBreaker.mProbeRunnable);
+        assertEquals(IngestionCircuitBreaker.CLOSED, circuitBreaker.getState());
+    }
 }
@@ -6,9 +6,20 @@
 package com.microsoft.appcenter.channel;
 
 import static com.microsoft.appcenter.Flags.NORMAL;
+import static com.microsoft.appcenter.channel.DefaultChannel.BACKPRESSURE_SAMPLING_INTERVAL;
+import static com.microsoft.appcenter.channel.DefaultChannel.CHECKPOINT_INTERVAL;
+import static com.microsoft.appcenter.channel.DefaultChannel.DEFAULT_MAX_BATCH_SIZE;
+import static com.microsoft.appcenter.channel.DefaultChannel.DEFAULT_TARGET_BATCH_SIZE;
+import static com.microsoft.appcenter.channel.DefaultChannel.ENQUEUE_BUFFER_CAPACITY;
+import static com.microsoft.appcenter.channel.DefaultChannel.ENQUEUE_DRAIN_MAX_SIZE;
+import static com.microsoft.appcenter.channel.DefaultChannel.MAX_MULTIPLEXED_REQUEST_LOG_COUNT;
+import static com.microsoft.appcenter.channel.DefaultChannel.MAX_UPLOAD_DEFERRAL;
 import static com.microsoft.appcenter.channel.DefaultChannel.START_TIMER_PREFIX;
+import static com.microsoft.appcenter.channel.DefaultChannel.UPLOAD_DEFERRAL_CHECK_INTERVAL;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -22,12 +33,16 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.spy;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
 
 import com.microsoft.appcenter.CancellationException;
+import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.http.HttpException;
 import com.microsoft.appcenter.http.HttpResponse;
@@ -37,11 +52,16 @@ import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.persistence.FileQueuePersistence;
 import com.microsoft.appcenter.persistence.Persistence;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -49,14 +69,21 @@ import org.mockito.stubbing.Answer;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class DefaultChannelTest extends AbstractDefaultChannelTest {
 
     private static final long CUSTOM_INTERVAL = 10000;
 
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
     @Test
     public void invalidGroup() throws Persistence.PersistenceException {
         Persistence persistence = mock(Persistence.class);
@@ -166,6 +193,38 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(mockPersistence).deleteLogs(eq(TEST_GROUP));
     }
 
+    @Test
+    public void sendStoredPayloads() {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockPersistence.getLogs(anyString(), anyCollection(), anyInt(), anyList()))
+                .then(getGetLogsAnswer(2))
+                .then(getGetLogsAnswer(1));
+        List<String> payloads = Arrays.asList("{}", "{}");
+        when(mockPersistence.getLogPayloads(eq(TEST_GROUP), anyString()))
+                .thenReturn(payloads)
+                .thenReturn(payloads);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Trigger a full batch. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Stored payloads are passed to ingestion. */
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), any(ServiceCallback.class));
+        assertEquals(payloads, logContainer.getValue().getPayloads());
+
+        /* Payloads that don't match the batch are ignored. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), logContainer.capture(), any(ServiceCallback.class));
+        assertEquals(1, logContainer.getValue().getLogs().size());
+        assertNull(logContainer.getValue().getPayloads());
+    }
+
     @Test
     public void lessLogsThanExpected() {
         Persistence mockPersistence = mock(Persistence.class);
@@ -348,9 +407,13 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         /* Verify that we have not called deleteLogs on the Persistence. */
         verify(mockPersistence, never()).deleteLogs(anyString(), anyString());
 
-        /* Verify that the Channel is disabled. */
-        assertFalse(channel.isEnabled());
-        verify(mockPersistence).clearPendingLogState();
+        /* Verify that sending through the ingestion is paused but that the Channel is still enabled. */
+        assertTrue(channel.isEnabled());
+        IngestionCircuitBreaker circuitBreaker = channel.getCircuitBreaker(mockIngestion);
+        assertEquals(IngestionCircuitBreaker.OPEN, circuitBreaker.getState());
+        verify(mAppCenterHandler).postDelayed(eq(circuitBreaker.mProbeRunnable), anyLong());
+        verify(mockPersistence).clearPendingLogState(eq(TEST_GROUP), anyString());
+        verify(mockPersistence, never()).clearPendingLogState();
         verify(mockPersistence, never()).deleteLogs(TEST_GROUP);
 
         /* Enqueuing 20 more events. */
@@ -360,16 +423,18 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
 
         /* The counter keeps being increased. */
         assertEquals(70, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
 
         /* Prepare to mock timer. */
         ArgumentCaptor<Runnable> delayedRunnable = ArgumentCaptor.forClass(Runnable.class);
         when(mAppCenterHandler.postDelayed(delayedRunnable.capture(), anyLong())).thenReturn(true);
 
-        /* Enable channel. */
-        channel.setEnabled(true);
+        /* Probe ingestion when backoff elapses. */
+        circuitBreaker.mProbeRunnable.run();
 
-        /* Upon enabling, 1st batch of 50 is sent immediately, 20 logs are remaining. */
+        /* The probing batch of 50 is sent immediately and succeeds, 20 logs are remaining. */
         assertEquals(20, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        assertEquals(IngestionCircuitBreaker.CLOSED, circuitBreaker.getState());
 
         /* Wait for timer. */
         delayedRunnable.getValue().run();
@@ -423,8 +488,10 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         /* Verify that we have called sendAsync on the ingestion. */
         verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
 
-        /* Verify that the Channel is disabled. */
-        assertFalse(channel.isEnabled());
+        /* Verify that sending through the ingestion is paused but that the Channel is still enabled. */
+        assertTrue(channel.isEnabled());
+        IngestionCircuitBreaker circuitBreaker = channel.getCircuitBreaker(mockIngestion);
+        assertEquals(IngestionCircuitBreaker.OPEN, circuitBreaker.getState());
 
         /* Verify that we have cleared the logs. */
         verify(mockPersistence).deleteLogs(TEST_GROUP);
@@ -439,10 +506,7 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
 
         /* The counter should still be 0 as logs are discarded by channel now. */
         assertEquals(0, channel.getGroupState(TEST_GROUP).mPendingLogCount);
-
-        /* No more timer yet at this point. */
-        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
-        verify(mAppCenterHandler).removeCallbacks(any(Runnable.class));
+        verify(mockPersistence, times(50)).putLog(any(Log.class), eq(TEST_GROUP), eq(NORMAL));
 
         /* Prepare to mock timer. */
         ArgumentCaptor<Runnable> delayedRunnable = ArgumentCaptor.forClass(Runnable.class);
@@ -451,22 +515,25 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         /* Enable channel to see if it can work again after that error state. */
         channel.setEnabled(true);
 
-        /* Enqueuing 20 more events. */
+        /* Enqueuing 20 more events, they are kept but not sent while the ingestion is paused. */
         for (int i = 0; i < 20; i++) {
             channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
         }
         assertEquals(20, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
 
-        /* Wait for timer. */
+        /* Probe ingestion when backoff elapses, then wait for timer. */
+        circuitBreaker.mProbeRunnable.run();
         delayedRunnable.getValue().run();
 
         /* The counter should back to 0 now. */
         assertEquals(0, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        assertEquals(IngestionCircuitBreaker.CLOSED, circuitBreaker.getState());
 
         /* Verify that we have called sendAsync on the ingestion 2 times total: 1 earlier failure then 1 success. */
         verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
 
-        /* Verify that we have called deleteLogs on the Persistence for the successful batch after re-enabling. */
+        /* Verify that we have called deleteLogs on the Persistence for the successful batch after probing. */
         verify(mockPersistence).deleteLogs(anyString(), anyString());
 
         /* Verify 1 more timer call. */
@@ -544,21 +611,22 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         /* Verify that we have called onBeforeSending in the listener. */
         verify(mockListener).onBeforeSending(any(Log.class));
 
-        /* Verify that we have not called the failure listener. It's a transient exception that will be retried later when the channel is re-enabled. */
+        /* Verify that we have not called the failure listener. It's a transient exception that will be retried later when the ingestion is probed. */
         verify(mockListener, never()).onFailure(any(Log.class), any(Exception.class));
 
-        /* Verify that the Channel is disabled. */
-        assertFalse(channel.isEnabled());
-        verify(mockPersistence).clearPendingLogState();
+        /* Verify that sending through the ingestion is paused. */
+        assertTrue(channel.isEnabled());
+        assertEquals(IngestionCircuitBreaker.OPEN, channel.getCircuitBreaker(mockIngestion).getState());
+        verify(mockPersistence).clearPendingLogState(eq(TEST_GROUP), anyString());
         verify(mockPersistence, never()).deleteLogs(TEST_GROUP);
 
         /* Verify timer. */
         verify(mAppCenterHandler, never()).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
         verify(mAppCenterHandler, never()).removeCallbacks(any(Runnable.class));
 
-        channel.setEnabled(true);
+        channel.getCircuitBreaker(mockIngestion).mProbeRunnable.run();
 
-        /* Verify that we have called sendAsync on the ingestion n+1 times total: 1 failure before re-enabling, n success after. */
+        /* Verify that we have called sendAsync on the ingestion n+1 times total: 1 failure before probing, n success after. */
         verify(mockIngestion, times(logNumber + 1)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
 
         /* Verify that we have called deleteLogs on the Persistence n times. */
@@ -611,7 +679,8 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         /* 30 from countLogs and 10 new logs from getLogs. */
         verify(mockListener, times(40)).onBeforeSending(any(Log.class));
         verify(mockListener, times(40)).onFailure(any(Log.class), any());
-        assertFalse(channel.isEnabled());
+        assertTrue(channel.isEnabled());
+        assertEquals(IngestionCircuitBreaker.OPEN, channel.getCircuitBreaker(mockIngestion).getState());
     }
 
     @Test
@@ -642,7 +711,8 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
         channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
 
-        assertFalse(channel.isEnabled());
+        assertTrue(channel.isEnabled());
+        assertEquals(IngestionCircuitBreaker.OPEN, channel.getCircuitBreaker(mockIngestion).getState());
     }
 
     @Test
@@ -870,6 +940,38 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(mockPersistence).deleteLogs(TEST_GROUP);
     }
 
+    @Test
+    public void discardLogsAfterRejection() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        Channel.GroupListener mockListener = mock(Channel.GroupListener.class);
+        when(mockPersistence.getLogs(eq(TEST_GROUP), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer(1));
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer(new HttpException(new HttpResponse(403))));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+
+        /* Send a log rejected by ingestion. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence).putLog(any(Log.class), eq(TEST_GROUP), anyInt());
+        verify(mockPersistence).deleteLogs(TEST_GROUP);
+        assertTrue(channel.isEnabled());
+
+        /* New logs are failed right away and not persisted. */
+        Log log = mock(Log.class);
+        channel.enqueue(log, TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+        verify(mockListener).onBeforeSending(log);
+        verify(mockListener).onFailure(eq(log), any(CancellationException.class));
+        verify(mockPersistence).putLog(any(Log.class), eq(TEST_GROUP), anyInt());
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Enabling the channel again accepts logs. */
+        channel.setEnabled(true);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence, times(2)).putLog(any(Log.class), eq(TEST_GROUP), anyInt());
+    }
+
     @Test
     public void invokeCallbacksAfterSuspendFatalNoListener() {
         Persistence mockPersistence = mock(Persistence.class);
@@ -930,7 +1032,7 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(mockPersistence, never()).deleteLogs(TEST_GROUP);
 
         /* But that we cleared batch state. */
-        verify(mockPersistence).clearPendingLogState();
+        verify(mockPersistence).clearPendingLogState(eq(TEST_GROUP), anyString());
     }
 
     @Test
@@ -962,6 +1064,273 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(persistence).putLog(criticalLog, TEST_GROUP, Flags.CRITICAL);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void enqueueCoalescesLogsInPersistenceBatchWindow() throws Persistence.PersistenceException {
+
+        /* Persist all logs successfully but the last one. */
+        Persistence persistence = mock(Persistence.class);
+        final Persistence.PersistenceException exception = new Persistence.PersistenceException("mock", new IOException("mock"));
+        when(persistence.putLogs(anyList(), anyString(), anyInt(), anyList())).then(new Answer<long[]>() {
+
+            @Override
+            public long[] answer(InvocationOnMock invocation) {
+                List<Log> logs = (List<Log>) invocation.getArguments()[0];
+                List<Persistence.PersistenceException> exceptions = (List<Persistence.PersistenceException>) invocation.getArguments()[3];
+                long[] ids = new long[logs.size()];
+                for (int i = 0; i < logs.size(); i++) {
+                    boolean last = i == logs.size() - 1;
+                    ids[i] = last ? -1 : i;
+                    exceptions.add(last ? exception : null);
+                }
+                return ids;
+            }
+        });
+        Channel.GroupListener listener = mock(Channel.GroupListener.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, listener);
+        channel.setPersistenceBatchWindow(100);
+
+        /* Enqueue normal logs: nothing persisted yet, window is scheduled once. */
+        Log failingLog = mock(Log.class);
+        for (int i = 0; i < 4; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        }
+        channel.enqueue(failingLog, TEST_GROUP, Flags.NORMAL);
+        verify(persistence, never()).putLog(any(Log.class), anyString(), anyInt());
+        verify(persistence, never()).putLogs(anyList(), anyString(), anyInt(), anyList());
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(100L));
+
+        /* End of window persists all logs at once and reports the failure to the listener. */
+        runnable.getValue().run();
+        ArgumentCaptor<List<Log>> logs = ArgumentCaptor.forClass(List.class);
+        verify(persistence).putLogs(logs.capture(), eq(TEST_GROUP), eq(Flags.NORMAL), anyList());
+        assertEquals(5, logs.getValue().size());
+        assertEquals(4, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        verify(listener).onBeforeSending(failingLog);
+        verify(listener).onFailure(failingLog, exception);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+
+        /* Critical logs are persisted immediately, after coalesced logs to keep order. */
+        Log normalLog = mock(Log.class);
+        Log criticalLog = mock(Log.class);
+        channel.enqueue(normalLog, TEST_GROUP, Flags.NORMAL);
+        channel.enqueue(criticalLog, TEST_GROUP, Flags.CRITICAL);
+        verify(persistence, times(2)).putLogs(anyList(), eq(TEST_GROUP), eq(Flags.NORMAL), anyList());
+        verify(persistence).putLog(criticalLog, TEST_GROUP, Flags.CRITICAL);
+        verify(mAppCenterHandler, times(2)).removeCallbacks(runnable.getValue());
+
+        /* Shutdown persists coalesced logs. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        channel.shutdown();
+        verify(persistence, times(3)).putLogs(anyList(), eq(TEST_GROUP), eq(Flags.NORMAL), anyList());
+    }
+
+    @Test
+    public void criticalLogsBypassBatchInterval() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        final List<ServiceCallback> callbacks = new ArrayList<>();
+        when(ingestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                callbacks.add((ServiceCallback) invocation.getArguments()[3]);
+                return null;
+            }
+        });
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, 1, null, null);
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP);
+
+        /* Normal log waits for the batch interval. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(timer.capture(), eq(BATCH_TIME_INTERVAL));
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Critical log is sent right away alone. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+        verify(persistence).getLogs(eq(TEST_GROUP), anyCollection(), eq(1), anyList());
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(1, groupState.mPendingLogCount);
+
+        /* Next critical log waits for the critical batch to complete. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(1, groupState.mPendingCriticalLogCount);
+        callbacks.get(0).onCallSucceeded(new HttpResponse(200, ""));
+        verify(persistence, times(2)).getLogs(eq(TEST_GROUP), anyCollection(), eq(1), anyList());
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(0, groupState.mPendingCriticalLogCount);
+        assertEquals(1, groupState.mPendingLogCount);
+
+        /* Normal batch is sent on time even if the only parallel batch slot is used by critical logs. */
+        timer.getValue().run();
+        verify(ingestion, times(3)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(0, groupState.mPendingLogCount);
+        assertEquals(2, groupState.mSendingBatches.size());
+    }
+
+    @Test
+    public void backpressureDropNewest() throws Persistence.PersistenceException {
+        Persistence persistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Invalid settings are ignored. */
+        channel.setBackpressurePolicy("unknown", BackpressurePolicy.DROP_NEWEST, 2);
+        channel.setBackpressurePolicy(TEST_GROUP, 42, 2);
+        channel.setBackpressurePolicy(TEST_GROUP, BackpressurePolicy.DROP_NEWEST, 0);
+        assertEquals(BackpressurePolicy.NONE, channel.getGroupState(TEST_GROUP).mBackpressurePolicy);
+
+        /* Logs above the limit are dropped. */
+        channel.setBackpressurePolicy(TEST_GROUP, BackpressurePolicy.DROP_NEWEST, 2);
+        for (int i = 0; i < 4; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        }
+        verify(persistence, times(2)).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.NORMAL));
+        verify(listener).onLogsDropped(TEST_GROUP, 1, 1);
+        verify(listener).onLogsDropped(TEST_GROUP, 1, 2);
+
+        /* Critical logs are never dropped. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+        verify(persistence).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.CRITICAL));
+        assertEquals(2, channel.getGroupState(TEST_GROUP).mDroppedLogCount);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void backpressureDropOldest() throws Persistence.PersistenceException {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.deleteOldestLogs(TEST_GROUP, 2)).thenReturn(2);
+        when(persistence.putLogs(anyList(), anyString(), anyInt(), anyList())).then(new Answer<long[]>() {
+
+            @Override
+            public long[] answer(InvocationOnMock invocation) {
+                List<Log> logs = (List<Log>) invocation.getArguments()[0];
+                List<Persistence.PersistenceException> exceptions = (List<Persistence.PersistenceException>) invocation.getArguments()[3];
+                for (int i = 0; i < logs.size(); i++) {
+                    exceptions.add(null);
+                }
+                return new long[logs.size()];
+            }
+        });
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setBackpressurePolicy(TEST_GROUP, BackpressurePolicy.DROP_OLDEST, 20);
+
+        /* Coalesced logs count towards the limit. */
+        channel.setPersistenceBatchWindow(1000);
+        for (int i = 0; i < 20; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        }
+        verify(persistence, never()).deleteOldestLogs(anyString(), anyInt());
+
+        /* Coalesced logs are persisted then the oldest logs are deleted in bulk to make room for the new one. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(persistence).putLogs(anyList(), eq(TEST_GROUP), eq(Flags.NORMAL), anyList());
+        verify(persistence).deleteOldestLogs(TEST_GROUP, 2);
+        verify(listener).onLogsDropped(TEST_GROUP, 2, 2);
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mCoalescedLogCount);
+        channel.persistPendingLogs();
+        assertEquals(19, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+    }
+
+    @Test
+    public void backpressureSample() throws Persistence.PersistenceException {
+        Persistence persistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setBackpressurePolicy(TEST_GROUP, BackpressurePolicy.SAMPLE, 1);
+
+        /* First log is under the limit, then one log out of the sampling interval is kept. */
+        for (int i = 0; i < 1 + 2 * BACKPRESSURE_SAMPLING_INTERVAL; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        }
+        verify(persistence, times(3)).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.NORMAL));
+        verify(listener, times(2 * BACKPRESSURE_SAMPLING_INTERVAL - 2)).onLogsDropped(eq(TEST_GROUP), eq(1), anyLong());
+    }
+
+    @Test
+    public void backpressureReject() throws Persistence.PersistenceException {
+        Persistence persistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        Channel.GroupListener groupListener = mock(Channel.GroupListener.class);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, groupListener);
+        channel.setBackpressurePolicy(TEST_GROUP, BackpressurePolicy.REJECT, 1);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        Log log = mock(Log.class);
+        channel.enqueue(log, TEST_GROUP, Flags.NORMAL);
+        verify(persistence).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.NORMAL));
+        verify(groupListener).onBeforeSending(log);
+        verify(groupListener).onFailure(eq(log), any(BackpressureException.class));
+    }
+
+    @Test
+    public void writeAheadLoggingSchedulesCheckpoint() {
+        Persistence persistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.setStorageCacheSize(2048);
+        verify(persistence).setCacheSize(2048);
+        channel.setStorageCompactEncodingEnabled(true);
+        verify(persistence).setCompactEncodingEnabled(true);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* No checkpoint without write-ahead logging. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler, never()).postDelayed(any(Runnable.class), eq(CHECKPOINT_INTERVAL));
+
+        /* Writes schedule a single checkpoint. */
+        channel.setWriteAheadLoggingEnabled(true);
+        verify(persistence).setWriteAheadLoggingEnabled(true);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(CHECKPOINT_INTERVAL));
+        verify(persistence, never()).checkpoint();
+
+        /* Run checkpoint, next write schedules a new one. */
+        runnable.getValue().run();
+        verify(persistence).checkpoint();
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler, times(2)).postDelayed(runnable.getValue(), CHECKPOINT_INTERVAL);
+
+        /* Disabling cancels the scheduled checkpoint. */
+        channel.setWriteAheadLoggingEnabled(false);
+        verify(persistence).setWriteAheadLoggingEnabled(false);
+        verify(mAppCenterHandler).removeCallbacks(runnable.getValue());
+    }
+
+    @Test
+    public void persistenceRequiringCheckpoint() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.isCheckpointRequired()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Writes schedule a checkpoint without write-ahead logging. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(CHECKPOINT_INTERVAL));
+        runnable.getValue().run();
+        verify(persistence).checkpoint();
+
+        /* Disabling write-ahead logging does not cancel the checkpoint. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.setWriteAheadLoggingEnabled(false);
+        verify(mAppCenterHandler, never()).removeCallbacks(runnable.getValue());
+    }
+
     @Test
     public void checkPendingLogsStoresStartTime() {
 
@@ -1031,6 +1400,39 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(CUSTOM_INTERVAL - (now - startTime)));
     }
 
+    @Test
+    public void checkPendingLogsCachesStartTime() {
+
+        /* Mock current time. */
+        long now = 1000;
+        when(System.currentTimeMillis()).thenReturn(now);
+
+        /* Create channel and group. */
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 10, CUSTOM_INTERVAL, MAX_PARALLEL_BATCHES, mockIngestion, mock(Channel.GroupListener.class));
+
+        /* Enqueue logs. */
+        for (int i = 0; i < 5; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+
+        /* Preferences are read once and written once. */
+        verifyStatic(SharedPreferencesManager.class);
+        SharedPreferencesManager.getLong(START_TIMER_PREFIX + TEST_GROUP);
+        verifyStatic(SharedPreferencesManager.class);
+        SharedPreferencesManager.putLong(START_TIMER_PREFIX + TEST_GROUP, now);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(CUSTOM_INTERVAL));
+
+        /* Cancelling the timer clears preferences. */
+        channel.pauseGroup(TEST_GROUP, null);
+        verifyStatic(SharedPreferencesManager.class);
+        SharedPreferencesManager.remove(START_TIMER_PREFIX + TEST_GROUP);
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mStartTimer);
+    }
+
     @Test
     public void checkPendingLogsReplacesInvalidStartTime() {
 
@@ -1190,4 +1592,441 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         channel.setNetworkRequests(true);
         verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
     }
+
+    @Test
+    public void batchSizeLimitKeepsOtherLogsPending() {
+        Persistence mockPersistence = mock(Persistence.class);
+        when(mockPersistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer(10));
+        when(mockPersistence.isBatchSizeLimitReached(TEST_GROUP)).thenReturn(true);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mock(Channel.GroupListener.class));
+
+        verify(mockPersistence).setBatchSizeLimits(TEST_GROUP, DEFAULT_TARGET_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+
+        /* Only 10 logs fit in the batch, the other ones are still pending. */
+        for (int i = 0; i < 50; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(40, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+
+        /* Override limits for the group, unknown groups are ignored. */
+        channel.setBatchSizeLimits(TEST_GROUP, 1000, 2000);
+        verify(mockPersistence).setBatchSizeLimits(TEST_GROUP, 1000, 2000);
+        channel.setBatchSizeLimits("unknown", 1000, 2000);
+        verify(mockPersistence, never()).setBatchSizeLimits(eq("unknown"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void defaultBatchSizeLimitsCutLargeLogs() throws Exception {
+        String filesPath = Constants.FILES_PATH;
+        Constants.FILES_PATH = mTemporaryFolder.getRoot().getAbsolutePath();
+        try {
+
+            /* Logs of 200KB each, like crashes with large exception trees. */
+            final Map<String, Log> logs = new LinkedHashMap<>();
+            char[] padding = new char[200 * 1024];
+            Arrays.fill(padding, 'x');
+            for (int i = 0; i < 5; i++) {
+                Log log = mock(Log.class);
+                when(log.getType()).thenReturn("mock");
+                logs.put(i + new String(padding), log);
+            }
+            LogSerializer serializer = mock(LogSerializer.class);
+            when(serializer.serializeLog(any(Log.class))).thenAnswer(new Answer<String>() {
+
+                @Override
+                public String answer(InvocationOnMock invocation) {
+                    for (Map.Entry<String, Log> entry : logs.entrySet()) {
+                        if (entry.getValue() == invocation.getArgument(0)) {
+                            return entry.getKey();
+                        }
+                    }
+                    throw new IllegalStateException();
+                }
+            });
+            when(serializer.deserializeLog(anyString(), anyString())).thenAnswer(new Answer<Log>() {
+
+                @Override
+                public Log answer(InvocationOnMock invocation) {
+                    return logs.get(invocation.<String>getArgument(0));
+                }
+            });
+            FileQueuePersistence persistence = new FileQueuePersistence(mock(Context.class));
+            persistence.setLogSerializer(serializer);
+            AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+            when(mockIngestion.isEnabled()).thenReturn(true);
+            DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mockIngestion, mAppCenterHandler);
+            channel.addGroup(TEST_GROUP, logs.size(), BATCH_TIME_INTERVAL, 1, null, null);
+            for (Log log : logs.values()) {
+                channel.enqueue(log, TEST_GROUP, Flags.DEFAULTS);
+            }
+
+            /* The batch stops growing once it reaches the default target size. */
+            ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+            verify(mockIngestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), any(ServiceCallback.class));
+            assertEquals(new ArrayList<>(logs.values()).subList(0, 2), logContainer.getValue().getLogs());
+            assertEquals(3, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+            persistence.close();
+        } finally {
+            Constants.FILES_PATH = filesPath;
+        }
+    }
+
+    @Test
+    public void adaptiveBatchingOnMeteredNetwork() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        mockStatic(NetworkStateHelper.class);
+        when(NetworkStateHelper.getSharedInstance(any(Context.class))).thenReturn(networkStateHelper);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 10, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup("custom", 10, CUSTOM_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        verify(listener, never()).onBatchSettingsChanged(anyString(), anyInt(), anyLong(), anyInt());
+
+        /* Enabling sends larger batches less often, custom interval is kept. */
+        channel.setAdaptiveBatchingEnabled(true);
+        verify(listener).onBatchSettingsChanged(TEST_GROUP, 20, BATCH_TIME_INTERVAL * 4, 1);
+        verify(listener).onBatchSettingsChanged("custom", 20, CUSTOM_INTERVAL, 1);
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP);
+        assertEquals(20, groupState.mEffectiveMaxLogsPerBatch);
+        assertEquals(BATCH_TIME_INTERVAL * 4, groupState.mEffectiveBatchTimeInterval);
+        assertEquals(1, groupState.mEffectiveMaxParallelBatches);
+
+        /* Batches are sent with 20 logs. */
+        for (int i = 0; i < 19; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+        verify(mockIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL * 4));
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence).getLogs(eq(TEST_GROUP), anyCollection(), eq(20), anyList());
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Settings don't change while the network stays metered. */
+        verify(listener, times(2)).onBatchSettingsChanged(anyString(), anyInt(), anyLong(), anyInt());
+
+        /* Disabling restores settings. */
+        channel.setAdaptiveBatchingEnabled(false);
+        verify(listener).onBatchSettingsChanged(TEST_GROUP, 10, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES);
+        verify(listener).onBatchSettingsChanged("custom", 10, CUSTOM_INTERVAL, MAX_PARALLEL_BATCHES);
+        assertEquals(10, groupState.mEffectiveMaxLogsPerBatch);
+    }
+
+    @Test
+    public void enqueueAsyncDrainsInBatches() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        final List<Runnable> postedRunnables = mockPostedRunnables();
+
+        /* Enqueue more logs than a drain handles at once, only one message is posted. */
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i <= ENQUEUE_DRAIN_MAX_SIZE; i++) {
+            Log log = mock(Log.class);
+            logs.add(log);
+            channel.enqueueAsync(log, TEST_GROUP, Flags.DEFAULTS, null);
+        }
+        assertEquals(1, postedRunnables.size());
+        verify(mockPersistence, never()).putLog(any(Log.class), anyString(), anyInt());
+
+        /* First drain enqueues a batch and posts another drain for the rest. */
+        postedRunnables.remove(0).run();
+        verify(mockPersistence, times(ENQUEUE_DRAIN_MAX_SIZE)).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.DEFAULTS));
+        assertEquals(1, postedRunnables.size());
+        postedRunnables.remove(0).run();
+        assertEquals(0, postedRunnables.size());
+
+        /* Logs were enqueued in order. */
+        ArgumentCaptor<Log> log = ArgumentCaptor.forClass(Log.class);
+        verify(mockPersistence, times(ENQUEUE_DRAIN_MAX_SIZE + 1)).putLog(log.capture(), eq(TEST_GROUP), eq(Flags.DEFAULTS));
+        assertEquals(logs, log.getAllValues());
+    }
+
+    @Test
+    public void enqueueAsyncWhenBufferFull() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        final List<Runnable> postedRunnables = mockPostedRunnables();
+
+        /* Last log does not fit in the buffer and is posted alone. */
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i <= ENQUEUE_BUFFER_CAPACITY; i++) {
+            Log log = mock(Log.class);
+            logs.add(log);
+            channel.enqueueAsync(log, TEST_GROUP, Flags.DEFAULTS, null);
+        }
+        assertEquals(2, postedRunnables.size());
+
+        /* It is enqueued after the buffered logs. */
+        postedRunnables.remove(1).run();
+        ArgumentCaptor<Log> log = ArgumentCaptor.forClass(Log.class);
+        verify(mockPersistence, times(ENQUEUE_BUFFER_CAPACITY + 1)).putLog(log.capture(), eq(TEST_GROUP), eq(Flags.DEFAULTS));
+        assertEquals(logs, log.getAllValues());
+
+        /* Nothing left for the drain that was posted first. */
+        postedRunnables.remove(0).run();
+        verify(mockPersistence, times(ENQUEUE_BUFFER_CAPACITY + 1)).putLog(any(Log.class), anyString(), anyInt());
+    }
+
+    @Test
+    public void enqueueAsyncKeepsOrderAfterBufferFull() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        final List<Runnable> postedRunnables = mockPostedRunnables();
+
+        /* Fill the buffer, the last log is posted after the drain. */
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i <= ENQUEUE_BUFFER_CAPACITY; i++) {
+            Log log = mock(Log.class);
+            logs.add(log);
+            channel.enqueueAsync(log, TEST_GROUP, Flags.DEFAULTS, null);
+        }
+        assertEquals(2, postedRunnables.size());
+
+        /* The drain frees space, but the next log is still posted after the one waiting. */
+        postedRunnables.remove(0).run();
+        Log nextLog = mock(Log.class);
+        logs.add(nextLog);
+        channel.enqueueAsync(nextLog, TEST_GROUP, Flags.DEFAULTS, null);
+        while (!postedRunnables.isEmpty()) {
+            postedRunnables.remove(0).run();
+        }
+        ArgumentCaptor<Log> log = ArgumentCaptor.forClass(Log.class);
+        verify(mockPersistence, times(logs.size())).putLog(log.capture(), eq(TEST_GROUP), eq(Flags.DEFAULTS));
+        assertEquals(logs, log.getAllValues());
+
+        /* Buffer is used again once posted logs are enqueued. */
+        channel.enqueueAsync(mock(Log.class), TEST_GROUP, Flags.DEFAULTS, null);
+        assertEquals(1, postedRunnables.size());
+        postedRunnables.remove(0).run();
+        verify(mockPersistence, times(logs.size() + 1)).putLog(any(Log.class), anyString(), anyInt());
+    }
+
+    @Test
+    public void enqueueAsyncWithFilter() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        final List<Runnable> postedRunnables = mockPostedRunnables();
+        Log acceptedLog = mock(Log.class);
+        Log discardedLog = mock(Log.class);
+        Channel.EnqueueFilter filter = mock(Channel.EnqueueFilter.class);
+        when(filter.shouldEnqueue(acceptedLog, TEST_GROUP)).thenReturn(true);
+        channel.enqueueAsync(acceptedLog, TEST_GROUP, Flags.DEFAULTS, filter);
+        channel.enqueueAsync(discardedLog, TEST_GROUP, Flags.DEFAULTS, filter);
+
+        /* Filter is called on the channel thread when draining. */
+        verify(filter, never()).shouldEnqueue(any(Log.class), anyString());
+        postedRunnables.remove(0).run();
+        verify(filter).shouldEnqueue(discardedLog, TEST_GROUP);
+        verify(mockPersistence).putLog(acceptedLog, TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence, never()).putLog(eq(discardedLog), anyString(), anyInt());
+    }
+
+    @Test
+    public void requestMultiplexing() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        Ingestion otherIngestion = mock(Ingestion.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.setRequestMultiplexingEnabled(true);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "2", 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "3", 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, otherIngestion, null);
+        List<Runnable> postedRunnables = mockPostedRunnables();
+
+        /* Groups wait for their timer. */
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP + "3", Flags.DEFAULTS);
+        verify(mAppCenterHandler, times(2)).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+
+        /* A full batch takes along the group waiting on the same ingestion only. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        assertEquals(0, channel.getGroupState(TEST_GROUP + "2").mPendingLogCount);
+        assertFalse(channel.getGroupState(TEST_GROUP + "2").mScheduled);
+        assertTrue(channel.getGroupState(TEST_GROUP + "3").mScheduled);
+        assertEquals(1, postedRunnables.size());
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Both batches are sent in a single request. */
+        postedRunnables.remove(0).run();
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        ArgumentCaptor<ServiceCallback> callback = ArgumentCaptor.forClass(ServiceCallback.class);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), callback.capture());
+        assertEquals(3, logContainer.getValue().getLogs().size());
+        verify(otherIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Result is dispatched to each group. */
+        postedRunnables.clear();
+        callback.getValue().onCallSucceeded(new HttpResponse(200, ""));
+        postedRunnables.remove(0).run();
+        verify(persistence).deleteLogs(eq(TEST_GROUP), anyString());
+        verify(persistence).deleteLogs(eq(TEST_GROUP + "2"), anyString());
+        assertTrue(channel.getGroupState(TEST_GROUP).mSendingBatches.isEmpty());
+        assertTrue(channel.getGroupState(TEST_GROUP + "2").mSendingBatches.isEmpty());
+    }
+
+    @Test
+    public void requestMultiplexingLimitsEncodedSize() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+
+        /* Each payload is 600KB in UTF-8, but only 300K characters. */
+        char[] characters = new char[300 * 1024];
+        Arrays.fill(characters, '\u00e9');
+        when(persistence.getLogPayloads(anyString(), anyString())).thenReturn(Collections.singletonList(new String(characters)));
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.setRequestMultiplexingEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "2", 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        List<Runnable> postedRunnables = mockPostedRunnables();
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.DEFAULTS);
+
+        /* Both batches don't fit in the maximum request size once encoded, they are sent separately. */
+        postedRunnables.remove(0).run();
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+    }
+
+    @Test
+    public void requestMultiplexingLimitsLogCountWithoutPayloads() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.setRequestMultiplexingEnabled(true);
+        channel.addGroup(TEST_GROUP, MAX_MULTIPLEXED_REQUEST_LOG_COUNT, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "2", MAX_MULTIPLEXED_REQUEST_LOG_COUNT, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        List<Runnable> postedRunnables = mockPostedRunnables();
+
+        /* A full batch takes along the other group, payloads are not available. */
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.DEFAULTS);
+        for (int i = 0; i < MAX_MULTIPLEXED_REQUEST_LOG_COUNT; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+
+        /* Both batches have more logs than the maximum request log count, they are sent separately. */
+        postedRunnables.remove(0).run();
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), logContainer.capture(), any(ServiceCallback.class));
+        assertEquals(MAX_MULTIPLEXED_REQUEST_LOG_COUNT, logContainer.getAllValues().get(0).getLogs().size());
+        assertEquals(1, logContainer.getAllValues().get(1).getLogs().size());
+    }
+
+    @Test
+    public void deferredUploads() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        mockStatic(NetworkStateHelper.class);
+        when(NetworkStateHelper.getSharedInstance(any(Context.class))).thenReturn(networkStateHelper);
+        mockStatic(SystemClock.class);
+        when(SystemClock.elapsedRealtime()).thenReturn(100000L);
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(TEST_GROUP + "2", 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setDeferredUploadsEnabled(true);
+        ArgumentCaptor<ConnectivityManager.OnNetworkActiveListener> networkActiveListener = ArgumentCaptor.forClass(ConnectivityManager.OnNetworkActiveListener.class);
+        verify(networkStateHelper).addNetworkActiveListener(networkActiveListener.capture());
+
+        /* Logs are deferred in background. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(UPLOAD_DEFERRAL_CHECK_INTERVAL));
+
+        /* Sent when the application enters foreground. */
+        when(SystemClock.elapsedRealtime()).thenReturn(103000L);
+        channel.setApplicationInForeground(true);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onDeferredUploadResumed(TEST_GROUP, 3000, 3000);
+        channel.setApplicationInForeground(false);
+
+        /* Deferred again once the radio is idle, sent when it becomes active. */
+        when(SystemClock.elapsedRealtime()).thenReturn(200000L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        when(SystemClock.elapsedRealtime()).thenReturn(201000L);
+        networkActiveListener.getValue().onNetworkActive();
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onDeferredUploadResumed(TEST_GROUP, 1000, 4000);
+
+        /* Critical logs are not deferred and deferred groups piggyback on them. */
+        when(SystemClock.elapsedRealtime()).thenReturn(300000L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        channel.enqueue(mock(Log.class), TEST_GROUP + "2", Flags.CRITICAL);
+        verify(ingestion, times(4)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onDeferredUploadResumed(TEST_GROUP, 0, 4000);
+
+        /* Disabling stops listening to the radio. */
+        channel.setDeferredUploadsEnabled(false);
+        verify(networkStateHelper).removeNetworkActiveListener(networkActiveListener.getValue());
+    }
+
+    @Test
+    public void deferredUploadsMaxDeferral() {
+        mockStatic(NetworkStateHelper.class);
+        when(NetworkStateHelper.getSharedInstance(any(Context.class))).thenReturn(mock(NetworkStateHelper.class));
+        mockStatic(SystemClock.class);
+        when(SystemClock.elapsedRealtime()).thenReturn(100000L);
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyCollection(), anyInt(), anyList())).then(getGetLogsAnswer());
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        Channel.Listener listener = mock(Channel.Listener.class);
+        channel.addListener(listener);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setDeferredUploadsEnabled(true);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(UPLOAD_DEFERRAL_CHECK_INTERVAL));
+
+        /* Check again until the maximum deferral. */
+        when(SystemClock.elapsedRealtime()).thenReturn(100000L + MAX_UPLOAD_DEFERRAL - 1000);
+        runnable.getValue().run();
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(1000L));
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Sent when the maximum deferral elapsed. */
+        when(SystemClock.elapsedRealtime()).thenReturn(100000L + MAX_UPLOAD_DEFERRAL);
+        runnable.getValue().run();
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onDeferredUploadResumed(TEST_GROUP, MAX_UPLOAD_DEFERRAL, MAX_UPLOAD_DEFERRAL);
+    }
+
+    private List<Runnable> mockPostedRunnables() {
+        final List<Runnable> postedRunnables = new ArrayList<>();
+        when(mAppCenterHandler.post(any(Runnable.class))).then(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                postedRunnables.add((Runnable) invocation.getArguments()[0]);
+                return true;
+            }
+        });
+        return postedRunnables;
+    }
 }
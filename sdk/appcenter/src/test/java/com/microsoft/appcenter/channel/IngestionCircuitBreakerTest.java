@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import static com.microsoft.appcenter.channel.IngestionCircuitBreaker.CLOSED;
+import static com.microsoft.appcenter.channel.IngestionCircuitBreaker.HALF_OPEN;
+import static com.microsoft.appcenter.channel.IngestionCircuitBreaker.INITIAL_BACKOFF;
+import static com.microsoft.appcenter.channel.IngestionCircuitBreaker.MAX_BACKOFF;
+import static com.microsoft.appcenter.channel.IngestionCircuitBreaker.OPEN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+
+public class IngestionCircuitBreakerTest {
+
+    @Test
+    public void probeAfterBackoff() {
+        IngestionCircuitBreaker circuitBreaker = new IngestionCircuitBreaker(mock(Runnable.class));
+        assertEquals(CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowsBatch());
+        circuitBreaker.onBatchSent();
+        assertTrue(circuitBreaker.allowsBatch());
+        assertFalse(circuitBreaker.onSuccess());
+
+        /* Failure opens the breaker, other failures don't extend the backoff. */
+        long backoff = circuitBreaker.onFailure();
+        assertTrue(backoff >= INITIAL_BACKOFF / 2 && backoff < INITIAL_BACKOFF);
+        assertEquals(OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowsBatch());
+        assertEquals(0, circuitBreaker.onFailure());
+
+        /* Only one batch probes the ingestion. */
+        circuitBreaker.startProbing();
+        assertEquals(HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowsBatch());
+        circuitBreaker.onBatchSent();
+        assertFalse(circuitBreaker.allowsBatch());
+
+        /* Success closes the breaker. */
+        assertTrue(circuitBreaker.onSuccess());
+        assertEquals(CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowsBatch());
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        IngestionCircuitBreaker circuitBreaker = new IngestionCircuitBreaker(mock(Runnable.class));
+        long expected = INITIAL_BACKOFF;
+        for (int i = 0; i < 30; i++) {
+            long backoff = circuitBreaker.onFailure();
+            assertTrue(backoff >= expected / 2 && backoff < expected);
+            expected = Math.min(expected * 2, MAX_BACKOFF);
+            circuitBreaker.startProbing();
+            circuitBreaker.onBatchSent();
+        }
+
+        /* Reset forgets failures. */
+        circuitBreaker.reset();
+        long backoff = circuitBreaker.onFailure();
+        assertTrue(backoff < INITIAL_BACKOFF);
+    }
+}
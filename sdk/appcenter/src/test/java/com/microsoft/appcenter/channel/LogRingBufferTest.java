@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.appcenter.ingestion.models.Log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void capacityIsPowerOfTwo() {
+        assertEquals(2, new LogRingBuffer(1).getCapacity());
+        assertEquals(2, new LogRingBuffer(2).getCapacity());
+        assertEquals(4, new LogRingBuffer(3).getCapacity());
+        assertEquals(1024, new LogRingBuffer(1000).getCapacity());
+        assertEquals(1024, new LogRingBuffer(1024).getCapacity());
+    }
+
+    @Test
+    public void offerAndDrainInOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        final List<Log> logs = new ArrayList<>();
+        final List<String> groupNames = new ArrayList<>();
+        final List<Integer> flags = new ArrayList<>();
+        final List<Channel.EnqueueFilter> filters = new ArrayList<>();
+        LogRingBuffer.Consumer consumer = new LogRingBuffer.Consumer() {
+
+            @Override
+            public void accept(@NonNull Log log, @NonNull String groupName, int flag, @Nullable Channel.EnqueueFilter filter) {
+                logs.add(log);
+                groupNames.add(groupName);
+                flags.add(flag);
+                filters.add(filter);
+            }
+        };
+        Channel.EnqueueFilter filter = mock(Channel.EnqueueFilter.class);
+        assertEquals(0, buffer.drain(consumer, 10));
+
+        /* Fill the buffer. */
+        Log[] offered = new Log[5];
+        for (int i = 0; i < 4; i++) {
+            offered[i] = mock(Log.class);
+            assertTrue(buffer.offer(offered[i], "group" + i, i, i % 2 == 0 ? filter : null));
+        }
+        offered[4] = mock(Log.class);
+        assertFalse(buffer.offer(offered[4], "group4", 4, filter));
+
+        /* Drain partially, then there is room again. */
+        assertEquals(2, buffer.drain(consumer, 2));
+        assertTrue(buffer.offer(offered[4], "group4", 4, filter));
+        assertEquals(3, buffer.drain(consumer, 10));
+        assertEquals(5, logs.size());
+        for (int i = 0; i < 5; i++) {
+            assertSame(offered[i], logs.get(i));
+            assertEquals("group" + i, groupNames.get(i));
+            assertEquals(i, (int) flags.get(i));
+            assertSame(i % 2 == 0 ? filter : null, filters.get(i));
+        }
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final int producerCount = 4;
+        final int logsPerProducer = 10000;
+        final LogRingBuffer buffer = new LogRingBuffer(64);
+        final Log[] logs = new Log[16];
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = mock(Log.class);
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            producers[p] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < logsPerProducer; i++) {
+                        while (!buffer.offer(logs[i % logs.length], String.valueOf(producer), i, null)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            producers[p].start();
+        }
+
+        /* Each producer's logs are drained in its own order. */
+        final int[] next = new int[producerCount];
+        LogRingBuffer.Consumer consumer = new LogRingBuffer.Consumer() {
+
+            @Override
+            public void accept(@NonNull Log log, @NonNull String groupName, int flags, @Nullable Channel.EnqueueFilter filter) {
+                int producer = Integer.parseInt(groupName);
+                assertEquals(next[producer], flags);
+                assertSame(logs[flags % logs.length], log);
+                next[producer]++;
+            }
+        };
+        start.countDown();
+        int drained = 0;
+        while (drained < producerCount * logsPerProducer) {
+            drained += buffer.drain(consumer, 100);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        for (int p = 0; p < producerCount; p++) {
+            assertEquals(logsPerProducer, next[p]);
+        }
+        assertEquals(0, buffer.drain(consumer, 100));
+    }
+}
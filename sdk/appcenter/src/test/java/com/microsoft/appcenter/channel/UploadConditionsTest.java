@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class UploadConditionsTest {
+
+    private Context mContext;
+
+    private NetworkStateHelper mNetworkStateHelper;
+
+    private UploadConditions mUploadConditions;
+
+    @Before
+    public void setUp() {
+        mContext = mock(Context.class);
+        mNetworkStateHelper = mock(NetworkStateHelper.class);
+        mUploadConditions = new UploadConditions(mContext, mNetworkStateHelper);
+    }
+
+    @Test
+    public void foreground() {
+        assertFalse(mUploadConditions.isUploadAllowed());
+        mUploadConditions.setForeground(true);
+        assertTrue(mUploadConditions.isUploadAllowed());
+        mUploadConditions.setForeground(false);
+        assertFalse(mUploadConditions.isUploadAllowed());
+    }
+
+    @Test
+    public void radioActive() {
+        when(mNetworkStateHelper.isDefaultNetworkActive()).thenReturn(true);
+        assertTrue(mUploadConditions.isUploadAllowed());
+    }
+
+    @Test
+    public void radioActiveAfterTraffic() {
+        mUploadConditions.onTraffic();
+        assertTrue(mUploadConditions.isUploadAllowed());
+    }
+
+    @Test
+    public void charging() {
+        Intent batteryStatus = mock(Intent.class);
+        when(batteryStatus.getIntExtra(anyString(), anyInt())).thenReturn(BatteryManager.BATTERY_PLUGGED_AC);
+        when(mContext.registerReceiver(isNull(), any(IntentFilter.class))).thenReturn(batteryStatus);
+        assertTrue(mUploadConditions.isUploadAllowed());
+
+        /* Assume charging if state cannot be read. */
+        when(mContext.registerReceiver(isNull(), any(IntentFilter.class))).thenThrow(new SecurityException());
+        assertTrue(mUploadConditions.isUploadAllowed());
+    }
+}
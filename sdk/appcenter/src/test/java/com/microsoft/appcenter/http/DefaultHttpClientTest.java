@@ -35,6 +35,7 @@ import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 import android.net.TrafficStats;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 
@@ -62,6 +63,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -70,10 +72,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -84,6 +88,7 @@ import javax.net.ssl.HttpsURLConnection;
         DefaultHttpClient.class,
         DefaultHttpClientCallTask.class,
         HttpUtils.class,
+        SystemClock.class,
         TrafficStats.class
 })
 public class DefaultHttpClientTest {
@@ -97,6 +102,7 @@ public class DefaultHttpClientTest {
     @After
     public void tearDown() throws Exception {
         TestUtils.setInternalState(Build.VERSION.class, "SDK_INT", 0);
+        HostConnectionLimiter.unsetInstance();
     }
 
     /**
@@ -117,7 +123,8 @@ public class DefaultHttpClientTest {
                         (HttpClient.CallTemplate) invocation.getArguments()[3],
                         (ServiceCallback) invocation.getArguments()[4],
                         (DefaultHttpClientCallTask.Tracker) invocation.getArguments()[5],
-                        (boolean) invocation.getArguments()[6]));
+                        (boolean) invocation.getArguments()[6],
+                        invocation.getArguments().length > 7 && (boolean) invocation.getArguments()[7]));
                 when(call.executeOnExecutor(any())).then(new Answer<DefaultHttpClientCallTask>() {
 
                     @Override
@@ -385,6 +392,30 @@ public class DefaultHttpClientTest {
         verify(urlConnection).disconnect();
     }
 
+    @Test
+    public void callDuration() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock/get";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Only the time between sending the request and reading the response is measured. */
+        mockStatic(SystemClock.class);
+        when(SystemClock.elapsedRealtime()).thenReturn(1000L, 1250L);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(mHttpResponseCaptor.capture());
+        assertEquals(250, mHttpResponseCaptor.getValue().getCallDuration());
+        httpClient.close();
+
+        /* Responses built elsewhere don't know their duration. */
+        assertEquals(-1, new HttpResponse(200, "OK", Collections.<String, String>emptyMap()).getCallDuration());
+    }
+
     @Test
     public void get200WithoutCallTemplate() throws Exception {
 
@@ -988,6 +1019,55 @@ public class DefaultHttpClientTest {
         verify(serviceCallback, never()).onCallSucceeded(any(HttpResponse.class));
     }
 
+    @Test
+    public void keepConnectionAliveWhenReuseEnabled() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock/logs?api-version=1.0.0";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(urlConnection.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        InputStream inputStream = spy(new ByteArrayInputStream("OK".getBytes()));
+        when(urlConnection.getInputStream()).thenReturn(inputStream);
+
+        /* Configure API client. */
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("{a:1,b:2}");
+        DefaultHttpClient httpClient = new DefaultHttpClient(true, mock(Executor.class), true);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.emptyMap()));
+
+        /* Response was fully read and closed so the connection is kept alive for the next call. */
+        verify(inputStream).close();
+        verify(urlConnection, never()).disconnect();
+    }
+
+    @Test
+    public void disconnectOnFailureWhenReuseEnabled() throws Exception {
+
+        /* Configure mock HTTPS to fail before reading the response. */
+        String urlString = "https://mock/logs?api-version=1.0.0";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        IOException exception = new IOException("mock");
+        when(urlConnection.getResponseCode()).thenThrow(exception);
+
+        /* Test. */
+        DefaultHttpClient httpClient = new DefaultHttpClient(true, mock(Executor.class), true);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<>(), null, serviceCallback);
+        verify(serviceCallback).onCallFailed(exception);
+
+        /* Connection in unknown state is not reused. */
+        verify(urlConnection).disconnect();
+    }
+
     @Test
     public void sendGzipWithoutVerboseLogging() throws Exception {
 
@@ -1052,6 +1132,98 @@ public class DefaultHttpClientTest {
         AppCenterLog.verbose(anyString(), contains(payload));
     }
 
+    @Test
+    public void sendGzipStream() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client with a streaming template. */
+        final String payload = "{\"logs\":[]}";
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Writer) invocation.getArguments()[0]).write(payload);
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(Writer.class));
+
+        /* Template announces a body large enough to be compressed. */
+        when(callTemplate.getRequestBodyLength()).thenReturn(1400L);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.emptyMap()));
+        verify(urlConnection).setRequestProperty("Content-Type", "application/json");
+        verify(urlConnection).setRequestProperty("Content-Encoding", "gzip");
+        verify(urlConnection).setDoOutput(true);
+        verify(urlConnection).setChunkedStreamingMode(anyInt());
+        verify(urlConnection, never()).setFixedLengthStreamingMode(anyInt());
+        verify(callTemplate, never()).buildRequestBody();
+        httpClient.close();
+
+        /* Verify payload compressed with the announced length rather than the actual one. */
+        InputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64];
+        int length;
+        while ((length = gzipStream.read(chunk)) > 0) {
+            uncompressed.write(chunk, 0, length);
+        }
+        assertEquals(payload, uncompressed.toString("UTF-8"));
+    }
+
+    @Test
+    public void sendNoGzipStreamWhenSmall() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()), new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client with a small streaming template, or one that does not know its length. */
+        final String payload = "{\"logs\":[]}";
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn(payload);
+        when(callTemplate.getRequestBodyLength()).thenReturn((long) payload.length(), -1L);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback, times(2)).onCallSucceeded(new HttpResponse(200, "OK", Collections.emptyMap()));
+
+        /* Payload is sent as is with its length, like any small payload. */
+        verify(urlConnection, never()).setRequestProperty("Content-Encoding", "gzip");
+        verify(urlConnection, never()).setChunkedStreamingMode(anyInt());
+        verify(urlConnection, times(2)).setFixedLengthStreamingMode(payload.length());
+        verify(callTemplate, never()).writeRequestBody(any(Writer.class));
+        httpClient.close();
+    }
+
     @Test
     public void sendNoGzipWhenCompressionDisabled() throws Exception {
 
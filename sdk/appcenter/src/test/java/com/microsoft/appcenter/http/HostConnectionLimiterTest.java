@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class HostConnectionLimiterTest {
+
+    private static final String HOST = "in.appcenter.ms";
+
+    private static final String OTHER_HOST = "mobile.events.data.microsoft.com";
+
+    private final HostConnectionLimiter.RejectedCallListener mRejectedListener = mock(HostConnectionLimiter.RejectedCallListener.class);
+
+    @After
+    public void tearDown() {
+        HostConnectionLimiter.unsetInstance();
+    }
+
+    @Test
+    public void sharedInstance() {
+        HostConnectionLimiter limiter = HostConnectionLimiter.getSharedInstance();
+        assertSame(limiter, HostConnectionLimiter.getSharedInstance());
+        assertEquals(HostConnectionLimiter.DEFAULT_MAX_CONNECTIONS_PER_HOST, limiter.getAvailableConnections(HOST));
+    }
+
+    @Test
+    public void limitPerHost() {
+        HostConnectionLimiter limiter = new HostConnectionLimiter(1);
+        CapturingExecutor executor = new CapturingExecutor();
+        Runnable firstCall = mock(Runnable.class);
+        Runnable secondCall = mock(Runnable.class);
+        Runnable otherHostCall = mock(Runnable.class);
+        limiter.execute(executor, HOST, firstCall, mRejectedListener);
+        assertEquals(1, executor.mTasks.size());
+        assertEquals(0, limiter.getAvailableConnections(HOST));
+
+        /* Other hosts are not limited. */
+        limiter.execute(executor, OTHER_HOST, otherHostCall, mRejectedListener);
+        assertEquals(2, executor.mTasks.size());
+        assertEquals(0, limiter.getAvailableConnections(OTHER_HOST));
+
+        /* Second call to the same host waits without being submitted to the executor. */
+        limiter.execute(executor, HOST, secondCall, mRejectedListener);
+        assertEquals(2, executor.mTasks.size());
+        assertEquals(1, limiter.getWaitingCalls(HOST));
+        verifyNoInteractions(firstCall, secondCall, otherHostCall);
+
+        /* The thread running the first call runs the waiting call next. */
+        executor.mTasks.get(0).run();
+        verify(firstCall).run();
+        verify(secondCall).run();
+        assertEquals(0, limiter.getWaitingCalls(HOST));
+        assertEquals(1, limiter.getAvailableConnections(HOST));
+
+        /* Connection to other host released. */
+        executor.mTasks.get(1).run();
+        verify(otherHostCall).run();
+        assertEquals(1, limiter.getAvailableConnections(OTHER_HOST));
+    }
+
+    @Test
+    public void releaseWhenCallFails() {
+        HostConnectionLimiter limiter = new HostConnectionLimiter(1);
+        CapturingExecutor executor = new CapturingExecutor();
+        Runnable call = mock(Runnable.class);
+        doThrow(new RuntimeException()).when(call).run();
+        limiter.execute(executor, HOST, call, mRejectedListener);
+        try {
+            executor.mTasks.get(0).run();
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+        assertEquals(1, limiter.getAvailableConnections(HOST));
+    }
+
+    @Test
+    public void releaseWhenRejected() {
+        HostConnectionLimiter limiter = new HostConnectionLimiter(1);
+        Executor executor = mock(Executor.class);
+        doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+        Runnable call = mock(Runnable.class);
+        try {
+            limiter.execute(executor, HOST, call, mRejectedListener);
+            fail();
+        } catch (RejectedExecutionException ignored) {
+        }
+        assertEquals(1, limiter.getAvailableConnections(HOST));
+        verifyNoInteractions(call, mRejectedListener);
+    }
+
+    @Test
+    public void submitWaitingCallWhenLastCallFails() {
+        HostConnectionLimiter limiter = new HostConnectionLimiter(1);
+        CapturingExecutor executor = new CapturingExecutor();
+        Runnable firstCall = mock(Runnable.class);
+        doThrow(new RuntimeException()).when(firstCall).run();
+        Runnable secondCall = mock(Runnable.class);
+        limiter.execute(executor, HOST, firstCall, mRejectedListener);
+        limiter.execute(executor, HOST, secondCall, mRejectedListener);
+        assertEquals(1, limiter.getWaitingCalls(HOST));
+
+        /* The failing thread doesn't run the waiting call, it's submitted to the executor instead. */
+        try {
+            executor.mTasks.get(0).run();
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+        verifyNoInteractions(secondCall);
+        assertEquals(2, executor.mTasks.size());
+        assertEquals(0, limiter.getWaitingCalls(HOST));
+        assertEquals(0, limiter.getAvailableConnections(HOST));
+        executor.mTasks.get(1).run();
+        verify(secondCall).run();
+        assertEquals(1, limiter.getAvailableConnections(HOST));
+        verifyNoInteractions(mRejectedListener);
+    }
+
+    @Test
+    public void failWaitingCallsWhenLastCallRejected() {
+        final HostConnectionLimiter limiter = new HostConnectionLimiter(1);
+        final Runnable waitingCall = mock(Runnable.class);
+        final HostConnectionLimiter.RejectedCallListener waitingCallListener = mock(HostConnectionLimiter.RejectedCallListener.class);
+        final RejectedExecutionException rejection = new RejectedExecutionException();
+
+        /* Another call is queued while the executor is rejecting the only admitted call. */
+        Executor executor = new Executor() {
+
+            private boolean mFirstCall = true;
+
+            @Override
+            public void execute(@NonNull Runnable command) {
+                if (mFirstCall) {
+                    mFirstCall = false;
+                    limiter.execute(this, HOST, waitingCall, waitingCallListener);
+                    assertEquals(1, limiter.getWaitingCalls(HOST));
+                }
+                throw rejection;
+            }
+        };
+        Runnable call = mock(Runnable.class);
+        try {
+            limiter.execute(executor, HOST, call, mRejectedListener);
+            fail();
+        } catch (RejectedExecutionException ignored) {
+        }
+
+        /* The waiting call is submitted and fails as the executor rejects it too. */
+        verify(waitingCallListener).onCallRejected(rejection);
+        verifyNoInteractions(call, waitingCall, mRejectedListener);
+        assertEquals(0, limiter.getWaitingCalls(HOST));
+        assertEquals(1, limiter.getAvailableConnections(HOST));
+    }
+
+    /**
+     * Executor keeping submitted tasks to run them later in the test thread.
+     */
+    private static class CapturingExecutor implements Executor {
+
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mTasks.add(command);
+        }
+    }
+}
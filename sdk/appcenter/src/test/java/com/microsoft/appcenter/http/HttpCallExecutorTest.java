@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+@PrepareForTest({
+        Process.class,
+        SystemClock.class
+})
+public class HttpCallExecutorTest {
+
+    @Rule
+    public PowerMockRule mPowerMockRule = new PowerMockRule();
+
+    @After
+    public void tearDown() {
+        HttpCallExecutor.unsetInstance();
+    }
+
+    @Test
+    public void sharedInstance() {
+        assertSame(HttpCallExecutor.getSharedInstance(), HttpCallExecutor.getSharedInstance());
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+        assertSame(HttpCallExecutor.getSharedInstance(), httpClient.getExecutor());
+    }
+
+    @Test
+    public void boundedWithMetrics() throws InterruptedException {
+        mockStatic(Process.class);
+        mockStatic(SystemClock.class);
+        when(SystemClock.elapsedRealtime()).thenReturn(1000L, 1200L);
+        HttpCallExecutor executor = new HttpCallExecutor(1, 1, Process.THREAD_PRIORITY_BACKGROUND);
+        assertEquals(0, executor.getAverageWaitTime());
+
+        /* First call is running and blocked. */
+        final Semaphore running = new Semaphore(0);
+        final Semaphore release = new Semaphore(0);
+        final Semaphore done = new Semaphore(0);
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                running.release();
+                release.acquireUninterruptibly();
+            }
+        });
+        running.acquire();
+        assertEquals(1, executor.getActiveCallCount());
+        verifyStatic(Process.class);
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        /* Second call waits in queue. */
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                done.release();
+            }
+        });
+        assertEquals(1, executor.getQueueDepth());
+
+        /* Third call is rejected. */
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("Expected call to be rejected.");
+        } catch (RejectedExecutionException ignored) {
+        }
+
+        /* Unblock, first call waited 200ms and second call did not wait in mocked time. */
+        release.release();
+        done.acquire();
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(100, executor.getAverageWaitTime());
+    }
+}
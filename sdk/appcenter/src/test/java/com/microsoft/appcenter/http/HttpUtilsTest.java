@@ -82,6 +82,15 @@ public class HttpUtilsTest {
         HttpClient httpClient = HttpUtils.createHttpClient(mock(Context.class));
         DefaultHttpClient defaultHttpClient = getDefaultHttpClient((HttpClientDecorator) httpClient);
         assertTrue(defaultHttpClient.isCompressionEnabled());
+        assertFalse(defaultHttpClient.isConnectionReuseEnabled());
+    }
+
+    @Test
+    public void enabledConnectionReuse() {
+        HttpClient httpClient = HttpUtils.createHttpClient(mock(Context.class), true, true);
+        DefaultHttpClient defaultHttpClient = getDefaultHttpClient((HttpClientDecorator) httpClient);
+        assertTrue(defaultHttpClient.isCompressionEnabled());
+        assertTrue(defaultHttpClient.isConnectionReuseEnabled());
     }
 
     @Test
@@ -21,14 +21,17 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
 
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -123,6 +126,40 @@ public class AppCenterIngestionTest {
         verify(mHttpClient).reopen();
     }
 
+    @Test
+    public void writeRequestBody() throws Exception {
+
+        /* Build some payload. */
+        LogContainer container = new LogContainer();
+        Log log1 = mock(Log.class);
+        Log log2 = mock(Log.class);
+        container.setLogs(Arrays.asList(log1, log2));
+        LogSerializer serializer = mock(LogSerializer.class);
+        when(serializer.serializeLog(log1)).thenReturn("{\"a\":1}");
+        when(serializer.serializeLog(log2)).thenReturn("{\"b\":2}");
+
+        /* Configure mock HTTP. */
+        ArgumentCaptor<HttpClient.CallTemplate> callTemplate = ArgumentCaptor.forClass(HttpClient.CallTemplate.class);
+        when(mHttpClient.callAsync(anyString(), anyString(), anyMap(), callTemplate.capture(), any(ServiceCallback.class))).thenReturn(mock(ServiceCall.class));
+        AppCenterIngestion ingestion = new AppCenterIngestion(mHttpClient, serializer);
+        ingestion.sendAsync(UUID.randomUUID().toString(), UUID.randomUUID(), container, mock(ServiceCallback.class));
+
+        /* Logs are serialized one by one in the envelope. */
+        StringWriter writer = new StringWriter();
+        ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).writeRequestBody(writer);
+        assertEquals("{\"logs\":[{\"a\":1},{\"b\":2}]}", writer.toString());
+
+        /* Length is unknown without stored payloads. */
+        assertEquals(-1, ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).getRequestBodyLength());
+
+        /* Stored payloads are used when available. */
+        container.setPayloads(Arrays.asList("{}", "{}"));
+        writer = new StringWriter();
+        ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).writeRequestBody(writer);
+        assertEquals("{\"logs\":[{},{}]}", writer.toString());
+        assertEquals(writer.toString().length(), ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).getRequestBodyLength());
+    }
+
     @Test
     public void failedSerialization() throws Exception {
 
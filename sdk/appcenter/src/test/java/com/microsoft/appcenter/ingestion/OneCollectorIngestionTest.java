@@ -36,6 +36,7 @@ import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
 
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -184,6 +185,44 @@ public class OneCollectorIngestionTest {
         verify(mHttpClient).reopen();
     }
 
+    @Test
+    public void sendSerializedLogs() throws Exception {
+
+        /* Build some payload. */
+        Extensions ext = new Extensions() {{
+            setProtocol(new ProtocolExtension());
+        }};
+        final CommonSchemaLog log = mock(CommonSchemaLog.class);
+        when(log.getExt()).thenReturn(ext);
+        when(log.getTransmissionTargetTokens()).thenReturn(Collections.singleton("token1"));
+        LogContainer container = new LogContainer();
+        container.setLogs(Collections.<Log>singletonList(log));
+        container.setPayloads(Collections.singletonList("storedPayload"));
+        LogSerializer serializer = mock(LogSerializer.class);
+
+        /* Configure mock HTTP. */
+        ArgumentCaptor<HttpClient.CallTemplate> callTemplate = ArgumentCaptor.forClass(HttpClient.CallTemplate.class);
+        when(mHttpClient.callAsync(anyString(), anyString(), anyMap(), callTemplate.capture(), any(ServiceCallback.class))).thenReturn(mock(ServiceCall.class));
+
+        /* Stored payloads are used as is. */
+        OneCollectorIngestion ingestion = new OneCollectorIngestion(mHttpClient, serializer);
+        ingestion.sendAsync(null, null, container, mock(ServiceCallback.class));
+        assertEquals("storedPayload\n", callTemplate.getValue().buildRequestBody());
+        StringWriter writer = new StringWriter();
+        ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).writeRequestBody(writer);
+        assertEquals("storedPayload\n", writer.toString());
+        assertEquals(writer.toString().length(), ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).getRequestBodyLength());
+        verify(serializer, never()).serializeLog(any(Log.class));
+
+        /* Logs are serialized when there are no stored payloads. */
+        container.setPayloads(null);
+        when(serializer.serializeLog(log)).thenReturn("mockPayload");
+        writer = new StringWriter();
+        ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).writeRequestBody(writer);
+        assertEquals("mockPayload\n", writer.toString());
+        assertEquals(-1, ((HttpClient.StreamingCallTemplate) callTemplate.getValue()).getRequestBodyLength());
+    }
+
     @Test
     public void passTicketsDebug() {
         Constants.APPLICATION_DEBUGGABLE = true;
@@ -8,14 +8,20 @@ package com.microsoft.appcenter.persistence;
 import static com.microsoft.appcenter.Flags.NORMAL;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNotNull;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -35,6 +41,7 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.persistence.Persistence.PersistenceException;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.storage.DatabaseManager;
+import com.microsoft.appcenter.utils.storage.SQLiteUtils;
 
 import org.json.JSONException;
 import org.junit.Rule;
@@ -44,7 +51,9 @@ import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -52,7 +61,8 @@ import java.util.List;
 @PrepareForTest({
         AppCenterLog.class,
         DatabaseManager.class,
-        DatabasePersistence.class
+        DatabasePersistence.class,
+        SQLiteUtils.class
 })
 public class DatabasePersistenceTest {
 
@@ -68,7 +78,7 @@ public class DatabasePersistenceTest {
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(mockDatabaseManager);
         Cursor mockCursor = mock(Cursor.class);
         when(mockCursor.moveToNext()).thenThrow(new RuntimeException());
-        when(mockDatabaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(mockDatabaseManager.getCursor(eq(DatabasePersistence.LOG_COUNTS_TABLE), any(SQLiteQueryBuilder.class), any(), any(String[].class), isNull())).thenReturn(mockCursor);
         DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
 
         /* Try to get logs count. */
@@ -86,6 +96,62 @@ public class DatabasePersistenceTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void countLogsReadsLogCountsTable() throws Exception {
+        DatabaseManager mockDatabaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(mockDatabaseManager);
+        Cursor mockCursor = mock(Cursor.class);
+        when(mockCursor.moveToNext()).thenReturn(true);
+        when(mockCursor.getInt(0)).thenReturn(42);
+        when(mockDatabaseManager.getCursor(eq(DatabasePersistence.LOG_COUNTS_TABLE), any(SQLiteQueryBuilder.class), any(), any(String[].class), isNull())).thenReturn(mockCursor);
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
+        try {
+            assertEquals(42, persistence.countLogs("test-p1"));
+
+            /* No row means no log. */
+            when(mockCursor.moveToNext()).thenReturn(false);
+            assertEquals(0, persistence.countLogs("test-p1"));
+        } finally {
+            persistence.close();
+        }
+        verify(mockCursor, times(2)).close();
+
+        /* Logs are not scanned. */
+        verify(mockDatabaseManager, never()).getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), any());
+    }
+
+    @Test
+    public void deleteLogsByBatchDeletesRowsAtOnce() throws Exception {
+
+        /* Mock instances. */
+        DatabaseManager mockDatabaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(mockDatabaseManager);
+        DatabasePersistence persistence = spy(new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA));
+
+        /* Simulate a pending batch where only the second log has its payload in a file. */
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        persistence.mPendingDbIdentifiersGroups.put("test-p1" + "batch", ids);
+        persistence.mPendingDbIdentifiers.addAll(ids);
+        persistence.mPendingLargePayloadDbIdentifiers.add(2L);
+
+        /* Delete batch. */
+        persistence.deleteLogs("test-p1", "batch");
+
+        /* Verify only one file is touched and rows are deleted with a single statement. */
+        verify(persistence).getLargePayloadFile(any(File.class), eq(2L));
+        verify(persistence, never()).getLargePayloadFile(any(File.class), eq(1L));
+        verify(persistence, never()).getLargePayloadFile(any(File.class), eq(3L));
+        verify(mockDatabaseManager).delete(ids);
+        verify(mockDatabaseManager, never()).delete(anyLong());
+        assertTrue(persistence.mPendingDbIdentifiers.isEmpty());
+        assertTrue(persistence.mPendingLargePayloadDbIdentifiers.isEmpty());
+        assertTrue(persistence.mPendingDbIdentifiersGroups.isEmpty());
+
+        /* Unknown batch is ignored. */
+        persistence.deleteLogs("test-p1", "batch");
+        verify(mockDatabaseManager).delete(ids);
+    }
+
     @Test
     public void clearPendingLogState() throws Exception {
 
@@ -114,7 +180,7 @@ public class DatabasePersistenceTest {
         for (int i = 0; i < groupCount; i++) {
             MockCursor mockCursor = new MockCursor(list.get(i));
             mockCursor.mockBuildValues(mockDatabaseManager);
-            when(mockDatabaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), eq(new String[]{String.valueOf(i)}), anyString()))
+            when(mockDatabaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), eq(new String[]{String.valueOf(i)}), anyString(), anyString()))
                     .thenReturn(mockCursor);
         }
 
@@ -148,7 +214,7 @@ public class DatabasePersistenceTest {
         DatabaseManager databaseManager = mock(DatabaseManager.class);
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
         when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), anyString()))
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), anyString(), anyString()))
                 .thenThrow(new RuntimeException());
         DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
 
@@ -172,7 +238,7 @@ public class DatabasePersistenceTest {
         when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
         Cursor mockCursor = mock(Cursor.class);
         when(mockCursor.moveToNext()).thenThrow(new RuntimeException());
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
         DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
 
         /* Try to get logs. */
@@ -206,7 +272,7 @@ public class DatabasePersistenceTest {
         /* Mock log sequence retrieved from cursor. */
         MockCursor mockCursor = new MockCursor(fieldValues);
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
 
         /* Mock second cursor with identifiers only. */
         Cursor failingCursor = mock(Cursor.class);
@@ -259,7 +325,7 @@ public class DatabasePersistenceTest {
         /* Mock log sequence retrieved from cursor. */
         MockCursor mockCursor = new MockCursor(fieldValues);
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString()))
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString(), anyString()))
                 .thenReturn(mockCursor);
 
         /* Mock second cursor with identifiers only. */
@@ -350,7 +416,7 @@ public class DatabasePersistenceTest {
             }
         };
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString()))
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString(), anyString()))
                 .thenReturn(mockCursor);
         idValues = new ArrayList<>(4);
 
@@ -383,6 +449,126 @@ public class DatabasePersistenceTest {
         verify(databaseManager).delete(anyLong());
     }
 
+    @Test
+    public void getLogsExcludesPendingLogsAndLimitsInQuery() throws Exception {
+
+        /* Mock instances. */
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        mockStatic(SQLiteUtils.class);
+        SQLiteQueryBuilder firstBuilder = mock(SQLiteQueryBuilder.class);
+        SQLiteQueryBuilder secondBuilder = mock(SQLiteQueryBuilder.class);
+        when(SQLiteUtils.newSQLiteQueryBuilder()).thenReturn(firstBuilder).thenReturn(secondBuilder);
+
+        /* Mock 2 logs in the first batch. */
+        List<ContentValues> fieldValues = new ArrayList<>();
+        for (long id = 1; id <= 2; id++) {
+            ContentValues contentValues = mock(ContentValues.class);
+            when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(id);
+            when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+            fieldValues.add(contentValues);
+        }
+        MockCursor mockCursor = new MockCursor(fieldValues);
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(eq(firstBuilder), isNull(), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
+        MockCursor emptyCursor = new MockCursor(new ArrayList<ContentValues>());
+        when(databaseManager.getCursor(eq(secondBuilder), isNull(), any(String[].class), anyString(), anyString())).thenReturn(emptyCursor);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), any())).thenReturn(mock(Log.class));
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* First batch: no pending filter, limit is pushed to the query. */
+        ArrayList<Log> outLogs = new ArrayList<>();
+        persistence.getLogs("mock", Collections.emptyList(), 2, outLogs);
+        assertEquals(2, outLogs.size());
+        verify(databaseManager).getCursor(eq(firstBuilder), isNull(), any(String[].class), anyString(), eq("2"));
+        verify(firstBuilder, never()).appendWhere(contains(DatabaseManager.PRIMARY_KEY + " NOT IN"));
+
+        /* Second batch: pending logs are excluded by the query. */
+        outLogs = new ArrayList<>();
+        persistence.getLogs("mock", Collections.emptyList(), 50, outLogs);
+        assertEquals(0, outLogs.size());
+        verify(databaseManager).getCursor(eq(secondBuilder), isNull(), any(String[].class), anyString(), eq("50"));
+        verify(secondBuilder).appendWhere(matches(DatabaseManager.PRIMARY_KEY + " NOT IN \\((1,2|2,1)\\)"));
+    }
+
+    @Test
+    public void getLogsReturnsStoredLogsFromMemory() throws Exception {
+
+        /* Mock instances. */
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        when(databaseManager.getMaxSize()).thenReturn(Long.MAX_VALUE);
+        when(databaseManager.put(any(ContentValues.class), anyString())).thenReturn(1L).thenReturn(2L);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.serializeLog(any(Log.class))).thenReturn("{}");
+        Log restoredLog = mock(Log.class);
+        when(logSerializer.deserializeLog(anyString(), any())).thenReturn(restoredLog);
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* Store 2 logs and simulate the first one is no longer in memory, e.g. stored by a previous process. */
+        Log storedLog = mock(Log.class);
+        persistence.putLog(mock(Log.class), "test-p1", NORMAL);
+        persistence.putLog(storedLog, "test-p1", NORMAL);
+        persistence.mHotLogs.remove(1L);
+
+        /* Mock cursor returning both logs. */
+        List<ContentValues> fieldValues = new ArrayList<>();
+        for (long id = 1; id <= 2; id++) {
+            ContentValues contentValues = mock(ContentValues.class);
+            when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(id);
+            when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+            fieldValues.add(contentValues);
+        }
+        MockCursor mockCursor = new MockCursor(fieldValues);
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
+
+        /* Only the log that is not in memory is deserialized. */
+        ArrayList<Log> outLogs = new ArrayList<>();
+        String batchId = persistence.getLogs("test-p1", Collections.emptyList(), 2, outLogs);
+        assertEquals(Arrays.asList(restoredLog, storedLog), outLogs);
+        verify(logSerializer).deserializeLog(anyString(), any());
+
+        /* Stored payloads are available for sending. */
+        assertEquals(Arrays.asList("{}", "{}"), persistence.getLogPayloads("test-p1", batchId));
+
+        /* Deleting the batch releases memory. */
+        persistence.deleteLogs("test-p1", batchId);
+        assertTrue(persistence.mHotLogs.isEmpty());
+        assertNull(persistence.getLogPayloads("test-p1", batchId));
+    }
+
+    @Test
+    public void storedLogsInMemoryAreBounded() throws Exception {
+
+        /* Mock instances. */
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.getMaxSize()).thenReturn(Long.MAX_VALUE);
+        when(databaseManager.put(any(ContentValues.class), anyString())).thenReturn(1L).thenReturn(2L).thenReturn(3L);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        char[] payload = new char[DatabasePersistence.HOT_LOGS_MAX_SIZE / 2];
+        Arrays.fill(payload, 'a');
+        when(logSerializer.serializeLog(any(Log.class))).thenReturn(new String(payload));
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* Store 3 logs, only the 2 last ones fit in memory. */
+        persistence.putLog(mock(Log.class), "test-p1", NORMAL);
+        persistence.putLog(mock(Log.class), "test-p1", NORMAL);
+        persistence.putLog(mock(Log.class), "test-p2", NORMAL);
+        assertEquals(Arrays.asList(2L, 3L), new ArrayList<>(persistence.mHotLogs.keySet()));
+
+        /* Deleting a group releases memory of that group only. */
+        persistence.deleteLogs("test-p1");
+        assertEquals(Collections.singletonList(3L), new ArrayList<>(persistence.mHotLogs.keySet()));
+    }
+
     @Test
     public void checkSetStorageSizeForwarding() throws Exception {
 
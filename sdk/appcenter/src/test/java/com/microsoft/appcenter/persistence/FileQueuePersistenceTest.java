@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.persistence.Persistence.PersistenceException;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.crypto.CryptoUtils;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.microsoft.appcenter.Flags.CRITICAL;
+import static com.microsoft.appcenter.Flags.NORMAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+@PrepareForTest({AppCenterLog.class, CryptoUtils.class})
+public class FileQueuePersistenceTest {
+
+    private static final String GROUP = "group";
+
+    @Rule
+    public PowerMockRule mPowerMockRule = new PowerMockRule();
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /**
+     * Logs by payload, the mock serializer returns the original log when deserializing.
+     */
+    private final Map<String, Log> mLogs = new HashMap<>();
+
+    private String mFilesPath;
+
+    private LogSerializer mLogSerializer;
+
+    @Before
+    public void setUp() throws JSONException {
+        mockStatic(AppCenterLog.class);
+        mockStatic(CryptoUtils.class);
+        CryptoUtils cryptoUtils = mock(CryptoUtils.class);
+        when(CryptoUtils.getInstance(any(Context.class))).thenReturn(cryptoUtils);
+        when(cryptoUtils.encrypt(anyString())).thenAnswer(new Answer<String>() {
+
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                return "encrypted:" + invocation.getArgument(0);
+            }
+        });
+        when(cryptoUtils.decrypt(anyString())).thenAnswer(new Answer<CryptoUtils.DecryptedData>() {
+
+            @Override
+            public CryptoUtils.DecryptedData answer(InvocationOnMock invocation) {
+                String data = invocation.getArgument(0);
+                return new CryptoUtils.DecryptedData(data.substring("encrypted:".length()), null);
+            }
+        });
+        mLogSerializer = mock(LogSerializer.class);
+        when(mLogSerializer.serializeLog(any(Log.class))).thenAnswer(new Answer<String>() {
+
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                Log log = invocation.getArgument(0);
+                for (Map.Entry<String, Log> entry : mLogs.entrySet()) {
+                    if (entry.getValue() == log) {
+                        return entry.getKey();
+                    }
+                }
+                throw new IllegalStateException();
+            }
+        });
+        when(mLogSerializer.deserializeLog(anyString(), anyString())).thenAnswer(new Answer<Log>() {
+
+            @Override
+            public Log answer(InvocationOnMock invocation) throws JSONException {
+                Log log = mLogs.get(invocation.<String>getArgument(0));
+                if (log == null) {
+                    throw new JSONException("mock");
+                }
+                return log;
+            }
+        });
+        mFilesPath = Constants.FILES_PATH;
+        Constants.FILES_PATH = mTemporaryFolder.getRoot().getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() {
+        Constants.FILES_PATH = mFilesPath;
+    }
+
+    private Log newLog(int payloadSize) {
+        return newLog(Log.class, payloadSize);
+    }
+
+    private <T extends Log> T newLog(Class<T> logClass, int payloadSize) {
+        T log = mock(logClass);
+        when(log.getType()).thenReturn("mock");
+        char[] padding = new char[payloadSize];
+        Arrays.fill(padding, 'x');
+        mLogs.put(mLogs.size() + ":" + new String(padding), log);
+        return log;
+    }
+
+    private FileQueuePersistence newPersistence() {
+        FileQueuePersistence persistence = new FileQueuePersistence(mock(Context.class));
+        persistence.setLogSerializer(mLogSerializer);
+        return persistence;
+    }
+
+    private File[] getSegmentFiles() {
+        File[] files = new File(Constants.FILES_PATH + "/appcenter/log_segments/" + GROUP).listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private long getSegmentsSize() {
+        long size = 0;
+        for (File file : getSegmentFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    @Test
+    public void criticalLogsFirstThenDelete() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        Log first = newLog(10);
+        Log second = newLog(10);
+        Log critical = newLog(10);
+        persistence.putLog(first, GROUP, NORMAL);
+        persistence.putLog(second, GROUP, NORMAL);
+        persistence.putLog(critical, GROUP, CRITICAL);
+        assertEquals(3, persistence.countLogs(GROUP));
+        assertEquals(0, persistence.countLogs("other"));
+
+        /* Critical logs are returned first. */
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 2, logs);
+        assertNotNull(batchId);
+        assertEquals(Arrays.asList(critical, first), logs);
+
+        /* Pending logs are not returned again. */
+        logs.clear();
+        String secondBatchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 2, logs);
+        assertNotNull(secondBatchId);
+        assertEquals(Collections.singletonList(second), logs);
+        logs.clear();
+        assertNull(persistence.getLogs(GROUP, Collections.<String>emptyList(), 2, logs));
+
+        /* Deleting logs removes empty segments. */
+        assertEquals(2, getSegmentFiles().length);
+        persistence.deleteLogs(GROUP, batchId);
+        assertEquals(1, persistence.countLogs(GROUP));
+        assertEquals(1, getSegmentFiles().length);
+        persistence.deleteLogs(GROUP, secondBatchId);
+        assertEquals(0, persistence.countLogs(GROUP));
+        assertEquals(0, getSegmentFiles().length);
+
+        /* Unknown batch is ignored. */
+        persistence.deleteLogs(GROUP, secondBatchId);
+        persistence.close();
+    }
+
+    @Test
+    public void pausedTargetKeysAndTokens() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        CommonSchemaLog paused = newLog(CommonSchemaLog.class, 10);
+        when(paused.getTransmissionTargetTokens()).thenReturn(new HashSet<>(Collections.singletonList("paused-token")));
+        CommonSchemaLog resumed = newLog(CommonSchemaLog.class, 10);
+        when(resumed.getTransmissionTargetTokens()).thenReturn(new HashSet<>(Collections.singletonList("resumed-token")));
+        persistence.putLog(paused, GROUP, NORMAL);
+        persistence.putLog(resumed, GROUP, NORMAL);
+        List<Log> logs = new ArrayList<>();
+        persistence.getLogs(GROUP, Collections.singletonList("paused"), 10, logs);
+        assertEquals(Collections.<Log>singletonList(resumed), logs);
+        verify(resumed).addTransmissionTarget("resumed-token");
+
+        /* Clearing pending state returns all logs again. */
+        persistence.clearPendingLogState();
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(Arrays.<Log>asList(paused, resumed), logs);
+
+        /* Delete group. */
+        persistence.deleteLogs(GROUP);
+        assertEquals(0, persistence.countLogs(GROUP));
+        assertFalse(new File(Constants.FILES_PATH + "/appcenter/log_segments/" + GROUP).exists());
+        persistence.close();
+    }
+
+    @Test
+    public void clearPendingLogStateOfBatch() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        Log first = newLog(10);
+        Log second = newLog(10);
+        persistence.putLog(first, GROUP, NORMAL);
+        persistence.putLog(second, GROUP, NORMAL);
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 1, logs);
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 1, logs);
+        assertEquals(Arrays.asList(first, second), logs);
+
+        /* Only the logs of the cleared batch can be read again. */
+        persistence.clearPendingLogState(GROUP, batchId);
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(Collections.singletonList(first), logs);
+        persistence.close();
+    }
+
+    @Test
+    public void deleteOldestLogsKeepsCriticalAndPendingLogs() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        Log critical = newLog(10);
+        persistence.putLog(critical, GROUP, CRITICAL);
+        List<Log> normalLogs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Log log = newLog(10);
+            persistence.putLog(log, GROUP, NORMAL);
+            normalLogs.add(log);
+        }
+
+        /* Critical log and first normal log are being sent. */
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 2, logs);
+        assertEquals(Arrays.asList(critical, normalLogs.get(0)), logs);
+
+        /* Oldest normal logs that are not being sent are deleted. */
+        assertEquals(2, persistence.deleteOldestLogs(GROUP, 2));
+        assertEquals(3, persistence.countLogs(GROUP));
+        persistence.clearPendingLogState(GROUP, batchId);
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(Arrays.asList(critical, normalLogs.get(0), normalLogs.get(3)), logs);
+
+        /* Only critical and pending logs left. */
+        assertEquals(0, persistence.deleteOldestLogs(GROUP, 10));
+        assertEquals(0, persistence.deleteOldestLogs("other", 10));
+        persistence.clearPendingLogState();
+        assertEquals(2, persistence.deleteOldestLogs(GROUP, 10));
+        assertEquals(1, persistence.countLogs(GROUP));
+        assertEquals(1, getSegmentFiles().length);
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(Collections.singletonList(critical), logs);
+        persistence.close();
+    }
+
+    @Test
+    public void batchSizeLimits() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        persistence.setBatchSizeLimits(GROUP, 2500, 5000);
+        List<Log> smallLogs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Log log = newLog(1000);
+            persistence.putLog(log, GROUP, NORMAL);
+            smallLogs.add(log);
+        }
+        Log largeLog = newLog(20000);
+        persistence.putLog(largeLog, GROUP, NORMAL);
+        Log lastLog = newLog(1000);
+        persistence.putLog(lastLog, GROUP, NORMAL);
+
+        /* Batch stops growing after reaching the target size. */
+        List<Log> logs = new ArrayList<>();
+        assertNotNull(persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs));
+        assertEquals(smallLogs.subList(0, 3), logs);
+        assertTrue(persistence.isBatchSizeLimitReached(GROUP));
+
+        /* Batch never exceeds the maximum size. */
+        logs.clear();
+        assertNotNull(persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs));
+        assertEquals(smallLogs.subList(3, 4), logs);
+        assertTrue(persistence.isBatchSizeLimitReached(GROUP));
+
+        /* Unless a single log is larger than the maximum size. */
+        logs.clear();
+        assertNotNull(persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs));
+        assertEquals(Collections.singletonList(largeLog), logs);
+        assertTrue(persistence.isBatchSizeLimitReached(GROUP));
+
+        /* Last batch is limited by the remaining logs. */
+        logs.clear();
+        assertNotNull(persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs));
+        assertEquals(Collections.singletonList(lastLog), logs);
+        assertFalse(persistence.isBatchSizeLimitReached(GROUP));
+        persistence.close();
+    }
+
+    @Test
+    public void recoverAfterRestartAndTornWrite() throws Exception {
+        FileQueuePersistence persistence = newPersistence();
+        Log first = newLog(10);
+        Log second = newLog(10);
+        Log third = newLog(10);
+        persistence.putLog(first, GROUP, NORMAL);
+        persistence.putLog(second, GROUP, NORMAL);
+        long thirdId = persistence.putLog(third, GROUP, NORMAL);
+        persistence.close();
+
+        /* Corrupt last record body. */
+        File[] files = getSegmentFiles();
+        assertEquals(1, files.length);
+        RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            int offset = (int) thirdId;
+            file.seek(offset + LogSegment.FRAME_HEADER_SIZE + 4);
+            file.write('!');
+        } finally {
+            file.close();
+        }
+
+        /* Valid records are read back, new records replace the corrupted one. */
+        persistence = newPersistence();
+        assertEquals(2, persistence.countLogs(GROUP));
+        Log fourth = newLog(10);
+        assertEquals(thirdId, persistence.putLog(fourth, GROUP, NORMAL));
+        persistence.close();
+        persistence = newPersistence();
+        List<Log> logs = new ArrayList<>();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(Arrays.asList(first, second, fourth), logs);
+
+        /* Invalid files are deleted. */
+        File invalid = new File(files[0].getParentFile(), "invalid" + LogSegment.FILE_EXTENSION);
+        assertTrue(invalid.createNewFile());
+        persistence.close();
+        persistence = newPersistence();
+        assertEquals(3, persistence.countLogs(GROUP));
+        assertFalse(invalid.exists());
+        persistence.close();
+    }
+
+    @Test
+    public void compactAfterDeletingMostRecords() throws Exception {
+        FileQueuePersistence persistence = newPersistence();
+        List<Log> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Log log = newLog(1000);
+            persistence.putLog(log, GROUP, NORMAL);
+            expected.add(log);
+        }
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 3, logs);
+        persistence.deleteLogs(GROUP, batchId);
+        persistence.close();
+
+        /* Only remaining record is in the file, which is sized for it. */
+        File[] files = getSegmentFiles();
+        assertEquals(1, files.length);
+        LogSegment segment = LogSegment.open(files[0], 0, NORMAL);
+        assertEquals(1, segment.mRecords.size());
+        assertEquals(segment.getSize(), files[0].length());
+        persistence = newPersistence();
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 10, logs);
+        assertEquals(1, logs.size());
+        assertSame(expected.get(3), logs.get(0));
+        persistence.close();
+    }
+
+    @Test
+    public void maxStorageSizeDiscardsOldestLowerPriorityLogs() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        assertTrue(persistence.setMaxStorageSize(3 * FileQueuePersistence.SEGMENT_SIZE));
+
+        /* Each log takes about half of a segment. */
+        int payloadSize = FileQueuePersistence.SEGMENT_SIZE / 2 - 1024;
+        Log critical = newLog(payloadSize);
+        persistence.putLog(critical, GROUP, CRITICAL);
+        for (int i = 0; i < 10; i++) {
+            persistence.putLog(newLog(payloadSize), GROUP, NORMAL);
+        }
+        assertTrue(persistence.countLogs(GROUP) <= 6);
+
+        /* Critical log is not discarded by normal logs. */
+        List<Log> logs = new ArrayList<>();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 1, logs);
+        assertSame(critical, logs.get(0));
+
+        /* Segment files never exceed the maximum size. */
+        assertTrue(getSegmentsSize() <= 3 * FileQueuePersistence.SEGMENT_SIZE);
+
+        /* Cannot shrink below used size. */
+        assertFalse(persistence.setMaxStorageSize(FileQueuePersistence.SEGMENT_SIZE));
+
+        /* Log larger than storage is rejected. */
+        try {
+            persistence.putLog(newLog(4 * FileQueuePersistence.SEGMENT_SIZE), GROUP, CRITICAL);
+            fail();
+        } catch (PersistenceException ignore) {
+        }
+        persistence.close();
+    }
+
+    @Test
+    public void smallMaxStorageSizeIncludesSegmentCapacity() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        long maxStorageSize = 24 * 1024;
+        assertTrue(persistence.setMaxStorageSize(maxStorageSize));
+
+        /* A queue does not take the whole storage, logs of other priorities can still be stored. */
+        Log critical = newLog(100);
+        persistence.putLog(critical, GROUP, CRITICAL);
+        for (int i = 0; i < 100; i++) {
+            persistence.putLog(newLog(1000), GROUP, NORMAL);
+            assertTrue(getSegmentsSize() <= maxStorageSize);
+        }
+        assertTrue(persistence.countLogs(GROUP) > 10);
+        List<Log> logs = new ArrayList<>();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 1, logs);
+        assertSame(critical, logs.get(0));
+        persistence.close();
+    }
+
+    @Test
+    public void maxStorageSizeKeepsLogsBeingSent() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        assertTrue(persistence.setMaxStorageSize(24 * 1024));
+        for (int i = 0; i < 10; i++) {
+            persistence.putLog(newLog(1000), GROUP, NORMAL);
+        }
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 3, logs);
+        List<Log> sentLogs = new ArrayList<>(logs);
+
+        /* Oldest segment is not discarded while its logs are being sent. */
+        for (int i = 0; i < 100; i++) {
+            persistence.putLog(newLog(1000), GROUP, NORMAL);
+        }
+        persistence.clearPendingLogState(GROUP, batchId);
+        logs.clear();
+        persistence.getLogs(GROUP, Collections.<String>emptyList(), 3, logs);
+        assertEquals(sentLogs, logs);
+        persistence.close();
+    }
+
+    @Test
+    public void checkpointCompactsSegments() throws PersistenceException {
+        FileQueuePersistence persistence = newPersistence();
+        assertTrue(persistence.isCheckpointRequired());
+        for (int i = 0; i < 4; i++) {
+            persistence.putLog(newLog(1000), GROUP, NORMAL);
+        }
+
+        /* Deleting a minority of records does not compact right away. */
+        List<Log> logs = new ArrayList<>();
+        String batchId = persistence.getLogs(GROUP, Collections.<String>emptyList(), 1, logs);
+        persistence.deleteLogs(GROUP, batchId);
+        File[] files = getSegmentFiles();
+        assertEquals(1, files.length);
+        assertEquals(FileQueuePersistence.SEGMENT_SIZE, files[0].length());
+
+        /* Checkpoint compacts the segment. */
+        persistence.checkpoint();
+        assertEquals(3, persistence.countLogs(GROUP));
+        assertTrue(files[0].length() < 4 * 1100);
+        persistence.close();
+    }
+}
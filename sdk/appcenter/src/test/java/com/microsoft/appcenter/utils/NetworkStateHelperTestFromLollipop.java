@@ -178,4 +178,44 @@ public class NetworkStateHelperTestFromLollipop extends AbstractNetworkStateHelp
         verify(builder).addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
         verify(builder, never()).addCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
     }
+
+    @Test
+    public void networkMetered() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        assertFalse(helper.isNetworkMetered());
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(true);
+        assertTrue(helper.isNetworkMetered());
+
+        /* Assume metered if state cannot be read. */
+        when(mConnectivityManager.isActiveNetworkMetered()).thenThrow(new SecurityException());
+        assertTrue(helper.isNetworkMetered());
+    }
+
+    @Test
+    public void defaultNetworkActive() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        assertFalse(helper.isDefaultNetworkActive());
+        when(mConnectivityManager.isDefaultNetworkActive()).thenReturn(true);
+        assertTrue(helper.isDefaultNetworkActive());
+
+        /* Assume active if state cannot be read. */
+        when(mConnectivityManager.isDefaultNetworkActive()).thenThrow(new SecurityException());
+        assertTrue(helper.isDefaultNetworkActive());
+    }
+
+    @Test
+    public void networkActiveListener() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        ConnectivityManager.OnNetworkActiveListener listener = mock(ConnectivityManager.OnNetworkActiveListener.class);
+        helper.addNetworkActiveListener(listener);
+        verify(mConnectivityManager).addDefaultNetworkActiveListener(listener);
+        helper.removeNetworkActiveListener(listener);
+        verify(mConnectivityManager).removeDefaultNetworkActiveListener(listener);
+
+        /* Errors are ignored. */
+        doThrow(new SecurityException()).when(mConnectivityManager).addDefaultNetworkActiveListener(listener);
+        doThrow(new SecurityException()).when(mConnectivityManager).removeDefaultNetworkActiveListener(listener);
+        helper.addNetworkActiveListener(listener);
+        helper.removeNetworkActiveListener(listener);
+    }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+
+public class Utf8UtilsTest {
+
+    private static void assertLength(String value) throws UnsupportedEncodingException {
+        assertEquals(value.getBytes("UTF-8").length, Utf8Utils.getLength(value));
+    }
+
+    @SuppressWarnings("InstantiationOfUtilityClass")
+    @Test
+    public void init() {
+        new Utf8Utils();
+    }
+
+    @Test
+    public void getLength() throws UnsupportedEncodingException {
+        assertLength("");
+        assertLength("{\"type\":\"event\"}");
+        assertLength("\u007f\u0080\u07ff\u0800\uffff");
+        assertLength("caf\u00e9 \u4e2d\u6587 \ud83d\ude00");
+
+        /* Unpaired surrogates. */
+        assertLength("\ud83d");
+        assertLength("\ude00a");
+        assertLength("a\ud83d\ud83d\ude00");
+    }
+}
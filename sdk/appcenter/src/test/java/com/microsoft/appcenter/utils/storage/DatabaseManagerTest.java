@@ -23,6 +23,9 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -30,10 +33,13 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
@@ -65,6 +71,42 @@ public class DatabaseManagerTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void configureDefaults() {
+        DatabaseManager databaseManager = new DatabaseManager(null, "database", "table", 1, null, null, null);
+        SQLiteDatabase database = mock(SQLiteDatabase.class);
+        databaseManager.configure(database);
+        verifyZeroInteractions(database);
+    }
+
+    @Test
+    public void configureWriteAheadLoggingAndCacheSize() {
+        DatabaseManager databaseManager = new DatabaseManager(null, "database", "table", 1, null, null, null);
+        databaseManager.setWriteAheadLoggingEnabled(true);
+        databaseManager.setCacheSize(2048);
+        SQLiteDatabase database = mock(SQLiteDatabase.class);
+        databaseManager.configure(database);
+        verify(database).enableWriteAheadLogging();
+        verify(database).execSQL("PRAGMA synchronous = NORMAL");
+        verify(database).execSQL("PRAGMA cache_size = -2048");
+    }
+
+    @Test
+    public void checkpointWithoutWriteAheadLogging() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        databaseManagerMock.checkpoint();
+        verify(databaseManagerMock, never()).getDatabase();
+    }
+
+    @Test
+    public void checkpointFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        databaseManagerMock.setWriteAheadLoggingEnabled(true);
+        databaseManagerMock.checkpoint();
+        verifyStatic(AppCenterLog.class);
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
     @Test
     public void deleteFailed() {
         DatabaseManager databaseManagerMock = getDatabaseManagerMock();
@@ -73,6 +115,27 @@ public class DatabaseManagerTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void deleteIdsFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertEquals(0, databaseManagerMock.delete(Arrays.asList(1L, 2L)));
+        verifyStatic(AppCenterLog.class);
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void deleteIds() {
+        DatabaseManager databaseManagerMock = spy(new DatabaseManager(null, "database", "table", 1, null, null, null));
+        SQLiteDatabase database = mock(SQLiteDatabase.class);
+        when(database.delete("table", "oid IN (1,2,3)", null)).thenReturn(3);
+        doReturn(database).when(databaseManagerMock).getDatabase();
+        assertEquals(3, databaseManagerMock.delete(Arrays.asList(1L, 2L, 3L)));
+
+        /* Empty list does not access database. */
+        assertEquals(0, databaseManagerMock.delete(Collections.<Long>emptyList()));
+        verify(database).delete(anyString(), anyString(), isNull());
+    }
+
     @Test
     public void clearFailed() {
         DatabaseManager databaseManagerMock = getDatabaseManagerMock();
@@ -189,7 +252,7 @@ public class DatabaseManagerTest {
         SQLiteDiskIOException fatalException = new SQLiteDiskIOException();
         when(cursor.moveToNext()).thenThrow(fatalException);
         SQLiteQueryBuilder sqLiteQueryBuilder = mock(SQLiteQueryBuilder.class);
-        when(sqLiteQueryBuilder.query(any(), any(), any(), any(), any(), any(), any())).thenReturn(cursor);
+        when(sqLiteQueryBuilder.query(any(), any(), any(), any(), any(), any(), any(), any())).thenReturn(cursor);
         when(SQLiteUtils.newSQLiteQueryBuilder()).thenReturn(sqLiteQueryBuilder);
 
         /* Simulate that database is full and that deletes fail because of the cursor. */
@@ -219,7 +282,7 @@ public class DatabaseManagerTest {
         doThrow(exception).when(cursor).close();
         when(cursor.moveToNext()).thenReturn(true).thenReturn(false);
         SQLiteQueryBuilder sqLiteQueryBuilder = mock(SQLiteQueryBuilder.class);
-        when(sqLiteQueryBuilder.query(any(), any(), any(), any(), any(), any(), any())).thenReturn(cursor);
+        when(sqLiteQueryBuilder.query(any(), any(), any(), any(), any(), any(), any(), any())).thenReturn(cursor);
         when(SQLiteUtils.newSQLiteQueryBuilder()).thenReturn(sqLiteQueryBuilder);
 
         /* Simulate that database is full only once (will work after purging 1 log). */